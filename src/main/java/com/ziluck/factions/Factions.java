@@ -1,15 +1,39 @@
 package com.ziluck.factions;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 import com.ziluck.factions.api.commands.CommandHandler;
 import com.ziluck.factions.base.Faction;
 import com.ziluck.factions.base.FactionStore;
 import com.ziluck.factions.base.User;
 import com.ziluck.factions.base.UserStore;
+import com.ziluck.factions.data.AnnouncementMailbox;
+import com.ziluck.factions.data.LoadFactionStore;
+import com.ziluck.factions.data.LoadUserStore;
+import com.ziluck.factions.data.UserNameDictionary;
+import com.ziluck.factions.data.SaveQueue;
+import com.ziluck.factions.data.migration.MigrationBackend;
+import com.ziluck.factions.data.migration.MigrationCheckpoint;
+import com.ziluck.factions.data.migration.StorageMigration;
+import com.ziluck.factions.data.mongodb.MongoAnnouncementMailbox;
 import com.ziluck.factions.data.mongodb.MongoFactionStore;
+import com.ziluck.factions.data.mongodb.MongoInvalidationBus;
+import com.ziluck.factions.data.mongodb.MongoMigrationBackend;
 import com.ziluck.factions.data.mongodb.MongoUserStore;
+import com.ziluck.factions.data.mongodb.MongoWrapper;
+import com.ziluck.factions.data.mysql.MySQLAnnouncementMailbox;
+import com.ziluck.factions.data.mysql.MySQLFactionStore;
+import com.ziluck.factions.data.mysql.MySQLMigrationBackend;
+import com.ziluck.factions.data.mysql.MySQLUserStore;
+import com.ziluck.factions.data.mysql.MySQLWrapper;
+import com.ziluck.factions.data.sync.CacheCoherence;
+import com.ziluck.factions.data.sync.InvalidationBus;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
@@ -45,6 +69,13 @@ public class Factions extends JavaPlugin
     private FactionStore factionStore;
     private UserStore    userStore;
 
+    private InvalidationBus invalidationBus;
+    private CacheCoherence  cacheCoherence;
+
+    private AnnouncementMailbox mailbox;
+
+    private UserNameDictionary nameDictionary;
+
     @Override
     public void onEnable()
     {
@@ -52,21 +83,142 @@ public class Factions extends JavaPlugin
 
         processFiles();
 
+        if (Config.MIGRATION_ENABLED.booleanValue())
+        {
+            migrateStorage();
+        }
+
+        openNameDictionary();
+
         // UserStores must be loaded first as when the Wilderness is created, it uses the console user.
+        long mailboxExpiry = TimeUnit.DAYS.toMillis(Config.MAILBOX_EXPIRY.intValue());
         if (Config.STORAGE_TYPE.getValue() == Storage.MONGODB)
         {
             userStore = new MongoUserStore();
             factionStore = new MongoFactionStore();
+            mailbox = new MongoAnnouncementMailbox(mailboxExpiry);
+        }
+        else if (Config.STORAGE_TYPE.getValue() == Storage.MYSQL)
+        {
+            userStore = new MySQLUserStore();
+            factionStore = new MySQLFactionStore();
+            mailbox = new MySQLAnnouncementMailbox(mailboxExpiry);
+        }
+
+        seedNameDictionary();
+
+        if (Config.SYNC_ENABLED.booleanValue())
+        {
+            startSync();
         }
 
         registerCommands();
         registerListeners();
+
+        if (Config.SNAPSHOT_ENABLED.booleanValue())
+        {
+            // the Factions are copied on the main thread and then written asynchronously
+            long interval = Config.SNAPSHOT_INTERVAL.intValue() * 20L;
+            Bukkit.getScheduler().runTaskTimer(this, () -> factionStore.saveSnapshot(true), interval, interval);
+        }
     }
 
     @Override
     public void onDisable()
     {
+        if (invalidationBus != null)
+        {
+            invalidationBus.close();
+        }
+        flushSaves();
+        if (factionStore != null)
+        {
+            factionStore.saveSnapshot(false);
+        }
+        closeNameDictionary();
+    }
+
+    /**
+     * Opens the dictionary of every known player name. If its file can't be opened, the names are only kept until the
+     * server stops.
+     */
+    private void openNameDictionary()
+    {
+        try
+        {
+            nameDictionary = new UserNameDictionary(new File(getDataFolder(), "usernames.dictionary"));
+        }
+        catch (IOException ex)
+        {
+            getLogger().log(Level.WARNING, "Could not open the player name dictionary. Offline names will not be kept between restarts.", ex);
+            nameDictionary = new UserNameDictionary();
+        }
+    }
+
+    /**
+     * Fills the name dictionary from the database the first time it is used, such as after upgrading or when its file was
+     * lost. Every name is read in one query, so this is done asynchronously.
+     */
+    private void seedNameDictionary()
+    {
+        if (nameDictionary.size() > 0 || !(userStore instanceof LoadUserStore))
+        {
+            return;
+        }
+        LoadUserStore store = (LoadUserStore) userStore;
+        Bukkit.getScheduler().runTaskAsynchronously(this, () -> nameDictionary.addAll(store.fetchNames()));
+    }
+
+    private void closeNameDictionary()
+    {
+        if (nameDictionary == null)
+        {
+            return;
+        }
+        try
+        {
+            nameDictionary.close();
+        }
+        catch (IOException ex)
+        {
+            getLogger().log(Level.WARNING, "Could not close the player name dictionary.", ex);
+        }
+    }
+
+    /**
+     * Writes every Faction and User that was saved but not written yet. The asynchronous scheduler no longer runs
+     * tasks at this point, so this waits up to the configured timeout for them to be written on other threads.
+     */
+    private void flushSaves()
+    {
+        List<SaveQueue<?>> queues = new ArrayList<>();
+        if (userStore instanceof LoadUserStore && ((LoadUserStore) userStore).getSaveQueue() != null)
+        {
+            queues.add(((LoadUserStore) userStore).getSaveQueue());
+        }
+        if (factionStore instanceof LoadFactionStore && ((LoadFactionStore) factionStore).getSaveQueue() != null)
+        {
+            queues.add(((LoadFactionStore) factionStore).getSaveQueue());
+        }
+        if (mailbox != null)
+        {
+            queues.add(mailbox.getSaveQueue());
+        }
+        if (queues.isEmpty())
+        {
+            return;
+        }
 
+        SaveQueue.DrainReport report = SaveQueue.drain(queues, Config.SHUTDOWN_THREADS.intValue(), Config.SHUTDOWN_TIMEOUT.intValue() * 1000L);
+        queues.forEach(SaveQueue::close);
+        if (report.getAbandoned() > 0)
+        {
+            getLogger().warning("Saved " + report.getFlushed() + " factions and users before shutting down, but " + report.getAbandoned() + " could not be saved in time.");
+        }
+        else
+        {
+            getLogger().info("Saved " + report.getFlushed() + " factions and users before shutting down.");
+        }
     }
 
     private void processFiles()
@@ -75,6 +227,99 @@ public class Factions extends JavaPlugin
         Config.update();
     }
 
+    /**
+     * Starts sharing saved Factions and Users with the other servers that use the same database.
+     */
+    private void startSync()
+    {
+        if (Config.STORAGE_TYPE.getValue() != Storage.MONGODB)
+        {
+            getLogger().warning("Sharing changes between servers is only supported with mongodb.");
+            return;
+        }
+
+        invalidationBus = new MongoInvalidationBus(MongoWrapper.getInstance());
+        cacheCoherence = new CacheCoherence(invalidationBus, UUID.randomUUID().toString());
+        cacheCoherence.start();
+    }
+
+    /**
+     * Copies everything from the configured migration source into the current storage before any of it is loaded.
+     */
+    private void migrateStorage()
+    {
+        Enum<Storage> from = Config.MIGRATION_SOURCE.getValue();
+        Enum<Storage> to = Config.STORAGE_TYPE.getValue();
+        if (from == to)
+        {
+            getLogger().warning("The migration source is the same as the storage type, so nothing will be migrated.");
+            return;
+        }
+
+        MigrationBackend target;
+        if (to == Storage.MONGODB)
+        {
+            target = new MongoMigrationBackend(MongoWrapper.getInstance());
+        }
+        else if (to == Storage.MYSQL)
+        {
+            target = new MySQLMigrationBackend(MySQLWrapper.getInstance());
+        }
+        else
+        {
+            getLogger().severe("Migrating to " + to + " is not supported.");
+            return;
+        }
+
+        MigrationCheckpoint checkpoint = new MigrationCheckpoint(new File(getDataFolder(), "migration.checkpoint"), from.name(), to.name());
+        if (from == Storage.MONGODB)
+        {
+            MongoWrapper source = new MongoWrapper(Config.MIGRATION_HOSTNAME.getValue(),
+                                                   Config.MIGRATION_PORT.intValue(),
+                                                   Config.MIGRATION_USERNAME.getValue(),
+                                                   Config.MIGRATION_PASSWORD.getValue(),
+                                                   Config.MIGRATION_DATABASE.getValue());
+            try
+            {
+                runMigration(new MongoMigrationBackend(source), target, checkpoint);
+            }
+            finally
+            {
+                source.close();
+            }
+        }
+        else if (from == Storage.MYSQL)
+        {
+            MySQLWrapper source = new MySQLWrapper("jdbc:mysql://" + Config.MIGRATION_HOSTNAME.getValue() + ":" + Config.MIGRATION_PORT.intValue() + "/" + Config.MIGRATION_DATABASE.getValue(),
+                                                   Config.MIGRATION_USERNAME.getValue(),
+                                                   Config.MIGRATION_PASSWORD.getValue());
+            try
+            {
+                runMigration(new MySQLMigrationBackend(source), target, checkpoint);
+            }
+            finally
+            {
+                source.close();
+            }
+        }
+        else
+        {
+            getLogger().severe("Migrating from " + from + " is not supported.");
+        }
+    }
+
+    /**
+     * Runs a migration with the configured batch size and threads.
+     *
+     * @param source     the database to read from.
+     * @param target     the database to write to.
+     * @param checkpoint where to record progress.
+     */
+    private void runMigration(MigrationBackend source, MigrationBackend target, MigrationCheckpoint checkpoint)
+    {
+        new StorageMigration(source, target, checkpoint, Config.MIGRATION_BATCH_SIZE.intValue(), Config.MIGRATION_THREADS.intValue(), getLogger()).run();
+    }
+
     private void registerCommands()
     {
         CommandHandler.initialize();
@@ -96,6 +341,31 @@ public class Factions extends JavaPlugin
         return factionStore;
     }
 
+    /**
+     * @return what keeps this server up to date with others that share its database, or {@code null} if it does not
+     *         share its database.
+     */
+    public CacheCoherence getCacheCoherence()
+    {
+        return cacheCoherence;
+    }
+
+    /**
+     * @return the announcements waiting for offline players, or {@code null} if the storage type does not keep them.
+     */
+    public AnnouncementMailbox getMailbox()
+    {
+        return mailbox;
+    }
+
+    /**
+     * @return the name of every player that has ever joined.
+     */
+    public UserNameDictionary getNameDictionary()
+    {
+        return nameDictionary;
+    }
+
     /**
      * @return the currently used UserStore.
      */
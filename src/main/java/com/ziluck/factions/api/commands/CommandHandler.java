@@ -26,6 +26,7 @@ import org.bukkit.plugin.SimplePluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import com.ziluck.factions.Factions;
+import com.ziluck.factions.configuration.Config;
 import com.ziluck.factions.configuration.Lang;
 
 /**
@@ -259,25 +260,31 @@ public class CommandHandler implements CommandExecutor, TabCompleter
             return null;
         }
 
-        // set the argument to lower case for easier comparison
-        lastWord = lastWord.toLowerCase();
-
         // create the list to return
         List<String> values = new LinkedList<>();
 
-        // create a player instance of the sender
-        Player playerSender = sender instanceof Player ? (Player) sender : null;
+        Player viewer = getViewer(sender);
 
-        // go through the players
-        for (Player player : Bukkit.getOnlinePlayers())
+        // only the first matching players are looked at, so only they have to be checked for whether they can be seen
+        for (User user : UserStore.getInstance().getOnlineUsersStartingWith(lastWord, Config.PLAYER_TAB_COMPLETE_LIMIT.intValue()))
         {
-            // if the sender is not a player or if the player can see the target, add them
-            if ((playerSender == null || playerSender.canSee(player)) && (lastWord.equals("") || player.getName().toLowerCase().startsWith(lastWord)))
+            if (viewer == null || viewer.canSee(user.getPlayer()))
             {
-                values.add(player.getName());
+                values.add(user.getName());
             }
         }
         return values;
     }
 
+    /**
+     * @param sender the sender of a command or tab complete.
+     *
+     * @return the Player of the sender, or {@code null} if the sender is the console or is not online, in which case
+     *         they can see every player.
+     */
+    public static Player getViewer(User sender)
+    {
+        return sender != null && !sender.isConsole() && sender.isOnline() ? sender.getPlayer() : null;
+    }
+
 }
\ No newline at end of file
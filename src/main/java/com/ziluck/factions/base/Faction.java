@@ -77,9 +77,11 @@ public interface Faction extends Messageable, Nameable
     public void setFounded(long created);
 
     /**
-     * Retrieves all announcements for each player. Announcements are messages stored with the data that are going to be
-     * sent to the players the next time they connect to the server. Players that are currently connected to the server
-     * should not have any pending announcements as any new announcement added for a player is sent to them immediately.
+     * Retrieves all announcements for each player. Announcements are messages kept in the announcement mailbox that are
+     * going to be sent to the players the next time they connect to the server. Players that are currently connected to
+     * the server should not have any pending announcements as any new announcement added for a player is sent to them
+     * immediately. The returned Multimap is a copy. This may read the database, so it should not be called on the main
+     * thread.
      *
      * @return the pending announcements.
      */
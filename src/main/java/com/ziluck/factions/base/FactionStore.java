@@ -6,6 +6,7 @@ import java.util.UUID;
 
 import com.ziluck.factions.base.claims.Claim;
 import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.base.struct.Leaderboard;
 import com.ziluck.factions.Factions;
 import com.ziluck.factions.events.FactionCreateEvent;
 import com.ziluck.factions.spatial.BlockColumn;
@@ -16,6 +17,13 @@ import org.bukkit.entity.Player;
 
 /**
  * The base system to store Factions and the areas that they have claimed.
+ * <p>
+ * Threading: Factions are only created, removed, renamed, and claimed on the main thread. Looking a Faction up by its
+ * id or name, listing every Faction with {@link #getFactions()}, and completing or suggesting names with
+ * {@link #getFactionsStartingWith(String, int)} and {@link #getFactionsSimilarTo(String, int, int)} are safe from any
+ * thread, such as asynchronous chat or scheduler tasks, and never see a Faction half added. Everything else, including
+ * looking up claims and leaderboards, must only be used from the main thread.
+ * </p>
  *
  * @author Michael Ziluck
  */
@@ -149,6 +157,53 @@ public interface FactionStore
      */
     public Collection<Faction> getFactions();
 
+    /**
+     * Lists the Factions whose names start with the given prefix, ignoring case, in alphabetical order. This is meant for
+     * tab completion, and takes time in proportion to the prefix and the number of Factions listed rather than the
+     * number of Factions there are.
+     *
+     * @param prefix the start of the names.
+     * @param limit  the most Factions to list.
+     *
+     * @return the Factions.
+     */
+    public List<Faction> getFactionsStartingWith(String prefix, int limit);
+
+    /**
+     * Lists the Factions whose names are spelled almost like the given name, ignoring case, such as to suggest what was
+     * meant when no Faction has the name that was typed. The closest Factions come first.
+     *
+     * @param name        the name that was typed.
+     * @param maxDistance the most characters that can be inserted, removed, or replaced to get from the typed name to the
+     *                    name of a Faction.
+     * @param limit       the most Factions to list.
+     *
+     * @return the Factions.
+     */
+    public List<Faction> getFactionsSimilarTo(String name, int maxDistance, int limit);
+
+    /**
+     * Lists a page of the highest ranked Factions on the given leaderboard. Only normal Factions are ranked. The
+     * leaderboards are kept up to date as Factions change, so this never sorts every Faction.
+     *
+     * @param leaderboard the leaderboard.
+     * @param offset      how many of the highest ranked Factions to skip.
+     * @param limit       the most Factions to list.
+     *
+     * @return the Factions, highest ranked first.
+     */
+    public List<Faction> getTop(Leaderboard leaderboard, int offset, int limit);
+
+    /**
+     * Finds the rank of the given Faction on the given leaderboard.
+     *
+     * @param faction     the Faction.
+     * @param leaderboard the leaderboard.
+     *
+     * @return the rank, where the highest ranked Faction is {@code 1}, or {@code -1} if the Faction is not ranked.
+     */
+    public int getRank(Faction faction, Leaderboard leaderboard);
+
     /**
      * Creates a new Faction with the given creator, the given name, and the given type.
      *
@@ -162,7 +217,10 @@ public interface FactionStore
 
     /**
      * Increment the id given to the next Faction.
+     *
+     * @deprecated ids are now reserved as soon as a Faction is created, so this does nothing.
      */
+    @Deprecated
     public void incrementNextId();
 
     /**
@@ -177,4 +235,21 @@ public interface FactionStore
      */
     public void save(Faction faction);
 
+    /**
+     * Writes the loaded Factions to a snapshot that can be read on the next startup instead of the database. This must
+     * be called from the main thread. If the FactionStore can't start from a snapshot, this does nothing.
+     *
+     * @param async {@code true} to write the snapshot on another thread.
+     */
+    public void saveSnapshot(boolean async);
+
+    /**
+     * Reads the Faction with the given id from the database again because another server saved it. The Faction is read
+     * on the calling thread and applied on the main thread. A loaded Faction is updated in place, so anything holding
+     * on to it sees the changes. If the FactionStore can't reload single Factions, this does nothing.
+     *
+     * @param id the id of the Faction.
+     */
+    public void reloadFaction(long id);
+
 }
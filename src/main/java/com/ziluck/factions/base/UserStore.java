@@ -1,6 +1,7 @@
 package com.ziluck.factions.base;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 import org.bukkit.command.CommandSender;
@@ -10,6 +11,13 @@ import com.ziluck.factions.Factions;
 
 /**
  * The base system to store and load Users.
+ * <p>
+ * Threading: Users only come online and go offline on the main thread. Looking a User up by their UUID, name, or id,
+ * listing the online Users with {@link #getOnlineUsers()}, and completing or suggesting names are safe from any thread,
+ * such as asynchronous chat or scheduler tasks, and never see a User half loaded. Looking up offline Users is safe from
+ * any thread as well, but reads from the database when they aren't cached, so it should stay off of the main thread where
+ * possible. The methods that say which thread they belong on must only be called from it.
+ * </p>
  * 
  * @author Michael Ziluck
  */
@@ -28,6 +36,41 @@ public interface UserStore
      */
     public Collection<User> getOnlineUsers();
 
+    /**
+     * Lists the online Users whose names start with the given prefix, ignoring case. This does not check who can see
+     * them, so that only the Users that are returned have to be checked.
+     *
+     * @param prefix the start of the names.
+     * @param limit  the most Users to list.
+     *
+     * @return the Users, in alphabetical order of their names.
+     */
+    public List<User> getOnlineUsersStartingWith(String prefix, int limit);
+
+    /**
+     * Lists the names of every User that has ever joined, online or not, that start with the given prefix, ignoring
+     * case. Nothing is read from the database.
+     *
+     * @param prefix the start of the names.
+     * @param limit  the most names to list.
+     *
+     * @return the names, in alphabetical order.
+     */
+    public List<String> getNamesStartingWith(String prefix, int limit);
+
+    /**
+     * Lists the names of every User that has ever joined that are spelled almost like the given name, ignoring case,
+     * such as to suggest what was meant when no User has the name that was typed. The closest names come first.
+     *
+     * @param name        the name that was typed.
+     * @param maxDistance the most characters that can be inserted, removed, or replaced to get from the typed name to a
+     *                    known one.
+     * @param limit       the most names to list.
+     *
+     * @return the names.
+     */
+    public List<String> getNamesSimilarTo(String name, int maxDistance, int limit);
+
     /**
      * Gets an online User based on the given UUID.
      * 
@@ -87,6 +130,17 @@ public interface UserStore
      */
     public User getUser(long id, boolean includeOffline);
 
+    /**
+     * Gets all the Users with the given internal ids. Online Users are resolved from memory and, if includeOffline is
+     * set to true, all the remaining Users are fetched together in a single query. Ids that do not belong to a User are
+     * skipped.
+     * 
+     * @param ids the ids of the Users.
+     * @param includeOffline whether to include offline Users or not.
+     * @return the found Users in the same order as their ids.
+     */
+    public List<User> getUsers(long[] ids, boolean includeOffline);
+
     /**
      * Gets an online User based on the Bukkit CommandSender. If inlucdeOffline is sset to true, it will also retrieve
      * offline Users.
@@ -112,6 +166,40 @@ public interface UserStore
      */
     public User loadUser(Player player);
 
+    /**
+     * Fetches the User with the given uuid from the database and stages them to be loaded once the Player actually
+     * joins. For a Player that has never connected, a new User is built with a reserved id, but is only saved once they
+     * join, so that a login that is denied later never writes a User. This performs blocking database operations, so it
+     * should only ever be called off of the main thread, e.g. from an
+     * {@link org.bukkit.event.player.AsyncPlayerPreLoginEvent}.
+     * <p>
+     * A staged User that is not loaded within a minute is thrown away, and the Player is fetched again if they join
+     * after that.
+     * </p>
+     *
+     * @param uuid the uuid of the connecting Player.
+     * @param name the name of the connecting Player.
+     * @return the staged User.
+     */
+    public User preloadUser(UUID uuid, String name);
+
+    /**
+     * Discards the staged User with the given uuid if there is one. This should be called when a Player that was
+     * preloaded is not allowed to join after all, whether their pre-login or their login was denied.
+     *
+     * @param uuid the uuid of the Player.
+     */
+    public void discardPreloadedUser(UUID uuid);
+
+    /**
+     * Unloads the User of a Player that is leaving the server. The User is no longer considered online, but is kept
+     * around for a while in case they are looked up again soon.
+     * 
+     * @param player the Player that is leaving.
+     * @return the unloaded User, or null if they were not loaded.
+     */
+    public User unloadUser(Player player);
+
     /**
      * Load the User that has the given id. If a user is not found, this will throw an {@link IllegalArgumentException}.
      * 
@@ -132,6 +220,19 @@ public interface UserStore
      */
     public User createUser(Player player);
 
+    /**
+     * Creates a new User with the given uuid and name. This is safe to call off of the main thread.
+     * <p>
+     * Important to know that this method does <strong><i>not</i></strong> check if the Player already has a User so use
+     * with caution.
+     * </p>
+     * 
+     * @param uuid the uuid of the Player.
+     * @param name the name of the Player.
+     * @return the newly created User.
+     */
+    public User createUser(UUID uuid, String name);
+
     /**
      * Saves the given User to the database.
      * 
@@ -139,6 +240,15 @@ public interface UserStore
      */
     public void save(User user);
 
+    /**
+     * Reads the User with the given id from the database again because another server saved it. The User is read on
+     * the calling thread and applied on the main thread. An online User is updated in place, and an offline User is
+     * dropped from the cache so that it is read again the next time it is needed.
+     *
+     * @param id the id of the User.
+     */
+    public void reloadUser(long id);
+
     /**
      * Initialize UserStores with whatever they need to do when they are constructed.
      */
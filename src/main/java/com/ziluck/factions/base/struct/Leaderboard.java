@@ -0,0 +1,28 @@
+package com.ziluck.factions.base.struct;
+
+/**
+ * The ways Factions can be ranked against each other. Each leaderboard ranks Factions from the highest to the lowest.
+ *
+ * @author Michael Ziluck
+ */
+public enum Leaderboard
+{
+
+    /**
+     * Ranks Factions by how much money they have.
+     */
+    BALANCE,
+    /**
+     * Ranks Factions by how many blocks of land they have claimed.
+     */
+    CLAIM_AREA,
+    /**
+     * Ranks Factions by how many members they have.
+     */
+    MEMBERS,
+    /**
+     * Ranks Factions by how long ago they were founded, oldest first.
+     */
+    AGE
+
+}
@@ -23,7 +23,11 @@ public enum Permission
     /**
      * Lookup your own Faction.
      */
-    LOOKUP_SELF("faction.self");
+    LOOKUP_SELF("faction.self"),
+    /**
+     * View the performance of the database.
+     */
+    DATABASE("admin.database");
 
     private String permission;
 
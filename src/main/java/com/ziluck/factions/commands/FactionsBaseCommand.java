@@ -20,6 +20,7 @@ public class FactionsBaseCommand extends ValidBaseCommand
 
         addSubCommand(new FactionsCreateCommand());
         addSubCommand(new FactionFactionCommand());
+        addSubCommand(new FactionsDatabaseCommand());
     }
 
 }
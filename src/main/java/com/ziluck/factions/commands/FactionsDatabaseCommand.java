@@ -0,0 +1,81 @@
+package com.ziluck.factions.commands;
+
+import java.util.List;
+import java.util.Map;
+
+import com.ziluck.factions.api.commands.CommandArgument;
+import com.ziluck.factions.api.commands.ValidCommand;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.struct.Permission;
+import com.ziluck.factions.configuration.Config;
+import com.ziluck.factions.configuration.Lang;
+import com.ziluck.factions.configuration.struct.Storage;
+import com.ziluck.factions.data.mongodb.MongoMetrics;
+import com.ziluck.factions.data.mongodb.MongoWrapper;
+import com.ziluck.factions.utils.LatencyHistogram;
+
+/**
+ * Command: /faction database
+ * <p>
+ * Shows how long each kind of database command takes and how long threads wait for a connection, so that lag caused
+ * by the database can be told apart from anything else.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class FactionsDatabaseCommand extends ValidCommand
+{
+
+    /**
+     * Constructs a new FactionsDatabaseCommand with default settings.
+     */
+    public FactionsDatabaseCommand()
+    {
+        super("database", "Show the performance of the database.", Permission.DATABASE, new String[]{ "db" });
+    }
+
+    @Override
+    public void validRun(User sender, String[] label, List<CommandArgument<?>> args)
+    {
+        if (Config.STORAGE_TYPE.getValue() != Storage.MONGODB)
+        {
+            Lang.DATABASE_NO_METRICS.send(sender);
+            return;
+        }
+
+        MongoMetrics metrics = MongoWrapper.getInstance().getMetrics();
+        LatencyHistogram waits = metrics.getPoolWaits();
+
+        Lang.DATABASE_POOL.send(sender, "{in_use}", metrics.getCheckedOut(),
+                                "{waiting}", metrics.getWaiting(),
+                                "{waits}", waits.getCount(),
+                                "{wait_mean}", format(waits.getMean()),
+                                "{wait_p99}", format(waits.getPercentile(99)),
+                                "{wait_max}", format(waits.getMax()),
+                                "{failures}", metrics.getFailures());
+
+        for (Map.Entry<String, LatencyHistogram> entry : metrics.getCommands().entrySet())
+        {
+            LatencyHistogram command = entry.getValue();
+            Lang.DATABASE_COMMAND.send(sender, "{command}", entry.getKey(),
+                                       "{count}", command.getCount(),
+                                       "{mean}", format(command.getMean()),
+                                       "{p50}", format(command.getPercentile(50)),
+                                       "{p99}", format(command.getPercentile(99)),
+                                       "{max}", format(command.getMax()));
+        }
+    }
+
+    /**
+     * Formats a duration in microseconds as milliseconds.
+     *
+     * @param micros the duration in microseconds.
+     *
+     * @return the formatted duration.
+     */
+    private static String format(long micros)
+    {
+        return String.format("%.1fms", micros / 1000.0);
+    }
+
+}
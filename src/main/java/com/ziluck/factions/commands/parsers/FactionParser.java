@@ -48,25 +48,60 @@ public class FactionParser implements Parser<Faction>
         Faction faction = Factions.getFaction(rawArgument);
         if (faction == null || (faction.isWilderness() && !includeWilderness))
         {
-            Lang.FACTION_NOT_FOUND.sendError(sender);
+            Faction suggestion = suggest(rawArgument);
+            if (suggestion == null)
+            {
+                Lang.FACTION_NOT_FOUND.sendError(sender);
+            }
+            else
+            {
+                Lang.FACTION_NOT_FOUND_SUGGESTION.sendError(sender, "{suggestion}", suggestion.getName());
+            }
             return null;
         }
         return faction;
     }
 
+    /**
+     * Finds the Faction that was most likely meant when no Faction has the given name.
+     *
+     * @param rawArgument the name that was typed.
+     *
+     * @return the Faction with the closest name, or {@code null} if none is close enough.
+     */
+    private Faction suggest(String rawArgument)
+    {
+        int maxDistance = Suggestions.maxDistance(rawArgument);
+        if (maxDistance == 0)
+        {
+            return null;
+        }
+        // one extra in case the Wilderness is the closest
+        for (Faction f : FactionStore.getInstance().getFactionsSimilarTo(rawArgument, maxDistance, 2))
+        {
+            if (!f.isWilderness() || includeWilderness)
+            {
+                return f;
+            }
+        }
+        return null;
+    }
+
     @Override
     public List<String> getRecommendations(User sender, String lastWord)
     {
         List<String> recs = new ArrayList<>();
         if (Config.FACTION_TAB_COMPLETE.booleanValue() && lastWord.length() >= Config.FACTION_TAB_COMPLETE_MIN.intValue())
         {
-            for (Faction f : FactionStore.getInstance().getFactions())
+            int limit = Config.FACTION_TAB_COMPLETE_LIMIT.intValue();
+            // one extra in case the Wilderness is among them
+            for (Faction f : FactionStore.getInstance().getFactionsStartingWith(lastWord, limit + 1))
             {
                 if (f.isWilderness() && !includeWilderness)
                 {
                     continue;
                 }
-                if (f.getName().startsWith(lastWord))
+                if (recs.size() < limit)
                 {
                     recs.add(f.getName());
                 }
@@ -0,0 +1,28 @@
+package com.ziluck.factions.commands.parsers;
+
+import com.ziluck.factions.configuration.Config;
+
+/**
+ * Decides how close a name has to be to one that was typed to be suggested in its place.
+ *
+ * @author Michael Ziluck
+ */
+final class Suggestions
+{
+
+    private Suggestions()
+    {
+    }
+
+    /**
+     * @param typed the name that was typed.
+     *
+     * @return the most edits a suggested name can be away from it, or {@code 0} if nothing should be suggested.
+     */
+    static int maxDistance(String typed)
+    {
+        // a short name is only a couple of edits away from far too many others to guess which was meant
+        return Math.max(0, Math.min(Config.SUGGESTION_MAX_DISTANCE.intValue(), typed.length() / 3));
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.ziluck.factions.commands.parsers;
+
+import java.util.List;
+
+import com.ziluck.factions.api.commands.CommandHandler;
+import com.ziluck.factions.api.commands.Parser;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.UserStore;
+import com.ziluck.factions.configuration.Config;
+import com.ziluck.factions.configuration.Lang;
+import org.bukkit.entity.Player;
+
+/**
+ * Parses Strings into Users.
+ * <p>
+ * None of the commands in this plugin take a player yet, so this is only used by commands added through the API. It
+ * completes the known player names and suggests the closest one when a name does not exist.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class UserParser implements Parser<User>
+{
+
+    /**
+     * How many of the closest names are checked for one that can be suggested.
+     */
+    private static final int SUGGESTION_CANDIDATES = 5;
+
+    private boolean includeOffline;
+
+    /**
+     * Create a new UserParser which specifies whether or not to include offline Users.
+     *
+     * @param includeOffline whether or not Users that are not online can be parsed and recommended.
+     */
+    public UserParser(boolean includeOffline)
+    {
+        this.includeOffline = includeOffline;
+    }
+
+    @Override
+    public User parseArgument(User sender, String[] label, String rawArgument)
+    {
+        User user = UserStore.getInstance().getUser(rawArgument, includeOffline);
+        if (user == null)
+        {
+            String suggestion = suggest(sender, rawArgument);
+            if (suggestion == null)
+            {
+                Lang.USER_NOT_FOUND.sendError(sender);
+            }
+            else
+            {
+                Lang.USER_NOT_FOUND_SUGGESTION.sendError(sender, "{suggestion}", suggestion);
+            }
+            return null;
+        }
+        return user;
+    }
+
+    /**
+     * Finds the name that was most likely meant when no User has the given name. Only the names that could have been
+     * parsed are suggested, so that hidden players are not revealed.
+     *
+     * @param sender      the sender of the command.
+     * @param rawArgument the name that was typed.
+     *
+     * @return the closest name, or {@code null} if none is close enough.
+     */
+    private String suggest(User sender, String rawArgument)
+    {
+        int maxDistance = Suggestions.maxDistance(rawArgument);
+        if (maxDistance == 0)
+        {
+            return null;
+        }
+        UserStore store = UserStore.getInstance();
+        Player viewer = CommandHandler.getViewer(sender);
+        for (String name : store.getNamesSimilarTo(rawArgument, maxDistance, SUGGESTION_CANDIDATES))
+        {
+            User user = store.getUser(name);
+            if (user == null ? includeOffline : viewer == null || viewer.canSee(user.getPlayer()))
+            {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<String> getRecommendations(User sender, String lastWord)
+    {
+        if (!includeOffline || lastWord == null)
+        {
+            return CommandHandler.defaultTabComplete(sender, lastWord);
+        }
+
+        UserStore store = UserStore.getInstance();
+        List<String> names = store.getNamesStartingWith(lastWord, Config.PLAYER_TAB_COMPLETE_LIMIT.intValue());
+        Player viewer = CommandHandler.getViewer(sender);
+        if (viewer != null)
+        {
+            // an online player the sender can't see is left out, so that hiding them doesn't just show them as offline
+            names.removeIf(name ->
+            {
+                User user = store.getUser(name);
+                return user != null && !viewer.canSee(user.getPlayer());
+            });
+        }
+        return names;
+    }
+
+}
@@ -39,7 +39,8 @@ public final class Config
 {
 
     /**
-     * What the plugin is currently optimizing for.
+     * What the plugin is currently optimizing for. This is only read once when the stores are created, see
+     * {@link com.ziluck.factions.data.index.IndexStrategy}.
      */
     public static final MutableEnum<Optimization> OPTIMIZATION = new MutableEnum<>(Optimization.PROCESS);
 
@@ -83,6 +84,141 @@ public final class Config
      */
     public static final MutableString DATABASE_CONNECTION_DESCRIPTION = new MutableString("Factions Connection");
 
+    /**
+     * The maximum amount of connections kept open to the database if the DBMS supports pooling.
+     */
+    public static final MutableInt DATABASE_POOL_SIZE = new MutableInt(10);
+
+    /**
+     * How many prepared statements each pooled connection caches if the DBMS supports it.
+     */
+    public static final MutableInt DATABASE_STATEMENT_CACHE_SIZE = new MutableInt(250);
+
+    /**
+     * The least connections kept open to the database at once.
+     */
+    public static final MutableInt DATABASE_MIN_POOL_SIZE = new MutableInt(0);
+
+    /**
+     * How many milliseconds a read from the database can take before it fails. 0 waits forever.
+     */
+    public static final MutableInt DATABASE_SOCKET_TIMEOUT = new MutableInt(0);
+
+    /**
+     * How many milliseconds a thread waits for a free connection before it fails.
+     */
+    public static final MutableInt DATABASE_MAX_WAIT_TIME = new MutableInt(120000);
+
+    /**
+     * How many threads can wait for a free connection for each connection in the pool.
+     */
+    public static final MutableInt DATABASE_WAIT_QUEUE_MULTIPLIER = new MutableInt(5);
+
+    /**
+     * How many milliseconds are spent looking for a reachable server before an operation fails.
+     */
+    public static final MutableInt DATABASE_SERVER_SELECTION_TIMEOUT = new MutableInt(30000);
+
+    /**
+     * Whether to migrate all the data from another database when the plugin is enabled.
+     */
+    public static final MutableBoolean MIGRATION_ENABLED = new MutableBoolean(false);
+
+    /**
+     * The type of database to migrate from. The data is migrated to the current storage type.
+     */
+    public static final MutableEnum<Storage> MIGRATION_SOURCE = new MutableEnum<>(Storage.MONGODB);
+
+    /**
+     * The hostname of the database to migrate from.
+     */
+    public static final MutableString MIGRATION_HOSTNAME = new MutableString("localhost");
+
+    /**
+     * The port of the database to migrate from.
+     */
+    public static final MutableInt MIGRATION_PORT = new MutableInt(27017);
+
+    /**
+     * The username used to log in to the database to migrate from.
+     */
+    public static final MutableString MIGRATION_USERNAME = new MutableString("root");
+
+    /**
+     * The password used to log in to the database to migrate from.
+     */
+    public static final MutableString MIGRATION_PASSWORD = new MutableString("password");
+
+    /**
+     * The name of the database to migrate from.
+     */
+    public static final MutableString MIGRATION_DATABASE = new MutableString("factions");
+
+    /**
+     * How many Users or Factions are migrated at a time.
+     */
+    public static final MutableInt MIGRATION_BATCH_SIZE = new MutableInt(500);
+
+    /**
+     * How many threads convert the data being migrated.
+     */
+    public static final MutableInt MIGRATION_THREADS = new MutableInt(4);
+
+    /**
+     * How many ids are reserved from the database at a time when creating new Users and Factions.
+     */
+    public static final MutableInt ID_BLOCK_SIZE = new MutableInt(20);
+
+    /**
+     * The maximum amount of offline Users kept in memory after they are looked up.
+     */
+    public static final MutableInt USER_CACHE_SIZE = new MutableInt(500);
+
+    /**
+     * How many seconds an offline User stays in memory before it has to be looked up again.
+     */
+    public static final MutableInt USER_CACHE_EXPIRY = new MutableInt(600);
+
+    /**
+     * Whether the loaded Factions are written to a snapshot file to speed up the next startup.
+     */
+    public static final MutableBoolean SNAPSHOT_ENABLED = new MutableBoolean(false);
+
+    /**
+     * How many seconds pass between writing snapshots while the server is running.
+     */
+    public static final MutableInt SNAPSHOT_INTERVAL = new MutableInt(900);
+
+    /**
+     * Whether changes are shared with other servers that use the same database.
+     */
+    public static final MutableBoolean SYNC_ENABLED = new MutableBoolean(false);
+
+    /**
+     * How many seconds the server waits at most for unsaved Factions and Users to be written when it stops.
+     */
+    public static final MutableInt SHUTDOWN_TIMEOUT = new MutableInt(10);
+
+    /**
+     * How many threads write unsaved Factions and Users when the server stops.
+     */
+    public static final MutableInt SHUTDOWN_THREADS = new MutableInt(4);
+
+    /**
+     * Whether saves are recorded in a journal until they are written, so they survive a crash.
+     */
+    public static final MutableBoolean JOURNAL_ENABLED = new MutableBoolean(true);
+
+    /**
+     * How many megabytes a journal may grow to before it is rewritten with only what was not written yet.
+     */
+    public static final MutableInt JOURNAL_COMPACT_SIZE = new MutableInt(16);
+
+    /**
+     * How many days an announcement for offline players is kept before it is deleted, even if not all of them joined.
+     */
+    public static final MutableInt MAILBOX_EXPIRY = new MutableInt(30);
+
     /**
      * The maximum amount of Factions allowed on the server.
      */
@@ -148,6 +284,21 @@ public final class Config
      */
     public static final MutableInt FACTION_TAB_COMPLETE_MIN = new MutableInt(0);
 
+    /**
+     * The most Faction names to suggest at once
+     */
+    public static final MutableInt FACTION_TAB_COMPLETE_LIMIT = new MutableInt(50);
+
+    /**
+     * The most player names to suggest at once
+     */
+    public static final MutableInt PLAYER_TAB_COMPLETE_LIMIT = new MutableInt(50);
+
+    /**
+     * The most edits between a typed name that doesn't exist and a name suggested instead
+     */
+    public static final MutableInt SUGGESTION_MAX_DISTANCE = new MutableInt(2);
+
     /**
      * The Locale to use for the internal Java operations
      */
@@ -179,6 +330,47 @@ public final class Config
         updateValue(config, save, "storage.database.database", DATABASE_DATABASE);
         updateValue(config, save, "storage.database.timeout", DATABASE_TIMEOUT);
         updateValue(config, save, "storage.database.description", DATABASE_CONNECTION_DESCRIPTION);
+        updateValue(config, save, "storage.database.pool-size", DATABASE_POOL_SIZE);
+        updateValue(config, save, "storage.database.statement-cache-size", DATABASE_STATEMENT_CACHE_SIZE);
+        updateValue(config, save, "storage.database.min-pool-size", DATABASE_MIN_POOL_SIZE);
+        updateValue(config, save, "storage.database.socket-timeout", DATABASE_SOCKET_TIMEOUT);
+        updateValue(config, save, "storage.database.max-wait-time", DATABASE_MAX_WAIT_TIME);
+        updateValue(config, save, "storage.database.wait-queue-multiplier", DATABASE_WAIT_QUEUE_MULTIPLIER);
+        updateValue(config, save, "storage.database.server-selection-timeout", DATABASE_SERVER_SELECTION_TIMEOUT);
+        updateValue(config, save, "storage.id-block-size", ID_BLOCK_SIZE);
+
+        // migrating from another database
+        updateValue(config, save, "storage.migration.enabled", MIGRATION_ENABLED);
+        updateValue(config, save, "storage.migration.source", MIGRATION_SOURCE);
+        updateValue(config, save, "storage.migration.database.hostname", MIGRATION_HOSTNAME);
+        updateValue(config, save, "storage.migration.database.port", MIGRATION_PORT);
+        updateValue(config, save, "storage.migration.database.username", MIGRATION_USERNAME);
+        updateValue(config, save, "storage.migration.database.password", MIGRATION_PASSWORD);
+        updateValue(config, save, "storage.migration.database.database", MIGRATION_DATABASE);
+        updateValue(config, save, "storage.migration.batch-size", MIGRATION_BATCH_SIZE);
+        updateValue(config, save, "storage.migration.threads", MIGRATION_THREADS);
+
+        // offline user caching
+        updateValue(config, save, "storage.user-cache.size", USER_CACHE_SIZE);
+        updateValue(config, save, "storage.user-cache.expiry", USER_CACHE_EXPIRY);
+
+        // warm-start snapshot
+        updateValue(config, save, "storage.snapshot.enabled", SNAPSHOT_ENABLED);
+        updateValue(config, save, "storage.snapshot.interval", SNAPSHOT_INTERVAL);
+
+        // sharing the database with other servers
+        updateValue(config, save, "storage.sync.enabled", SYNC_ENABLED);
+
+        // writing what is left when the server stops
+        updateValue(config, save, "storage.shutdown.timeout", SHUTDOWN_TIMEOUT);
+        updateValue(config, save, "storage.shutdown.threads", SHUTDOWN_THREADS);
+
+        // recording saves until they are written
+        updateValue(config, save, "storage.journal.enabled", JOURNAL_ENABLED);
+        updateValue(config, save, "storage.journal.compact-size", JOURNAL_COMPACT_SIZE);
+
+        // announcements for offline players
+        updateValue(config, save, "storage.mailbox.expiry", MAILBOX_EXPIRY);
 
         // faction settings
         updateValue(config, save, "max-factions", FACTION_LIMIT);
@@ -196,6 +388,9 @@ public final class Config
         // tab complete options
         updateValue(config, save, "factions.tab-complete.enabled", FACTION_TAB_COMPLETE);
         updateValue(config, save, "factions.tab-complete.minimum-characters", FACTION_TAB_COMPLETE_MIN);
+        updateValue(config, save, "factions.tab-complete.limit", FACTION_TAB_COMPLETE_LIMIT);
+        updateValue(config, save, "players.tab-complete.limit", PLAYER_TAB_COMPLETE_LIMIT);
+        updateValue(config, save, "suggestions.max-distance", SUGGESTION_MAX_DISTANCE);
 
         if (save.booleanValue())
         {
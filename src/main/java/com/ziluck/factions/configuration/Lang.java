@@ -71,6 +71,10 @@ public enum Lang
      * When a player tries to look up a faction that does not exist.
      */
     FACTION_NOT_FOUND("factions.not_found", "§cNo faction by that name exists."),
+    /**
+     * When a player tries to look up a faction that does not exist, but one is named almost the same.
+     */
+    FACTION_NOT_FOUND_SUGGESTION("factions.not_found_suggestion", "§cNo faction by that name exists. Did you mean §6{suggestion}§c?"),
     /**
      * When a player tries to create or join a faction when they already have one.
      */
@@ -87,7 +91,31 @@ public enum Lang
                  "§6Description: §e{description}",
                  "§6Age: §e{age}",
                  "§6Flags: {open} §e| {peaceful}",
-                 "§6Balance: §e{balance}");
+                 "§6Balance: §e{balance}"),
+    /**
+     * When a player tries to look up a player that has never joined.
+     */
+    USER_NOT_FOUND("users.not_found", "§cNo player by that name exists."),
+    /**
+     * When a player tries to look up a player that has never joined, but one is named almost the same.
+     */
+    USER_NOT_FOUND_SUGGESTION("users.not_found_suggestion", "§cNo player by that name exists. Did you mean §6{suggestion}§c?"),
+    /**
+     * When the database in use does not record any metrics.
+     */
+    DATABASE_NO_METRICS("database.no_metrics", "§cThe current storage type does not record any metrics."),
+    /**
+     * The state of the connection pool of the database.
+     */
+    DATABASE_POOL("database.pool",
+                  "§6______________.[ §aDatabase §6].______________",
+                  "§6Connections: §e{in_use} in use §6| §e{waiting} waiting",
+                  "§6Pool waits: §e{waits} §6| avg §e{wait_mean} §6| p99 §e{wait_p99} §6| max §e{wait_max}",
+                  "§6Failed commands: §e{failures}"),
+    /**
+     * The latency of a single kind of database command.
+     */
+    DATABASE_COMMAND("database.command", "§6{command}: §e{count} §6| avg §e{mean} §6| p50 §e{p50} §6| p99 §e{p99} §6| max §e{max}");
 
     private String[] message;
 
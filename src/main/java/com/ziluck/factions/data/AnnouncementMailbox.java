@@ -0,0 +1,398 @@
+package com.ziluck.factions.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Bukkit;
+
+import com.google.common.collect.Multimap;
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.base.User;
+
+/**
+ * Holds the announcements for players that were offline when they were made until the next time they join.
+ * <p>
+ * The mailbox is stored in the database, so every server sharing the database delivers the same announcements. Each
+ * message is stored once no matter how many players it is for, and every player only keeps the ids of the messages
+ * waiting for them. A message is deleted once every player it was for has received it, or once it expires. An
+ * announcement to a whole Faction therefore costs one copy of the message plus one id per offline member, rather than
+ * one copy per member.
+ * </p>
+ * <p>
+ * The mailbox never reads or writes the database on the main thread. Posts and acknowledgements are written in the
+ * background by a {@link SaveQueue}. The messages waiting for a player are read while they log in, with
+ * {@link #preload(UUID)}, and are handed to them in a single batch by {@link #deliver(User)} when they join, which then
+ * acknowledges the whole batch at once.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public abstract class AnnouncementMailbox
+{
+
+    /**
+     * How long the messages read for a Player are kept if they never join, such as when their login is denied.
+     */
+    private static final long PRELOAD_EXPIRY = TimeUnit.SECONDS.toNanos(60);
+
+    /**
+     * How many milliseconds a message is kept before it is deleted, even if not everyone received it.
+     */
+    protected final long expiry;
+
+    /**
+     * Writes the posts and acknowledgements in the background. Every change gets its own key, so none of them are ever
+     * replaced by another.
+     */
+    private final SaveQueue<Change> saveQueue;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * The messages that were read for Players that are logging in. This is written to from the asynchronous pre-login
+     * threads, so it must stay thread-safe.
+     */
+    private final Map<UUID, Preloaded> preloaded = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new AnnouncementMailbox.
+     *
+     * @param expiry how many milliseconds a message is kept before it is deleted.
+     */
+    protected AnnouncementMailbox(long expiry)
+    {
+        this.expiry = expiry;
+        this.saveQueue = new SaveQueue<>("announcements", Change::getSequence, this::write);
+    }
+
+    /**
+     * Queries the database for every message waiting for the given player. This runs on the calling thread.
+     *
+     * @param recipient the UUID of the player.
+     *
+     * @return the waiting messages.
+     */
+    protected abstract Inbox fetch(UUID recipient);
+
+    /**
+     * Queries the database for the messages waiting for all of the given players at once. This runs on the calling
+     * thread.
+     *
+     * @param recipients the UUIDs of the players.
+     *
+     * @return the waiting messages of each player, oldest first.
+     */
+    protected abstract Multimap<UUID, String> fetch(Collection<UUID> recipients);
+
+    /**
+     * Writes the given posts and acknowledgements to the database. This runs on the calling thread.
+     *
+     * @param changes the changes to write.
+     *
+     * @throws Exception if they could not be written.
+     */
+    protected abstract void write(Collection<Change> changes) throws Exception;
+
+    /**
+     * Leaves the given messages for every given player. The messages are stored once and are delivered in the order
+     * they were posted. They are written in the background, so a player that is logging in right now only receives them
+     * the next time they join.
+     *
+     * @param bodies     the messages.
+     * @param recipients the UUIDs of the players to leave them for.
+     */
+    public void post(Collection<String> bodies, Collection<UUID> recipients)
+    {
+        Validate.notNull(bodies, "Messages can't be null.");
+        Validate.notNull(recipients, "Recipients can't be null.");
+
+        if (bodies.isEmpty() || recipients.isEmpty())
+        {
+            return;
+        }
+        saveQueue.submit(new Post(sequence.incrementAndGet(), new ArrayList<>(bodies), new ArrayList<>(recipients), System.currentTimeMillis() + expiry));
+    }
+
+    /**
+     * Reads the messages waiting for a connecting player so they can be delivered without touching the database once
+     * they join. This performs blocking database operations, so it should only ever be called off of the main thread,
+     * e.g. from an {@link org.bukkit.event.player.AsyncPlayerPreLoginEvent}.
+     *
+     * @param recipient the UUID of the connecting player.
+     */
+    public void preload(UUID recipient)
+    {
+        Validate.notNull(recipient, "Recipient can't be null.");
+
+        long now = System.nanoTime();
+        preloaded.values().removeIf(inbox -> inbox.isExpired(now));
+        preloaded.put(recipient, new Preloaded(fetch(recipient), now));
+    }
+
+    /**
+     * Throws away the messages read for a player whose login was denied. Nothing is acknowledged, so they are read again
+     * the next time the player logs in.
+     *
+     * @param recipient the UUID of the player.
+     */
+    public void discard(UUID recipient)
+    {
+        preloaded.remove(recipient);
+    }
+
+    /**
+     * Sends every message waiting for the given User in a single batch and acknowledges them all at once. If they were
+     * not preloaded, such as when the plugin is enabled with players online, the messages are read in the background
+     * and sent once they were read.
+     *
+     * @param user the User that joined.
+     */
+    public void deliver(User user)
+    {
+        Validate.notNull(user, "User can't be null.");
+
+        Preloaded loaded = preloaded.remove(user.getUniqueId());
+        if (loaded != null && !loaded.isExpired(System.nanoTime()))
+        {
+            deliver(user, loaded.inbox);
+            return;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(Factions.getInstance(), () ->
+        {
+            Inbox inbox = fetch(user.getUniqueId());
+            if (!inbox.isEmpty())
+            {
+                Bukkit.getScheduler().runTask(Factions.getInstance(), () -> deliver(user, inbox));
+            }
+        });
+    }
+
+    /**
+     * Sends the given messages to the User and queues their acknowledgement.
+     */
+    private void deliver(User user, Inbox inbox)
+    {
+        if (inbox.isEmpty() || !user.isOnline())
+        {
+            return;
+        }
+        if (!inbox.bodies.isEmpty())
+        {
+            user.sendMessage(inbox.bodies);
+        }
+        // expired messages are acknowledged too so that their ids are dropped
+        saveQueue.submit(new Acknowledgement(sequence.incrementAndGet(), user.getUniqueId(), inbox.ids));
+    }
+
+    /**
+     * Reads every message waiting for the given players without acknowledging them. This performs blocking database
+     * operations, so it should only ever be called off of the main thread.
+     *
+     * @param recipients the UUIDs of the players.
+     *
+     * @return the waiting messages of each player, oldest first.
+     */
+    public Multimap<UUID, String> peek(Collection<UUID> recipients)
+    {
+        Validate.notNull(recipients, "Recipients can't be null.");
+
+        return fetch(recipients);
+    }
+
+    /**
+     * Throws away every message waiting for the given player without delivering them. This is written in the
+     * background.
+     *
+     * @param recipient the UUID of the player.
+     */
+    public void clear(UUID recipient)
+    {
+        Validate.notNull(recipient, "Recipient can't be null.");
+
+        preloaded.remove(recipient);
+        saveQueue.submit(new Acknowledgement(sequence.incrementAndGet(), recipient, null));
+    }
+
+    /**
+     * @return what writes the posts and acknowledgements in the background.
+     */
+    public SaveQueue<?> getSaveQueue()
+    {
+        return saveQueue;
+    }
+
+    /**
+     * The messages waiting for one player.
+     */
+    protected static final class Inbox
+    {
+
+        private static final Inbox EMPTY = new Inbox(new long[0], Collections.emptyList());
+
+        private final long[] ids;
+
+        private final List<String> bodies;
+
+        /**
+         * Constructs a new Inbox.
+         *
+         * @param ids    the id of every message the player was waiting for, including those that expired.
+         * @param bodies the messages that did not expire yet, oldest first.
+         */
+        public Inbox(long[] ids, List<String> bodies)
+        {
+            this.ids = ids;
+            this.bodies = bodies;
+        }
+
+        /**
+         * @return an Inbox with nothing in it.
+         */
+        public static Inbox empty()
+        {
+            return EMPTY;
+        }
+
+        private boolean isEmpty()
+        {
+            return ids.length == 0;
+        }
+
+    }
+
+    /**
+     * A post or acknowledgement that has to be written.
+     */
+    protected abstract static class Change
+    {
+
+        private final long sequence;
+
+        private Change(long sequence)
+        {
+            this.sequence = sequence;
+        }
+
+        private long getSequence()
+        {
+            return sequence;
+        }
+
+    }
+
+    /**
+     * Messages that were left for some players.
+     */
+    protected static final class Post extends Change
+    {
+
+        private final List<String> bodies;
+
+        private final List<UUID> recipients;
+
+        private final long expires;
+
+        private Post(long sequence, List<String> bodies, List<UUID> recipients, long expires)
+        {
+            super(sequence);
+            this.bodies = bodies;
+            this.recipients = recipients;
+            this.expires = expires;
+        }
+
+        /**
+         * @return the messages in the order they were posted.
+         */
+        public List<String> getBodies()
+        {
+            return bodies;
+        }
+
+        /**
+         * @return the UUIDs of the players they are for.
+         */
+        public List<UUID> getRecipients()
+        {
+            return recipients;
+        }
+
+        /**
+         * @return when the messages expire, in milliseconds since the epoch.
+         */
+        public long getExpires()
+        {
+            return expires;
+        }
+
+    }
+
+    /**
+     * Messages that one player received or that were cleared for them.
+     */
+    protected static final class Acknowledgement extends Change
+    {
+
+        private final UUID recipient;
+
+        private final long[] ids;
+
+        private Acknowledgement(long sequence, UUID recipient, long[] ids)
+        {
+            super(sequence);
+            this.recipient = recipient;
+            this.ids = ids;
+        }
+
+        /**
+         * @return the UUID of the player.
+         */
+        public UUID getRecipient()
+        {
+            return recipient;
+        }
+
+        /**
+         * @return the ids of the messages, or {@code null} for every message waiting for the player.
+         */
+        public long[] getIds()
+        {
+            return ids;
+        }
+
+    }
+
+    /**
+     * The messages read for a connecting player, and when.
+     */
+    private static class Preloaded
+    {
+
+        private final Inbox inbox;
+
+        /**
+         * The {@link System#nanoTime()} at which the messages were read.
+         */
+        private final long fetched;
+
+        private Preloaded(Inbox inbox, long fetched)
+        {
+            this.inbox = inbox;
+            this.fetched = fetched;
+        }
+
+        private boolean isExpired(long now)
+        {
+            return now - fetched > PRELOAD_EXPIRY;
+        }
+
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.ziluck.factions.data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.claims.Claim;
+import com.ziluck.factions.base.struct.Leaderboard;
+import com.ziluck.factions.spatial.BoundedArea;
+import com.ziluck.factions.utils.RankedSet;
+
+/**
+ * Keeps every normal Faction ranked on each {@link Leaderboard} as it changes, so that listing the top Factions or
+ * finding the rank of one never has to sort every Faction.
+ * <p>
+ * Each leaderboard is a {@link RankedSet} of the score every Faction had when it was last updated. Updating a Faction
+ * recalculates its scores and moves it only on the leaderboards where its score changed, which takes O(log n) each.
+ * Factions with the same score are ranked by their id, so the oldest Faction comes first.
+ * </p>
+ * <p>
+ * Like the rest of the FactionStore, this must only be used from the main thread.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class FactionLeaderboards
+{
+
+    private static final Leaderboard[] LEADERBOARDS = Leaderboard.values();
+
+    private static final Comparator<Ranking> ORDER = Comparator.comparingDouble((Ranking ranking) -> ranking.score)
+                                                               .reversed()
+                                                               .thenComparingLong(ranking -> ranking.id);
+
+    private final Map<Leaderboard, RankedSet<Ranking>> leaderboards = new EnumMap<>(Leaderboard.class);
+
+    /**
+     * Where each Faction currently is on every leaderboard, by the id of the Faction and then the ordinal of the
+     * leaderboard.
+     */
+    private final Map<Long, Ranking[]> rankings = new HashMap<>();
+
+    /**
+     * Constructs a new FactionLeaderboards with no Factions ranked.
+     */
+    public FactionLeaderboards()
+    {
+        for (Leaderboard leaderboard : LEADERBOARDS)
+        {
+            leaderboards.put(leaderboard, new RankedSet<>(ORDER));
+        }
+    }
+
+    /**
+     * Ranks the given Faction by its current scores, adding it if it was not ranked yet. Only normal Factions are
+     * ranked, so a Faction of any other type is removed instead.
+     *
+     * @param faction the Faction that changed.
+     */
+    public void update(Faction faction)
+    {
+        Validate.notNull(faction, "Faction can't be null.");
+
+        if (!faction.isNormal())
+        {
+            remove(faction);
+            return;
+        }
+
+        Ranking[] current = rankings.computeIfAbsent(faction.getId(), id -> new Ranking[LEADERBOARDS.length]);
+        for (Leaderboard leaderboard : LEADERBOARDS)
+        {
+            double score = score(faction, leaderboard);
+            Ranking old = current[leaderboard.ordinal()];
+            if (old != null && old.faction == faction && Double.compare(old.score, score) == 0)
+            {
+                continue;
+            }
+
+            RankedSet<Ranking> ranked = leaderboards.get(leaderboard);
+            if (old != null)
+            {
+                ranked.remove(old);
+            }
+            Ranking ranking = new Ranking(faction, score);
+            ranked.add(ranking);
+            current[leaderboard.ordinal()] = ranking;
+        }
+    }
+
+    /**
+     * Removes the given Faction from every leaderboard.
+     *
+     * @param faction the Faction to remove.
+     */
+    public void remove(Faction faction)
+    {
+        Validate.notNull(faction, "Faction can't be null.");
+
+        Ranking[] current = rankings.remove(faction.getId());
+        if (current == null)
+        {
+            return;
+        }
+        for (Leaderboard leaderboard : LEADERBOARDS)
+        {
+            leaderboards.get(leaderboard).remove(current[leaderboard.ordinal()]);
+        }
+    }
+
+    /**
+     * Lists a page of the highest ranked Factions on the given leaderboard.
+     *
+     * @param leaderboard the leaderboard.
+     * @param offset      how many of the highest ranked Factions to skip.
+     * @param limit       the most Factions to list.
+     *
+     * @return the Factions, highest ranked first.
+     */
+    public List<Faction> getTop(Leaderboard leaderboard, int offset, int limit)
+    {
+        Validate.notNull(leaderboard, "Leaderboard can't be null.");
+
+        List<Ranking> page = leaderboards.get(leaderboard).range(offset, limit);
+        List<Faction> factions = new ArrayList<>(page.size());
+        for (Ranking ranking : page)
+        {
+            factions.add(ranking.faction);
+        }
+        return factions;
+    }
+
+    /**
+     * Finds the rank of the given Faction on the given leaderboard.
+     *
+     * @param faction     the Faction.
+     * @param leaderboard the leaderboard.
+     *
+     * @return the rank, where the highest ranked Faction is {@code 1}, or {@code -1} if the Faction is not ranked.
+     */
+    public int getRank(Faction faction, Leaderboard leaderboard)
+    {
+        Validate.notNull(faction, "Faction can't be null.");
+        Validate.notNull(leaderboard, "Leaderboard can't be null.");
+
+        Ranking[] current = rankings.get(faction.getId());
+        if (current == null)
+        {
+            return -1;
+        }
+        int rank = leaderboards.get(leaderboard).rank(current[leaderboard.ordinal()]);
+        return rank == -1 ? -1 : rank + 1;
+    }
+
+    /**
+     * @return how many Factions are ranked.
+     */
+    public int size()
+    {
+        return rankings.size();
+    }
+
+    /**
+     * Calculates the score of the given Faction on the given leaderboard. A higher score ranks higher.
+     *
+     * @param faction     the Faction.
+     * @param leaderboard the leaderboard.
+     *
+     * @return the score.
+     */
+    public static double score(Faction faction, Leaderboard leaderboard)
+    {
+        switch (leaderboard)
+        {
+            case BALANCE:
+                return faction.getBalance();
+            case CLAIM_AREA:
+                double area = 0;
+                for (Claim claim : faction.getClaims())
+                {
+                    if (claim instanceof BoundedArea)
+                    {
+                        area += ((BoundedArea) claim).area();
+                    }
+                }
+                return area;
+            case MEMBERS:
+                // the ids are counted so that the members don't have to be loaded
+                return faction instanceof LoadFaction ? ((LoadFaction) faction).getMemberIds().length : faction.getMembers().size();
+            case AGE:
+                return -faction.getFounded();
+            default:
+                throw new IllegalArgumentException("Unknown leaderboard " + leaderboard + ".");
+        }
+    }
+
+    /**
+     * A Faction and the score it had on a leaderboard when it was last updated. The score is kept so that the Faction
+     * can still be found in the leaderboard after its score has changed.
+     */
+    private static class Ranking
+    {
+
+        private final Faction faction;
+
+        private final long id;
+
+        private final double score;
+
+        private Ranking(Faction faction, double score)
+        {
+            this.faction = faction;
+            this.id = faction.getId();
+            this.score = score;
+        }
+
+    }
+
+}
@@ -0,0 +1,266 @@
+package com.ziluck.factions.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongFunction;
+
+import org.apache.commons.lang.Validate;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.base.struct.Flag;
+import com.ziluck.factions.base.struct.Role;
+import com.ziluck.factions.spatial.LazyLocation;
+
+/**
+ * A binary copy of every loaded Faction, used to start the server without reading every Faction from the database.
+ * <p>
+ * Only the information that is always loaded is stored. Warps and transactions are left out, so the Factions that are
+ * read back are in the same state as Factions that were just loaded from the database. The time the snapshot was taken
+ * is stored with it, so the FactionStore only needs to read the Factions that were saved after that time.
+ * </p>
+ * <p>
+ * The file starts with a magic number and a format version. A snapshot with a different version, or one that can't be
+ * read, is ignored and the FactionStore falls back to reading everything from the database.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class FactionSnapshot
+{
+
+    private static final int MAGIC = 0x46534E50;
+
+    private static final int VERSION = 1;
+
+    private final long created;
+
+    private final List<LoadFaction> factions;
+
+    private FactionSnapshot(long created, List<LoadFaction> factions)
+    {
+        this.created = created;
+        this.factions = factions;
+    }
+
+    /**
+     * @return when the snapshot was taken, in milliseconds since the epoch.
+     */
+    public long getCreated()
+    {
+        return created;
+    }
+
+    /**
+     * @return the Factions stored in the snapshot.
+     */
+    public List<LoadFaction> getFactions()
+    {
+        return Collections.unmodifiableList(factions);
+    }
+
+    /**
+     * Writes a snapshot of the given Factions. The snapshot is written to a temporary file first and then moved over the
+     * old one, so a crash while writing never leaves a broken snapshot behind.
+     *
+     * @param file     the file to write to.
+     * @param created  when the snapshot was taken. Any Faction saved after this will be read from the database again.
+     * @param factions the Factions to write.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public static void write(File file, long created, Collection<? extends Faction> factions) throws IOException
+    {
+        Validate.notNull(file, "File can't be null.");
+        Validate.notNull(factions, "Factions can't be null.");
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(created);
+            out.writeInt(factions.size());
+            for (Faction faction : factions)
+            {
+                writeFaction(out, (LoadFaction) faction);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the snapshot in the given file. The file is memory mapped rather than streamed.
+     *
+     * @param file    the file to read.
+     * @param factory creates an empty Faction with the given id for the FactionStore being loaded.
+     *
+     * @return the snapshot, or {@code null} if there is no snapshot or it can't be used.
+     *
+     * @throws IOException if the file exists but could not be read.
+     */
+    public static FactionSnapshot read(File file, LongFunction<? extends LoadFaction> factory) throws IOException
+    {
+        Validate.notNull(file, "File can't be null.");
+        Validate.notNull(factory, "Factory can't be null.");
+
+        if (!file.isFile())
+        {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 20 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            {
+                return null;
+            }
+
+            long created = buffer.getLong();
+            int count = buffer.getInt();
+            List<LoadFaction> factions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+            {
+                factions.add(readFaction(buffer, factory));
+            }
+            return new FactionSnapshot(created, factions);
+        }
+        catch (BufferUnderflowException | IllegalArgumentException ex)
+        {
+            // truncated, or written by a version with different roles, types, or flags
+            return null;
+        }
+    }
+
+    private static void writeFaction(DataOutputStream out, LoadFaction faction) throws IOException
+    {
+        out.writeLong(faction.getId());
+        writeString(out, faction.name);
+        writeString(out, faction.description);
+        writeString(out, faction.motd);
+        writeString(out, faction.type == null ? null : faction.type.name());
+        writeString(out, faction.defaultRole == null ? null : faction.defaultRole.name());
+        out.writeLong(faction.founded);
+        out.writeLong(faction.modified);
+        out.writeDouble(faction.balance);
+
+        LazyLocation home = faction.home;
+        out.writeBoolean(home != null);
+        if (home != null)
+        {
+            out.writeDouble(home.getX());
+            out.writeDouble(home.getY());
+            out.writeDouble(home.getZ());
+            writeString(out, home.getWorldName());
+        }
+
+        out.writeLong(faction.leaderId);
+        long[] memberIds = faction.getMemberIds();
+        out.writeInt(memberIds.length);
+        for (long memberId : memberIds)
+        {
+            out.writeLong(memberId);
+        }
+
+        List<UUID> invites = faction.invites == null ? Collections.emptyList() : faction.invites;
+        out.writeInt(invites.size());
+        for (UUID invite : invites)
+        {
+            out.writeLong(invite.getMostSignificantBits());
+            out.writeLong(invite.getLeastSignificantBits());
+        }
+
+        out.writeInt(faction.getFlags().size());
+        for (Flag flag : faction.getFlags())
+        {
+            writeString(out, flag.name());
+        }
+    }
+
+    private static LoadFaction readFaction(ByteBuffer buffer, LongFunction<? extends LoadFaction> factory)
+    {
+        LoadFaction faction = factory.apply(buffer.getLong());
+        faction.name = readString(buffer);
+        faction.description = readString(buffer);
+        faction.motd = readString(buffer);
+        String type = readString(buffer);
+        faction.type = type == null ? null : FactionType.valueOf(type);
+        String defaultRole = readString(buffer);
+        faction.defaultRole = defaultRole == null ? null : Role.valueOf(defaultRole);
+        faction.founded = buffer.getLong();
+        faction.modified = buffer.getLong();
+        faction.balance = buffer.getDouble();
+
+        if (buffer.get() != 0)
+        {
+            faction.home = new LazyLocation(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), readString(buffer));
+        }
+
+        faction.leaderId = buffer.getLong();
+        int memberCount = buffer.getInt();
+        if (memberCount > 0)
+        {
+            faction.memberIds = new long[memberCount];
+            for (int i = 0; i < memberCount; i++)
+            {
+                faction.memberIds[i] = buffer.getLong();
+            }
+        }
+
+        int inviteCount = buffer.getInt();
+        faction.invites = new ArrayList<>(inviteCount);
+        for (int i = 0; i < inviteCount; i++)
+        {
+            faction.invites.add(new UUID(buffer.getLong(), buffer.getLong()));
+        }
+
+        int flagCount = buffer.getInt();
+        for (int i = 0; i < flagCount; i++)
+        {
+            faction.getFlags().add(Flag.valueOf(readString(buffer)));
+        }
+        return faction;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException
+    {
+        if (string == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        int length = buffer.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
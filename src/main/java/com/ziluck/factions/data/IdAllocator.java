@@ -0,0 +1,88 @@
+package com.ziluck.factions.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out unique internal ids for new Users and Factions.
+ * <p>
+ * Ids are reserved from the database in blocks so that creating something only needs a database round-trip once every
+ * block, rather than once per id. Within a block, ids are handed out with an {@link AtomicLong}, so this is safe to use
+ * from any thread. Since every server sharing a database reserves its own blocks, no two servers will ever hand out the
+ * same id. Ids that are handed out but never used, including any left in a block when the server stops, are simply
+ * skipped.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public abstract class IdAllocator
+{
+
+    private final int blockSize;
+
+    private volatile Block block;
+
+    /**
+     * Constructs a new IdAllocator that reserves the given amount of ids at a time.
+     *
+     * @param blockSize how many ids to reserve at once.
+     */
+    protected IdAllocator(int blockSize)
+    {
+        this.blockSize = Math.max(1, blockSize);
+        this.block = new Block(0, 0);
+    }
+
+    /**
+     * Reserves the given amount of consecutive ids so that no other allocator sharing the same counter will ever hand
+     * them out.
+     *
+     * @param size how many ids to reserve.
+     *
+     * @return the first id of the reserved block.
+     */
+    protected abstract long reserveBlock(int size);
+
+    /**
+     * Gets the next unused id, reserving a new block first if the current one has run out.
+     *
+     * @return the next unused id.
+     */
+    public long nextId()
+    {
+        while (true)
+        {
+            Block current = block;
+            long id = current.next.getAndIncrement();
+            if (id < current.end)
+            {
+                return id;
+            }
+            synchronized (this)
+            {
+                // another thread may have replaced the block while this one was waiting
+                if (block == current)
+                {
+                    long start = reserveBlock(blockSize);
+                    block = new Block(start, start + blockSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * A range of reserved ids.
+     */
+    private static final class Block
+    {
+        private final AtomicLong next;
+
+        private final long end;
+
+        private Block(long start, long end)
+        {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+}
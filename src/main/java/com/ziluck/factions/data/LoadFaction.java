@@ -3,10 +3,9 @@ package com.ziluck.factions.data;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -14,10 +13,15 @@ import java.util.UUID;
 
 import com.ziluck.factions.base.Transaction;
 import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.base.UserStore;
+import com.ziluck.factions.utils.AppendOnlyList;
 import com.ziluck.factions.utils.CollectionUtils;
+import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.Validate;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
+import com.ziluck.factions.Factions;
 
 import com.ziluck.factions.base.Faction;
 import com.ziluck.factions.base.User;
@@ -25,8 +29,7 @@ import com.ziluck.factions.base.Warp;
 import com.ziluck.factions.base.claims.Claim;
 import com.ziluck.factions.base.struct.Flag;
 import com.ziluck.factions.base.struct.Role;
-import com.ziluck.factions.configuration.Config;
-import com.ziluck.factions.configuration.struct.Optimization;
+import com.ziluck.factions.data.index.IndexStrategy;
 import com.ziluck.factions.spatial.LazyLocation;
 
 /**
@@ -64,15 +67,17 @@ public abstract class LoadFaction implements Faction
 
     protected long founded;
 
-    protected Multimap<UUID, String> announcements;
-
     protected Map<String, Warp> warps;
 
     protected LazyLocation home;
 
+    protected long leaderId;
+
+    protected long[] memberIds;
+
     protected User leader;
 
-    protected Set<User> members;
+    protected MemberRoster members;
 
     protected List<UUID> invites;
 
@@ -84,6 +89,8 @@ public abstract class LoadFaction implements Faction
 
     protected List<Transaction> transactions;
 
+    protected long modified;
+
     @Override
     public String getName()
     {
@@ -93,14 +100,22 @@ public abstract class LoadFaction implements Faction
     @Override
     public void setName(String name)
     {
+        String oldName = this.name;
         this.name = name;
+        this.stub = null;
+
+        Factions plugin = Factions.getInstance();
+        if (oldName != null && plugin != null && plugin.getFactionStore() instanceof LoadFactionStore)
+        {
+            ((LoadFactionStore) plugin.getFactionStore()).rename(this, oldName);
+        }
     }
 
     @SuppressWarnings("Duplicates")
     @Override
     public String getStub()
     {
-        if (Config.OPTIMIZATION.getValue() == Optimization.MEMORY)
+        if (!IndexStrategy.cachesDerivedValues())
         {
             return getName().toLowerCase();
         }
@@ -149,10 +164,59 @@ public abstract class LoadFaction implements Faction
         this.founded = founded;
     }
 
+    /**
+     * Collects the announcements waiting in the mailbox for each member of this Faction with a single query.
+     * Announcements are not stored with the Faction, so the returned Multimap is a copy and changing it has no effect.
+     * This reads the database, so it should not be called on the main thread.
+     *
+     * @return the pending announcements.
+     */
     @Override
     public Multimap<UUID, String> getAnnouncements()
     {
-        return announcements;
+        AnnouncementMailbox mailbox = getMailbox();
+        if (mailbox == null)
+        {
+            return ArrayListMultimap.create();
+        }
+        List<UUID> members = new ArrayList<>();
+        for (User user : getMembers())
+        {
+            members.add(user.getUniqueId());
+        }
+        return mailbox.peek(members);
+    }
+
+    /**
+     * Sends the messages to every User that is online. For everyone else, they are left in the mailbox until they next
+     * join. The messages are only stored once no matter how many Users they are left for, and are written in the
+     * background.
+     *
+     * @param users    the users to send the messages to.
+     * @param messages the messages to process.
+     */
+    protected void processAnnouncement(Collection<User> users, Collection<String> messages)
+    {
+        Validate.notNull(users, "Users can't be null.");
+        Validate.notNull(messages, "Messages can't be null.");
+
+        List<UUID> offline = new ArrayList<>();
+        for (User user : users)
+        {
+            if (user.isOnline())
+            {
+                user.sendMessage(messages);
+            }
+            else
+            {
+                offline.add(user.getUniqueId());
+            }
+        }
+        AnnouncementMailbox mailbox = getMailbox();
+        if (!offline.isEmpty() && mailbox != null)
+        {
+            mailbox.post(messages, offline);
+        }
     }
 
     /**
@@ -167,14 +231,7 @@ public abstract class LoadFaction implements Faction
         Validate.notNull(user, "User can't be null.");
         Validate.notNull(message, "Message can't be null.");
 
-        if (user.isOnline())
-        {
-            user.sendMessage(message);
-        }
-        else
-        {
-            getAnnouncements().put(user.getUniqueId(), message);
-        }
+        processAnnouncement(Collections.singletonList(user), Collections.singletonList(message));
     }
 
     /**
@@ -201,14 +258,7 @@ public abstract class LoadFaction implements Faction
         Validate.notNull(user, "User can't be null.");
         Validate.notNull(messages, "Message can't be null.");
 
-        if (user.isOnline())
-        {
-            user.sendMessage(messages);
-        }
-        else
-        {
-            getAnnouncements().putAll(user.getUniqueId(), messages);
-        }
+        processAnnouncement(Collections.singletonList(user), messages);
     }
 
     @Override
@@ -216,10 +266,7 @@ public abstract class LoadFaction implements Faction
     {
         Validate.notNull(message, "Message can't be null.");
 
-        for (User user : getMembers())
-        {
-            processAnnouncement(user, message);
-        }
+        processAnnouncement(getMembers(), Collections.singletonList(message));
     }
 
     @Override
@@ -228,9 +275,7 @@ public abstract class LoadFaction implements Faction
         Validate.notNull(message, "Message can't be null.");
         Validate.notNull(role, "Role can't be null.");
 
-        List<User> users = new LinkedList<>(getMembers());
-        users.removeIf(u -> u.getFactionRole() != role);
-        addAnnouncement(message, users);
+        addAnnouncement(message, getMembers(role));
     }
 
     @Override
@@ -239,9 +284,27 @@ public abstract class LoadFaction implements Faction
         Validate.notNull(message, "Message can't be null.");
         Validate.notNull(role, "Role can't be null.");
 
-        List<User> users = new LinkedList<>(getMembers());
-        users.removeIf(u -> u.getFactionRole().inferior(role));
-        addAnnouncement(message, users);
+        addAnnouncement(message, getMembersUpTo(role));
+    }
+
+    /**
+     * Collects the members whose Role is the given Role or any Role below it, straight from the buckets of those Roles.
+     *
+     * @param role the highest Role to include.
+     *
+     * @return the members at or below the Role.
+     */
+    private List<User> getMembersUpTo(Role role)
+    {
+        List<User> users = new ArrayList<>();
+        for (Role other : Role.values())
+        {
+            if (!other.inferior(role))
+            {
+                users.addAll(getMembers(other));
+            }
+        }
+        return users;
     }
 
     @Override
@@ -259,10 +322,7 @@ public abstract class LoadFaction implements Faction
         Validate.notNull(message, "Message can't be null.");
         Validate.notNull(users, "Users can't be null.");
 
-        for (User user : users)
-        {
-            processAnnouncement(user, message);
-        }
+        processAnnouncement(users, Collections.singletonList(message));
     }
 
     @Override
@@ -270,10 +330,7 @@ public abstract class LoadFaction implements Faction
     {
         Validate.notNull(messages, "Messages can't be null.");
 
-        for (User user : getMembers())
-        {
-            processAnnouncement(user, messages);
-        }
+        processAnnouncement(getMembers(), Arrays.asList(messages));
     }
 
     @Override
@@ -282,9 +339,7 @@ public abstract class LoadFaction implements Faction
         Validate.notNull(messages, "Messages can't be null.");
         Validate.notNull(role, "Role can't be null.");
 
-        List<User> users = new LinkedList<>(getMembers());
-        users.removeIf(u -> u.getFactionRole() != role);
-        addAnnouncements(messages, users);
+        addAnnouncements(messages, getMembers(role));
     }
 
     @Override
@@ -299,9 +354,7 @@ public abstract class LoadFaction implements Faction
             Validate.notNull(messages, "Messages can't be null.");
             Validate.notNull(role, "Role can't be null.");
 
-            List<User> users = new LinkedList<>(getMembers());
-            users.removeIf(u -> u.getFactionRole().inferior(role));
-            addAnnouncements(messages, users);
+            addAnnouncements(messages, getMembersUpTo(role));
         }
     }
 
@@ -320,10 +373,7 @@ public abstract class LoadFaction implements Faction
         Validate.notNull(messages, "Messages can't be null.");
         Validate.notNull(users, "Users can't be null.");
 
-        for (User user : users)
-        {
-            processAnnouncement(user, messages);
-        }
+        processAnnouncement(users, Arrays.asList(messages));
     }
 
     @Override
@@ -331,7 +381,20 @@ public abstract class LoadFaction implements Faction
     {
         Validate.notNull(user, "User can't be null.");
 
-        getAnnouncements().removeAll(user);
+        AnnouncementMailbox mailbox = getMailbox();
+        if (mailbox != null)
+        {
+            mailbox.clear(user.getUniqueId());
+        }
+    }
+
+    /**
+     * @return the mailbox for offline announcements, or {@code null} if the plugin is not enabled.
+     */
+    private static AnnouncementMailbox getMailbox()
+    {
+        Factions plugin = Factions.getInstance();
+        return plugin == null ? null : plugin.getMailbox();
     }
 
     @Override
@@ -513,7 +576,7 @@ public abstract class LoadFaction implements Faction
     {
         if (leader == null)
         {
-            loadMembers();
+            loadLeader();
         }
         return leader;
     }
@@ -524,6 +587,20 @@ public abstract class LoadFaction implements Faction
         getMembers().add(user);
         user.setFactionRole(getDefaultRole());
         processNewMember(user);
+        updateLeaderboards();
+    }
+
+    /**
+     * Moves this Faction on the leaderboards after something it is ranked by changed. Changes that are followed by a
+     * save don't need this, since saving a Faction updates the leaderboards as well.
+     */
+    protected void updateLeaderboards()
+    {
+        Factions plugin = Factions.getInstance();
+        if (plugin != null && plugin.getFactionStore() instanceof LoadFactionStore)
+        {
+            ((LoadFactionStore) plugin.getFactionStore()).getLeaderboards().update(this);
+        }
     }
 
     /**
@@ -533,10 +610,42 @@ public abstract class LoadFaction implements Faction
      *
      * @param user the new user to process
      */
-    protected abstract void processNewMember(User user);
+    protected void processNewMember(User user)
+    {
+        memberIds = ArrayUtils.add(memberIds, user.getId());
+    }
+
+    @Override
+    public void loadMembers()
+    {
+        if (memberIds == null)
+        {
+            members = new MemberRoster();
+            return;
+        }
+        members = new MemberRoster(UserStore.getInstance().getUsers(memberIds, true));
+    }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The members are also kept by their Role, which is kept up to date as members are added or removed through the
+     * returned set and as their Roles are set. This is what lets {@link #getMembers(Role)} and the other Role lookups
+     * return the members with a Role without looking at the rest.
+     * </p>
+     */
     @Override
     public Set<User> getMembers()
+    {
+        return getRoster();
+    }
+
+    /**
+     * Retrieves the members along with their buckets by Role, loading them the first time they are needed.
+     *
+     * @return the members.
+     */
+    protected MemberRoster getRoster()
     {
         if (members == null)
         {
@@ -548,35 +657,34 @@ public abstract class LoadFaction implements Faction
     @Override
     public Set<User> getAdmins()
     {
-        Set<User> admins = new HashSet<>(getMembers());
-        admins.removeIf(u -> u.getFactionRole() != Role.ADMIN);
-        return admins;
+        return getMembers(Role.ADMIN);
     }
 
     @Override
     public Set<User> getModerators()
     {
-        Set<User> moderators = new HashSet<>(getMembers());
-        moderators.removeIf(u -> u.getFactionRole() != Role.MODERATOR);
-        return moderators;
+        return getMembers(Role.MODERATOR);
     }
 
     @Override
     public Set<User> getTrialMembers()
     {
-        Set<User> trials = new HashSet<>(getMembers());
-        trials.removeIf(u -> u.getFactionRole() != Role.TRIAL);
-        return trials;
+        return getMembers(Role.TRIAL);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned set can't be changed and is not a copy, so it keeps up with the members as they join, leave, and
+     * change Roles.
+     * </p>
+     */
     @Override
     public Set<User> getMembers(Role role)
     {
         Validate.notNull(role, "Role can't be null.");
 
-        Set<User> members = new HashSet<>(getMembers());
-        members.removeIf(u -> u.getFactionRole() != role);
-        return members;
+        return getRoster().withRole(role);
     }
 
     @Override
@@ -653,15 +761,146 @@ public abstract class LoadFaction implements Faction
     {
         if (transactions == null)
         {
-            transactions = new ArrayList<>();
+            transactions = new AppendOnlyList<>();
         }
         return transactions;
     }
 
     /**
-     * Load the leader of the Faction from it's stored id.
+     * Load the leader of the Faction from it's stored id. This is done automatically the first time the leader is
+     * needed.
      */
-    public abstract void loadLeader();
+    public void loadLeader()
+    {
+        this.leader = UserStore.getInstance().getUser(leaderId, true);
+    }
+
+    /**
+     * Returns the internal id of the leader of this Faction without resolving the {@link User}.
+     *
+     * @return the id of the leader.
+     */
+    public long getLeaderId()
+    {
+        return leaderId;
+    }
+
+    /**
+     * Returns the internal ids of the members of this Faction without resolving the {@link User Users}. This array
+     * should not be modified.
+     *
+     * @return the ids of the members.
+     */
+    public long[] getMemberIds()
+    {
+        return memberIds == null ? new long[0] : memberIds;
+    }
+
+    /**
+     * Returns when this Faction was last saved, in milliseconds since the epoch.
+     *
+     * @return when this Faction was last saved.
+     */
+    public long getModified()
+    {
+        return modified;
+    }
+
+    /**
+     * Records that this Faction is being saved now. FactionStores call this right before saving.
+     */
+    public void touch()
+    {
+        this.modified = System.currentTimeMillis();
+    }
+
+    /**
+     * Copies everything that is not specific to a database from the given Faction, such as when moving Factions from
+     * one database to another. The warps, claims, and transactions are not copied as each database has its own
+     * implementation of them. References to Users are copied as ids and are not resolved.
+     *
+     * @param source the Faction to copy.
+     */
+    protected void copyFrom(LoadFaction source)
+    {
+        Validate.notNull(source, "Source can't be null.");
+
+        this.name = source.name;
+        this.description = source.description;
+        this.motd = source.motd;
+        this.type = source.type;
+        this.defaultRole = source.defaultRole;
+        this.founded = source.founded;
+        this.home = source.home;
+        this.leaderId = source.leaderId;
+        this.memberIds = source.memberIds == null ? null : source.memberIds.clone();
+        this.invites = source.invites == null ? null : new ArrayList<>(source.invites);
+        this.balance = source.balance;
+        if (source.flags != null)
+        {
+            getFlags().addAll(source.flags);
+        }
+    }
+
+    /**
+     * Copies everything that is saved from the given Faction so that the copy can be written on another thread while the
+     * original keeps changing. This must be called on the thread that changes the original.
+     * <p>
+     * The copy shares as much as it safely can with the original. The member ids are shared since they are replaced
+     * rather than changed, and the transactions are shared through an {@link AppendOnlyList} snapshot since they are
+     * only ever added to. The warps, invites, flags, and claims are small and are copied. The members and leader are
+     * not saved and are not copied.
+     * </p>
+     *
+     * @param source the Faction to copy.
+     */
+    @SuppressWarnings("unchecked")
+    protected void snapshotFrom(LoadFaction source)
+    {
+        Validate.notNull(source, "Source can't be null.");
+
+        this.name = source.name;
+        this.description = source.description;
+        this.motd = source.motd;
+        this.type = source.type;
+        this.defaultRole = source.defaultRole;
+        this.founded = source.founded;
+        this.modified = source.modified;
+        this.home = source.home;
+        this.leaderId = source.leaderId;
+        this.memberIds = source.memberIds;
+        this.invites = source.invites == null ? null : new ArrayList<>(source.invites);
+        this.balance = source.balance;
+        this.flags = source.flags == null ? null : EnumSet.copyOf(source.flags);
+        this.warps = source.warps == null ? null : new HashMap<>(source.warps);
+        this.claims = source.claims == null ? null : new ArrayList<>(source.claims);
+        if (source.transactions != null)
+        {
+            // a list loaded from the database is converted once, after which every snapshot is free
+            if (!(source.transactions instanceof AppendOnlyList))
+            {
+                source.transactions = new AppendOnlyList<>(source.transactions);
+            }
+            this.transactions = ((AppendOnlyList<Transaction>) source.transactions).snapshot();
+        }
+    }
+
+    /**
+     * Replaces everything with the values of a newer copy of this Faction, such as when another server saved it. The
+     * leader and members are resolved again the next time they are needed.
+     *
+     * @param source the newer copy.
+     */
+    protected void refreshFrom(LoadFaction source)
+    {
+        // copying only adds flags, so any that were removed have to go first
+        getFlags().clear();
+        copyFrom(source);
+        this.modified = source.modified;
+        this.stub = null;
+        this.leader = null;
+        this.members = null;
+    }
 
     @Override
     public int hashCode()
@@ -1,7 +1,9 @@
 package com.ziluck.factions.data;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -17,6 +19,9 @@ import com.ziluck.factions.base.Faction;
 import com.ziluck.factions.base.FactionStore;
 import com.ziluck.factions.base.claims.Claim;
 import com.ziluck.factions.base.claims.Claim2D;
+import com.ziluck.factions.base.struct.Leaderboard;
+import com.ziluck.factions.data.index.FactionIndex;
+import com.ziluck.factions.data.index.IndexStrategy;
 import com.ziluck.factions.spatial.BlockColumn;
 import com.ziluck.factions.spatial.BoundedArea;
 import com.ziluck.factions.spatial.LazyLocation;
@@ -48,14 +53,103 @@ public abstract class LoadFactionStore implements FactionStore
      */
     protected Faction wilderness;
 
-    protected long nextId;
+    /**
+     * Hands out the ids of new Factions.
+     */
+    protected IdAllocator ids;
+
+    /**
+     * Writes saved Factions in the background, or {@code null} if this FactionStore writes them some other way.
+     */
+    protected SaveQueue<Faction> saveQueue;
+
+    /**
+     * Ranks the loaded Factions. Implementations update it whenever a Faction is indexed, saved, or removed.
+     */
+    protected final FactionLeaderboards leaderboards = new FactionLeaderboards();
+
+    /**
+     * Every loaded Faction by its name and id, indexed the way the configured optimization chose. Implementations add
+     * and remove Factions from it as they index them. It can be read from any thread.
+     */
+    protected final FactionIndex factions = IndexStrategy.newFactionIndex();
 
     /**
      * Construct a new LoadFactionStore.
      */
     public LoadFactionStore()
     {
+        claims = new HashMap<>();
+    }
+
+    /**
+     * Adds the given claim to the spatial index of the world it is in.
+     *
+     * @param faction the Faction that owns the claim.
+     * @param claim   the claim to index.
+     */
+    protected void indexClaim(Faction faction, Claim2D claim)
+    {
+        claims.put(claim.getWorldName(), claims.getOrDefault(claim.getWorldName(), RTree.create()).add(faction, claim));
+    }
+
+    @Override
+    public Faction getFaction(long id)
+    {
+        return factions.get(id);
+    }
+
+    @Override
+    public Faction getFaction(String name)
+    {
+        Validate.notNull(name, "Name can't be null.");
 
+        return factions.get(name);
+    }
+
+    @Override
+    public Faction getCasedFaction(String name)
+    {
+        Faction faction = getFaction(name);
+        if (faction != null && !faction.getName().equals(name))
+        {
+            faction = null;
+        }
+        return faction;
+    }
+
+    @Override
+    public Collection<Faction> getFactions()
+    {
+        return factions.values();
+    }
+
+    @Override
+    public List<Faction> getFactionsStartingWith(String prefix, int limit)
+    {
+        Validate.notNull(prefix, "Prefix can't be null.");
+
+        return factions.startingWith(prefix, limit);
+    }
+
+    @Override
+    public List<Faction> getFactionsSimilarTo(String name, int maxDistance, int limit)
+    {
+        Validate.notNull(name, "Name can't be null.");
+
+        return factions.similarTo(name, maxDistance, limit);
+    }
+
+    /**
+     * Moves the given Faction to its new name in the indexes. This is called by the Faction itself whenever it is
+     * renamed, and does nothing if the Faction was not indexed.
+     *
+     * @param faction the Faction that was renamed.
+     * @param oldName the name it had before.
+     */
+    void rename(Faction faction, String oldName)
+    {
+        factions.rename(faction, oldName);
     }
 
     @Override
@@ -131,9 +225,9 @@ public abstract class LoadFactionStore implements FactionStore
     }
 
     @Override
+    @Deprecated
     public void incrementNextId()
     {
-        nextId++;
     }
 
     @Override
@@ -142,4 +236,43 @@ public abstract class LoadFactionStore implements FactionStore
         return wilderness;
     }
 
+    @Override
+    public List<Faction> getTop(Leaderboard leaderboard, int offset, int limit)
+    {
+        return leaderboards.getTop(leaderboard, offset, limit);
+    }
+
+    @Override
+    public int getRank(Faction faction, Leaderboard leaderboard)
+    {
+        return leaderboards.getRank(faction, leaderboard);
+    }
+
+    /**
+     * @return the leaderboards of the loaded Factions.
+     */
+    public FactionLeaderboards getLeaderboards()
+    {
+        return leaderboards;
+    }
+
+    @Override
+    public void saveSnapshot(boolean async)
+    {
+    }
+
+    @Override
+    public void reloadFaction(long id)
+    {
+    }
+
+    /**
+     * @return what writes saved Factions in the background, or {@code null} if this FactionStore writes them some other
+     *         way.
+     */
+    public SaveQueue<Faction> getSaveQueue()
+    {
+        return saveQueue;
+    }
+
 }
@@ -6,8 +6,7 @@ import java.util.UUID;
 import com.ziluck.factions.Factions;
 import com.ziluck.factions.base.Transaction;
 import com.ziluck.factions.base.User;
-import com.ziluck.factions.configuration.Config;
-import com.ziluck.factions.configuration.struct.Optimization;
+import com.ziluck.factions.data.index.IndexStrategy;
 
 /**
  * The in-memory representation of a Transaction.
@@ -37,7 +36,7 @@ public abstract class LoadTransaction implements Transaction
     @Override
     public User getUser()
     {
-        if (Config.OPTIMIZATION.getValue() == Optimization.MEMORY)
+        if (!IndexStrategy.cachesDerivedValues())
         {
             return Factions.getUser(userId);
         }
@@ -2,6 +2,7 @@ package com.ziluck.factions.data;
 
 import java.util.Collection;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
@@ -29,12 +30,18 @@ public abstract class LoadUser implements User
 
     protected String title;
 
+    @JsonProperty("faction_role")
     protected Role factionRole;
 
     protected Faction faction;
 
     protected LazyLocation lastLocation;
 
+    /**
+     * The members of the Faction this User was last added to, which has to hear about it when their Role changes.
+     */
+    MemberRoster roster;
+
     @Override
     public String getName()
     {
@@ -80,7 +87,12 @@ public abstract class LoadUser implements User
     @Override
     public void setFactionRole(Role role)
     {
+        Role oldRole = this.factionRole;
         this.factionRole = role;
+        if (roster != null)
+        {
+            roster.moved(this, oldRole);
+        }
     }
 
     @Override
@@ -136,4 +148,19 @@ public abstract class LoadUser implements User
         return UserStore.getInstance().getConsole().getId() == getId();
     }
 
+    /**
+     * Replaces everything stored in the database with the values of a newer copy of this User, such as when another
+     * server saved it. Whether the User is online is not changed.
+     *
+     * @param source the newer copy.
+     */
+    protected void refreshFrom(User source)
+    {
+        this.name = source.getName();
+        this.title = source.getTitle();
+        this.lastLocation = source.getLastLocation();
+        this.faction = null;
+        setFactionRole(source.getFactionRole());
+    }
+
 }
@@ -1,15 +1,22 @@
 package com.ziluck.factions.data;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.function.Predicate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import com.ziluck.factions.Factions;
 import com.ziluck.factions.base.User;
 import com.ziluck.factions.base.UserStore;
 import com.ziluck.factions.configuration.Config;
-import com.ziluck.factions.configuration.struct.Optimization;
+import com.ziluck.factions.data.index.IndexStrategy;
+import com.ziluck.factions.data.index.UserIndex;
+import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.entity.Player;
@@ -22,103 +29,274 @@ import org.bukkit.entity.Player;
 public abstract class LoadUserStore implements UserStore
 {
 
+    /**
+     * How long a preloaded User is kept for a Player that never joins, such as one kicked by a plugin after they were
+     * preloaded.
+     */
+    private static final long PRELOAD_EXPIRY = TimeUnit.SECONDS.toNanos(60);
+
     protected User console;
 
-    protected HashMap<UUID, User> onlineUsersMap;
-    protected List<User>          onlineUsersList;
+    /**
+     * Every online User, indexed the way the configured optimization chose. It can be read from any thread.
+     */
+    protected final UserIndex onlineUsers = IndexStrategy.newUserIndex();
+
+    /**
+     * Users that were fetched before their Player finished joining. This is written to from the asynchronous pre-login
+     * threads, so it must stay thread-safe.
+     */
+    private final Map<UUID, Preloaded> preloadedUsers = new ConcurrentHashMap<>();
+
+    /**
+     * Offline Users that were recently looked up or that recently left. A User is never in here while they are online.
+     */
+    protected final OfflineUserCache offlineUsers = new OfflineUserCache(Config.USER_CACHE_SIZE.intValue(), Config.USER_CACHE_EXPIRY.intValue() * 1000L);
+
+    /**
+     * Writes saved Users in the background, or {@code null} if this UserStore writes them some other way.
+     */
+    protected SaveQueue<User> saveQueue;
 
     protected abstract void createConsole();
 
+    /**
+     * Builds a new User with the next free id without saving them. Reserving the id may query the database when a new
+     * block of ids is needed, so this is safe and meant to be called off of the main thread.
+     *
+     * @param uuid the uuid of the Player.
+     * @param name the name of the Player.
+     *
+     * @return the unsaved User.
+     */
+    protected abstract User newUser(UUID uuid, String name);
+
+    /**
+     * Queries the database for the User with the given uuid. This never looks at the online Users and does not touch
+     * any of the in-memory structures, so it is safe to call off of the main thread.
+     *
+     * @param uuid the uuid of the User.
+     *
+     * @return the User if they have ever connected.
+     */
+    protected abstract User fetchUser(UUID uuid);
+
+    /**
+     * Queries the database for the User with the given name. Like {@link #fetchUser(UUID)}, this never looks at the
+     * online Users or the cache.
+     *
+     * @param name the name of the User.
+     *
+     * @return the User if they have ever connected.
+     */
+    protected abstract User fetchUser(String name);
+
+    /**
+     * Queries the database for the User with the given id. Like {@link #fetchUser(UUID)}, this never looks at the
+     * online Users or the cache.
+     *
+     * @param id the id of the User.
+     *
+     * @return the User if they have ever connected.
+     */
+    protected abstract User fetchUser(long id);
+
+    /**
+     * Queries the database for all the Users with the given ids at once. Like {@link #fetchUser(UUID)}, this never looks
+     * at the online Users or the cache.
+     *
+     * @param ids the ids of the Users.
+     *
+     * @return the Users that were found, in no particular order.
+     */
+    protected abstract Collection<User> fetchUsers(long[] ids);
+
+    /**
+     * Queries the database for the name of every User that has ever connected. Like {@link #fetchUser(UUID)}, this does
+     * not touch any of the in-memory structures, so it is safe to call off of the main thread, which it should be since
+     * it reads every User.
+     *
+     * @return the names.
+     */
+    public abstract List<String> fetchNames();
+
     @Override
     public User getUser(UUID uuid)
     {
-        if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
+        return onlineUsers.get(uuid);
+    }
+
+    @Override
+    public User getUser(String name)
+    {
+        return onlineUsers.get(name);
+    }
+
+    @Override
+    public User getUser(long id)
+    {
+        return onlineUsers.get(id);
+    }
+
+    @Override
+    public List<User> getOnlineUsersStartingWith(String prefix, int limit)
+    {
+        return onlineUsers.startingWith(prefix, limit);
+    }
+
+    @Override
+    public List<String> getNamesStartingWith(String prefix, int limit)
+    {
+        UserNameDictionary names = getNameDictionary();
+        return names == null ? new ArrayList<>() : names.startingWith(prefix, limit);
+    }
+
+    @Override
+    public List<String> getNamesSimilarTo(String name, int maxDistance, int limit)
+    {
+        UserNameDictionary names = getNameDictionary();
+        return names == null ? new ArrayList<>() : names.similarTo(name, maxDistance, limit);
+    }
+
+    @Override
+    public User getUser(CommandSender sender)
+    {
+        if (sender instanceof ConsoleCommandSender)
         {
-            return onlineUsersMap.get(uuid);
+            return getConsole();
+        }
+        else if (sender instanceof Player)
+        {
+            return getUser(((Player) sender).getUniqueId());
         }
         else
         {
-            return searchList(user -> user.getUniqueId().equals(uuid));
+            return null;
         }
     }
 
     @Override
-    public User getUser(String name)
+    public User getUser(UUID uuid, boolean includeOffline)
     {
-        Predicate<User> predicate = user -> user.getName().equalsIgnoreCase(name);
-        if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
+        User user = getUser(uuid);
+        if (includeOffline && user == null)
         {
-            return searchMap(predicate);
+            user = offlineUsers.get(uuid);
+            if (user == null)
+            {
+                user = cacheOffline(fetchUser(uuid));
+            }
         }
-        else
+        return user;
+    }
+
+    @Override
+    public User getUser(String name, boolean includeOffline)
+    {
+        User user = getUser(name);
+        if (includeOffline && user == null)
         {
-            return searchList(predicate);
+            user = offlineUsers.get(name);
+            if (user == null)
+            {
+                user = cacheOffline(fetchUser(name));
+            }
         }
+        return user;
     }
 
     @Override
-    public User getUser(long id)
+    public User getUser(long id, boolean includeOffline)
     {
-        Predicate<User> predicate = user -> user.getId() == id;
-        if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
+        if (id == -1)
         {
-            return searchMap(predicate);
+            return getConsole();
         }
-        else
+        User user = getUser(id);
+        if (includeOffline && user == null)
         {
-            return searchList(predicate);
+            user = offlineUsers.get(id);
+            if (user == null)
+            {
+                user = cacheOffline(fetchUser(id));
+            }
         }
+        return user;
     }
 
     @Override
-    public User getUser(CommandSender sender)
+    public List<User> getUsers(long[] ids, boolean includeOffline)
     {
-        if (sender instanceof ConsoleCommandSender)
+        User[] users = new User[ids.length];
+        long[] missing = new long[ids.length];
+        int missingCount = 0;
+        for (int i = 0; i < ids.length; i++)
         {
-            return getConsole();
+            User user = ids[i] == -1 ? getConsole() : getUser(ids[i]);
+            if (includeOffline && user == null)
+            {
+                user = offlineUsers.get(ids[i]);
+                if (user == null)
+                {
+                    missing[missingCount++] = ids[i];
+                }
+            }
+            users[i] = user;
         }
-        else if (sender instanceof Player)
+
+        if (missingCount > 0)
         {
-            Predicate<User> predicate = user -> user.getUniqueId().equals(((Player) sender).getUniqueId());
-            if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
+            Map<Long, User> fetched = new HashMap<>(missingCount);
+            for (User user : fetchUsers(Arrays.copyOf(missing, missingCount)))
             {
-                return searchMap(predicate);
+                offlineUsers.put(user);
+                fetched.put(user.getId(), user);
             }
-            else
+            for (int i = 0; i < ids.length; i++)
             {
-                return searchList(predicate);
+                if (users[i] == null)
+                {
+                    users[i] = fetched.get(ids[i]);
+                }
             }
         }
-        else
+
+        List<User> result = new ArrayList<>(ids.length);
+        for (User user : users)
         {
-            return null;
+            if (user != null)
+            {
+                result.add(user);
+            }
         }
+        return result;
     }
 
-    /**
-     * Searches through the online user map and finds one that matches the given predicate. If one
-     * is not found, this returns null.
-     *
-     * @param predicate the predicate to match.
-     *
-     * @return the found user if one exists.
-     */
-    private User searchMap(Predicate<User> predicate)
+    @Override
+    public User getUser(CommandSender sender, boolean includeOffline)
     {
-        return onlineUsersMap.values().stream().filter(predicate).findFirst().orElse(null);
+        User user = getUser(sender);
+        if (user == null && sender instanceof Player)
+        {
+            user = getUser(((Player) sender).getUniqueId(), includeOffline);
+        }
+        return user;
     }
 
     /**
-     * Searches through the online user list and finds one that matches the given predicate. If one
-     * is not found, this returns null.
+     * Adds the given User to the offline cache if one was found.
      *
-     * @param predicate the predicate to match.
+     * @param user the User fetched from the database.
      *
-     * @return the found user if one exists.
+     * @return the same User.
      */
-    private User searchList(Predicate<User> predicate)
+    private User cacheOffline(User user)
     {
-        return onlineUsersList.stream().filter(predicate).findFirst().orElse(null);
+        if (user != null)
+        {
+            offlineUsers.put(user);
+        }
+        return user;
     }
 
     @Override
@@ -131,20 +309,140 @@ public abstract class LoadUserStore implements UserStore
         return console;
     }
 
+    @Override
+    public User preloadUser(UUID uuid, String name)
+    {
+        long now = System.nanoTime();
+        preloadedUsers.values().removeIf(preloaded -> preloaded.isExpired(now));
+
+        // reuse the cached instance so anything already referencing it sees the User come online
+        User user = offlineUsers.get(uuid);
+        if (user == null)
+        {
+            user = fetchUser(uuid);
+        }
+        boolean created = user == null;
+        if (created)
+        {
+            // the id is reserved here, but nothing is saved until the Player joins
+            user = newUser(uuid, name);
+        }
+        preloadedUsers.put(uuid, new Preloaded(user, created, now));
+        return user;
+    }
+
+    @Override
+    public void discardPreloadedUser(UUID uuid)
+    {
+        preloadedUsers.remove(uuid);
+    }
+
+    /**
+     * Retrieves the User staged for the given Player by {@link #preloadUser(UUID, String)} that was not loaded yet.
+     *
+     * @param uuid the uuid of the Player.
+     *
+     * @return the staged User, or {@code null} if there is none or it expired.
+     */
+    public User getPreloadedUser(UUID uuid)
+    {
+        Preloaded preloaded = preloadedUsers.get(uuid);
+        return preloaded == null || preloaded.isExpired(System.nanoTime()) ? null : preloaded.user;
+    }
+
     @Override
     public User loadUser(Player player)
     {
-        User user = getUser(player, true);
+        Preloaded preloaded = preloadedUsers.remove(player.getUniqueId());
+        User online = getUser(player.getUniqueId());
+        if (online != null)
+        {
+            return online;
+        }
+
+        User user;
+        boolean created;
+        if (preloaded != null && !preloaded.isExpired(System.nanoTime()))
+        {
+            user = preloaded.user;
+            created = preloaded.created;
+        }
+        else
+        {
+            // only happens if the Player was never preloaded, such as when the plugin is enabled with players online
+            user = getUser(player, true);
+            created = user == null;
+            if (created)
+            {
+                user = newUser(player.getUniqueId(), player.getName());
+            }
+        }
+
+        offlineUsers.invalidate(user);
+        onlineUsers.add(user);
+        rememberName(player.getName());
+        if (created)
+        {
+            // a new User is only written once their Player actually joined, and the write itself is queued
+            user.save();
+        }
+
+        return user;
+    }
+
+    /**
+     * Adds the given name to the dictionary of every known name, if there is one.
+     *
+     * @param name the name of a User that joined.
+     */
+    private void rememberName(String name)
+    {
+        UserNameDictionary names = getNameDictionary();
+        if (names != null)
+        {
+            names.add(name);
+        }
+    }
+
+    /**
+     * @return the dictionary of every known name, or {@code null} if the plugin is not enabled.
+     */
+    private static UserNameDictionary getNameDictionary()
+    {
+        Factions plugin = Factions.getInstance();
+        return plugin == null ? null : plugin.getNameDictionary();
+    }
+
+    @Override
+    public User unloadUser(Player player)
+    {
+        User user = getUser(player.getUniqueId());
         if (user == null)
         {
-            user = createUser(player);
+            return null;
         }
 
-        optimizeUserLoad(user);
+        onlineUsers.remove(user);
+        user.setOnline(false);
+        offlineUsers.put(user);
 
         return user;
     }
 
+    @Override
+    public User createUser(Player player)
+    {
+        return createUser(player.getUniqueId(), player.getName());
+    }
+
+    @Override
+    public User createUser(UUID uuid, String name)
+    {
+        User user = newUser(uuid, name);
+        user.save();
+        return user;
+    }
+
     @Override
     public User loadUser(long id)
     {
@@ -158,39 +456,45 @@ public abstract class LoadUserStore implements UserStore
             throw new IllegalArgumentException("No User by that id exists.");
         }
 
-        optimizeUserLoad(user);
+        offlineUsers.invalidate(user);
+        onlineUsers.add(user);
 
         return user;
     }
 
+    @Override
+    public Collection<User> getOnlineUsers()
+    {
+        return onlineUsers.values();
+    }
+
     /**
-     * Add the user to the appropriate data structure depending on which optimization method is chosen.
-     *
-     * @param user the user to added.
+     * @return the cache of recently used offline Users.
      */
-    private void optimizeUserLoad(User user)
+    public OfflineUserCache getOfflineUsers()
     {
-        if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
-        {
-            onlineUsersMap.put(user.getUniqueId(), user);
-        }
-        else
-        {
-            onlineUsersList.add(user);
-        }
+        return offlineUsers;
     }
 
     @Override
-    public Collection<User> getOnlineUsers()
+    public void reloadUser(long id)
     {
-        if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
+        // a cached copy is simply dropped, the next lookup reads the new one
+        offlineUsers.invalidate(id);
+
+        User fresh = fetchUser(id);
+        if (fresh == null)
         {
-            return this.onlineUsersMap.values();
+            return;
         }
-        else
+        Bukkit.getScheduler().runTask(Factions.getInstance(), () ->
         {
-            return this.onlineUsersList;
-        }
+            User online = getUser(id);
+            if (online instanceof LoadUser && online != fresh)
+            {
+                ((LoadUser) online).refreshFrom(fresh);
+            }
+        });
     }
 
     @Override
@@ -198,4 +502,44 @@ public abstract class LoadUserStore implements UserStore
     {
     }
 
+    /**
+     * @return what writes saved Users in the background, or {@code null} if this UserStore writes them some other way.
+     */
+    public SaveQueue<User> getSaveQueue()
+    {
+        return saveQueue;
+    }
+
+    /**
+     * A User that was fetched or built for a connecting Player, and when.
+     */
+    private static class Preloaded
+    {
+
+        private final User user;
+
+        /**
+         * Whether the Player has never connected before, so the User was built rather than fetched and is not saved yet.
+         */
+        private final boolean created;
+
+        /**
+         * The {@link System#nanoTime()} at which the User was fetched.
+         */
+        private final long fetched;
+
+        private Preloaded(User user, boolean created, long fetched)
+        {
+            this.user = user;
+            this.created = created;
+            this.fetched = fetched;
+        }
+
+        private boolean isExpired(long now)
+        {
+            return now - fetched > PRELOAD_EXPIRY;
+        }
+
+    }
+
 }
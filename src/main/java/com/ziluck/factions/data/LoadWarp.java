@@ -1,8 +1,7 @@
 package com.ziluck.factions.data;
 
 import com.ziluck.factions.base.Warp;
-import com.ziluck.factions.configuration.Config;
-import com.ziluck.factions.configuration.struct.Optimization;
+import com.ziluck.factions.data.index.IndexStrategy;
 import com.ziluck.factions.spatial.LazyLocation;
 import org.apache.commons.codec.digest.DigestUtils;
 
@@ -37,7 +36,7 @@ public abstract class LoadWarp implements Warp
     @Override
     public String getStub()
     {
-        if (Config.OPTIMIZATION.getValue() == Optimization.MEMORY)
+        if (!IndexStrategy.cachesDerivedValues())
         {
             return getName().toLowerCase();
         }
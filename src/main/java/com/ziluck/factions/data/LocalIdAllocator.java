@@ -0,0 +1,33 @@
+package com.ziluck.factions.data;
+
+/**
+ * An IdAllocator for embedded databases that are only ever used by a single server. The ids are simply counted up from
+ * wherever the database left off, so no blocks ever have to be written anywhere.
+ *
+ * @author Michael Ziluck
+ */
+public class LocalIdAllocator extends IdAllocator
+{
+
+    private long next;
+
+    /**
+     * Constructs a new LocalIdAllocator.
+     *
+     * @param first the first id to hand out. This is usually one more than the highest id in use.
+     */
+    public LocalIdAllocator(long first)
+    {
+        super(Integer.MAX_VALUE);
+        this.next = first;
+    }
+
+    @Override
+    protected long reserveBlock(int size)
+    {
+        long start = next;
+        next += size;
+        return start;
+    }
+
+}
@@ -0,0 +1,282 @@
+package com.ziluck.factions.data;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.lang.Validate;
+
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.struct.Role;
+
+/**
+ * The members of a {@link LoadFaction}, also kept in a bucket for each {@link Role} so that the members with a Role can
+ * be read without looking at everyone else.
+ * <p>
+ * The roster is a normal set of every member, and adding or removing a member through it also adds them to or removes
+ * them from the bucket of their Role. The Role itself is stored on the User rather than the Faction, so every
+ * {@link LoadUser} remembers the roster they are in and moves themselves to their new bucket when their Role is set.
+ * Members without a Role are only kept in the set of every member.
+ * </p>
+ * <p>
+ * Each bucket is a small array of its members in the order they were added, since most Factions only have a handful of
+ * members with each Role. The buckets are handed out as live, read-only views. Like the rest of a Faction, the roster is
+ * not thread safe.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class MemberRoster extends AbstractSet<User>
+{
+
+    private final Set<User> members = new HashSet<>();
+
+    private final Map<Role, Bucket> buckets = new EnumMap<>(Role.class);
+
+    /**
+     * Constructs a new, empty MemberRoster.
+     */
+    MemberRoster()
+    {
+        for (Role role : Role.values())
+        {
+            buckets.put(role, new Bucket());
+        }
+    }
+
+    /**
+     * Constructs a new MemberRoster with the given members.
+     *
+     * @param members the members to start with.
+     */
+    MemberRoster(Collection<User> members)
+    {
+        this();
+        addAll(members);
+    }
+
+    /**
+     * Retrieves the members with the given Role. The returned set can't be changed, but it keeps up with the roster as
+     * members join, leave, and change Roles.
+     *
+     * @param role the Role to look for.
+     *
+     * @return the members with the Role.
+     */
+    Set<User> withRole(Role role)
+    {
+        Validate.notNull(role, "Role can't be null.");
+
+        return buckets.get(role);
+    }
+
+    /**
+     * Moves a member from the bucket of the Role they had to the bucket of the Role they have now. Users call this when
+     * their Role is set.
+     *
+     * @param user    the member.
+     * @param oldRole the Role they had.
+     */
+    void moved(User user, Role oldRole)
+    {
+        Role newRole = user.getFactionRole();
+        if (oldRole == newRole || !members.contains(user))
+        {
+            return;
+        }
+        if (oldRole != null)
+        {
+            buckets.get(oldRole).drop(user);
+        }
+        if (newRole != null)
+        {
+            buckets.get(newRole).append(user);
+        }
+    }
+
+    @Override
+    public boolean add(User user)
+    {
+        Validate.notNull(user, "User can't be null.");
+
+        if (!members.add(user))
+        {
+            return false;
+        }
+        if (user.getFactionRole() != null)
+        {
+            buckets.get(user.getFactionRole()).append(user);
+        }
+        if (user instanceof LoadUser)
+        {
+            ((LoadUser) user).roster = this;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object object)
+    {
+        if (!members.remove(object))
+        {
+            return false;
+        }
+        forget((User) object);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object object)
+    {
+        return members.contains(object);
+    }
+
+    @Override
+    public int size()
+    {
+        return members.size();
+    }
+
+    @Override
+    public void clear()
+    {
+        for (User user : members)
+        {
+            forget(user);
+        }
+        members.clear();
+    }
+
+    @Override
+    public Iterator<User> iterator()
+    {
+        Iterator<User> iterator = members.iterator();
+        return new Iterator<User>()
+        {
+            private User last;
+
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public User next()
+            {
+                return last = iterator.next();
+            }
+
+            @Override
+            public void remove()
+            {
+                iterator.remove();
+                forget(last);
+            }
+        };
+    }
+
+    /**
+     * Takes a member who was just removed out of their bucket.
+     */
+    private void forget(User user)
+    {
+        if (user.getFactionRole() != null)
+        {
+            buckets.get(user.getFactionRole()).drop(user);
+        }
+        if (user instanceof LoadUser && ((LoadUser) user).roster == this)
+        {
+            ((LoadUser) user).roster = null;
+        }
+    }
+
+    /**
+     * The members with one Role. Only the roster can change it.
+     */
+    private static class Bucket extends AbstractSet<User>
+    {
+
+        private static final User[] EMPTY = new User[0];
+
+        private User[] users = EMPTY;
+
+        private int size;
+
+        private void append(User user)
+        {
+            if (size == users.length)
+            {
+                users = Arrays.copyOf(users, Math.max(4, size * 2));
+            }
+            users[size++] = user;
+        }
+
+        private void drop(User user)
+        {
+            int index = indexOf(user);
+            if (index != -1)
+            {
+                System.arraycopy(users, index + 1, users, index, size - index - 1);
+                users[--size] = null;
+            }
+        }
+
+        private int indexOf(Object user)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (users[i].equals(user))
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean contains(Object object)
+        {
+            return indexOf(object) != -1;
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        @Override
+        public Iterator<User> iterator()
+        {
+            return new Iterator<User>()
+            {
+                private int next;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return next < size;
+                }
+
+                @Override
+                public User next()
+                {
+                    if (next >= size)
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    return users[next++];
+                }
+            };
+        }
+
+    }
+
+}
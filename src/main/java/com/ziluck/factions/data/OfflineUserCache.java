@@ -0,0 +1,268 @@
+package com.ziluck.factions.data;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+import com.ziluck.factions.base.User;
+
+/**
+ * A size-bounded, time-expiring cache of offline {@link User Users}.
+ * <p>
+ * Users can be looked up by their internal id, their UUID, or their name ignoring case. Once the cache is full the least
+ * recently used User is evicted, and any User that has been in the cache longer than the expiry is treated as if it was
+ * never cached. The cache only ever holds offline Users; the UserStore is responsible for invalidating a User as soon as
+ * they come online so that the two never disagree.
+ * </p>
+ * <p>
+ * All operations are synchronized so that the cache can be used from the asynchronous pre-login threads.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class OfflineUserCache
+{
+
+    private final int maximumSize;
+
+    private final long expireAfter;
+
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<Long, CachedUser> byId;
+
+    private final Map<UUID, Long> idsByUuid;
+
+    private final Map<String, Long> idsByName;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * Constructs a new cache. If the maximum size is zero or less, nothing will ever be cached.
+     *
+     * @param maximumSize the most Users that will be held at once.
+     * @param expireAfter how long in milliseconds a User stays valid after it was cached.
+     */
+    public OfflineUserCache(int maximumSize, long expireAfter)
+    {
+        this(maximumSize, expireAfter, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructs a new cache that reads the time from the given clock.
+     *
+     * @param maximumSize the most Users that will be held at once.
+     * @param expireAfter how long in milliseconds a User stays valid after it was cached.
+     * @param clock       the source of the current time in milliseconds.
+     */
+    OfflineUserCache(int maximumSize, long expireAfter, LongSupplier clock)
+    {
+        this.maximumSize = maximumSize;
+        this.expireAfter = expireAfter;
+        this.clock = clock;
+        this.byId = new LinkedHashMap<>(16, 0.75f, true);
+        this.idsByUuid = new HashMap<>();
+        this.idsByName = new HashMap<>();
+    }
+
+    /**
+     * Gets the cached User with the given id.
+     *
+     * @param id the internal id of the User.
+     *
+     * @return the User if they are cached.
+     */
+    public synchronized User get(long id)
+    {
+        CachedUser cached = byId.get(id);
+        if (cached == null)
+        {
+            misses++;
+            return null;
+        }
+        if (cached.expires <= clock.getAsLong())
+        {
+            remove(id);
+            evictions++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return cached.user;
+    }
+
+    /**
+     * Gets the cached User with the given UUID.
+     *
+     * @param uuid the UUID of the User.
+     *
+     * @return the User if they are cached.
+     */
+    public synchronized User get(UUID uuid)
+    {
+        Long id = idsByUuid.get(uuid);
+        if (id == null)
+        {
+            misses++;
+            return null;
+        }
+        return get(id.longValue());
+    }
+
+    /**
+     * Gets the cached User with the given name. This is not case-sensitive.
+     *
+     * @param name the name of the User.
+     *
+     * @return the User if they are cached.
+     */
+    public synchronized User get(String name)
+    {
+        Long id = idsByName.get(name.toLowerCase());
+        if (id == null)
+        {
+            misses++;
+            return null;
+        }
+        return get(id.longValue());
+    }
+
+    /**
+     * Adds the given User to the cache, replacing any previous entry for them. If the cache is full, the least recently
+     * used User is evicted.
+     *
+     * @param user the User to cache.
+     */
+    public synchronized void put(User user)
+    {
+        if (maximumSize <= 0)
+        {
+            return;
+        }
+        remove(user.getId());
+
+        byId.put(user.getId(), new CachedUser(user, clock.getAsLong() + expireAfter));
+        idsByUuid.put(user.getUniqueId(), user.getId());
+        idsByName.put(user.getName().toLowerCase(), user.getId());
+
+        Iterator<Map.Entry<Long, CachedUser>> iterator = byId.entrySet().iterator();
+        while (byId.size() > maximumSize && iterator.hasNext())
+        {
+            User eldest = iterator.next().getValue().user;
+            iterator.remove();
+            removeKeys(eldest);
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes the given User from the cache if they are in it.
+     *
+     * @param user the User to remove.
+     */
+    public synchronized void invalidate(User user)
+    {
+        remove(user.getId());
+    }
+
+    /**
+     * Removes the User with the given id from the cache if they are in it.
+     *
+     * @param id the id of the User to remove.
+     */
+    public synchronized void invalidate(long id)
+    {
+        remove(id);
+    }
+
+    /**
+     * Removes every User from the cache. The statistics are not reset.
+     */
+    public synchronized void clear()
+    {
+        byId.clear();
+        idsByUuid.clear();
+        idsByName.clear();
+    }
+
+    /**
+     * Removes the entry with the given id and its secondary keys.
+     *
+     * @param id the id of the User.
+     */
+    private void remove(long id)
+    {
+        CachedUser cached = byId.remove(id);
+        if (cached != null)
+        {
+            removeKeys(cached.user);
+        }
+    }
+
+    /**
+     * Removes the secondary keys of the given User, but only if they still point at that User.
+     *
+     * @param user the User whose keys to remove.
+     */
+    private void removeKeys(User user)
+    {
+        idsByUuid.remove(user.getUniqueId(), user.getId());
+        idsByName.remove(user.getName().toLowerCase(), user.getId());
+    }
+
+    /**
+     * @return how many Users are currently cached, including ones that have expired but were not yet looked up.
+     */
+    public synchronized int size()
+    {
+        return byId.size();
+    }
+
+    /**
+     * @return how many lookups found a valid User.
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return how many lookups did not find a valid User.
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * @return how many Users were removed because the cache was full or because they expired.
+     */
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * A User along with the time they stop being valid.
+     */
+    private static final class CachedUser
+    {
+        private final User user;
+
+        private final long expires;
+
+        private CachedUser(User user, long expires)
+        {
+            this.user = user;
+            this.expires = expires;
+        }
+    }
+
+}
@@ -0,0 +1,491 @@
+package com.ziluck.factions.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Bukkit;
+
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.configuration.Config;
+
+/**
+ * Writes Factions or Users to the database in the background.
+ * <p>
+ * Saving only records that the entity has to be written. The writes themselves happen in batches on the asynchronous
+ * scheduler, and an entity that is saved several times before it is written is only written once with its newest
+ * state. An entity is never written by two threads at the same time, so an older write can't land after a newer one.
+ * </p>
+ * <p>
+ * Bukkit stops running asynchronous tasks once the plugin is disabled, so anything still waiting at that point has to
+ * be written with {@link #drain(Collection, int, long)}.
+ * </p>
+ * <p>
+ * If the queue has a {@link WriteJournal}, every save is recorded in it before it is queued and acknowledged once it
+ * was written, so saves that were not written yet are not lost if the server crashes.
+ * </p>
+ *
+ * @param <T> the type of entity that is saved.
+ *
+ * @author Michael Ziluck
+ */
+public class SaveQueue<T>
+{
+
+    /**
+     * The most entities handed to the writer at once.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    private final String name;
+
+    private final ToLongFunction<T> id;
+
+    private final Writer<T> writer;
+
+    private final WriteJournal<T> journal;
+
+    /**
+     * The entities waiting to be written by their id. Saving an entity that is already waiting just replaces it.
+     */
+    private final ConcurrentMap<Long, Queued<T>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * The ids of the entities currently being written.
+     */
+    private final Set<Long> writing = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean draining;
+
+    /**
+     * Constructs a new SaveQueue.
+     *
+     * @param name   what is being saved, used in log messages.
+     * @param id     gets the id of an entity.
+     * @param writer writes a batch of entities to the database.
+     */
+    public SaveQueue(String name, ToLongFunction<T> id, Writer<T> writer)
+    {
+        this(name, id, writer, null);
+    }
+
+    /**
+     * Constructs a new SaveQueue that records every save in the given journal.
+     *
+     * @param name    what is being saved, used in log messages.
+     * @param id      gets the id of an entity.
+     * @param writer  writes a batch of entities to the database.
+     * @param journal where saves are recorded until they are written, or {@code null} to not record them.
+     */
+    public SaveQueue(String name, ToLongFunction<T> id, Writer<T> writer, WriteJournal<T> journal)
+    {
+        Validate.notNull(name, "Name can't be null.");
+        Validate.notNull(id, "Id can't be null.");
+        Validate.notNull(writer, "Writer can't be null.");
+
+        this.name = name;
+        this.id = id;
+        this.writer = writer;
+        this.journal = journal;
+    }
+
+    /**
+     * Opens the journal for the given entities in the data folder and writes anything that was saved but not written
+     * before the server last stopped.
+     *
+     * @param <T>    the type of entity.
+     * @param name   what is being saved, which is also the name of the journal file.
+     * @param codec  turns entities into bytes and back.
+     * @param writer writes a batch of entities to the database.
+     *
+     * @return the journal, or {@code null} if journals are disabled or it could not be opened.
+     */
+    public static <T> WriteJournal<T> openJournal(String name, WriteJournal.Codec<T> codec, Writer<T> writer)
+    {
+        if (!Config.JOURNAL_ENABLED.booleanValue())
+        {
+            return null;
+        }
+
+        WriteJournal<T> journal;
+        try
+        {
+            File file = new File(Factions.getInstance().getDataFolder(), name + ".journal");
+            journal = new WriteJournal<>(file, codec, Config.JOURNAL_COMPACT_SIZE.intValue() * 1024L * 1024L);
+        }
+        catch (IOException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.SEVERE, "Could not open the journal for " + name + ", so saves will not survive a crash.", ex);
+            return null;
+        }
+
+        try
+        {
+            int replayed = journal.replay(writer);
+            if (replayed > 0)
+            {
+                Factions.getInstance().getLogger().info("Saved " + replayed + " " + name + " that were not written before the server stopped.");
+            }
+        }
+        catch (Exception ex)
+        {
+            Factions.getInstance().getLogger().log(Level.SEVERE, "Could not save the " + journal.getOutstanding() + " " + name + " left in the journal. They will be tried again on the next start.", ex);
+        }
+        return journal;
+    }
+
+    /**
+     * Queues the given entity to be written. If it is already waiting, it is only written once.
+     * <p>
+     * The entity is written as it is when the writer gets to it, so anything that can change while it waits, such as a
+     * Faction that is still being played with, should be passed as a copy taken on the calling thread.
+     * </p>
+     *
+     * @param entity the entity to save.
+     */
+    public void submit(T entity)
+    {
+        Validate.notNull(entity, "Entity can't be null.");
+
+        long key = id.applyAsLong(entity);
+        long sequence = 0;
+        if (journal != null)
+        {
+            try
+            {
+                sequence = journal.append(key, entity);
+            }
+            catch (IOException ex)
+            {
+                Factions.getInstance().getLogger().log(Level.SEVERE, "Could not record a save of " + name + " in the journal.", ex);
+            }
+        }
+        // saves of the same entity from different threads may get here out of order, so the newest entry wins
+        pending.merge(key, new Queued<>(entity, sequence), (old, queued) -> queued.sequence >= old.sequence ? queued : old);
+        if (!draining && scheduled.compareAndSet(false, true))
+        {
+            Bukkit.getScheduler().runTaskAsynchronously(Factions.getInstance(), () ->
+            {
+                scheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Writes batches until nothing is left that isn't already being written by another thread.
+     */
+    private void flush()
+    {
+        flush(false, 0);
+    }
+
+    /**
+     * Writes batches until nothing is left that isn't already being written by another thread, or until the deadline
+     * passes if there is one. If a batch fails outside of a drain, it is queued again and written with the next save so
+     * that a database that is down isn't retried in a loop.
+     * <p>
+     * With a journal, the journal is forced to disk once before each batch, and each entity is acknowledged once it has
+     * been written.
+     * </p>
+     * <p>
+     * There is no value of {@link System#nanoTime()} that can stand in for "no deadline", since it may be negative and
+     * comparing against a far off value overflows, so whether there is a deadline is passed on its own.
+     * </p>
+     *
+     * @param timed    whether to stop at the deadline.
+     * @param deadline the {@link System#nanoTime()} at which to stop, if timed.
+     */
+    private void flush(boolean timed, long deadline)
+    {
+        List<Queued<T>> batch;
+        while ((!timed || System.nanoTime() - deadline < 0) && !(batch = takeBatch()).isEmpty())
+        {
+            syncJournal();
+            List<T> entities = new ArrayList<>(batch.size());
+            batch.forEach(queued -> entities.add(queued.entity));
+            try
+            {
+                writer.write(entities);
+                written.addAndGet(batch.size());
+                acknowledge(batch);
+            }
+            catch (Exception ex)
+            {
+                Factions.getInstance().getLogger().log(Level.SEVERE, "Could not save " + batch.size() + " " + name + ".", ex);
+                if (draining)
+                {
+                    failed.addAndGet(batch.size());
+                }
+                else
+                {
+                    // anything saved since then is newer, so only put back what hasn't been replaced
+                    batch.forEach(queued -> pending.putIfAbsent(id.applyAsLong(queued.entity), queued));
+                    return;
+                }
+            }
+            finally
+            {
+                batch.forEach(queued -> writing.remove(id.applyAsLong(queued.entity)));
+            }
+        }
+    }
+
+    /**
+     * Forces the journal to disk before a batch is written, if there is one.
+     */
+    private void syncJournal()
+    {
+        if (journal == null)
+        {
+            return;
+        }
+
+        try
+        {
+            journal.sync();
+        }
+        catch (IOException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.WARNING, "Could not force the journal for " + name + " to disk.", ex);
+        }
+    }
+
+    /**
+     * Acknowledges the journal entries covered by a batch that was written.
+     *
+     * @param batch the entities that were written.
+     */
+    private void acknowledge(List<Queued<T>> batch)
+    {
+        if (journal == null)
+        {
+            return;
+        }
+
+        try
+        {
+            for (Queued<T> queued : batch)
+            {
+                journal.acknowledge(id.applyAsLong(queued.entity), queued.sequence);
+            }
+        }
+        catch (IOException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.WARNING, "Could not acknowledge saved " + name + " in the journal.", ex);
+        }
+    }
+
+    /**
+     * Takes up to {@link #BATCH_SIZE} waiting entities that no other thread is writing. The thread writing an entity
+     * always takes another batch once it is done, so an entity that is skipped here is not forgotten.
+     *
+     * @return the entities to write.
+     */
+    private List<Queued<T>> takeBatch()
+    {
+        List<Queued<T>> batch = new ArrayList<>();
+        for (Long key : pending.keySet())
+        {
+            if (batch.size() >= BATCH_SIZE)
+            {
+                break;
+            }
+            if (!writing.add(key))
+            {
+                continue;
+            }
+            Queued<T> queued = pending.remove(key);
+            if (queued == null)
+            {
+                writing.remove(key);
+            }
+            else
+            {
+                batch.add(queued);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * @return how many entities are waiting or being written.
+     */
+    public int getBacklog()
+    {
+        return pending.size() + writing.size();
+    }
+
+    /**
+     * Closes the journal, if there is one. Anything that was not written stays in it and is written on the next start.
+     */
+    public void close()
+    {
+        if (journal == null)
+        {
+            return;
+        }
+
+        try
+        {
+            journal.close();
+        }
+        catch (IOException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.WARNING, "Could not close the journal for " + name + ".", ex);
+        }
+    }
+
+    /**
+     * Writes everything still waiting in the given queues on threads of their own, since the asynchronous scheduler is
+     * no longer available while the plugin is disabled. Writes that were already running on the scheduler are waited
+     * for as well. Anything that isn't written before the timeout is abandoned.
+     *
+     * @param queues  the queues to drain.
+     * @param threads how many batches are written at the same time.
+     * @param timeout how long in milliseconds to wait at most.
+     *
+     * @return how many entities were written and how many were abandoned.
+     */
+    public static DrainReport drain(Collection<SaveQueue<?>> queues, int threads, long timeout)
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        long writtenBefore = 0;
+        long failedBefore = 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable ->
+        {
+            Thread thread = new Thread(runnable, "Factions Save Drain");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (SaveQueue<?> queue : queues)
+        {
+            queue.draining = true;
+            writtenBefore += queue.written.get();
+            failedBefore += queue.failed.get();
+            for (int i = 0; i < threads; i++)
+            {
+                executor.execute(() -> queue.flush(true, deadline));
+            }
+        }
+        executor.shutdown();
+
+        try
+        {
+            executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            while (System.nanoTime() - deadline < 0 && queues.stream().anyMatch(queue -> !queue.writing.isEmpty()))
+            {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdownNow();
+
+        long flushed = -writtenBefore;
+        long abandoned = -failedBefore;
+        for (SaveQueue<?> queue : queues)
+        {
+            flushed += queue.written.get();
+            abandoned += queue.failed.get() + queue.getBacklog();
+        }
+        return new DrainReport(flushed, abandoned);
+    }
+
+    /**
+     * Writes a batch of entities to the database on the calling thread.
+     *
+     * @param <T> the type of entity.
+     */
+    @FunctionalInterface
+    public interface Writer<T>
+    {
+
+        /**
+         * Writes the given entities.
+         *
+         * @param entities the entities to write.
+         *
+         * @throws Exception if they could not be written.
+         */
+        void write(Collection<T> entities) throws Exception;
+
+    }
+
+    /**
+     * An entity waiting to be written, along with the sequence number of its journal entry.
+     *
+     * @param <T> the type of entity.
+     */
+    private static class Queued<T>
+    {
+
+        private final T entity;
+
+        private final long sequence;
+
+        private Queued(T entity, long sequence)
+        {
+            this.entity = entity;
+            this.sequence = sequence;
+        }
+
+    }
+
+    /**
+     * The outcome of draining the queues while the plugin is disabled.
+     */
+    public static class DrainReport
+    {
+
+        private final long flushed;
+
+        private final long abandoned;
+
+        private DrainReport(long flushed, long abandoned)
+        {
+            this.flushed = flushed;
+            this.abandoned = abandoned;
+        }
+
+        /**
+         * @return how many entities were written during the drain.
+         */
+        public long getFlushed()
+        {
+            return flushed;
+        }
+
+        /**
+         * @return how many entities were not written, either because they failed or because time ran out.
+         */
+        public long getAbandoned()
+        {
+            return abandoned;
+        }
+
+    }
+
+}
@@ -0,0 +1,465 @@
+package com.ziluck.factions.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang.Validate;
+
+import com.ziluck.factions.utils.TrigramIndex;
+
+/**
+ * The name of every User that has ever been seen, kept so that names can be completed whether or not the User is
+ * online.
+ * <p>
+ * The names are kept as UTF-8 bytes in one sorted array, ordered ignoring the case of ASCII letters, which is all that a
+ * player name can contain. A name takes little more than its own length in memory, and listing the names that start with
+ * a prefix is a binary search followed by reading the names after it. A name that is seen again with a different case
+ * replaces the old one.
+ * </p>
+ * <p>
+ * The dictionary is kept in a file so that it survives restarts. Every new name is appended as a record with a checksum,
+ * and a torn record at the end of the file, left by a crash in the middle of an append, is dropped when it is read. The
+ * file is rewritten whenever it was read with records that are no longer needed.
+ * </p>
+ * <p>
+ * The names are also kept in a {@link TrigramIndex}, so that when a name that was typed is not known, the names spelled
+ * almost like it can be suggested without measuring the distance to every name.
+ * </p>
+ * <p>
+ * All operations are synchronized, since names are added from the asynchronous pre-login threads.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class UserNameDictionary
+{
+
+    /**
+     * The length that comes before the name of a record.
+     */
+    private static final int HEADER_SIZE = 2;
+
+    /**
+     * The checksum that comes after the name of a record.
+     */
+    private static final int TRAILER_SIZE = 4;
+
+    private static final byte[][] NONE = new byte[0][];
+
+    private final File file;
+
+    private byte[][] names = NONE;
+
+    private int size;
+
+    private FileChannel channel;
+
+    private final TrigramIndex<String> spellings = new TrigramIndex<>();
+
+    /**
+     * Opens the dictionary in the given file, reading back every name in it.
+     *
+     * @param file the file to store the dictionary in.
+     *
+     * @throws IOException if the file could not be read or opened.
+     */
+    public UserNameDictionary(File file) throws IOException
+    {
+        Validate.notNull(file, "File can't be null.");
+
+        this.file = file;
+
+        int records = file.isFile() ? read() : 0;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (records != size || channel.size() != fileSize())
+        {
+            compact();
+        }
+        else
+        {
+            channel.position(channel.size());
+        }
+    }
+
+    /**
+     * Creates a dictionary that is only kept in memory, such as when its file could not be opened.
+     */
+    public UserNameDictionary()
+    {
+        this.file = null;
+    }
+
+    /**
+     * Reads every intact record in the file. Reading stops at the first record that is incomplete or does not match its
+     * checksum, since everything after it was never fully written.
+     *
+     * @return how many records were read.
+     *
+     * @throws IOException if the file could not be read.
+     */
+    private int read() throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        List<byte[]> read = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= HEADER_SIZE + TRAILER_SIZE)
+        {
+            int start = buffer.position();
+            int length = buffer.getShort() & 0xFFFF;
+            if (buffer.remaining() < length + TRAILER_SIZE)
+            {
+                break;
+            }
+            byte[] name = new byte[length];
+            buffer.get(name);
+
+            crc.reset();
+            crc.update(buffer.array(), start, HEADER_SIZE + length);
+            if (buffer.getInt() != (int) crc.getValue())
+            {
+                break;
+            }
+            read.add(name);
+        }
+        merge(read);
+        return read.size();
+    }
+
+    /**
+     * Adds the given name if it is not already known.
+     *
+     * @param name the name of a User.
+     */
+    public synchronized void add(String name)
+    {
+        Validate.notNull(name, "Name can't be null.");
+
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int slot = search(bytes);
+        if (slot >= 0)
+        {
+            if (Arrays.equals(names[slot], bytes))
+            {
+                return;
+            }
+            names[slot] = bytes;
+        }
+        else
+        {
+            slot = -slot - 1;
+            if (size == names.length)
+            {
+                names = Arrays.copyOf(names, Math.max(16, size * 2));
+            }
+            System.arraycopy(names, slot, names, slot + 1, size - slot);
+            names[slot] = bytes;
+            size++;
+        }
+        spellings.put(name, name);
+        append(Arrays.asList(bytes));
+    }
+
+    /**
+     * Adds every given name that is not already known. This sorts the names once, so it should be used instead of
+     * {@link #add(String)} when adding many names at once.
+     *
+     * @param added the names of Users.
+     */
+    public synchronized void addAll(Collection<String> added)
+    {
+        Validate.notNull(added, "Names can't be null.");
+
+        List<byte[]> bytes = new ArrayList<>(added.size());
+        for (String name : added)
+        {
+            bytes.add(name.getBytes(StandardCharsets.UTF_8));
+        }
+        append(merge(bytes));
+    }
+
+    /**
+     * Lists the names that start with the given prefix, ignoring case, in alphabetical order.
+     *
+     * @param prefix the start of the names.
+     * @param limit  the most names to list.
+     *
+     * @return the names, in the case they were last seen in.
+     */
+    public synchronized List<String> startingWith(String prefix, int limit)
+    {
+        Validate.notNull(prefix, "Prefix can't be null.");
+
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int slot = search(key);
+        if (slot < 0)
+        {
+            slot = -slot - 1;
+        }
+        List<String> found = new ArrayList<>();
+        for (int i = slot; i < size && found.size() < limit && startsWith(names[i], key); i++)
+        {
+            found.add(new String(names[i], StandardCharsets.UTF_8));
+        }
+        return found;
+    }
+
+    /**
+     * Lists the names that are within the given number of edits of the given name, ignoring case. The closest names
+     * come first.
+     *
+     * @param name        the name that was typed.
+     * @param maxDistance the most edits a name can be away from the typed one.
+     * @param limit       the most names to list.
+     *
+     * @return the names, in the case they were last seen in.
+     */
+    public synchronized List<String> similarTo(String name, int maxDistance, int limit)
+    {
+        return spellings.similarTo(name, maxDistance, limit);
+    }
+
+    /**
+     * @param name the name, in any case.
+     *
+     * @return {@code true} if the name is known.
+     */
+    public synchronized boolean contains(String name)
+    {
+        return search(name.getBytes(StandardCharsets.UTF_8)) >= 0;
+    }
+
+    /**
+     * @return how many names are known.
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Closes the file. Every name was already written when it was added.
+     *
+     * @throws IOException if the file could not be closed.
+     */
+    public synchronized void close() throws IOException
+    {
+        if (channel == null)
+        {
+            return;
+        }
+        channel.close();
+        channel = null;
+    }
+
+    /**
+     * Adds the given names in one pass, keeping the last case each name was given in.
+     *
+     * @return the names that were new or changed case, which still have to be written.
+     */
+    private List<byte[]> merge(List<byte[]> added)
+    {
+        byte[][] sorted = added.toArray(new byte[0][]);
+        // a stable sort, so that of two names that only differ in case the one added last comes last
+        Arrays.sort(sorted, UserNameDictionary::compare);
+
+        byte[][] merged = new byte[size + sorted.length][];
+        List<byte[]> changed = new ArrayList<>();
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < sorted.length)
+        {
+            int compare = i == size ? 1 : j == sorted.length ? -1 : compare(names[i], sorted[j]);
+            if (compare < 0)
+            {
+                merged[count++] = names[i++];
+                continue;
+            }
+            byte[] name = sorted[j++];
+            while (j < sorted.length && compare(name, sorted[j]) == 0)
+            {
+                name = sorted[j++];
+            }
+            if (compare == 0)
+            {
+                if (!Arrays.equals(names[i], name))
+                {
+                    changed.add(name);
+                    respell(name);
+                }
+                i++;
+            }
+            else
+            {
+                changed.add(name);
+                respell(name);
+            }
+            merged[count++] = name;
+        }
+        names = merged;
+        size = count;
+        return changed;
+    }
+
+    private void respell(byte[] name)
+    {
+        String decoded = new String(name, StandardCharsets.UTF_8);
+        spellings.put(decoded, decoded);
+    }
+
+    private int search(byte[] key)
+    {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int compare = compare(names[mid], key);
+            if (compare < 0)
+            {
+                low = mid + 1;
+            }
+            else if (compare > 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Appends the given names to the file. If they could not be appended, the file is rewritten from memory instead,
+     * since a partly written record would hide every record after it.
+     */
+    private void append(List<byte[]> added)
+    {
+        if (channel == null || added.isEmpty())
+        {
+            return;
+        }
+        try
+        {
+            for (byte[] name : added)
+            {
+                write(channel, name);
+            }
+        }
+        catch (IOException ex)
+        {
+            try
+            {
+                compact();
+            }
+            catch (IOException ignored)
+            {
+                // still kept in memory, and written again the next time the file is rewritten
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file with exactly the known names. The new file is forced to disk and then moved over the old one, so
+     * a crash while compacting leaves either the old or the new dictionary behind.
+     *
+     * @throws IOException if the file could not be rewritten.
+     */
+    private void compact() throws IOException
+    {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            for (int i = 0; i < size; i++)
+            {
+                write(out, names[i]);
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    /**
+     * @return how large the file would be if it held exactly the known names.
+     */
+    private long fileSize()
+    {
+        long total = 0;
+        for (int i = 0; i < size; i++)
+        {
+            total += HEADER_SIZE + names[i].length + TRAILER_SIZE;
+        }
+        return total;
+    }
+
+    private static void write(FileChannel out, byte[] name) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + name.length + TRAILER_SIZE);
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, HEADER_SIZE + name.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Compares two names byte by byte, ignoring the case of ASCII letters.
+     */
+    private static int compare(byte[] first, byte[] second)
+    {
+        int length = Math.min(first.length, second.length);
+        for (int i = 0; i < length; i++)
+        {
+            int difference = fold(first[i]) - fold(second[i]);
+            if (difference != 0)
+            {
+                return difference;
+            }
+        }
+        return first.length - second.length;
+    }
+
+    private static boolean startsWith(byte[] name, byte[] prefix)
+    {
+        if (name.length < prefix.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++)
+        {
+            if (fold(name[i]) != fold(prefix[i]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int fold(byte value)
+    {
+        int unsigned = value & 0xFF;
+        return unsigned >= 'A' && unsigned <= 'Z' ? unsigned + ('a' - 'A') : unsigned;
+    }
+
+}
@@ -0,0 +1,406 @@
+package com.ziluck.factions.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A file that records every Faction or User that is saved before it is handed to the database, so that changes that
+ * were not written yet survive a crash.
+ * <p>
+ * Every save appends an entry with the encoded entity, and every write to the database appends an acknowledgement for
+ * the entries it covered. Appending only hands the bytes to the operating system. The file is forced to disk by
+ * {@link #sync()}, which is called once before each batch is written to the database, so all the saves made since the
+ * last batch share a single fsync.
+ * </p>
+ * <p>
+ * When the journal is opened, entries without an acknowledgement are read back and can be written again with
+ * {@link #replay(SaveQueue.Writer)}. A torn entry at the end of the file, left by a crash in the middle of an append, is
+ * dropped. Once the file grows past its compaction size it is rewritten with only the entries that have not been
+ * acknowledged yet.
+ * </p>
+ *
+ * @param <T> the type of entity that is recorded.
+ *
+ * @author Michael Ziluck
+ */
+public class WriteJournal<T>
+{
+
+    private static final byte ENTRY = 1;
+
+    private static final byte ACK = 2;
+
+    /**
+     * The type, id, sequence number, and length that come before the payload of a record.
+     */
+    private static final int HEADER_SIZE = 1 + 8 + 8 + 4;
+
+    /**
+     * The checksum that comes after the payload of a record.
+     */
+    private static final int TRAILER_SIZE = 8;
+
+    private final File file;
+
+    private final Codec<T> codec;
+
+    private final long compactSize;
+
+    /**
+     * The newest entry of every entity that was not acknowledged yet, by the id of the entity.
+     */
+    private final Map<Long, Entry> outstanding = new LinkedHashMap<>();
+
+    private final Object syncLock = new Object();
+
+    private FileChannel channel;
+
+    private long nextSequence = 1;
+
+    /**
+     * The last sequence number that was appended.
+     */
+    private volatile long appended;
+
+    /**
+     * The last sequence number known to be on disk.
+     */
+    private volatile long synced;
+
+    /**
+     * Opens the journal in the given file, reading back any entries that were not acknowledged.
+     *
+     * @param file        the file to store the journal in.
+     * @param codec       turns entities into bytes and back.
+     * @param compactSize how many bytes the file may grow to before it is rewritten.
+     *
+     * @throws IOException if the file could not be read or opened.
+     */
+    public WriteJournal(File file, Codec<T> codec, long compactSize) throws IOException
+    {
+        Validate.notNull(file, "File can't be null.");
+        Validate.notNull(codec, "Codec can't be null.");
+
+        this.file = file;
+        this.codec = codec;
+        this.compactSize = compactSize;
+
+        if (file.isFile())
+        {
+            read();
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        compact();
+    }
+
+    /**
+     * Reads every intact record in the file. Reading stops at the first record that is incomplete or does not match its
+     * checksum, since everything after it was never fully written.
+     *
+     * @throws IOException if the file could not be read.
+     */
+    private void read() throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= HEADER_SIZE + TRAILER_SIZE)
+        {
+            int start = buffer.position();
+            byte type = buffer.get();
+            long id = buffer.getLong();
+            long sequence = buffer.getLong();
+            int length = buffer.getInt();
+            if (length < 0 || buffer.remaining() < length + TRAILER_SIZE)
+            {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+
+            crc.reset();
+            crc.update(buffer.array(), start, HEADER_SIZE + length);
+            if (buffer.getLong() != crc.getValue())
+            {
+                break;
+            }
+
+            if (type == ENTRY)
+            {
+                outstanding.put(id, new Entry(sequence, payload));
+            }
+            else if (type == ACK)
+            {
+                Entry entry = outstanding.get(id);
+                if (entry != null && entry.sequence <= sequence)
+                {
+                    outstanding.remove(id);
+                }
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+        }
+    }
+
+    /**
+     * Records that the given entity was saved. This only hands the entry to the operating system, so it survives the
+     * server crashing, but not the machine losing power until {@link #sync()} is called.
+     *
+     * @param id     the id of the entity.
+     * @param entity the entity.
+     *
+     * @return the sequence number of the entry.
+     *
+     * @throws IOException if the entity could not be encoded or appended.
+     */
+    public long append(long id, T entity) throws IOException
+    {
+        byte[] payload = codec.encode(entity);
+        synchronized (this)
+        {
+            long sequence = nextSequence++;
+            write(ENTRY, id, sequence, payload);
+            outstanding.put(id, new Entry(sequence, payload));
+            appended = sequence;
+            return sequence;
+        }
+    }
+
+    /**
+     * @param id the id of an entity.
+     *
+     * @return the sequence number of the newest entry for the entity that was not acknowledged, or {@code 0} if there
+     *         is none.
+     */
+    public synchronized long getSequence(long id)
+    {
+        Entry entry = outstanding.get(id);
+        return entry == null ? 0 : entry.sequence;
+    }
+
+    /**
+     * Forces everything appended so far to disk. If another thread is already doing so, this waits for it and only
+     * forces the file again if entries were appended in the meantime.
+     *
+     * @throws IOException if the file could not be forced.
+     */
+    public void sync() throws IOException
+    {
+        long target = appended;
+        if (synced >= target)
+        {
+            return;
+        }
+        synchronized (syncLock)
+        {
+            if (synced >= target)
+            {
+                return;
+            }
+            long upTo = appended;
+            FileChannel current;
+            synchronized (this)
+            {
+                current = channel;
+            }
+            try
+            {
+                current.force(false);
+            }
+            catch (ClosedChannelException ex)
+            {
+                // the journal was compacted in the meantime, which forced everything to disk
+            }
+            synced = Math.max(synced, upTo);
+        }
+    }
+
+    /**
+     * Records that the entity with the given id was written to the database, covering every entry up to the given
+     * sequence number. Acknowledgements are not forced to disk, since losing one only means the entity is written
+     * again after a crash.
+     *
+     * @param id       the id of the entity.
+     * @param sequence the sequence number the write covered.
+     *
+     * @throws IOException if the acknowledgement could not be appended.
+     */
+    public synchronized void acknowledge(long id, long sequence) throws IOException
+    {
+        Entry entry = outstanding.get(id);
+        if (entry == null || entry.sequence > sequence)
+        {
+            return;
+        }
+        outstanding.remove(id);
+        write(ACK, id, sequence, new byte[0]);
+        if (channel.size() > compactSize)
+        {
+            compact();
+        }
+    }
+
+    /**
+     * Writes every entity that was not acknowledged with the given writer, and acknowledges them if it succeeds.
+     *
+     * @param writer writes the entities to the database.
+     *
+     * @return how many entities were written.
+     *
+     * @throws Exception if they could not be decoded or written. They stay in the journal.
+     */
+    public int replay(SaveQueue.Writer<T> writer) throws Exception
+    {
+        Map<Long, Entry> entries;
+        synchronized (this)
+        {
+            entries = new LinkedHashMap<>(outstanding);
+        }
+        if (entries.isEmpty())
+        {
+            return 0;
+        }
+
+        List<T> entities = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values())
+        {
+            entities.add(codec.decode(entry.payload));
+        }
+        writer.write(entities);
+
+        for (Map.Entry<Long, Entry> entry : entries.entrySet())
+        {
+            acknowledge(entry.getKey(), entry.getValue().sequence);
+        }
+        return entities.size();
+    }
+
+    /**
+     * @return how many entities have entries that were not acknowledged.
+     */
+    public synchronized int getOutstanding()
+    {
+        return outstanding.size();
+    }
+
+    /**
+     * Rewrites the file with only the entries that were not acknowledged. The new file is forced to disk and then moved
+     * over the old one, so a crash while compacting leaves either the old or the new journal behind.
+     *
+     * @throws IOException if the file could not be rewritten.
+     */
+    private synchronized void compact() throws IOException
+    {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            for (Map.Entry<Long, Entry> entry : outstanding.entrySet())
+            {
+                write(out, ENTRY, entry.getKey(), entry.getValue().sequence, entry.getValue().payload);
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        synced = appended;
+    }
+
+    /**
+     * Compacts the journal one last time and closes it. If everything was acknowledged, this leaves an empty file.
+     *
+     * @throws IOException if the file could not be rewritten or closed.
+     */
+    public synchronized void close() throws IOException
+    {
+        compact();
+        channel.close();
+    }
+
+    private void write(byte type, long id, long sequence, byte[] payload) throws IOException
+    {
+        write(channel, type, id, sequence, payload);
+    }
+
+    private static void write(FileChannel out, byte type, long id, long sequence, byte[] payload) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + payload.length + TRAILER_SIZE);
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeByte(type);
+        data.writeLong(id);
+        data.writeLong(sequence);
+        data.writeInt(payload.length);
+        data.write(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        data.writeLong(crc.getValue());
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining())
+        {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * An entity as it was when it was last saved.
+     */
+    private static class Entry
+    {
+
+        private final long sequence;
+
+        private final byte[] payload;
+
+        private Entry(long sequence, byte[] payload)
+        {
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+
+    }
+
+    /**
+     * Turns an entity into bytes to store in the journal and back.
+     *
+     * @param <T> the type of entity.
+     */
+    public interface Codec<T>
+    {
+
+        /**
+         * @param entity the entity to encode.
+         *
+         * @return the encoded entity.
+         *
+         * @throws IOException if it could not be encoded.
+         */
+        byte[] encode(T entity) throws IOException;
+
+        /**
+         * @param bytes the encoded entity.
+         *
+         * @return the decoded entity.
+         *
+         * @throws IOException if it could not be decoded.
+         */
+        T decode(byte[] bytes) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.ziluck.factions.data.index;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.ziluck.factions.base.Faction;
+
+/**
+ * Every loaded {@link Faction}, found by their name ignoring case or by their id.
+ * <p>
+ * Which implementation is used is chosen once by {@link IndexStrategy} when the FactionStore is created, so the
+ * FactionStore only ever calls one of them.
+ * </p>
+ * <p>
+ * Every implementation can be read from any thread while it is being changed. A lookup sees every Faction that was
+ * added before it started and not removed since, a renamed Faction can be found by at least one of its names while it
+ * is being renamed, and {@link #values()} can be iterated from any thread. Factions are only added, removed, and renamed
+ * from the main thread, but the implementations don't rely on it.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public interface FactionIndex
+{
+
+    /**
+     * Adds the given Faction under its current name.
+     *
+     * @param faction the Faction to add.
+     */
+    public void add(Faction faction);
+
+    /**
+     * Removes the given Faction. It must still have the name it was added with.
+     *
+     * @param faction the Faction to remove.
+     */
+    public void remove(Faction faction);
+
+    /**
+     * Moves the given Faction from its old name to its current one.
+     *
+     * @param faction the Faction that was renamed.
+     * @param oldName the name it was added with.
+     */
+    public void rename(Faction faction, String oldName);
+
+    /**
+     * @param name the name of the Faction, in any case.
+     *
+     * @return the Faction with the given name, or {@code null} if there is none.
+     */
+    public Faction get(String name);
+
+    /**
+     * @param id the id of the Faction.
+     *
+     * @return the Faction with the given id, or {@code null} if there is none.
+     */
+    public Faction get(long id);
+
+    /**
+     * Lists the Factions whose names start with the given prefix, ignoring case, in alphabetical order. This takes time
+     * in proportion to the length of the prefix and the number of Factions listed, not the number of Factions there are.
+     *
+     * @param prefix the start of the names.
+     * @param limit  the most Factions to list.
+     *
+     * @return the Factions.
+     */
+    public List<Faction> startingWith(String prefix, int limit);
+
+    /**
+     * Lists the Factions whose names are within the given number of edits of the given name, ignoring case. The closest
+     * Factions come first, and Factions that are just as close are in alphabetical order.
+     *
+     * @param name        the name that was typed.
+     * @param maxDistance the most edits a name can be away from the typed one.
+     * @param limit       the most Factions to list.
+     *
+     * @return the Factions.
+     */
+    public List<Faction> similarTo(String name, int maxDistance, int limit);
+
+    /**
+     * @return a view of every Faction that can't be modified.
+     */
+    public Collection<Faction> values();
+
+    /**
+     * @return how many Factions are indexed.
+     */
+    public int size();
+
+}
@@ -0,0 +1,55 @@
+package com.ziluck.factions.data.index;
+
+import com.ziluck.factions.configuration.Config;
+import com.ziluck.factions.configuration.struct.Optimization;
+
+/**
+ * Chooses the indexes and caching that match the configured {@link Optimization}.
+ * <p>
+ * The optimization is read once, the first time this class is used, which is after the config has been loaded and
+ * before any FactionStore or UserStore is created. Changing it takes a restart, just as it always has since the stores
+ * build their indexes when they are created. Because the choice is a constant from then on, the JIT can drop the branch
+ * for the other optimization entirely, and each store only ever calls the one index implementation it was given.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public final class IndexStrategy
+{
+
+    private static final Optimization OPTIMIZATION = Config.OPTIMIZATION.getValue();
+
+    private static final boolean CACHE_DERIVED = OPTIMIZATION == Optimization.PROCESS;
+
+    private IndexStrategy()
+    {
+    }
+
+    /**
+     * @return a new, empty index of Factions for the configured optimization.
+     */
+    public static FactionIndex newFactionIndex()
+    {
+        return OPTIMIZATION == Optimization.MEMORY ? new MemoryFactionIndex() : new ProcessFactionIndex();
+    }
+
+    /**
+     * @return a new, empty index of online Users for the configured optimization.
+     */
+    public static UserIndex newUserIndex()
+    {
+        return OPTIMIZATION == Optimization.MEMORY ? new MemoryUserIndex() : new ProcessUserIndex();
+    }
+
+    /**
+     * Values that are derived from others, such as the lowercase stub of a name or the User of a Transaction, can either
+     * be kept once calculated or calculated every time they are needed.
+     *
+     * @return {@code true} if derived values should be kept.
+     */
+    public static boolean cachesDerivedValues()
+    {
+        return CACHE_DERIVED;
+    }
+
+}
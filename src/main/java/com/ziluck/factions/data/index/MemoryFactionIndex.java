@@ -0,0 +1,215 @@
+package com.ziluck.factions.data.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+import org.apache.commons.lang.Validate;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.utils.EditDistance;
+
+/**
+ * A {@link FactionIndex} that keeps the Factions in sorted arrays by their name ignoring case and by their id, and finds
+ * them by binary search.
+ * <p>
+ * This holds no hash tables, boxed ids, or lowercase copies of names as Strings, so it takes far less memory than
+ * {@link ProcessFactionIndex}, while each lookup still only takes O(log n) comparisons and allocates nothing. Finding
+ * similar names keeps no index at all and measures the distance to every name instead, so it costs O(n) distance
+ * checks each time a typed name does not exist.
+ * </p>
+ * <p>
+ * The arrays can't be read while they are changed, so every lookup holds a lock that any number of lookups can hold at
+ * once, and only waits while a Faction is being added, removed, or renamed. {@link #values()} is a copy, since the
+ * arrays can change while it is being read. Finding similar names also only copies the Factions and their names while
+ * holding the lock and measures the distances after releasing it, so a slow search never holds up a rename.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class MemoryFactionIndex implements FactionIndex
+{
+
+    private final SortedNameArray<Faction> byName = new SortedNameArray<>();
+
+    private final SortedLongArray<Faction> byId = new SortedLongArray<>();
+
+    private final StampedLock lock = new StampedLock();
+
+    @Override
+    public void add(Faction faction)
+    {
+        Validate.notNull(faction, "Faction can't be null.");
+
+        long stamp = lock.writeLock();
+        try
+        {
+            byName.put(faction.getName(), faction);
+            byId.put(faction.getId(), faction);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void remove(Faction faction)
+    {
+        Validate.notNull(faction, "Faction can't be null.");
+
+        long stamp = lock.writeLock();
+        try
+        {
+            byName.remove(faction.getName(), faction);
+            byId.remove(faction.getId(), faction);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void rename(Faction faction, String oldName)
+    {
+        Validate.notNull(faction, "Faction can't be null.");
+        Validate.notNull(oldName, "Old name can't be null.");
+
+        long stamp = lock.writeLock();
+        try
+        {
+            if (byName.remove(oldName, faction))
+            {
+                byName.put(faction.getName(), faction);
+            }
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Faction get(String name)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return byName.get(name);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Faction get(long id)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return byId.get(id);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Faction> startingWith(String prefix, int limit)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return byName.startingWith(prefix, limit);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Faction> similarTo(String name, int maxDistance, int limit)
+    {
+        Faction[] factions;
+        String[] names;
+        long stamp = lock.readLock();
+        try
+        {
+            // copying the references is far quicker than measuring every distance, so only that is done under the lock
+            factions = byId.values().toArray(new Faction[0]);
+            names = new String[factions.length];
+            for (int i = 0; i < factions.length; i++)
+            {
+                names[i] = factions[i].getName();
+            }
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+
+        // one list for each distance, so that the closest names come first without sorting by distance
+        List<List<Integer>> byDistance = new ArrayList<>(maxDistance + 1);
+        for (int i = 0; i <= maxDistance; i++)
+        {
+            byDistance.add(new ArrayList<>());
+        }
+        for (int i = 0; i < factions.length; i++)
+        {
+            int distance = EditDistance.bounded(name, names[i], maxDistance);
+            if (distance <= maxDistance)
+            {
+                byDistance.get(distance).add(i);
+            }
+        }
+
+        List<Faction> similar = new ArrayList<>();
+        for (List<Integer> matches : byDistance)
+        {
+            // sorted by the copied names, since a Faction may be renamed while this runs
+            matches.sort(Comparator.comparing(i -> names[i], String.CASE_INSENSITIVE_ORDER));
+            for (int i = 0; i < matches.size() && similar.size() < limit; i++)
+            {
+                similar.add(factions[matches.get(i)]);
+            }
+        }
+        return similar;
+    }
+
+    @Override
+    public Collection<Faction> values()
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return Collections.unmodifiableList(new ArrayList<>(byId.values()));
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return byId.size();
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.ziluck.factions.data.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+import org.apache.commons.lang.Validate;
+
+import com.ziluck.factions.base.User;
+
+/**
+ * A {@link UserIndex} that keeps the online Users in sorted arrays by their UUID, their name ignoring case, and their
+ * internal id, and finds them by binary search.
+ * <p>
+ * This holds no hash tables, boxed keys, or lowercase copies of names as Strings, so it takes far less memory than
+ * {@link ProcessUserIndex}, while each lookup still only takes O(log n) comparisons and allocates nothing.
+ * </p>
+ * <p>
+ * The arrays can't be read while they are changed, so every lookup holds a lock that any number of lookups can hold at
+ * once, and only waits while a User is being added or removed. {@link #values()} is a copy, since the arrays can change
+ * while it is being read.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class MemoryUserIndex implements UserIndex
+{
+
+    private final SortedUuidArray<User> byUuid = new SortedUuidArray<>();
+
+    private final SortedNameArray<User> byName = new SortedNameArray<>();
+
+    private final SortedLongArray<User> byId = new SortedLongArray<>();
+
+    private final StampedLock lock = new StampedLock();
+
+    @Override
+    public void add(User user)
+    {
+        Validate.notNull(user, "User can't be null.");
+
+        long stamp = lock.writeLock();
+        try
+        {
+            User old = byUuid.put(user.getUniqueId(), user);
+            if (old != null && old != user)
+            {
+                byName.remove(old.getName(), old);
+                byId.remove(old.getId(), old);
+            }
+            byName.put(user.getName(), user);
+            byId.put(user.getId(), user);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(User user)
+    {
+        Validate.notNull(user, "User can't be null.");
+
+        long stamp = lock.writeLock();
+        try
+        {
+            if (!byUuid.remove(user.getUniqueId(), user))
+            {
+                return false;
+            }
+            byName.remove(user.getName(), user);
+            byId.remove(user.getId(), user);
+            return true;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public User get(UUID uuid)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return uuid == null ? null : byUuid.get(uuid);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public User get(String name)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return name == null ? null : byName.get(name);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public User get(long id)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return byId.get(id);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<User> startingWith(String prefix, int limit)
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return byName.startingWith(prefix, limit);
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Collection<User> values()
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return Collections.unmodifiableList(new ArrayList<>(byId.values()));
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        long stamp = lock.readLock();
+        try
+        {
+            return byUuid.size();
+        }
+        finally
+        {
+            lock.unlockRead(stamp);
+        }
+    }
+
+}
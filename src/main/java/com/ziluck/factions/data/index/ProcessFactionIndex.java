@@ -0,0 +1,173 @@
+package com.ziluck.factions.data.index;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+import org.apache.commons.lang.Validate;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.utils.ConcurrentLongObjectMap;
+import com.ziluck.factions.utils.PrefixTrie;
+import com.ziluck.factions.utils.TrigramIndex;
+
+/**
+ * A {@link FactionIndex} that keeps the Factions in a hash map by their stub and a {@link ConcurrentLongObjectMap} by
+ * their id, so finding one either way is a single probe. The names are also kept in a {@link PrefixTrie} to list the
+ * Factions that start with a prefix, and in a {@link TrigramIndex} to find the Factions with names spelled almost like
+ * another.
+ * <p>
+ * Both hash maps are concurrent, so finding a Faction by its name or id never locks. The trie and the trigrams can't be
+ * read while they are changed, so they are guarded by a lock that any number of completions can hold at once. Finding
+ * similar names writes to scratch space in the trigram index, so it holds the lock alone, which is fine since it is only
+ * done when a name that was typed does not exist.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class ProcessFactionIndex implements FactionIndex
+{
+
+    private final Map<String, Faction> byStub = new ConcurrentHashMap<>();
+
+    private final ConcurrentLongObjectMap<Faction> byId = new ConcurrentLongObjectMap<>();
+
+    private final PrefixTrie<Faction> names = new PrefixTrie<>();
+
+    private final TrigramIndex<Faction> spellings = new TrigramIndex<>();
+
+    private final StampedLock namesLock = new StampedLock();
+
+    private final Collection<Faction> factions = Collections.unmodifiableCollection(byStub.values());
+
+    @Override
+    public synchronized void add(Faction faction)
+    {
+        Validate.notNull(faction, "Faction can't be null.");
+
+        byStub.put(faction.getStub(), faction);
+        byId.put(faction.getId(), faction);
+
+        long stamp = namesLock.writeLock();
+        try
+        {
+            names.put(faction.getName(), faction);
+            spellings.put(faction.getName(), faction);
+        }
+        finally
+        {
+            namesLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public synchronized void remove(Faction faction)
+    {
+        Validate.notNull(faction, "Faction can't be null.");
+
+        byStub.remove(faction.getStub(), faction);
+        if (byId.get(faction.getId()) == faction)
+        {
+            byId.remove(faction.getId());
+        }
+
+        long stamp = namesLock.writeLock();
+        try
+        {
+            names.remove(faction.getName(), faction);
+            spellings.remove(faction.getName(), faction);
+        }
+        finally
+        {
+            namesLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public synchronized void rename(Faction faction, String oldName)
+    {
+        Validate.notNull(faction, "Faction can't be null.");
+        Validate.notNull(oldName, "Old name can't be null.");
+
+        String oldStub = oldName.toLowerCase();
+        if (byStub.get(oldStub) != faction)
+        {
+            return;
+        }
+        // added under the new name first, so that the Faction can always be found by one of them
+        byStub.put(faction.getStub(), faction);
+        if (!oldStub.equals(faction.getStub()))
+        {
+            byStub.remove(oldStub, faction);
+        }
+
+        long stamp = namesLock.writeLock();
+        try
+        {
+            names.remove(oldName, faction);
+            spellings.remove(oldName, faction);
+            names.put(faction.getName(), faction);
+            spellings.put(faction.getName(), faction);
+        }
+        finally
+        {
+            namesLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Faction get(String name)
+    {
+        return byStub.get(name.toLowerCase());
+    }
+
+    @Override
+    public Faction get(long id)
+    {
+        return byId.get(id);
+    }
+
+    @Override
+    public List<Faction> startingWith(String prefix, int limit)
+    {
+        long stamp = namesLock.readLock();
+        try
+        {
+            return names.startingWith(prefix, limit);
+        }
+        finally
+        {
+            namesLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Faction> similarTo(String name, int maxDistance, int limit)
+    {
+        long stamp = namesLock.writeLock();
+        try
+        {
+            return spellings.similarTo(name, maxDistance, limit);
+        }
+        finally
+        {
+            namesLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Collection<Faction> values()
+    {
+        return factions;
+    }
+
+    @Override
+    public int size()
+    {
+        return byStub.size();
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.ziluck.factions.data.index;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+import org.apache.commons.lang.Validate;
+
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.utils.ConcurrentLongObjectMap;
+import com.ziluck.factions.utils.PrefixTrie;
+
+/**
+ * A {@link UserIndex} that keeps every online User in a hash index by their UUID, their name ignoring case, and their
+ * internal id.
+ * <p>
+ * The three indexes are only changed together by {@link #add(User)} and {@link #remove(User)}, so a User can be found by
+ * any of them exactly while they are online and every lookup is a single hash probe. The ids are kept in a
+ * {@link ConcurrentLongObjectMap} so that looking a User up by id never boxes it. The names are also kept in a
+ * {@link PrefixTrie} so that completing a name only visits the Users that match it.
+ * </p>
+ * <p>
+ * The hash indexes are concurrent, so looking a User up never locks. The trie can't be read while it is changed, so it
+ * is guarded by a lock that any number of completions can hold at once.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class ProcessUserIndex implements UserIndex
+{
+
+    private final Map<UUID, User> byUuid = new ConcurrentHashMap<>();
+
+    private final Map<String, User> byName = new ConcurrentHashMap<>();
+
+    private final ConcurrentLongObjectMap<User> byId = new ConcurrentLongObjectMap<>();
+
+    private final PrefixTrie<User> names = new PrefixTrie<>();
+
+    private final StampedLock namesLock = new StampedLock();
+
+    private final Collection<User> users = Collections.unmodifiableCollection(byUuid.values());
+
+    @Override
+    public synchronized void add(User user)
+    {
+        Validate.notNull(user, "User can't be null.");
+
+        // indexed by name and id first, so that anyone who finds the User by UUID can find them every other way too
+        byName.put(key(user.getName()), user);
+        byId.put(user.getId(), user);
+        User old = byUuid.put(user.getUniqueId(), user);
+        if (old != null && old != user)
+        {
+            byName.remove(key(old.getName()), old);
+            if (byId.get(old.getId()) == old)
+            {
+                byId.remove(old.getId());
+            }
+        }
+
+        long stamp = namesLock.writeLock();
+        try
+        {
+            if (old != null && old != user)
+            {
+                names.remove(old.getName(), old);
+            }
+            names.put(user.getName(), user);
+        }
+        finally
+        {
+            namesLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public synchronized boolean remove(User user)
+    {
+        Validate.notNull(user, "User can't be null.");
+
+        if (!byUuid.remove(user.getUniqueId(), user))
+        {
+            return false;
+        }
+        byName.remove(key(user.getName()), user);
+        if (byId.get(user.getId()) == user)
+        {
+            byId.remove(user.getId());
+        }
+
+        long stamp = namesLock.writeLock();
+        try
+        {
+            names.remove(user.getName(), user);
+        }
+        finally
+        {
+            namesLock.unlockWrite(stamp);
+        }
+        return true;
+    }
+
+    @Override
+    public User get(UUID uuid)
+    {
+        return uuid == null ? null : byUuid.get(uuid);
+    }
+
+    @Override
+    public User get(String name)
+    {
+        return name == null ? null : byName.get(key(name));
+    }
+
+    @Override
+    public User get(long id)
+    {
+        return byId.get(id);
+    }
+
+    @Override
+    public List<User> startingWith(String prefix, int limit)
+    {
+        long stamp = namesLock.readLock();
+        try
+        {
+            return names.startingWith(prefix, limit);
+        }
+        finally
+        {
+            namesLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Collection<User> values()
+    {
+        return users;
+    }
+
+    @Override
+    public int size()
+    {
+        return byUuid.size();
+    }
+
+    private static String key(String name)
+    {
+        return name.toLowerCase();
+    }
+
+}
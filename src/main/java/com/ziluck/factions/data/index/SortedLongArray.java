@@ -0,0 +1,121 @@
+package com.ziluck.factions.data.index;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Values kept by a {@code long} key in sorted parallel arrays, found by binary search. This takes a fraction of the
+ * memory of a hash map, and the values can be read in key order through {@link #values()}.
+ *
+ * @param <V> the type of value.
+ *
+ * @author Michael Ziluck
+ */
+class SortedLongArray<V>
+{
+
+    private long[] keys = new long[8];
+
+    private Object[] values = new Object[8];
+
+    private int size;
+
+    private final List<V> view = new AbstractList<V>()
+    {
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(int index)
+        {
+            if (index >= size)
+            {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return (V) values[index];
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+    };
+
+    /**
+     * Sets the value of the given key, replacing any value it already had.
+     *
+     * @param key   the key.
+     * @param value the value.
+     */
+    void put(long key, V value)
+    {
+        int slot = Arrays.binarySearch(keys, 0, size, key);
+        if (slot >= 0)
+        {
+            values[slot] = value;
+            return;
+        }
+        slot = -slot - 1;
+        if (size == keys.length)
+        {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(keys, slot, keys, slot + 1, size - slot);
+        System.arraycopy(values, slot, values, slot + 1, size - slot);
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * Removes the given key if it has the given value.
+     *
+     * @param key   the key.
+     * @param value the value.
+     *
+     * @return {@code true} if it was removed.
+     */
+    boolean remove(long key, V value)
+    {
+        int slot = Arrays.binarySearch(keys, 0, size, key);
+        if (slot < 0 || values[slot] != value)
+        {
+            return false;
+        }
+        size--;
+        System.arraycopy(keys, slot + 1, keys, slot, size - slot);
+        System.arraycopy(values, slot + 1, values, slot, size - slot);
+        values[size] = null;
+        return true;
+    }
+
+    /**
+     * @param key the key.
+     *
+     * @return the value of the key, or {@code null} if it has none.
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key)
+    {
+        int slot = Arrays.binarySearch(keys, 0, size, key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /**
+     * @return a view of the values in key order. It can't be modified, and it changes as the array does.
+     */
+    List<V> values()
+    {
+        return view;
+    }
+
+    /**
+     * @return how many keys have a value.
+     */
+    int size()
+    {
+        return size;
+    }
+
+}
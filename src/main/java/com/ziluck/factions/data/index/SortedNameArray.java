@@ -0,0 +1,237 @@
+package com.ziluck.factions.data.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Values kept by name ignoring case in sorted parallel arrays, found by binary search.
+ * <p>
+ * Each name is lowercased once when it is added and kept as UTF-8 bytes, which for the names players use is half the
+ * size of the characters of a String. Looking up an ASCII name compares its characters against the bytes directly, so
+ * nothing is allocated; any other name is encoded once per lookup instead of once per comparison. Adding and removing
+ * shift the arrays, which is fine for values that come and go far less often than they are looked up.
+ * </p>
+ *
+ * @param <V> the type of value.
+ *
+ * @author Michael Ziluck
+ */
+class SortedNameArray<V>
+{
+
+    private byte[][] names = new byte[8][];
+
+    private Object[] values = new Object[8];
+
+    private int size;
+
+    /**
+     * Sets the value of the given name, replacing any value it already had.
+     *
+     * @param name  the name.
+     * @param value the value.
+     */
+    void put(String name, V value)
+    {
+        byte[] key = normalize(name);
+        int slot = search(key);
+        if (slot >= 0)
+        {
+            values[slot] = value;
+            return;
+        }
+        slot = -slot - 1;
+        if (size == names.length)
+        {
+            names = Arrays.copyOf(names, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(names, slot, names, slot + 1, size - slot);
+        System.arraycopy(values, slot, values, slot + 1, size - slot);
+        names[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * Removes the given name if it has the given value.
+     *
+     * @param name  the name.
+     * @param value the value.
+     *
+     * @return {@code true} if it was removed.
+     */
+    boolean remove(String name, V value)
+    {
+        int slot = search(name);
+        if (slot < 0 || values[slot] != value)
+        {
+            return false;
+        }
+        size--;
+        System.arraycopy(names, slot + 1, names, slot, size - slot);
+        System.arraycopy(values, slot + 1, values, slot, size - slot);
+        names[size] = null;
+        values[size] = null;
+        return true;
+    }
+
+    /**
+     * @param name the name, in any case.
+     *
+     * @return the value of the name, or {@code null} if it has none.
+     */
+    @SuppressWarnings("unchecked")
+    V get(String name)
+    {
+        int slot = search(name);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /**
+     * Lists the values of the names that start with the given prefix, ignoring case. The names are sorted, so they are
+     * all next to each other and only the first of them has to be searched for.
+     *
+     * @param prefix the start of the names.
+     * @param limit  the most values to list.
+     *
+     * @return the values, in the order of their lowercase names.
+     */
+    @SuppressWarnings("unchecked")
+    List<V> startingWith(String prefix, int limit)
+    {
+        byte[] key = normalize(prefix);
+        int slot = search(key);
+        if (slot < 0)
+        {
+            slot = -slot - 1;
+        }
+        List<V> found = new ArrayList<>();
+        for (int i = slot; i < size && found.size() < limit && startsWith(names[i], key); i++)
+        {
+            found.add((V) values[i]);
+        }
+        return found;
+    }
+
+    /**
+     * @return how many names have a value.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    private int search(String name)
+    {
+        for (int i = 0; i < name.length(); i++)
+        {
+            if (name.charAt(i) >= 0x80)
+            {
+                return search(normalize(name));
+            }
+        }
+
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int compare = compareAscii(names[mid], name);
+            if (compare < 0)
+            {
+                low = mid + 1;
+            }
+            else if (compare > 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int search(byte[] key)
+    {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int compare = compare(names[mid], key);
+            if (compare < 0)
+            {
+                low = mid + 1;
+            }
+            else if (compare > 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Compares a stored name against an ASCII name as if the ASCII name had been lowercased and encoded, which for ASCII
+     * is one byte per character.
+     */
+    private static int compareAscii(byte[] stored, String name)
+    {
+        int length = Math.min(stored.length, name.length());
+        for (int i = 0; i < length; i++)
+        {
+            int difference = (stored[i] & 0xFF) - Character.toLowerCase(name.charAt(i));
+            if (difference != 0)
+            {
+                return difference;
+            }
+        }
+        return stored.length - name.length();
+    }
+
+    private static int compare(byte[] first, byte[] second)
+    {
+        int length = Math.min(first.length, second.length);
+        for (int i = 0; i < length; i++)
+        {
+            int difference = (first[i] & 0xFF) - (second[i] & 0xFF);
+            if (difference != 0)
+            {
+                return difference;
+            }
+        }
+        return first.length - second.length;
+    }
+
+    private static boolean startsWith(byte[] name, byte[] prefix)
+    {
+        if (name.length < prefix.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++)
+        {
+            if (name[i] != prefix[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] normalize(String name)
+    {
+        return name.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.ziluck.factions.data.index;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Values kept by UUID in sorted parallel arrays of the two halves of each UUID, found by binary search. No UUID objects
+ * are kept, so each entry takes two {@code long}s and a reference.
+ *
+ * @param <V> the type of value.
+ *
+ * @author Michael Ziluck
+ */
+class SortedUuidArray<V>
+{
+
+    private long[] most = new long[8];
+
+    private long[] least = new long[8];
+
+    private Object[] values = new Object[8];
+
+    private int size;
+
+    /**
+     * Sets the value of the given UUID, replacing any value it already had.
+     *
+     * @param uuid  the UUID.
+     * @param value the value.
+     *
+     * @return the value it replaced, or {@code null} if it had none.
+     */
+    @SuppressWarnings("unchecked")
+    V put(UUID uuid, V value)
+    {
+        int slot = search(uuid);
+        if (slot >= 0)
+        {
+            V old = (V) values[slot];
+            values[slot] = value;
+            return old;
+        }
+        slot = -slot - 1;
+        if (size == most.length)
+        {
+            most = Arrays.copyOf(most, size * 2);
+            least = Arrays.copyOf(least, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(most, slot, most, slot + 1, size - slot);
+        System.arraycopy(least, slot, least, slot + 1, size - slot);
+        System.arraycopy(values, slot, values, slot + 1, size - slot);
+        most[slot] = uuid.getMostSignificantBits();
+        least[slot] = uuid.getLeastSignificantBits();
+        values[slot] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes the given UUID if it has the given value.
+     *
+     * @param uuid  the UUID.
+     * @param value the value.
+     *
+     * @return {@code true} if it was removed.
+     */
+    boolean remove(UUID uuid, V value)
+    {
+        int slot = search(uuid);
+        if (slot < 0 || values[slot] != value)
+        {
+            return false;
+        }
+        size--;
+        System.arraycopy(most, slot + 1, most, slot, size - slot);
+        System.arraycopy(least, slot + 1, least, slot, size - slot);
+        System.arraycopy(values, slot + 1, values, slot, size - slot);
+        values[size] = null;
+        return true;
+    }
+
+    /**
+     * @param uuid the UUID.
+     *
+     * @return the value of the UUID, or {@code null} if it has none.
+     */
+    @SuppressWarnings("unchecked")
+    V get(UUID uuid)
+    {
+        int slot = search(uuid);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /**
+     * @return how many UUIDs have a value.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    private int search(UUID uuid)
+    {
+        long mostBits = uuid.getMostSignificantBits();
+        long leastBits = uuid.getLeastSignificantBits();
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int compare = most[mid] != mostBits ? Long.compare(most[mid], mostBits) : Long.compare(least[mid], leastBits);
+            if (compare < 0)
+            {
+                low = mid + 1;
+            }
+            else if (compare > 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.ziluck.factions.data.index;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import com.ziluck.factions.base.User;
+
+/**
+ * Every online {@link User}, found by their UUID, their name ignoring case, or their internal id.
+ * <p>
+ * Which implementation is used is chosen once by {@link IndexStrategy} when the UserStore is created, so the UserStore
+ * only ever calls one of them.
+ * </p>
+ * <p>
+ * Every implementation can be read from any thread while it is being changed. A lookup sees every User that was added
+ * before it started and not removed since, and {@link #values()} can be iterated from any thread. Users are only added
+ * and removed from the main thread, but the implementations don't rely on it.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public interface UserIndex
+{
+
+    /**
+     * Adds the given User, replacing whoever was online with the same UUID.
+     *
+     * @param user the User that came online.
+     */
+    public void add(User user);
+
+    /**
+     * Removes the given User.
+     *
+     * @param user the User that went offline.
+     *
+     * @return {@code true} if the User was online.
+     */
+    public boolean remove(User user);
+
+    /**
+     * @param uuid the UUID of the User.
+     *
+     * @return the online User with the given UUID, or {@code null} if they are not online.
+     */
+    public User get(UUID uuid);
+
+    /**
+     * @param name the name of the User, in any case.
+     *
+     * @return the online User with the given name, or {@code null} if they are not online.
+     */
+    public User get(String name);
+
+    /**
+     * @param id the internal id of the User.
+     *
+     * @return the online User with the given id, or {@code null} if they are not online.
+     */
+    public User get(long id);
+
+    /**
+     * Lists the online Users whose names start with the given prefix, ignoring case, in alphabetical order of their
+     * names.
+     *
+     * @param prefix the start of the names.
+     * @param limit  the most Users to list.
+     *
+     * @return the Users.
+     */
+    public List<User> startingWith(String prefix, int limit);
+
+    /**
+     * @return a view of every online User that can't be modified.
+     */
+    public Collection<User> values();
+
+    /**
+     * @return how many Users are online.
+     */
+    public int size();
+
+}
@@ -0,0 +1,4 @@
+/**
+ * The in-memory indexes of the loaded Factions and online Users, chosen once by the configured optimization
+ */
+package com.ziluck.factions.data.index;
@@ -0,0 +1,74 @@
+package com.ziluck.factions.data.migration;
+
+import java.util.List;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.User;
+
+/**
+ * A database that Users and Factions can be migrated from or to.
+ * <p>
+ * Reading is done in pages ordered by the internal id so that a migration never has to hold more than a few pages in
+ * memory, and so that it can resume after the last id it finished writing. None of these methods touch the active
+ * {@link com.ziluck.factions.base.UserStore} or {@link com.ziluck.factions.base.FactionStore}, and they may be called
+ * from any thread.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public interface MigrationBackend
+{
+
+    /**
+     * Reads the next page of Users.
+     *
+     * @param afterId only Users with an id greater than this are read.
+     * @param limit   the most Users to read.
+     *
+     * @return the read Users ordered by their id. An empty list means there are no Users left.
+     */
+    public List<User> readUsers(long afterId, int limit);
+
+    /**
+     * Reads the next page of Factions along with their warps, claims, and transactions.
+     *
+     * @param afterId only Factions with an id greater than this are read.
+     * @param limit   the most Factions to read.
+     *
+     * @return the read Factions ordered by their id. An empty list means there are no Factions left.
+     */
+    public List<Faction> readFactions(long afterId, int limit);
+
+    /**
+     * Copies a User from another backend into this backend's implementation.
+     *
+     * @param user the User to copy.
+     *
+     * @return the copy.
+     */
+    public User convertUser(User user);
+
+    /**
+     * Copies a Faction from another backend into this backend's implementation.
+     *
+     * @param faction the Faction to copy.
+     *
+     * @return the copy.
+     */
+    public Faction convertFaction(Faction faction);
+
+    /**
+     * Writes the given converted Users, replacing any that already exist with the same id.
+     *
+     * @param users the Users to write.
+     */
+    public void writeUsers(List<User> users);
+
+    /**
+     * Writes the given converted Factions, replacing any that already exist with the same id.
+     *
+     * @param factions the Factions to write.
+     */
+    public void writeFactions(List<Faction> factions);
+
+}
@@ -0,0 +1,141 @@
+package com.ziluck.factions.data.migration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Records how far a migration has gotten so that it can pick up where it left off if it is interrupted.
+ * <p>
+ * The checkpoint is rewritten after every batch. It is written to a temporary file first and then moved over the old
+ * one, so a crash while saving never leaves a corrupted checkpoint behind.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class MigrationCheckpoint
+{
+
+    private final File file;
+
+    private final Properties properties;
+
+    /**
+     * Loads the checkpoint stored in the given file. If the file does not exist, or it belongs to a migration between
+     * different databases, the migration starts over from the beginning.
+     *
+     * @param file   the file the checkpoint is stored in.
+     * @param source the name of the database being migrated from.
+     * @param target the name of the database being migrated to.
+     */
+    public MigrationCheckpoint(File file, String source, String target)
+    {
+        Validate.notNull(file, "File can't be null.");
+
+        this.file = file;
+        this.properties = new Properties();
+
+        if (file.exists())
+        {
+            try (InputStream in = new FileInputStream(file))
+            {
+                properties.load(in);
+            }
+            catch (IOException ex)
+            {
+                throw new IllegalStateException("Could not read the migration checkpoint.", ex);
+            }
+        }
+
+        if (!source.equals(properties.getProperty("source")) || !target.equals(properties.getProperty("target")))
+        {
+            properties.clear();
+            properties.setProperty("source", source);
+            properties.setProperty("target", target);
+        }
+    }
+
+    /**
+     * Gets the id of the last entity of the given type that was written.
+     *
+     * @param type the type of entity.
+     *
+     * @return the last written id, or {@link Long#MIN_VALUE} if none have been written.
+     */
+    public synchronized long getLastId(String type)
+    {
+        return Long.parseLong(properties.getProperty(type + ".last-id", String.valueOf(Long.MIN_VALUE)));
+    }
+
+    /**
+     * Gets how many entities of the given type have been written.
+     *
+     * @param type the type of entity.
+     *
+     * @return the amount of written entities.
+     */
+    public synchronized long getCount(String type)
+    {
+        return Long.parseLong(properties.getProperty(type + ".count", "0"));
+    }
+
+    /**
+     * Records that a batch of entities has been written and saves the checkpoint.
+     *
+     * @param type   the type of entity.
+     * @param lastId the id of the last entity that was written.
+     * @param count  how many entities of that type have been written in total.
+     */
+    public synchronized void update(String type, long lastId, long count)
+    {
+        properties.setProperty(type + ".last-id", String.valueOf(lastId));
+        properties.setProperty(type + ".count", String.valueOf(count));
+        save();
+    }
+
+    /**
+     * @return {@code true} if the migration has already finished.
+     */
+    public synchronized boolean isComplete()
+    {
+        return Boolean.parseBoolean(properties.getProperty("complete"));
+    }
+
+    /**
+     * Records that the migration has finished and saves the checkpoint.
+     */
+    public synchronized void complete()
+    {
+        properties.setProperty("complete", "true");
+        save();
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and then moves it over the real one.
+     */
+    private void save()
+    {
+        File temp = new File(file.getPath() + ".tmp");
+        try
+        {
+            try (OutputStream out = new FileOutputStream(temp))
+            {
+                properties.store(out, "Factions storage migration progress. Delete this file to start over.");
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException ex)
+        {
+            throw new IllegalStateException("Could not save the migration checkpoint.", ex);
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+package com.ziluck.factions.data.migration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.logging.Logger;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.User;
+import org.apache.commons.lang.Validate;
+
+/**
+ * Streams every User and Faction from one database to another.
+ * <p>
+ * Each type of entity is moved through a three stage pipeline. A single reader pages through the source in order of
+ * id and hands the pages to a bounded queue. The pages are then converted to the target's implementation in parallel.
+ * Finally, the converted pages are written to the target in the same order they were read, and the checkpoint is
+ * updated after each one. Since the queue and the amount of pages being converted are both bounded, the memory used
+ * only depends on the batch size and the amount of threads, never on the size of the database.
+ * </p>
+ * <p>
+ * If the migration is interrupted, running it again with the same checkpoint continues after the last page that was
+ * written. Writing replaces entities with the same id, so a page that was written but not yet checkpointed is simply
+ * written again.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class StorageMigration
+{
+
+    private static final String USERS = "users";
+
+    private static final String FACTIONS = "factions";
+
+    private final MigrationBackend source;
+
+    private final MigrationBackend target;
+
+    private final MigrationCheckpoint checkpoint;
+
+    private final int batchSize;
+
+    private final int threads;
+
+    private final Logger logger;
+
+    /**
+     * Constructs a new StorageMigration.
+     *
+     * @param source     the database to read from.
+     * @param target     the database to write to.
+     * @param checkpoint where to record progress.
+     * @param batchSize  how many entities are read and written at a time.
+     * @param threads    how many pages can be converted at once.
+     * @param logger     where to report progress.
+     */
+    public StorageMigration(MigrationBackend source, MigrationBackend target, MigrationCheckpoint checkpoint, int batchSize, int threads, Logger logger)
+    {
+        Validate.notNull(source, "Source can't be null.");
+        Validate.notNull(target, "Target can't be null.");
+        Validate.notNull(checkpoint, "Checkpoint can't be null.");
+        Validate.notNull(logger, "Logger can't be null.");
+
+        this.source = source;
+        this.target = target;
+        this.checkpoint = checkpoint;
+        this.batchSize = Math.max(1, batchSize);
+        this.threads = Math.max(1, threads);
+        this.logger = logger;
+    }
+
+    /**
+     * Runs the migration on the calling thread until every User and Faction has been written. Users are migrated before
+     * Factions. If the checkpoint says this migration already finished, nothing is done.
+     *
+     * @return {@code true} if anything was migrated.
+     */
+    public boolean run()
+    {
+        if (checkpoint.isComplete())
+        {
+            logger.info("The storage migration has already been completed. Delete the checkpoint to run it again.");
+            return false;
+        }
+
+        // one extra thread for the reader
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try
+        {
+            long users = migrate(USERS, source::readUsers, target::convertUser, target::writeUsers, User::getId, executor);
+            long factions = migrate(FACTIONS, source::readFactions, target::convertFaction, target::writeFactions, Faction::getId, executor);
+            checkpoint.complete();
+
+            logger.info("Finished migrating " + users + " users and " + factions + " factions.");
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The storage migration was interrupted.", ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw new IllegalStateException("The storage migration failed. Running it again will resume from the last checkpoint.", ex.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return true;
+    }
+
+    /**
+     * Moves every entity of a single type through the pipeline.
+     *
+     * @param type      the name of the type, used for the checkpoint.
+     * @param reader    reads a page from the source.
+     * @param converter converts an entity to the target's implementation.
+     * @param writer    writes a page to the target.
+     * @param id        gets the id of an entity.
+     * @param executor  the threads to read and convert with.
+     * @param <T>       the type of entity.
+     *
+     * @return how many entities of this type have been migrated in total.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     * @throws ExecutionException   if reading, converting, or writing failed.
+     */
+    private <T> long migrate(String type, PageReader<T> reader, Function<T, T> converter, Consumer<List<T>> writer, ToLongFunction<T> id, ExecutorService executor)
+            throws InterruptedException, ExecutionException
+    {
+        BlockingQueue<List<T>> pages = new ArrayBlockingQueue<>(threads);
+        long start = checkpoint.getLastId(type);
+
+        Future<?> producer = executor.submit(() ->
+                                             {
+                                                 long after = start;
+                                                 List<T> page;
+                                                 do
+                                                 {
+                                                     page = reader.read(after, batchSize);
+                                                     // an empty page tells the writer that there is nothing left
+                                                     pages.put(page);
+                                                     if (!page.isEmpty())
+                                                     {
+                                                         after = id.applyAsLong(page.get(page.size() - 1));
+                                                     }
+                                                 }
+                                                 while (!page.isEmpty());
+                                                 return null;
+                                             });
+
+        Deque<Future<List<T>>> converting = new ArrayDeque<>(threads);
+        long count = checkpoint.getCount(type);
+        boolean reading = true;
+        try
+        {
+            while (reading || !converting.isEmpty())
+            {
+                if (reading && converting.size() < threads)
+                {
+                    List<T> page = nextPage(pages, producer);
+                    if (page.isEmpty())
+                    {
+                        reading = false;
+                    }
+                    else
+                    {
+                        converting.add(executor.submit(() -> convert(page, converter)));
+                    }
+                    continue;
+                }
+
+                List<T> converted = converting.poll().get();
+                writer.accept(converted);
+                count += converted.size();
+                checkpoint.update(type, id.applyAsLong(converted.get(converted.size() - 1)), count);
+
+                logger.info("Migrated " + count + " " + type + ".");
+            }
+        }
+        finally
+        {
+            producer.cancel(true);
+            for (Future<List<T>> future : converting)
+            {
+                future.cancel(true);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Waits for the next page from the reader. If the reader fails, its exception is thrown instead of waiting forever.
+     *
+     * @param pages    the queue the reader fills.
+     * @param producer the reader.
+     * @param <T>      the type of entity.
+     *
+     * @return the next page.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     * @throws ExecutionException   if the reader failed.
+     */
+    private static <T> List<T> nextPage(BlockingQueue<List<T>> pages, Future<?> producer) throws InterruptedException, ExecutionException
+    {
+        while (true)
+        {
+            List<T> page = pages.poll(100, TimeUnit.MILLISECONDS);
+            if (page != null)
+            {
+                return page;
+            }
+            if (producer.isDone())
+            {
+                // the reader always queues an empty page before finishing normally, so this only happens on failure
+                producer.get();
+                return pages.take();
+            }
+        }
+    }
+
+    /**
+     * Converts every entity of a page.
+     *
+     * @param page      the page to convert.
+     * @param converter converts a single entity.
+     * @param <T>       the type of entity.
+     *
+     * @return the converted page in the same order.
+     */
+    private static <T> List<T> convert(List<T> page, Function<T, T> converter)
+    {
+        List<T> converted = new ArrayList<>(page.size());
+        for (T entity : page)
+        {
+            converted.add(converter.apply(entity));
+        }
+        return converted;
+    }
+
+    /**
+     * Reads a page of entities after the given id.
+     *
+     * @param <T> the type of entity.
+     */
+    @FunctionalInterface
+    private interface PageReader<T>
+    {
+        List<T> read(long afterId, int limit);
+    }
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Moving Factions entities from one database to another
+ */
+package com.ziluck.factions.data.migration;
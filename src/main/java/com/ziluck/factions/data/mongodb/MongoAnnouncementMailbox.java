@@ -0,0 +1,253 @@
+package com.ziluck.factions.data.mongodb;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.ziluck.factions.data.AnnouncementMailbox;
+import com.ziluck.factions.data.IdAllocator;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+/**
+ * An AnnouncementMailbox stored in MongoDB.
+ * <p>
+ * Every message is a document in the "announcements" collection with the amount of players still waiting for it. Every
+ * player with messages waiting has a document in the "announcement_inboxes" collection that lists their ids in the
+ * order they were posted. Messages are deleted by MongoDB once they expire, and the ids left behind in an inbox are
+ * dropped the next time the player joins.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class MongoAnnouncementMailbox extends AnnouncementMailbox
+{
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    private final MongoCollection<Document> messages;
+
+    private final MongoCollection<Document> inboxes;
+
+    private final IdAllocator ids;
+
+    /**
+     * Constructs a new MongoAnnouncementMailbox.
+     *
+     * @param expiry how many milliseconds a message is kept before it is deleted.
+     */
+    public MongoAnnouncementMailbox(long expiry)
+    {
+        super(expiry);
+
+        MongoDatabase database = MongoWrapper.getInstance().getDatabase();
+        this.messages = database.getCollection("announcements");
+        this.inboxes = database.getCollection("announcement_inboxes");
+        this.ids = new MongoIdAllocator("announcements");
+
+        // each message stores when it expires, so changing the expiry never conflicts with the index
+        messages.createIndex(Indexes.ascending("expires"), new IndexOptions().expireAfter(0L, TimeUnit.SECONDS));
+    }
+
+    @Override
+    protected Inbox fetch(UUID recipient)
+    {
+        Document inbox = inboxes.find(Filters.eq("_id", recipient.toString())).first();
+        if (inbox == null)
+        {
+            return Inbox.empty();
+        }
+        long[] waiting = readIds(inbox);
+        Map<Long, String> bodies = readBodies(toList(waiting));
+
+        List<String> found = new ArrayList<>(bodies.size());
+        for (long id : waiting)
+        {
+            String body = bodies.get(id);
+            if (body != null)
+            {
+                found.add(body);
+            }
+        }
+        return new Inbox(waiting, found);
+    }
+
+    @Override
+    protected Multimap<UUID, String> fetch(Collection<UUID> recipients)
+    {
+        List<String> keys = new ArrayList<>(recipients.size());
+        for (UUID recipient : recipients)
+        {
+            keys.add(recipient.toString());
+        }
+
+        Map<UUID, long[]> waiting = new HashMap<>();
+        Set<Long> all = new HashSet<>();
+        for (Document inbox : inboxes.find(Filters.in("_id", keys)))
+        {
+            long[] ids = readIds(inbox);
+            waiting.put(UUID.fromString(inbox.getString("_id")), ids);
+            all.addAll(toList(ids));
+        }
+
+        Map<Long, String> bodies = readBodies(new ArrayList<>(all));
+        Multimap<UUID, String> found = ArrayListMultimap.create();
+        for (Map.Entry<UUID, long[]> entry : waiting.entrySet())
+        {
+            for (long id : entry.getValue())
+            {
+                String body = bodies.get(id);
+                if (body != null)
+                {
+                    found.put(entry.getKey(), body);
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    protected void write(Collection<Change> changes)
+    {
+        List<WriteModel<Document>> messageWrites = new ArrayList<>();
+        List<WriteModel<Document>> inboxWrites = new ArrayList<>();
+        for (Change change : changes)
+        {
+            if (change instanceof Post)
+            {
+                Post post = (Post) change;
+                Date expires = new Date(post.getExpires());
+                List<Long> posted = new ArrayList<>(post.getBodies().size());
+                for (String body : post.getBodies())
+                {
+                    long id = ids.nextId();
+                    posted.add(id);
+                    messageWrites.add(new InsertOneModel<>(new Document("_id", id).append("body", body)
+                                                                                  .append("expires", expires)
+                                                                                  .append("waiting", post.getRecipients().size())));
+                }
+                for (UUID recipient : post.getRecipients())
+                {
+                    inboxWrites.add(new UpdateOneModel<>(Filters.eq("_id", recipient.toString()), Updates.pushEach("messages", posted), UPSERT));
+                }
+            }
+            else
+            {
+                List<Long> released = release((Acknowledgement) change);
+                if (!released.isEmpty())
+                {
+                    // only messages that were actually still in the inbox are counted, so a repeated acknowledgement is harmless
+                    Bson filter = Filters.in("_id", released);
+                    messageWrites.add(new UpdateManyModel<>(filter, Updates.inc("waiting", -1)));
+                    messageWrites.add(new DeleteManyModel<>(Filters.and(filter, Filters.lte("waiting", 0))));
+                }
+            }
+        }
+
+        // the messages are written first so that an inbox never points at a message that was not written yet
+        if (!messageWrites.isEmpty())
+        {
+            messages.bulkWrite(messageWrites);
+        }
+        if (!inboxWrites.isEmpty())
+        {
+            inboxes.bulkWrite(inboxWrites);
+        }
+    }
+
+    /**
+     * Removes the acknowledged ids from the inbox of the player.
+     *
+     * @param acknowledgement the acknowledgement.
+     *
+     * @return the ids that were still in the inbox.
+     */
+    private List<Long> release(Acknowledgement acknowledgement)
+    {
+        Bson id = Filters.eq("_id", acknowledgement.getRecipient().toString());
+        if (acknowledgement.getIds() == null)
+        {
+            Document removed = inboxes.findOneAndDelete(id);
+            return removed == null ? new ArrayList<>() : toList(readIds(removed));
+        }
+
+        List<Long> acknowledged = toList(acknowledgement.getIds());
+        Document before = inboxes.findOneAndUpdate(id, Updates.pullAll("messages", acknowledged), new FindOneAndUpdateOptions().projection(Projections.include("messages")));
+        if (before == null)
+        {
+            return new ArrayList<>();
+        }
+        List<Long> released = toList(readIds(before));
+        released.retainAll(acknowledged);
+        inboxes.deleteOne(Filters.and(id, Filters.size("messages", 0)));
+        return released;
+    }
+
+    /**
+     * Reads the messages with the given ids that did not expire yet.
+     */
+    private Map<Long, String> readBodies(List<Long> ids)
+    {
+        Map<Long, String> bodies = new HashMap<>();
+        if (ids.isEmpty())
+        {
+            return bodies;
+        }
+        // the database only deletes expired messages every so often, so they are filtered out here too
+        for (Document message : messages.find(Filters.and(Filters.in("_id", ids), Filters.gt("expires", new Date())))
+                                        .projection(Projections.include("body")))
+        {
+            bodies.put(((Number) message.get("_id")).longValue(), message.getString("body"));
+        }
+        return bodies;
+    }
+
+    private static long[] readIds(Document inbox)
+    {
+        List<?> list = (List<?>) inbox.get("messages");
+        if (list == null)
+        {
+            return new long[0];
+        }
+        long[] ids = new long[list.size()];
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = ((Number) list.get(i)).longValue();
+        }
+        return ids;
+    }
+
+    private static List<Long> toList(long[] ids)
+    {
+        List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids)
+        {
+            list.add(id);
+        }
+        return list;
+    }
+
+}
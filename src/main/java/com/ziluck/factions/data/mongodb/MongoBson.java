@@ -0,0 +1,235 @@
+package com.ziluck.factions.data.mongodb;
+
+import java.util.UUID;
+
+import org.bson.BsonBinarySubType;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+
+import com.ziluck.factions.spatial.LazyLocation;
+
+/**
+ * Helpers shared by the hand-written codecs in {@link MongoCodecs}.
+ * <p>
+ * Reading is lenient about how numbers were stored, since documents written by the old reflective mapping may hold a
+ * long as an int32 or a double. Writing always uses a single representation per field.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+final class MongoBson
+{
+
+    private MongoBson()
+    {
+    }
+
+    /**
+     * Writes a string field, or a null if the value is {@code null}.
+     *
+     * @param writer the writer.
+     * @param name   the name of the field.
+     * @param value  the value.
+     */
+    static void writeString(BsonWriter writer, String name, String value)
+    {
+        if (value == null)
+        {
+            writer.writeNull(name);
+        }
+        else
+        {
+            writer.writeString(name, value);
+        }
+    }
+
+    /**
+     * Writes the name of an enum, or a null if the value is {@code null}.
+     *
+     * @param writer the writer.
+     * @param name   the name of the field.
+     * @param value  the value.
+     */
+    static void writeEnum(BsonWriter writer, String name, Enum<?> value)
+    {
+        writeString(writer, name, value == null ? null : value.name());
+    }
+
+    /**
+     * Reads a string value, which may be a null.
+     *
+     * @param reader the reader, positioned at the value.
+     *
+     * @return the string, or {@code null}.
+     */
+    static String readString(BsonReader reader)
+    {
+        if (reader.getCurrentBsonType() == BsonType.NULL)
+        {
+            reader.readNull();
+            return null;
+        }
+        return reader.readString();
+    }
+
+    /**
+     * Reads an enum stored by its name, which may be a null.
+     *
+     * @param <E>    the type of the enum.
+     * @param reader the reader, positioned at the value.
+     * @param type   the class of the enum.
+     *
+     * @return the enum, or {@code null}.
+     */
+    static <E extends Enum<E>> E readEnum(BsonReader reader, Class<E> type)
+    {
+        String value = readString(reader);
+        return value == null ? null : Enum.valueOf(type, value);
+    }
+
+    /**
+     * Reads a whole number however it was stored.
+     *
+     * @param reader the reader, positioned at the value.
+     *
+     * @return the number, or {@code 0} if it is a null.
+     */
+    static long readLong(BsonReader reader)
+    {
+        switch (reader.getCurrentBsonType())
+        {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            case DOUBLE:
+                return (long) reader.readDouble();
+            case NULL:
+                reader.readNull();
+                return 0;
+            default:
+                throw new IllegalStateException("Expected a number but found " + reader.getCurrentBsonType() + ".");
+        }
+    }
+
+    /**
+     * Reads a decimal number however it was stored.
+     *
+     * @param reader the reader, positioned at the value.
+     *
+     * @return the number, or {@code 0} if it is a null.
+     */
+    static double readDouble(BsonReader reader)
+    {
+        switch (reader.getCurrentBsonType())
+        {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            case DOUBLE:
+                return reader.readDouble();
+            case NULL:
+                reader.readNull();
+                return 0;
+            default:
+                throw new IllegalStateException("Expected a number but found " + reader.getCurrentBsonType() + ".");
+        }
+    }
+
+    /**
+     * Reads a UUID stored either as a string or as binary.
+     *
+     * @param reader the reader, positioned at the value.
+     *
+     * @return the UUID, or {@code null} if it is a null.
+     */
+    static UUID readUuid(BsonReader reader)
+    {
+        if (reader.getCurrentBsonType() == BsonType.BINARY)
+        {
+            boolean standard = reader.peekBinarySubType() == BsonBinarySubType.UUID_STANDARD.getValue();
+            byte[] bytes = reader.readBinaryData().getData();
+            long most = 0;
+            long least = 0;
+            for (int i = 0; i < 8; i++)
+            {
+                // the legacy Java representation stores each half little-endian
+                int shift = standard ? 56 - i * 8 : i * 8;
+                most |= (bytes[i] & 0xFFL) << shift;
+                least |= (bytes[i + 8] & 0xFFL) << shift;
+            }
+            return new UUID(most, least);
+        }
+        String value = readString(reader);
+        return value == null ? null : UUID.fromString(value);
+    }
+
+    /**
+     * Writes a location as a sub-document, or a null if the location is {@code null}.
+     *
+     * @param writer   the writer.
+     * @param name     the name of the field.
+     * @param location the location.
+     */
+    static void writeLocation(BsonWriter writer, String name, LazyLocation location)
+    {
+        if (location == null)
+        {
+            writer.writeNull(name);
+            return;
+        }
+        writer.writeStartDocument(name);
+        writer.writeDouble("x", location.getX());
+        writer.writeDouble("y", location.getY());
+        writer.writeDouble("z", location.getZ());
+        writeString(writer, "world", location.getWorldName());
+        writer.writeEndDocument();
+    }
+
+    /**
+     * Reads a location sub-document, which may be a null.
+     *
+     * @param reader the reader, positioned at the value.
+     *
+     * @return the location, or {@code null}.
+     */
+    static LazyLocation readLocation(BsonReader reader)
+    {
+        if (reader.getCurrentBsonType() == BsonType.NULL)
+        {
+            reader.readNull();
+            return null;
+        }
+
+        double x = 0;
+        double y = 0;
+        double z = 0;
+        String world = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+        {
+            switch (reader.readName())
+            {
+                case "x":
+                    x = readDouble(reader);
+                    break;
+                case "y":
+                    y = readDouble(reader);
+                    break;
+                case "z":
+                    z = readDouble(reader);
+                    break;
+                case "world":
+                    world = readString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new LazyLocation(x, y, z, world);
+    }
+
+}
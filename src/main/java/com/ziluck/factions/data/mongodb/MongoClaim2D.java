@@ -1,5 +1,6 @@
 package com.ziluck.factions.data.mongodb;
 
+import com.ziluck.factions.base.Faction;
 import com.ziluck.factions.base.claims.Claim2D;
 
 /**
@@ -8,4 +9,50 @@ import com.ziluck.factions.base.claims.Claim2D;
 public class MongoClaim2D extends Claim2D
 {
 
+    /**
+     * Empty constructor for the ORM to use.
+     */
+    public MongoClaim2D()
+    {
+    }
+
+    /**
+     * Creates a copy of a claim from another database, such as when migrating between databases.
+     *
+     * @param faction the faction that owns the claim.
+     * @param source  the claim to copy.
+     */
+    MongoClaim2D(Faction faction, Claim2D source)
+    {
+        this.faction = faction;
+        this.world = source.getWorldName();
+        this.x1 = source.getMinX();
+        this.z1 = source.getMinZ();
+        this.x2 = source.getMaxX();
+        this.z2 = source.getMaxZ();
+        this.cost = source.getCost();
+    }
+
+    /**
+     * Creates a claim read from the database.
+     *
+     * @param faction the faction that owns the claim.
+     * @param world   the name of the world.
+     * @param x1      the lowest x.
+     * @param x2      the greatest x.
+     * @param z1      the lowest z.
+     * @param z2      the greatest z.
+     * @param cost    what the claim cost.
+     */
+    MongoClaim2D(Faction faction, String world, double x1, double x2, double z1, double z2, double cost)
+    {
+        this.faction = faction;
+        this.world = world;
+        this.x1 = Math.min(x1, x2);
+        this.x2 = Math.max(x1, x2);
+        this.z1 = Math.min(z1, z2);
+        this.z2 = Math.max(z1, z2);
+        this.cost = cost;
+    }
+
 }
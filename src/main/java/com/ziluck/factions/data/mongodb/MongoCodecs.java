@@ -0,0 +1,430 @@
+package com.ziluck.factions.data.mongodb;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.UUID;
+
+import com.mongodb.MongoClient;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import com.ziluck.factions.base.Transaction;
+import com.ziluck.factions.base.Warp;
+import com.ziluck.factions.base.claims.Claim2D;
+import com.ziluck.factions.spatial.LazyLocation;
+
+/**
+ * The hand-written codecs that turn Factions, Users, Warps, and Transactions into BSON and back without reflection.
+ * <p>
+ * Each codec writes exactly the fields that are stored and nothing else, so nothing has to be kept out with a list of
+ * ignored properties. Reading skips any field it does not know, so documents written by the old reflective mapping,
+ * which also stored the results of getters such as "admins" or "peaceful", are still read. Those extra fields are
+ * dropped the next time the document is saved.
+ * </p>
+ * <p>
+ * Factions and Users read and write their own fields since those are only visible to their classes. Warps,
+ * Transactions, and claims are written from their public getters.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public final class MongoCodecs
+{
+
+    /**
+     * The codec for Factions.
+     */
+    public static final Codec<MongoFaction> FACTION = new FactionCodec();
+
+    /**
+     * The codec for Users.
+     */
+    public static final Codec<MongoUser> USER = new UserCodec();
+
+    /**
+     * The codec for Warps, which are stored inside of their Faction.
+     */
+    public static final Codec<MongoWarp> WARP = new WarpCodec();
+
+    /**
+     * The codec for Transactions, which are stored inside of their Faction.
+     */
+    public static final Codec<MongoTransaction> TRANSACTION = new TransactionCodec();
+
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    private MongoCodecs()
+    {
+    }
+
+    /**
+     * Creates a registry with these codecs ahead of the driver's default codecs.
+     *
+     * @return the registry.
+     */
+    public static CodecRegistry registry()
+    {
+        return CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(FACTION, USER, WARP, TRANSACTION),
+                                              MongoClient.getDefaultCodecRegistry());
+    }
+
+    /**
+     * Encodes the given entity into the bytes of a BSON document.
+     *
+     * @param <T>    the type of entity.
+     * @param codec  the codec of the entity.
+     * @param entity the entity.
+     *
+     * @return the document.
+     */
+    public static <T> byte[] toBytes(Codec<T> codec, T entity)
+    {
+        RawBsonDocument document = new RawBsonDocument(entity, codec);
+        ByteBuffer buffer = document.getByteBuffer().asNIO();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Decodes an entity from the bytes of a BSON document.
+     *
+     * @param <T>   the type of entity.
+     * @param codec the codec of the entity.
+     * @param bytes the document.
+     *
+     * @return the entity.
+     */
+    public static <T> T fromBytes(Codec<T> codec, byte[] bytes)
+    {
+        return decode(codec, ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes an entity from a raw document, such as one read without being decoded by the driver.
+     *
+     * @param <T>      the type of entity.
+     * @param codec    the codec of the entity.
+     * @param document the document.
+     *
+     * @return the entity.
+     */
+    public static <T> T fromRaw(Codec<T> codec, RawBsonDocument document)
+    {
+        return decode(codec, document.getByteBuffer().asNIO());
+    }
+
+    private static <T> T decode(Codec<T> codec, ByteBuffer buffer)
+    {
+        try (BsonBinaryReader reader = new BsonBinaryReader(buffer))
+        {
+            return codec.decode(reader, DECODER_CONTEXT);
+        }
+    }
+
+    /**
+     * Writes a Warp as a document. The name of the field must already have been written.
+     *
+     * @param writer the writer.
+     * @param warp   the Warp.
+     */
+    static void writeWarp(BsonWriter writer, Warp warp)
+    {
+        writer.writeStartDocument();
+        MongoBson.writeString(writer, "name", warp.getName());
+        MongoBson.writeLocation(writer, "location", warp.getLocation());
+        writer.writeBoolean("locked", warp.getPassword() != null);
+        MongoBson.writeString(writer, "password", warp.getPassword());
+        writer.writeEndDocument();
+    }
+
+    /**
+     * Writes a Transaction as a document. The name of the field must already have been written.
+     *
+     * @param writer      the writer.
+     * @param transaction the Transaction.
+     */
+    static void writeTransaction(BsonWriter writer, Transaction transaction)
+    {
+        writer.writeStartDocument();
+        UUID userId = transaction.getUserId();
+        MongoBson.writeString(writer, "uid", userId == null ? null : userId.toString());
+        if (transaction.getDate() == null)
+        {
+            writer.writeNull("date");
+        }
+        else
+        {
+            writer.writeDateTime("date", transaction.getDate().getTime());
+        }
+        writer.writeDouble("amount", transaction.getAmount());
+        writer.writeEndDocument();
+    }
+
+    /**
+     * Writes a claim as a document. The name of the field must already have been written.
+     *
+     * @param writer the writer.
+     * @param claim  the claim.
+     */
+    static void writeClaim(BsonWriter writer, Claim2D claim)
+    {
+        writer.writeStartDocument();
+        MongoBson.writeString(writer, "world", claim.getWorldName());
+        writer.writeDouble("x1", claim.getMinX());
+        writer.writeDouble("z1", claim.getMinZ());
+        writer.writeDouble("x2", claim.getMaxX());
+        writer.writeDouble("z2", claim.getMaxZ());
+        writer.writeDouble("cost", claim.getCost());
+        writer.writeEndDocument();
+    }
+
+    /**
+     * Reads a claim document for the given Faction.
+     *
+     * @param reader  the reader, positioned at the document.
+     * @param faction the Faction that owns the claim.
+     *
+     * @return the claim.
+     */
+    static MongoClaim2D readClaim(BsonReader reader, MongoFaction faction)
+    {
+        String world = null;
+        double x1 = 0;
+        double z1 = 0;
+        double x2 = 0;
+        double z2 = 0;
+        double cost = 0;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+        {
+            switch (reader.readName())
+            {
+                case "world":
+                    world = MongoBson.readString(reader);
+                    break;
+                case "x1":
+                    x1 = MongoBson.readDouble(reader);
+                    break;
+                case "z1":
+                    z1 = MongoBson.readDouble(reader);
+                    break;
+                case "x2":
+                    x2 = MongoBson.readDouble(reader);
+                    break;
+                case "z2":
+                    z2 = MongoBson.readDouble(reader);
+                    break;
+                case "cost":
+                    cost = MongoBson.readDouble(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new MongoClaim2D(faction, world, x1, x2, z1, z2, cost);
+    }
+
+    /**
+     * Reads a Warp document.
+     *
+     * @param reader the reader, positioned at the document.
+     *
+     * @return the Warp.
+     */
+    static MongoWarp readWarp(BsonReader reader)
+    {
+        String name = null;
+        LazyLocation location = null;
+        String password = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+        {
+            switch (reader.readName())
+            {
+                case "name":
+                    name = MongoBson.readString(reader);
+                    break;
+                case "location":
+                    location = MongoBson.readLocation(reader);
+                    break;
+                case "password":
+                    password = MongoBson.readString(reader);
+                    break;
+                default:
+                    // whether it is locked is derived from the password
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new MongoWarp(name, location, password != null, password);
+    }
+
+    /**
+     * Reads a Transaction document. Dates written by the old mapping as a number are read as well.
+     *
+     * @param reader the reader, positioned at the document.
+     *
+     * @return the Transaction.
+     */
+    static MongoTransaction readTransaction(BsonReader reader)
+    {
+        UUID userId = null;
+        Date date = null;
+        double amount = 0;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+        {
+            switch (reader.readName())
+            {
+                case "uid":
+                    userId = MongoBson.readUuid(reader);
+                    break;
+                case "date":
+                    date = readDate(reader);
+                    break;
+                case "amount":
+                    amount = MongoBson.readDouble(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new MongoTransaction(userId, date, amount);
+    }
+
+    private static Date readDate(BsonReader reader)
+    {
+        switch (reader.getCurrentBsonType())
+        {
+            case DATE_TIME:
+                return new Date(reader.readDateTime());
+            case NULL:
+                reader.readNull();
+                return null;
+            default:
+                return new Date(MongoBson.readLong(reader));
+        }
+    }
+
+    private static class FactionCodec implements Codec<MongoFaction>
+    {
+
+        @Override
+        public void encode(BsonWriter writer, MongoFaction faction, EncoderContext context)
+        {
+            writer.writeStartDocument();
+            faction.encode(writer);
+            writer.writeEndDocument();
+        }
+
+        @Override
+        public MongoFaction decode(BsonReader reader, DecoderContext context)
+        {
+            MongoFaction faction = new MongoFaction();
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+            {
+                faction.decode(reader.readName(), reader);
+            }
+            reader.readEndDocument();
+            return faction;
+        }
+
+        @Override
+        public Class<MongoFaction> getEncoderClass()
+        {
+            return MongoFaction.class;
+        }
+
+    }
+
+    private static class UserCodec implements Codec<MongoUser>
+    {
+
+        @Override
+        public void encode(BsonWriter writer, MongoUser user, EncoderContext context)
+        {
+            writer.writeStartDocument();
+            user.encode(writer);
+            writer.writeEndDocument();
+        }
+
+        @Override
+        public MongoUser decode(BsonReader reader, DecoderContext context)
+        {
+            MongoUser user = new MongoUser();
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+            {
+                user.decode(reader.readName(), reader);
+            }
+            reader.readEndDocument();
+            return user;
+        }
+
+        @Override
+        public Class<MongoUser> getEncoderClass()
+        {
+            return MongoUser.class;
+        }
+
+    }
+
+    private static class WarpCodec implements Codec<MongoWarp>
+    {
+
+        @Override
+        public void encode(BsonWriter writer, MongoWarp warp, EncoderContext context)
+        {
+            writeWarp(writer, warp);
+        }
+
+        @Override
+        public MongoWarp decode(BsonReader reader, DecoderContext context)
+        {
+            return readWarp(reader);
+        }
+
+        @Override
+        public Class<MongoWarp> getEncoderClass()
+        {
+            return MongoWarp.class;
+        }
+
+    }
+
+    private static class TransactionCodec implements Codec<MongoTransaction>
+    {
+
+        @Override
+        public void encode(BsonWriter writer, MongoTransaction transaction, EncoderContext context)
+        {
+            writeTransaction(writer, transaction);
+        }
+
+        @Override
+        public MongoTransaction decode(BsonReader reader, DecoderContext context)
+        {
+            return readTransaction(reader);
+        }
+
+        @Override
+        public Class<MongoTransaction> getEncoderClass()
+        {
+            return MongoTransaction.class;
+        }
+
+    }
+
+}
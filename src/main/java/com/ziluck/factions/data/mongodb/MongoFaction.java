@@ -1,38 +1,50 @@
 package com.ziluck.factions.data.mongodb;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.ziluck.factions.Factions;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
 import com.ziluck.factions.base.FactionStore;
 import com.ziluck.factions.base.Transaction;
 import com.ziluck.factions.base.User;
-import com.ziluck.factions.base.UserStore;
 import com.ziluck.factions.base.Warp;
+import com.ziluck.factions.base.claims.Claim;
+import com.ziluck.factions.base.claims.Claim2D;
 import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.base.struct.Flag;
+import com.ziluck.factions.base.struct.Role;
 import com.ziluck.factions.data.LoadFaction;
 import com.ziluck.factions.spatial.LazyLocation;
+import com.ziluck.factions.utils.AppendOnlyList;
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.lang.ArrayUtils;
-import org.bukkit.Bukkit;
-import org.jongo.marshall.jackson.oid.MongoId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
 
 /**
  * Faction implementation for saving to MongoDB.
  *
  * @author Michael Ziluck
  */
-@JsonIgnoreProperties({ "stub", "announcements", "loaded", "members", "leader" })
+@JsonIgnoreProperties({ "stub", "announcements", "loaded", "members", "leader", "partial" })
 public class MongoFaction extends LoadFaction
 {
-    @MongoId
+    @JsonProperty("_id")
     protected long id;
 
-    protected long leaderId;
-
-    protected long[] memberIds;
+    /**
+     * Whether the warps and transactions were left out when this Faction was loaded.
+     */
+    private volatile boolean partial;
 
     /**
      * Empty constructor for the ORM to use.
@@ -41,6 +53,18 @@ public class MongoFaction extends LoadFaction
     {
     }
 
+    /**
+     * Creates an empty Faction with the given id to be filled in from a snapshot. Like a Faction loaded at startup, its
+     * warps and transactions are read from the database once they are needed.
+     *
+     * @param id the id of the Faction.
+     */
+    MongoFaction(long id)
+    {
+        this.id = id;
+        this.partial = true;
+    }
+
     /**
      * Create a new Faction with the given information. This should only be used when a new Faction is made, not to load
      * an already existing Faction.
@@ -59,10 +83,51 @@ public class MongoFaction extends LoadFaction
         this.type = type;
     }
 
+    /**
+     * Creates a copy of a Faction from another database, such as when migrating between databases.
+     *
+     * @param source the Faction to copy.
+     */
+    MongoFaction(LoadFaction source)
+    {
+        copyFrom(source);
+        this.id = source.getId();
+
+        for (Warp warp : source.getWarps())
+        {
+            getWarpsMap().put(warp.getStub(), new MongoWarp(warp.getName(), warp.getLocation(), warp.getPassword() != null, warp.getPassword()));
+        }
+        assertClaims();
+        for (Claim claim : source.getClaims())
+        {
+            claims.add(new MongoClaim2D(this, (Claim2D) claim));
+        }
+        for (Transaction transaction : source.getTransactionHistory())
+        {
+            getTransactionHistory().add(new MongoTransaction(transaction.getUserId(), transaction.getDate(), transaction.getAmount()));
+        }
+    }
+
     @Override
     public void save()
     {
-        Bukkit.getScheduler().runTaskAsynchronously(Factions.getInstance(), () -> FactionStore.getInstance().save(this));
+        FactionStore.getInstance().save(this);
+    }
+
+    /**
+     * Creates a copy of this Faction as it is now that can be written on another thread. This must be called on the
+     * thread that changes this Faction. If the warps and transactions were not read yet, the copy reads them itself when
+     * it is written.
+     *
+     * @return the copy.
+     */
+    MongoFaction snapshot()
+    {
+        MongoFaction copy = new MongoFaction();
+        copy.id = id;
+        copy.snapshotFrom(this);
+        copy.partial = partial;
+        return copy;
     }
 
     @Override
@@ -93,31 +158,303 @@ public class MongoFaction extends LoadFaction
         save();
     }
 
+    /**
+     * Marks that the warps and transactions were left out when this Faction was loaded, so they are read from the
+     * database the first time they are needed.
+     */
+    void setPartial()
+    {
+        this.partial = true;
+    }
+
+    /**
+     * @return whether the warps and transactions were left out when this Faction was loaded and have not been read yet.
+     */
+    boolean isPartial()
+    {
+        return partial;
+    }
+
+    /**
+     * Reads the warps and transactions from the database if they were left out when this Faction was loaded.
+     */
+    void loadDetails()
+    {
+        if (!partial)
+        {
+            return;
+        }
+        synchronized (this)
+        {
+            if (!partial)
+            {
+                return;
+            }
+            MongoFaction details = MongoWrapper.getInstance().getDatabase().getCollection("factions", MongoFaction.class)
+                                               .find(Filters.eq("_id", id))
+                                               .projection(Projections.include("warps", "transactions"))
+                                               .first();
+            if (details != null)
+            {
+                this.warps = details.warps;
+                this.transactions = details.transactions;
+            }
+            partial = false;
+        }
+    }
+
+    /**
+     * Writes the stored fields of this Faction into a document that has already been started. The warps and
+     * transactions are left out if they were not read yet, just like in a document loaded without them.
+     *
+     * @param writer the writer.
+     */
+    void encode(BsonWriter writer)
+    {
+        writer.writeInt64("_id", id);
+        MongoBson.writeString(writer, "name", name);
+        MongoBson.writeString(writer, "description", description);
+        MongoBson.writeString(writer, "motd", motd);
+        MongoBson.writeEnum(writer, "type", type);
+        MongoBson.writeEnum(writer, "defaultRole", defaultRole);
+        writer.writeInt64("founded", founded);
+        writer.writeInt64("modified", modified);
+        writer.writeDouble("balance", balance);
+        MongoBson.writeLocation(writer, "home", home);
+        writer.writeInt64("leaderId", leaderId);
+
+        writer.writeStartArray("memberIds");
+        for (long memberId : getMemberIds())
+        {
+            writer.writeInt64(memberId);
+        }
+        writer.writeEndArray();
+
+        writer.writeStartArray("invites");
+        if (invites != null)
+        {
+            for (UUID invite : invites)
+            {
+                writer.writeString(invite.toString());
+            }
+        }
+        writer.writeEndArray();
+
+        writer.writeStartArray("flags");
+        if (flags != null)
+        {
+            for (Flag flag : flags)
+            {
+                writer.writeString(flag.name());
+            }
+        }
+        writer.writeEndArray();
+
+        writer.writeStartArray("claims");
+        if (claims != null)
+        {
+            for (Claim claim : claims)
+            {
+                MongoCodecs.writeClaim(writer, (Claim2D) claim);
+            }
+        }
+        writer.writeEndArray();
+
+        if (warps != null)
+        {
+            writer.writeStartDocument("warps");
+            for (Map.Entry<String, Warp> warp : warps.entrySet())
+            {
+                writer.writeName(warp.getKey());
+                MongoCodecs.writeWarp(writer, warp.getValue());
+            }
+            writer.writeEndDocument();
+        }
+
+        if (transactions != null)
+        {
+            writer.writeStartArray("transactions");
+            for (Transaction transaction : transactions)
+            {
+                MongoCodecs.writeTransaction(writer, transaction);
+            }
+            writer.writeEndArray();
+        }
+    }
+
+    /**
+     * Reads a single field of a document into this Faction. Fields that are not stored are skipped.
+     *
+     * @param field  the name of the field.
+     * @param reader the reader, positioned at the value of the field.
+     */
+    void decode(String field, BsonReader reader)
+    {
+        switch (field)
+        {
+            case "_id":
+                id = MongoBson.readLong(reader);
+                break;
+            case "name":
+                name = MongoBson.readString(reader);
+                break;
+            case "description":
+                description = MongoBson.readString(reader);
+                break;
+            case "motd":
+                motd = MongoBson.readString(reader);
+                break;
+            case "type":
+                type = MongoBson.readEnum(reader, FactionType.class);
+                break;
+            case "defaultRole":
+                defaultRole = MongoBson.readEnum(reader, Role.class);
+                break;
+            case "founded":
+                founded = MongoBson.readLong(reader);
+                break;
+            case "modified":
+                modified = MongoBson.readLong(reader);
+                break;
+            case "balance":
+                balance = MongoBson.readDouble(reader);
+                break;
+            case "home":
+                home = MongoBson.readLocation(reader);
+                break;
+            case "leaderId":
+                leaderId = MongoBson.readLong(reader);
+                break;
+            case "memberIds":
+                memberIds = null;
+                if (readArray(reader))
+                {
+                    long[] ids = new long[8];
+                    int count = 0;
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+                    {
+                        if (count == ids.length)
+                        {
+                            ids = Arrays.copyOf(ids, count * 2);
+                        }
+                        ids[count++] = MongoBson.readLong(reader);
+                    }
+                    reader.readEndArray();
+                    memberIds = Arrays.copyOf(ids, count);
+                }
+                break;
+            case "invites":
+                invites = new ArrayList<>();
+                if (readArray(reader))
+                {
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+                    {
+                        invites.add(MongoBson.readUuid(reader));
+                    }
+                    reader.readEndArray();
+                }
+                break;
+            case "flags":
+                flags = EnumSet.noneOf(Flag.class);
+                if (readArray(reader))
+                {
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+                    {
+                        flags.add(MongoBson.readEnum(reader, Flag.class));
+                    }
+                    reader.readEndArray();
+                }
+                break;
+            case "claims":
+                claims = new ArrayList<>();
+                if (readArray(reader))
+                {
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+                    {
+                        claims.add(MongoCodecs.readClaim(reader, this));
+                    }
+                    reader.readEndArray();
+                }
+                break;
+            case "warps":
+                warps = new HashMap<>();
+                if (reader.getCurrentBsonType() == BsonType.NULL)
+                {
+                    reader.readNull();
+                    break;
+                }
+                reader.readStartDocument();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+                {
+                    reader.readName();
+                    MongoWarp warp = MongoCodecs.readWarp(reader);
+                    warps.put(warp.getStub(), warp);
+                }
+                reader.readEndDocument();
+                break;
+            case "transactions":
+                transactions = new AppendOnlyList<>();
+                if (readArray(reader))
+                {
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT)
+                    {
+                        transactions.add(MongoCodecs.readTransaction(reader));
+                    }
+                    reader.readEndArray();
+                }
+                break;
+            default:
+                reader.skipValue();
+        }
+    }
+
+    /**
+     * Starts reading an array, unless the value is a null.
+     *
+     * @param reader the reader, positioned at the value.
+     *
+     * @return {@code true} if an array was started, or {@code false} if the value was a null.
+     */
+    private static boolean readArray(BsonReader reader)
+    {
+        if (reader.getCurrentBsonType() == BsonType.NULL)
+        {
+            reader.readNull();
+            return false;
+        }
+        reader.readStartArray();
+        return true;
+    }
+
     @Override
-    public void loadMembers()
+    protected void refreshFrom(LoadFaction source)
     {
-        members = new HashSet<>(memberIds.length);
-        for (long id : memberIds)
+        super.refreshFrom(source);
+        synchronized (this)
         {
-            members.add(UserStore.getInstance().getUser(id));
+            this.warps = null;
+            this.transactions = null;
+            this.partial = true;
         }
     }
 
     @Override
-    protected void processNewMember(User user)
+    protected Map<String, Warp> getWarpsMap()
     {
-        memberIds = ArrayUtils.add(memberIds, user.getId());
+        loadDetails();
+        return super.getWarpsMap();
     }
 
     @Override
-    public long getId()
+    public List<Transaction> getTransactionHistory()
     {
-        return id;
+        loadDetails();
+        return super.getTransactionHistory();
     }
 
     @Override
-    public void loadLeader()
+    public long getId()
     {
-        this.leader = UserStore.getInstance().getUser(leaderId);
+        return id;
     }
 }
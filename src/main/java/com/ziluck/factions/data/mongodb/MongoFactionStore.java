@@ -1,24 +1,46 @@
 package com.ziluck.factions.data.mongodb;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.function.Predicate;
-
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Level;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
 import com.ziluck.factions.base.struct.FactionType;
 import org.apache.commons.lang.Validate;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
-import org.jongo.MongoCollection;
 
+import com.ziluck.factions.Factions;
 import com.ziluck.factions.base.Faction;
 import com.ziluck.factions.base.User;
 import com.ziluck.factions.base.UserStore;
 import com.ziluck.factions.configuration.Config;
-import com.ziluck.factions.configuration.struct.Optimization;
+import com.ziluck.factions.data.FactionSnapshot;
+import com.ziluck.factions.data.LoadFaction;
 import com.ziluck.factions.data.LoadFactionStore;
+import com.ziluck.factions.data.SaveQueue;
+import com.ziluck.factions.data.sync.CacheCoherence;
 import com.ziluck.factions.events.FactionCreateEvent;
 
 /**
@@ -30,16 +52,26 @@ public class MongoFactionStore extends LoadFactionStore
 {
 
     /**
-     * Used if the system optimizes to reduce processing power.
+     * How many documents are decoded together when loading.
      */
-    private HashMap<String, Faction> factionsByName;
+    private static final int DECODE_BATCH_SIZE = 256;
 
     /**
-     * Used if the system optimizes to reduce memory usage.
+     * Leaves out the parts of a Faction that are only read once they are needed.
      */
-    private List<Faction> factionsList;
+    private static final Bson PARTIAL_PROJECTION = Projections.exclude("warps", "transactions");
 
-    private MongoCollection store;
+    /**
+     * Replaces a whole document, inserting it if it does not exist yet.
+     */
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+
+    /**
+     * Lets the database apply the writes of a batch in any order, since each one is for a different Faction.
+     */
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+    private MongoCollection<MongoFaction> store;
 
     /**
      * Construct a new MongoFactionStore. This will grab the information from the config file.
@@ -48,76 +80,15 @@ public class MongoFactionStore extends LoadFactionStore
     {
         super();
 
-        store = MongoWrapper.getInstance().getJongo().getCollection("factions");
+        store = MongoWrapper.getInstance().getDatabase().getCollection("factions", MongoFaction.class);
 
-        int count = Math.toIntExact(store.count() + 5);
-
-        if (Config.OPTIMIZATION.getValue() == Optimization.MEMORY)
-        {
-            factionsList = new ArrayList<>(count);
-        }
-        else if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
-        {
-            factionsByName = new HashMap<>(count);
-        }
+        // anything left in the journal is written before the Factions are loaded, so they are loaded with it
+        saveQueue = new SaveQueue<>("factions", Faction::getId, this::write,
+                                    SaveQueue.openJournal("factions", new MongoJournalCodec<>(MongoCodecs.FACTION), this::write));
 
         loadFactions();
     }
 
-    @Override
-    public Faction getFaction(long id)
-    {
-        Faction            faction   = null;
-        Predicate<Faction> predicate = f -> f.getId() == id;
-        if (Config.OPTIMIZATION.getValue() == Optimization.MEMORY)
-        {
-            faction = searchList(predicate);
-        }
-        else if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
-        {
-            faction = searchMap(predicate);
-        }
-        return faction;
-    }
-
-    @Override
-    public Faction getFaction(final String name)
-    {
-        Validate.notNull(name, "Name can't be null.");
-
-        Faction faction = null;
-        if (Config.OPTIMIZATION.getValue() == Optimization.MEMORY)
-        {
-            faction = searchList(f -> f.getStub().equals(name.toLowerCase()));
-        }
-        else if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
-        {
-            faction = factionsByName.get(name.toLowerCase());
-        }
-        return faction;
-    }
-
-    @Override
-    public Faction getCasedFaction(String name)
-    {
-        Validate.notNull(name, "Name can't be null.");
-
-        Faction faction = null;
-        if (Config.OPTIMIZATION.getValue() == Optimization.MEMORY)
-        {
-            faction = searchList(f -> f.getStub().equals(name.toLowerCase()));
-        }
-        else if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
-        {
-            faction = factionsByName.get(name.toLowerCase());
-            if (faction != null && !faction.getName().equals(name))
-            {
-                faction = null;
-            }
-        }
-        return faction;
-    }
-
     @Override
     public Faction getFaction(UUID uuid)
     {
@@ -147,88 +118,328 @@ public class MongoFactionStore extends LoadFactionStore
         return UserStore.getInstance().getUser(player.getUniqueId(), true).getFaction();
     }
 
+    /**
+     * Loads every Faction. If snapshots are enabled and one exists, it is read first and only the Factions that were
+     * saved after it was written are read from the database. Otherwise every Faction is read from the database.
+     * <p>
+     * The warps and transactions of each Faction are left out here and are only read once they are needed, and the
+     * leader and members are only resolved once they are needed.
+     * </p>
+     */
     @Override
-    public Collection<Faction> getFactions()
+    public void loadFactions()
     {
-        if (Config.OPTIMIZATION.getValue() == Optimization.MEMORY)
+        Collection<MongoFaction> loaded = null;
+        if (Config.SNAPSHOT_ENABLED.booleanValue())
         {
-            return Collections.unmodifiableCollection(factionsList);
+            store.createIndex(Indexes.ascending("modified"));
+            loaded = loadSnapshot();
         }
-        else if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
+        if (loaded == null)
         {
-            return Collections.unmodifiableCollection(factionsByName.values());
+            loaded = decodeAll(raw().find().projection(PARTIAL_PROJECTION));
         }
-        return null;
-    }
 
-    // TODO add javadoc
-    private Faction searchList(Predicate<Faction> predicate)
-    {
-        for (Faction faction : factionsList)
+        for (MongoFaction faction : loaded)
         {
-            if (predicate.test(faction))
+            if (faction.getId() == -1)
             {
-                return faction;
+                wilderness = faction;
             }
+            index(faction);
+            // TODO load claims
+        }
+        if (wilderness == null)
+        {
+            MongoFaction created = new MongoFaction(-1, "Wilderness", UserStore.getInstance().getConsole(), FactionType.WILDERNESS);
+            wilderness = created;
+            index(created);
+            // this store is still being constructed, so FactionStore.getInstance() can't save it yet
+            created.touch();
+            saveQueue.submit(created.snapshot());
+        }
+
+        ids = new MongoIdAllocator("factions");
+    }
+
+    /**
+     * Reads the snapshot and brings it up to date with the database. Factions that were deleted from the database are
+     * dropped, and Factions that were saved after the snapshot was written, or that are missing from it, are read from
+     * the database.
+     *
+     * @return the up to date Factions, or {@code null} if there is no usable snapshot.
+     */
+    private Collection<MongoFaction> loadSnapshot()
+    {
+        FactionSnapshot snapshot;
+        try
+        {
+            snapshot = FactionSnapshot.read(getSnapshotFile(), MongoFaction::new);
         }
-        return null;
+        catch (IOException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.WARNING, "Could not read the faction snapshot.", ex);
+            return null;
+        }
+        if (snapshot == null)
+        {
+            return null;
+        }
+
+        Map<Long, MongoFaction> factions = new LinkedHashMap<>();
+        for (LoadFaction faction : snapshot.getFactions())
+        {
+            factions.put(faction.getId(), (MongoFaction) faction);
+        }
+
+        Set<Long> missing = new HashSet<>();
+        for (BsonValue id : store.distinct("_id", BsonValue.class))
+        {
+            missing.add(id.asNumber().longValue());
+        }
+        factions.keySet().retainAll(missing);
+        missing.removeAll(factions.keySet());
+
+        List<MongoFaction> changed = decodeAll(raw().find(Filters.or(Filters.gt("modified", snapshot.getCreated()), Filters.in("_id", missing)))
+                                                    .projection(PARTIAL_PROJECTION));
+        for (MongoFaction faction : changed)
+        {
+            factions.put(faction.getId(), faction);
+        }
+
+        Factions.getInstance().getLogger().info("Loaded " + factions.size() + " factions from the snapshot, " + changed.size() + " of which were read from the database.");
+        return factions.values();
     }
 
-    // TODO add javadoc
-    private Faction searchMap(Predicate<Faction> predicate)
+    /**
+     * Reads the documents of the given query. Reading the documents is the only part done on this thread. The documents
+     * are handed off in batches to be decoded in parallel while the rest are still being read, so loading is bound by
+     * the database rather than decoding.
+     *
+     * @param find the query to read.
+     *
+     * @return the decoded Factions in the order they were read.
+     */
+    private List<MongoFaction> decodeAll(FindIterable<RawBsonDocument> find)
     {
-        for (Faction faction : factionsByName.values())
+        List<ForkJoinTask<List<MongoFaction>>> batches = new ArrayList<>();
+        List<RawBsonDocument>                  batch   = new ArrayList<>(DECODE_BATCH_SIZE);
+        for (RawBsonDocument document : find)
         {
-            if (predicate.test(faction))
+            batch.add(document);
+            if (batch.size() == DECODE_BATCH_SIZE)
             {
-                return faction;
+                batches.add(decode(batch));
+                batch = new ArrayList<>(DECODE_BATCH_SIZE);
             }
         }
-        return null;
+        if (!batch.isEmpty())
+        {
+            batches.add(decode(batch));
+        }
+
+        List<MongoFaction> factions = new ArrayList<>();
+        for (ForkJoinTask<List<MongoFaction>> task : batches)
+        {
+            factions.addAll(task.join());
+        }
+        return factions;
+    }
+
+    /**
+     * Decodes a batch of Faction documents on the common fork-join pool.
+     *
+     * @param documents the raw documents.
+     *
+     * @return the task decoding the batch.
+     */
+    private static ForkJoinTask<List<MongoFaction>> decode(List<RawBsonDocument> documents)
+    {
+        return ForkJoinPool.commonPool().submit(() ->
+                                                {
+                                                    List<MongoFaction> factions = new ArrayList<>(documents.size());
+                                                    for (RawBsonDocument document : documents)
+                                                    {
+                                                        MongoFaction faction = MongoCodecs.fromRaw(MongoCodecs.FACTION, document);
+                                                        faction.setPartial();
+                                                        factions.add(faction);
+                                                    }
+                                                    return factions;
+                                                });
+    }
+
+    /**
+     * The factions collection read as raw documents, which are only decoded once they are handed off to be decoded in
+     * parallel.
+     *
+     * @return the collection.
+     */
+    private MongoCollection<RawBsonDocument> raw()
+    {
+        return store.withDocumentClass(RawBsonDocument.class);
     }
 
     @Override
-    public void loadFactions()
+    public void saveSnapshot(boolean async)
     {
-        for (MongoFaction faction : store.find().as(MongoFaction.class))
+        if (!Config.SNAPSHOT_ENABLED.booleanValue())
         {
-            if (faction.getId() == -1)
-            {
-                wilderness = faction;
-            }
-            if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
+            return;
+        }
+
+        // the time is taken before copying, so anything saved while the snapshot is being written is read again later
+        long created = System.currentTimeMillis();
+        List<Faction> factions = new ArrayList<>(getFactions().size());
+        for (Faction faction : getFactions())
+        {
+            factions.add(faction instanceof MongoFaction ? ((MongoFaction) faction).snapshot() : faction);
+        }
+        Runnable write = () ->
+        {
+            try
             {
-                factionsByName.put(faction.getStub(), faction);
+                FactionSnapshot.write(getSnapshotFile(), created, factions);
             }
-            else
+            catch (IOException ex)
             {
-                factionsList.add(faction);
+                Factions.getInstance().getLogger().log(Level.WARNING, "Could not write the faction snapshot.", ex);
             }
-            faction.loadLeader();
-            // TODO load claims
+        };
+
+        if (async)
+        {
+            Bukkit.getScheduler().runTaskAsynchronously(Factions.getInstance(), write);
         }
-        if (wilderness == null)
+        else
         {
-            wilderness = new MongoFaction(-1, "Wilderness", UserStore.getInstance().getConsole(), FactionType.WILDERNESS);
-            wilderness.save();
+            write.run();
         }
+    }
 
-        MongoUser user = store.findOne().orderBy("{_id: -1}").as(MongoUser.class);
-        if (user == null)
+    /**
+     * @return the file the snapshot is stored in.
+     */
+    private File getSnapshotFile()
+    {
+        return new File(Factions.getInstance().getDataFolder(), "factions.snapshot");
+    }
+
+    @Override
+    public void save(Faction faction)
+    {
+        Validate.notNull(faction, "Faction can't be null.");
+
+        if (factions.get(faction.getId()) == null)
         {
-            nextId = 0;
+            // a new Faction is indexed the first time it is saved
+            index(faction);
         }
         else
         {
-            nextId = user.getId() + 1;
+            leaderboards.update(faction);
+        }
+
+        // the Faction keeps changing on this thread, so only a copy of it is handed to the thread that writes it
+        if (faction instanceof MongoFaction)
+        {
+            ((MongoFaction) faction).touch();
+            faction = ((MongoFaction) faction).snapshot();
+        }
+        saveQueue.submit(faction);
+    }
+
+    /**
+     * Writes the given Factions in a single bulk write. This runs on the calling thread.
+     *
+     * @param factions the copies of the Factions to write.
+     */
+    private void write(Collection<Faction> factions)
+    {
+        List<WriteModel<MongoFaction>> writes = new ArrayList<>(factions.size());
+        for (Faction faction : factions)
+        {
+            if (!(faction instanceof MongoFaction))
+            {
+                continue;
+            }
+            // the whole document is replaced, so anything that was left out when loading has to be read first
+            MongoFaction mongo = (MongoFaction) faction;
+            mongo.loadDetails();
+            writes.add(new ReplaceOneModel<>(Filters.eq("_id", mongo.getId()), mongo, UPSERT));
+        }
+        if (writes.isEmpty())
+        {
+            return;
+        }
+
+        store.bulkWrite(writes, UNORDERED);
+        for (Faction faction : factions)
+        {
+            CacheCoherence.saved(faction);
         }
     }
 
     @Override
-    public void save(Faction faction)
+    public void reloadFaction(long id)
     {
-        Validate.notNull(faction, "Faction can't be null.");
-        store.save(faction);
+        MongoFaction fresh = store.find(Filters.eq("_id", id)).projection(PARTIAL_PROJECTION).first();
+        if (fresh != null)
+        {
+            fresh.setPartial();
+        }
+
+        Bukkit.getScheduler().runTask(Factions.getInstance(), () ->
+        {
+            Faction current = getFaction(id);
+            if (current == null)
+            {
+                if (fresh != null)
+                {
+                    index(fresh);
+                }
+                return;
+            }
+            if (fresh == null)
+            {
+                if (current != wilderness)
+                {
+                    unindex(current);
+                }
+                return;
+            }
+            if (fresh.getModified() <= ((LoadFaction) current).getModified())
+            {
+                // already up to date, such as when reloads finish out of order
+                return;
+            }
+
+            // the name might have changed, so it is indexed again
+            unindex(current);
+            ((MongoFaction) current).refreshFrom(fresh);
+            index(current);
+        });
+    }
+
+    /**
+     * Adds the given Faction to every index.
+     *
+     * @param faction the Faction to add.
+     */
+    private void index(Faction faction)
+    {
+        factions.add(faction);
+        leaderboards.update(faction);
+    }
+
+    /**
+     * Removes the given Faction from every index.
+     *
+     * @param faction the Faction to remove.
+     */
+    private void unindex(Faction faction)
+    {
+        factions.remove(faction);
+        leaderboards.remove(faction);
     }
 
     @Override
@@ -238,7 +449,7 @@ public class MongoFactionStore extends LoadFactionStore
         Validate.notNull(name, "Name can't be null.");
         Validate.notNull(type, "Type can't be null.");
 
-        MongoFaction faction = new MongoFaction(nextId, name, creator, type);
+        MongoFaction faction = new MongoFaction(ids.nextId(), name, creator, type);
 
         return new FactionCreateEvent(faction, creator, Config.CREATE_COST.doubleValue());
     }
@@ -0,0 +1,59 @@
+package com.ziluck.factions.data.mongodb;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.ziluck.factions.configuration.Config;
+import com.ziluck.factions.data.IdAllocator;
+import org.bson.Document;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Reserves blocks of ids from a counter document in the "counters" collection. Each block is reserved with a single
+ * atomic {@code $inc}, so any amount of servers can share the same counter.
+ *
+ * @author Michael Ziluck
+ */
+public class MongoIdAllocator extends IdAllocator
+{
+
+    private final MongoCollection<Document> counters;
+
+    private final String name;
+
+    /**
+     * Constructs a new allocator for the ids of the given collection. If the counter does not exist yet, or is behind
+     * the ids already in the collection, it is moved up to one past the highest id in use.
+     *
+     * @param collection the name of the collection the ids are used in.
+     */
+    public MongoIdAllocator(String collection)
+    {
+        super(Config.ID_BLOCK_SIZE.intValue());
+
+        MongoDatabase database = MongoWrapper.getInstance().getDatabase();
+
+        this.counters = database.getCollection("counters");
+        this.name = collection;
+
+        Document highest = database.getCollection(collection).find().sort(Sorts.descending("_id")).limit(1).first();
+        long first = highest == null ? 0 : Math.max(0, ((Number) highest.get("_id")).longValue() + 1);
+
+        counters.updateOne(eq("_id", name), Updates.max("next", first), new UpdateOptions().upsert(true));
+    }
+
+    @Override
+    protected long reserveBlock(int size)
+    {
+        Document counter = counters.findOneAndUpdate(eq("_id", name),
+                                                     Updates.inc("next", (long) size),
+                                                     new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        return ((Number) counter.get("next")).longValue() - size;
+    }
+
+}
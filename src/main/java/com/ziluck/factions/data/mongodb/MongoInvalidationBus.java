@@ -0,0 +1,250 @@
+package com.ziluck.factions.data.mongodb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+import com.mongodb.CursorType;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Sorts;
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.data.sync.ChangeNotice;
+import com.ziluck.factions.data.sync.InvalidationBus;
+import org.apache.commons.lang.Validate;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+/**
+ * An InvalidationBus that sends notices through a capped collection in MongoDB.
+ * <p>
+ * Publishing inserts a small document into the "invalidations" collection. Every server follows the collection with a
+ * tailable cursor on its own thread, so notices arrive as soon as they are inserted without polling the Factions or
+ * Users. Since the collection is capped, old notices are dropped by MongoDB on its own.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class MongoInvalidationBus implements InvalidationBus
+{
+
+    private static final String COLLECTION = "invalidations";
+
+    /**
+     * The size of the capped collection. Notices are tiny, so this holds thousands of them.
+     */
+    private static final long COLLECTION_SIZE = 1024 * 1024;
+
+    private final MongoCollection<Document> collection;
+
+    private final List<Consumer<ChangeNotice>> subscribers = new CopyOnWriteArrayList<>();
+
+    private final Thread listener;
+
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a new MongoInvalidationBus on the database of the given wrapper and starts listening for notices.
+     * Notices that were published before this are not delivered.
+     *
+     * @param wrapper the connection to the database.
+     */
+    public MongoInvalidationBus(MongoWrapper wrapper)
+    {
+        MongoDatabase database = wrapper.getDatabase();
+        createCollection(database);
+        this.collection = database.getCollection(COLLECTION);
+
+        Document newest = collection.find().sort(Sorts.descending("$natural")).limit(1).first();
+        ObjectId start = newest == null ? null : newest.getObjectId("_id");
+
+        this.listener = new Thread(() -> listen(start), "Factions Invalidation Listener");
+        this.listener.setDaemon(true);
+        this.listener.start();
+    }
+
+    /**
+     * Creates the capped collection if no server has done so yet.
+     *
+     * @param database the database to create it in.
+     */
+    private static void createCollection(MongoDatabase database)
+    {
+        for (String name : database.listCollectionNames())
+        {
+            if (name.equals(COLLECTION))
+            {
+                return;
+            }
+        }
+        try
+        {
+            database.createCollection(COLLECTION, new CreateCollectionOptions().capped(true).sizeInBytes(COLLECTION_SIZE));
+        }
+        catch (MongoCommandException ex)
+        {
+            // another server created it first
+            if (!"NamespaceExists".equals(ex.getErrorCodeName()))
+            {
+                throw ex;
+            }
+        }
+    }
+
+    @Override
+    public void publish(ChangeNotice notice)
+    {
+        Validate.notNull(notice, "Notice can't be null.");
+
+        collection.insertOne(new Document("type", notice.getType().name())
+                                     .append("entity", notice.getId())
+                                     .append("version", notice.getVersion())
+                                     .append("origin", notice.getOrigin()));
+    }
+
+    @Override
+    public void subscribe(Consumer<ChangeNotice> subscriber)
+    {
+        Validate.notNull(subscriber, "Subscriber can't be null.");
+
+        subscribers.add(subscriber);
+    }
+
+    @Override
+    public void close()
+    {
+        running = false;
+        listener.interrupt();
+        subscribers.clear();
+    }
+
+    /**
+     * Follows the collection until the bus is closed. A tailable cursor dies when the collection is empty or when the
+     * connection drops, so a new one is opened after the last notice that was delivered.
+     * <p>
+     * The ids are made by each server on its own, so their order is not the order the notices were inserted in, and a
+     * notice from a server with a slower clock could be skipped if the new cursor started at the id of the last notice.
+     * Instead every new cursor reads the collection from the start in its natural order, which is the order of insertion,
+     * and only delivers what comes after the last notice. If that notice was already dropped from the capped collection,
+     * everything still in it is newer, so all of it is delivered.
+     * </p>
+     *
+     * @param start the id of the newest notice that should not be delivered, or {@code null} to deliver every notice.
+     */
+    private void listen(ObjectId start)
+    {
+        ObjectId last = start;
+        while (running)
+        {
+            try (MongoCursor<Document> cursor = collection.find()
+                                                          .sort(Sorts.ascending("$natural"))
+                                                          .cursorType(CursorType.TailableAwait)
+                                                          .iterator())
+            {
+                if (last != null)
+                {
+                    last = skipDelivered(cursor, last);
+                }
+                while (running && cursor.hasNext())
+                {
+                    Document document = cursor.next();
+                    last = document.getObjectId("_id");
+                    deliver(document);
+                }
+            }
+            catch (MongoException ex)
+            {
+                if (running)
+                {
+                    Factions.getInstance().getLogger().log(Level.WARNING, "Lost the invalidation cursor, reopening it.", ex);
+                }
+            }
+
+            try
+            {
+                TimeUnit.SECONDS.sleep(1);
+            }
+            catch (InterruptedException ex)
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves a new cursor past the last notice that was delivered. The notices read before it are held back until it is
+     * found, and are delivered if the cursor catches up with the collection without finding it.
+     *
+     * @param cursor the new cursor, at the start of the collection.
+     * @param last   the id of the last notice that was delivered.
+     *
+     * @return the id of the last notice that was delivered once this returns.
+     */
+    private ObjectId skipDelivered(MongoCursor<Document> cursor, ObjectId last)
+    {
+        List<Document> held = new ArrayList<>();
+        Document document;
+        while (running && (document = cursor.tryNext()) != null)
+        {
+            if (last.equals(document.getObjectId("_id")))
+            {
+                return last;
+            }
+            held.add(document);
+        }
+        if (!running)
+        {
+            return last;
+        }
+
+        // the last notice was dropped, so everything before the end is newer than it
+        for (Document missed : held)
+        {
+            last = missed.getObjectId("_id");
+            deliver(missed);
+        }
+        return last;
+    }
+
+    /**
+     * Hands a received notice to every subscriber.
+     *
+     * @param document the document of the notice.
+     */
+    private void deliver(Document document)
+    {
+        ChangeNotice notice;
+        try
+        {
+            notice = new ChangeNotice(ChangeNotice.Type.valueOf(document.getString("type")),
+                                      ((Number) document.get("entity")).longValue(),
+                                      ((Number) document.get("version")).longValue(),
+                                      document.getString("origin"));
+        }
+        catch (RuntimeException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.WARNING, "Ignoring a malformed invalidation notice: " + document.toJson(), ex);
+            return;
+        }
+
+        for (Consumer<ChangeNotice> subscriber : subscribers)
+        {
+            try
+            {
+                subscriber.accept(notice);
+            }
+            catch (RuntimeException ex)
+            {
+                Factions.getInstance().getLogger().log(Level.WARNING, "Could not apply " + notice + ".", ex);
+            }
+        }
+    }
+
+}
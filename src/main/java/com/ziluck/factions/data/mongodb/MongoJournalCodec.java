@@ -0,0 +1,78 @@
+package com.ziluck.factions.data.mongodb;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.bson.BSONException;
+import org.bson.codecs.Codec;
+
+import com.ziluck.factions.data.WriteJournal;
+
+/**
+ * Stores Factions and Users in a {@link WriteJournal} as the same BSON documents that are saved to MongoDB.
+ * <p>
+ * The first byte records whether a Faction was partially loaded. Such a Faction is stored without its warps and
+ * transactions, so it is marked as partial again when it is read back and they are read from the database before it is
+ * written.
+ * </p>
+ *
+ * @param <T> the type of entity.
+ *
+ * @author Michael Ziluck
+ */
+class MongoJournalCodec<T> implements WriteJournal.Codec<T>
+{
+
+    private final Codec<? extends T> codec;
+
+    /**
+     * Constructs a new MongoJournalCodec.
+     *
+     * @param codec the codec the documents are written and read with.
+     */
+    MongoJournalCodec(Codec<? extends T> codec)
+    {
+        this.codec = codec;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] encode(T entity) throws IOException
+    {
+        byte[] document;
+        try
+        {
+            document = MongoCodecs.toBytes((Codec<T>) codec, entity);
+        }
+        catch (BSONException | ClassCastException ex)
+        {
+            throw new IOException(ex);
+        }
+
+        byte[] bytes = new byte[document.length + 1];
+        bytes[0] = (byte) (entity instanceof MongoFaction && ((MongoFaction) entity).isPartial() ? 1 : 0);
+        System.arraycopy(document, 0, bytes, 1, document.length);
+        return bytes;
+    }
+
+    @Override
+    public T decode(byte[] bytes) throws IOException
+    {
+        T entity;
+        try
+        {
+            entity = MongoCodecs.fromBytes(codec, Arrays.copyOfRange(bytes, 1, bytes.length));
+        }
+        catch (BSONException | IllegalArgumentException | IllegalStateException ex)
+        {
+            throw new IOException(ex);
+        }
+
+        if (bytes[0] != 0 && entity instanceof MongoFaction)
+        {
+            ((MongoFaction) entity).setPartial();
+        }
+        return entity;
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.ziluck.factions.data.mongodb;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListenerAdapter;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.ziluck.factions.utils.LatencyHistogram;
+
+/**
+ * Records how long every command sent to MongoDB takes and how long threads wait for a connection from the pool.
+ * <p>
+ * The driver calls these listeners on the thread running the operation, so the wait for a connection is measured with
+ * a thread local between entering and leaving the wait queue. Everything is recorded without locking, so the listeners
+ * add almost nothing to each operation.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class MongoMetrics extends ConnectionPoolListenerAdapter implements CommandListener
+{
+
+    private final Map<String, LatencyHistogram> commands = new ConcurrentHashMap<>();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final LatencyHistogram poolWaits = new LatencyHistogram();
+
+    private final ThreadLocal<Long> waitStarted = new ThreadLocal<>();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final AtomicInteger checkedOut = new AtomicInteger();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event)
+    {
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event)
+    {
+        getCommand(event.getCommandName()).record(event.getElapsedTime(TimeUnit.MICROSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event)
+    {
+        failures.incrementAndGet();
+        getCommand(event.getCommandName()).record(event.getElapsedTime(TimeUnit.MICROSECONDS));
+    }
+
+    @Override
+    public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event)
+    {
+        waiting.incrementAndGet();
+        waitStarted.set(System.nanoTime());
+    }
+
+    @Override
+    public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event)
+    {
+        waiting.decrementAndGet();
+        Long started = waitStarted.get();
+        if (started != null)
+        {
+            waitStarted.remove();
+            poolWaits.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+        }
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event)
+    {
+        checkedOut.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event)
+    {
+        checkedOut.decrementAndGet();
+    }
+
+    private LatencyHistogram getCommand(String name)
+    {
+        return commands.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * @return the latency of each kind of command, such as "find" or "update", sorted by name.
+     */
+    public Map<String, LatencyHistogram> getCommands()
+    {
+        return Collections.unmodifiableMap(new TreeMap<>(commands));
+    }
+
+    /**
+     * @return how many commands failed.
+     */
+    public long getFailures()
+    {
+        return failures.get();
+    }
+
+    /**
+     * @return how long threads waited for a connection from the pool.
+     */
+    public LatencyHistogram getPoolWaits()
+    {
+        return poolWaits;
+    }
+
+    /**
+     * @return how many threads are currently waiting for a connection.
+     */
+    public int getWaiting()
+    {
+        return waiting.get();
+    }
+
+    /**
+     * @return how many connections are currently in use.
+     */
+    public int getCheckedOut()
+    {
+        return checkedOut.get();
+    }
+
+    /**
+     * Clears everything that was recorded. The current amount of waiting threads and connections in use are kept as
+     * they describe the pool right now.
+     */
+    public void reset()
+    {
+        commands.clear();
+        failures.set(0);
+        poolWaits.reset();
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.ziluck.factions.data.mongodb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.data.LoadFaction;
+import com.ziluck.factions.data.migration.MigrationBackend;
+
+/**
+ * Migrates Users and Factions from or to MongoDB.
+ *
+ * @author Michael Ziluck
+ */
+public class MongoMigrationBackend implements MigrationBackend
+{
+
+    private final MongoCollection<MongoUser> users;
+
+    private final MongoCollection<MongoFaction> factions;
+
+    /**
+     * Constructs a new MongoMigrationBackend for the database of the given wrapper.
+     *
+     * @param wrapper the connection to the database.
+     */
+    public MongoMigrationBackend(MongoWrapper wrapper)
+    {
+        this.users = wrapper.getDatabase().getCollection("users", MongoUser.class);
+        this.factions = wrapper.getDatabase().getCollection("factions", MongoFaction.class);
+    }
+
+    @Override
+    public List<User> readUsers(long afterId, int limit)
+    {
+        List<User> page = new ArrayList<>(limit);
+        for (MongoUser user : users.find(Filters.gt("_id", afterId)).sort(Sorts.ascending("_id")).limit(limit))
+        {
+            page.add(user);
+        }
+        return page;
+    }
+
+    @Override
+    public List<Faction> readFactions(long afterId, int limit)
+    {
+        List<Faction> page = new ArrayList<>(limit);
+        for (MongoFaction faction : factions.find(Filters.gt("_id", afterId)).sort(Sorts.ascending("_id")).limit(limit))
+        {
+            page.add(faction);
+        }
+        return page;
+    }
+
+    @Override
+    public User convertUser(User user)
+    {
+        return new MongoUser(user);
+    }
+
+    @Override
+    public Faction convertFaction(Faction faction)
+    {
+        return new MongoFaction((LoadFaction) faction);
+    }
+
+    @Override
+    public void writeUsers(List<User> page)
+    {
+        write(users, page, page.stream().map(User::getId).toArray());
+    }
+
+    @Override
+    public void writeFactions(List<Faction> page)
+    {
+        write(factions, page, page.stream().map(Faction::getId).toArray());
+    }
+
+    /**
+     * Replaces the documents with the given ids with the given entities. Removing and then inserting the whole page is
+     * only two round-trips, where saving each entity would be one round-trip each.
+     *
+     * @param collection the collection to write to.
+     * @param page       the entities to write.
+     * @param ids        the ids of the entities.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void write(MongoCollection<T> collection, List<?> page, Object[] ids)
+    {
+        if (page.isEmpty())
+        {
+            return;
+        }
+        collection.deleteMany(Filters.in("_id", Arrays.asList(ids)));
+        collection.insertMany((List<T>) page);
+    }
+
+}
@@ -22,7 +22,7 @@ public class MongoTransaction extends LoadTransaction
     protected String uuidString;
 
     /**
-     * An empty constructor. Jongo requires an empty constructor in order to load things
+     * An empty constructor. Jackson requires an empty constructor in order to load things
      * nicely.
      */
     public MongoTransaction()
@@ -47,6 +47,21 @@ public class MongoTransaction extends LoadTransaction
         this.amount = amount;
     }
 
+    /**
+     * Creates a copy of a {@link Transaction} from another database, such as when migrating between databases.
+     *
+     * @param userId the uuid of the user that made the transaction.
+     * @param date   the date this transaction was made.
+     * @param amount the amount of the transaction.
+     */
+    MongoTransaction(UUID userId, Date date, double amount)
+    {
+        this.userId = userId;
+        this.uuidString = userId == null ? null : userId.toString();
+        this.date = date;
+        this.amount = amount;
+    }
+
     @Override
     public UUID getUserId()
     {
@@ -6,30 +6,29 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.ziluck.factions.base.Faction;
 import com.ziluck.factions.base.FactionStore;
+import com.ziluck.factions.base.User;
 import com.ziluck.factions.base.UserStore;
 import com.ziluck.factions.base.struct.Role;
 import com.ziluck.factions.data.LoadUser;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
 import org.dizitart.no2.objects.Id;
-import org.jongo.marshall.jackson.oid.MongoId;
 
 /**
  * An implementation of a LoadUser that is stored in MongoDB.
  *
  * @author Michael Ziluck
  */
-@JsonIgnoreProperties({ "faction", "uuid", "online", "console", "offline" })
+@JsonIgnoreProperties({ "faction", "roster", "uuid", "online", "console", "offline" })
 public class MongoUser extends LoadUser
 {
-    @MongoId
+    @JsonProperty("_id")
     @Id
     protected long id;
 
     @JsonProperty("faction_id")
     protected long factionId;
 
-    @JsonProperty("faction_role")
-    protected Role factionRole;
-
     protected UUID uuid;
 
     @JsonProperty(value = "uid")
@@ -60,6 +59,22 @@ public class MongoUser extends LoadUser
         this.factionRole = Role.FACTIONLESS;
     }
 
+    /**
+     * Creates a copy of a User from another database, such as when migrating between databases.
+     *
+     * @param source the User to copy.
+     */
+    MongoUser(User source)
+    {
+        this.id = source.getId();
+        this.uuid = source.getUniqueId();
+        this.uuidString = uuid.toString();
+        this.name = source.getName();
+        this.title = source.getTitle();
+        this.factionId = source.getFactionId();
+        this.factionRole = source.getFactionRole();
+    }
+
     @Override
     public long getId()
     {
@@ -97,10 +112,75 @@ public class MongoUser extends LoadUser
         this.factionId = faction.getId();
     }
 
+    @Override
+    public long getFactionId()
+    {
+        return factionId;
+    }
+
+    @Override
+    protected void refreshFrom(User source)
+    {
+        super.refreshFrom(source);
+        this.factionId = source.getFactionId();
+    }
+
     @Override
     public void save()
     {
         UserStore.getInstance().save(this);
     }
 
+    /**
+     * Writes the stored fields of this User into a document that has already been started.
+     *
+     * @param writer the writer.
+     */
+    void encode(BsonWriter writer)
+    {
+        writer.writeInt64("_id", id);
+        MongoBson.writeString(writer, "uid", uuidString != null ? uuidString : uuid == null ? null : uuid.toString());
+        MongoBson.writeString(writer, "name", name);
+        MongoBson.writeString(writer, "title", title);
+        writer.writeInt64("faction_id", factionId);
+        MongoBson.writeEnum(writer, "faction_role", factionRole);
+        MongoBson.writeLocation(writer, "lastLocation", lastLocation);
+    }
+
+    /**
+     * Reads a single field of a document into this User. Fields that are not stored are skipped.
+     *
+     * @param field  the name of the field.
+     * @param reader the reader, positioned at the value of the field.
+     */
+    void decode(String field, BsonReader reader)
+    {
+        switch (field)
+        {
+            case "_id":
+                id = MongoBson.readLong(reader);
+                break;
+            case "uid":
+                uuidString = MongoBson.readString(reader);
+                break;
+            case "name":
+                name = MongoBson.readString(reader);
+                break;
+            case "title":
+                title = MongoBson.readString(reader);
+                break;
+            case "faction_id":
+                factionId = MongoBson.readLong(reader);
+                break;
+            case "faction_role":
+                factionRole = MongoBson.readEnum(reader, Role.class);
+                break;
+            case "lastLocation":
+                lastLocation = MongoBson.readLocation(reader);
+                break;
+            default:
+                reader.skipValue();
+        }
+    }
+
 }
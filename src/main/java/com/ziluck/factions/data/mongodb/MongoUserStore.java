@@ -1,21 +1,29 @@
 package com.ziluck.factions.data.mongodb;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
-import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
 import com.ziluck.factions.Factions;
 import com.ziluck.factions.base.User;
-import com.ziluck.factions.configuration.Config;
-import com.ziluck.factions.configuration.struct.Optimization;
+import com.ziluck.factions.data.IdAllocator;
 import com.ziluck.factions.data.LoadUserStore;
+import com.ziluck.factions.data.SaveQueue;
+import com.ziluck.factions.data.sync.CacheCoherence;
+import org.bson.Document;
 import org.bukkit.Bukkit;
-import org.bukkit.command.CommandSender;
-import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.entity.Player;
-import org.jongo.MongoCollection;
 
 /**
  * The UserStore for interacting with MongoDB.
@@ -25,35 +33,32 @@ import org.jongo.MongoCollection;
 public class MongoUserStore extends LoadUserStore
 {
 
-    protected MongoCollection store;
+    /**
+     * Replaces a whole document, inserting it if it does not exist yet.
+     */
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+
+    /**
+     * Lets the database apply the writes of a batch in any order, since each one is for a different User.
+     */
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
 
-    protected long nextId;
+    protected MongoCollection<MongoUser> store;
+
+    protected IdAllocator ids;
 
     /**
      * Create a new MongoUserStore
      */
     public MongoUserStore()
     {
-        store = MongoWrapper.getInstance().getJongo().getCollection("users");
+        store = MongoWrapper.getInstance().getDatabase().getCollection("users", MongoUser.class);
 
-        if (Config.OPTIMIZATION.getValue() == Optimization.MEMORY)
-        {
-            onlineUsersList = new ArrayList<>();
-        }
-        else if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
-        {
-            onlineUsersMap = new HashMap<>();
-        }
+        // anything left in the journal is written before any User is loaded, so they are loaded with it
+        saveQueue = new SaveQueue<>("users", User::getId, this::write,
+                                    SaveQueue.openJournal("users", new MongoJournalCodec<>(MongoCodecs.USER), this::write));
 
-        MongoUser user = store.findOne().orderBy("{_id: -1}").as(MongoUser.class);
-        if (user != null)
-        {
-            nextId = user.getId() + 1;
-        }
-        else
-        {
-            nextId = 0;
-        }
+        ids = new MongoIdAllocator("users");
 
         for (Player player : Bukkit.getOnlinePlayers())
         {
@@ -61,64 +66,57 @@ public class MongoUserStore extends LoadUserStore
         }
 
         initialize();
-        
-        store.ensureIndex("{name: 1}");
-        store.ensureIndex("{uid: 1}");
+
+        store.createIndex(Indexes.ascending("name"));
+        store.createIndex(Indexes.ascending("uid"));
     }
 
     @Override
-    public User getUser(UUID uuid, boolean includeOffline)
+    protected User fetchUser(UUID uuid)
     {
-        User user = getUser(uuid);
-        if (includeOffline && user == null)
-        {
-            user = store.findOne("{uid: '" + uuid.toString() + "'}").as(MongoUser.class);
-        }
-        return user;
+        return store.find(Filters.eq("uid", uuid.toString())).first();
     }
 
     @Override
-    public User getUser(String name, boolean includeOffline)
+    protected User fetchUser(String name)
     {
-        User user = getUser(name);
-        if (includeOffline && user == null)
-        {
-            user = store.findOne("{name: '" + name + "'}").as(MongoUser.class);
-        }
-        return user;
+        return store.find(Filters.eq("name", name)).first();
     }
 
     @Override
-    public User getUser(long id, boolean includeOffline)
+    protected User fetchUser(long id)
     {
-        if (id == -1)
-        {
-            return console;
-        }
-        User user = getUser(id);
-        if (includeOffline && user == null)
+        return store.find(Filters.eq("_id", id)).first();
+    }
+
+    @Override
+    protected Collection<User> fetchUsers(long[] ids)
+    {
+        List<Long> boxed = Arrays.stream(ids).boxed().collect(Collectors.toList());
+        List<User> users = new ArrayList<>(ids.length);
+        for (MongoUser user : store.find(Filters.in("_id", boxed)))
         {
-            user = store.findOne("{_id: " + id + "}").as(MongoUser.class);
+            users.add(user);
         }
-        return user;
+        return users;
     }
 
     @Override
-    public User getUser(CommandSender sender, boolean includeOffline)
+    public List<String> fetchNames()
     {
-        User user = getUser(sender);
-        if (user == null)
+        List<String> names = new ArrayList<>();
+        // only the names are sent, and they are read as plain documents since they aren't whole Users
+        for (Document user : store.withDocumentClass(Document.class)
+                                  .find(Filters.ne("_id", -1L))
+                                  .projection(Projections.include("name")))
         {
-            if (sender instanceof ConsoleCommandSender)
+            String name = user.getString("name");
+            if (name != null)
             {
-                user = getConsole();
-            }
-            else if (sender instanceof Player)
-            {
-                user = store.findOne("{uid: '" + ((Player) sender).getUniqueId() + "'}").as(MongoUser.class);
+                names.add(name);
             }
         }
-        return user;
+        return names;
     }
 
     @Override
@@ -136,15 +134,37 @@ public class MongoUserStore extends LoadUserStore
         {
             return;
         }
-        Bukkit.getScheduler().runTaskAsynchronously(Factions.getInstance(), () -> store.save(user));
+        saveQueue.submit(user);
+    }
+
+    /**
+     * Writes the given Users in a single bulk write. This runs on the calling thread.
+     *
+     * @param users the Users to write.
+     */
+    private void write(Collection<User> users)
+    {
+        List<WriteModel<MongoUser>> writes = new ArrayList<>(users.size());
+        for (User user : users)
+        {
+            writes.add(new ReplaceOneModel<>(Filters.eq("_id", user.getId()), (MongoUser) user, UPSERT));
+        }
+        if (writes.isEmpty())
+        {
+            return;
+        }
+
+        store.bulkWrite(writes, UNORDERED);
+        for (User user : users)
+        {
+            CacheCoherence.saved(user);
+        }
     }
 
     @Override
-    public User createUser(Player player)
+    protected User newUser(UUID uuid, String name)
     {
-        MongoUser user = new MongoUser(nextId, player.getUniqueId(), player.getName());
-        user.save();
-        return user;
+        return new MongoUser(ids.nextId(), uuid, name);
     }
 
 }
@@ -14,7 +14,7 @@ import com.ziluck.factions.spatial.LazyLocation;
 @JsonIgnoreProperties({ "stub" })
 public final class MongoWarp extends LoadWarp {
     /**
-     * An empty constructor. Jongo requires an empty constructor in order to load things nicely.
+     * An empty constructor. Jackson requires an empty constructor in order to load things nicely.
      */
     public MongoWarp() {
     }
@@ -3,13 +3,11 @@ package com.ziluck.factions.data.mongodb;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 
-import org.jongo.Jongo;
-
-import com.mongodb.DB;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoCredential;
 import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoDatabase;
 import com.mongodb.diagnostics.logging.Loggers;
 
 import com.ziluck.factions.configuration.Config;
@@ -26,47 +24,71 @@ public class MongoWrapper
 
     private MongoClient client;
 
-    private Jongo jongo;
+    private MongoDatabase database;
+
+    private MongoMetrics metrics;
 
     /**
-     * Constructs a new wrapper for MongoDB.
+     * Constructs a new wrapper for MongoDB. This will grab the information from the config file.
      */
-    @SuppressWarnings("deprecation")
     public MongoWrapper()
+    {
+        this(Config.DATABASE_HOSTNAME.getValue(),
+             Config.DATABASE_PORT.intValue(),
+             Config.DATABASE_USERNAME.getValue(),
+             Config.DATABASE_PASSWORD.getValue(),
+             Config.DATABASE_DATABASE.getValue());
+    }
+
+    /**
+     * Constructs a new wrapper for the given MongoDB database.
+     *
+     * @param hostname the hostname of the server.
+     * @param port     the port of the server.
+     * @param username the username of the database user.
+     * @param password the password of the database user.
+     * @param database the name of the database.
+     */
+    @SuppressWarnings("deprecation")
+    public MongoWrapper(String hostname, int port, String username, String password, String database)
     {
         instance = this;
 
-        ServerAddress addr = new ServerAddress(
-                Config.DATABASE_HOSTNAME.getValue(),
-                Config.DATABASE_PORT.intValue());
+        ServerAddress addr = new ServerAddress(hostname, port);
 
-        MongoCredential creds = MongoCredential.createCredential(
-                Config.DATABASE_USERNAME.getValue(),
-                Config.DATABASE_DATABASE.getValue(),
-                Config.DATABASE_PASSWORD.getValue().toCharArray());
+        MongoCredential creds = MongoCredential.createCredential(username, database, password.toCharArray());
 
         // Stop MongoDB from spamming the console.
         LogManager.getLogManager().getLogger(Loggers.getLogger("cluster").getName()).setLevel(Level.WARNING);
         LogManager.getLogManager().getLogger(Loggers.getLogger("connection").getName()).setLevel(Level.WARNING);
 
+        metrics = new MongoMetrics();
+
         client = new MongoClient(addr, creds, MongoClientOptions.builder()
                                                       .connectTimeout(Config.DATABASE_TIMEOUT.intValue())
-                                                      .description("Factions Connection")
+                                                      .description(Config.DATABASE_CONNECTION_DESCRIPTION.getValue())
+                                                      .connectionsPerHost(Config.DATABASE_POOL_SIZE.intValue())
+                                                      .minConnectionsPerHost(Config.DATABASE_MIN_POOL_SIZE.intValue())
+                                                      .socketTimeout(Config.DATABASE_SOCKET_TIMEOUT.intValue())
+                                                      .maxWaitTime(Config.DATABASE_MAX_WAIT_TIME.intValue())
+                                                      .threadsAllowedToBlockForConnectionMultiplier(Config.DATABASE_WAIT_QUEUE_MULTIPLIER.intValue())
+                                                      .serverSelectionTimeout(Config.DATABASE_SERVER_SELECTION_TIMEOUT.intValue())
+                                                      .addCommandListener(metrics)
+                                                      .addConnectionPoolListener(metrics)
                                                       .build());
 
-        DB db = client.getDB(Config.DATABASE_DATABASE.getValue());
-
-        jongo = new Jongo(db);
+        this.database = client.getDatabase(database).withCodecRegistry(MongoCodecs.registry());
     }
 
     /**
-     * Returns the active {@link Jongo} instance.
+     * Returns the database of this connection. Factions, Users, Warps, and Transactions are read and written with the
+     * codecs in {@link MongoCodecs}.
      *
-     * @return the active {@link Jongo} instance.
+     * @return the database.
      */
-    public Jongo getJongo()
+    public MongoDatabase getDatabase()
     {
-        return jongo;
+        return database;
     }
 
     /**
@@ -79,6 +101,24 @@ public class MongoWrapper
         return client;
     }
 
+    /**
+     * Returns the latency of the commands sent to the database and the wait times of the connection pool.
+     *
+     * @return the metrics of this connection.
+     */
+    public MongoMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Closes every connection to the database.
+     */
+    public void close()
+    {
+        client.close();
+    }
+
     /**
      * Returns the singleton instance of this MongoWrapper.
      *
@@ -0,0 +1,238 @@
+package com.ziluck.factions.data.mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.data.AnnouncementMailbox;
+import com.ziluck.factions.data.IdAllocator;
+
+/**
+ * An AnnouncementMailbox stored in MySQL.
+ * <p>
+ * Every message is a row in the announcements table, and every message waiting for a player is a row in the
+ * announcement_recipients table. A message is deleted along with the last row pointing at it, and expired messages are
+ * deleted along with every row still pointing at them whenever the mailbox is written to.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class MySQLAnnouncementMailbox extends AnnouncementMailbox
+{
+
+    private static final String INSERT_MESSAGE = "INSERT INTO announcements (id, body, expires) VALUES (?, ?, ?)";
+
+    private static final String INSERT_RECIPIENT = "INSERT INTO announcement_recipients (uid, message_id) VALUES (?, ?)";
+
+    private static final String DELETE_RECIPIENT = "DELETE FROM announcement_recipients WHERE uid = ? AND message_id = ?";
+
+    private static final String DELETE_MESSAGE = "DELETE FROM announcements WHERE id = ? AND NOT EXISTS "
+                                                 + "(SELECT 1 FROM announcement_recipients WHERE message_id = ?)";
+
+    private static final String DELETE_EXPIRED_RECIPIENTS = "DELETE FROM announcement_recipients WHERE message_id IN "
+                                                            + "(SELECT id FROM announcements WHERE expires <= ?)";
+
+    private static final String DELETE_EXPIRED_MESSAGES = "DELETE FROM announcements WHERE expires <= ?";
+
+    private final MySQLWrapper database;
+
+    private final IdAllocator ids;
+
+    /**
+     * Constructs a new MySQLAnnouncementMailbox.
+     *
+     * @param expiry how many milliseconds a message is kept before it is deleted.
+     */
+    public MySQLAnnouncementMailbox(long expiry)
+    {
+        super(expiry);
+
+        this.database = MySQLWrapper.getInstance();
+        this.ids = new MySQLIdAllocator("announcements");
+    }
+
+    @Override
+    protected Inbox fetch(UUID recipient)
+    {
+        List<Long> waiting = new ArrayList<>();
+        List<String> bodies = new ArrayList<>();
+        // expired messages are still joined so that their ids are acknowledged with the rest
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT r.message_id, m.body FROM announcement_recipients r "
+                                                                       + "LEFT JOIN announcements m ON m.id = r.message_id AND m.expires > ? "
+                                                                       + "WHERE r.uid = ? ORDER BY m.expires, r.message_id"))
+        {
+            statement.setLong(1, System.currentTimeMillis());
+            statement.setString(2, recipient.toString());
+            try (ResultSet result = statement.executeQuery())
+            {
+                while (result.next())
+                {
+                    waiting.add(result.getLong(1));
+                    String body = result.getString(2);
+                    if (body != null)
+                    {
+                        bodies.add(body);
+                    }
+                }
+            }
+        }
+        catch (SQLException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.SEVERE, "Could not load the announcements for " + recipient + ".", ex);
+            return Inbox.empty();
+        }
+        return new Inbox(waiting.stream().mapToLong(Long::longValue).toArray(), bodies);
+    }
+
+    @Override
+    protected Multimap<UUID, String> fetch(Collection<UUID> recipients)
+    {
+        Multimap<UUID, String> found = ArrayListMultimap.create();
+        if (recipients.isEmpty())
+        {
+            return found;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(recipients.size(), "?"));
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT r.uid, m.body FROM announcement_recipients r "
+                                                                       + "JOIN announcements m ON m.id = r.message_id "
+                                                                       + "WHERE m.expires > ? AND r.uid IN (" + placeholders + ") "
+                                                                       + "ORDER BY m.expires, r.message_id"))
+        {
+            statement.setLong(1, System.currentTimeMillis());
+            int index = 2;
+            for (UUID recipient : recipients)
+            {
+                statement.setString(index++, recipient.toString());
+            }
+            try (ResultSet result = statement.executeQuery())
+            {
+                while (result.next())
+                {
+                    found.put(UUID.fromString(result.getString(1)), result.getString(2));
+                }
+            }
+        }
+        catch (SQLException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.SEVERE, "Could not load the announcements.", ex);
+        }
+        return found;
+    }
+
+    @Override
+    protected void write(Collection<Change> changes) throws SQLException
+    {
+        try (Connection connection = database.getConnection())
+        {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insertMessage = connection.prepareStatement(INSERT_MESSAGE);
+                 PreparedStatement insertRecipient = connection.prepareStatement(INSERT_RECIPIENT);
+                 PreparedStatement deleteRecipient = connection.prepareStatement(DELETE_RECIPIENT);
+                 PreparedStatement deleteMessage = connection.prepareStatement(DELETE_MESSAGE);
+                 PreparedStatement deleteExpiredRecipients = connection.prepareStatement(DELETE_EXPIRED_RECIPIENTS);
+                 PreparedStatement deleteExpiredMessages = connection.prepareStatement(DELETE_EXPIRED_MESSAGES))
+            {
+                for (Change change : changes)
+                {
+                    if (change instanceof Post)
+                    {
+                        Post post = (Post) change;
+                        for (String body : post.getBodies())
+                        {
+                            long id = ids.nextId();
+                            insertMessage.setLong(1, id);
+                            insertMessage.setString(2, body);
+                            insertMessage.setLong(3, post.getExpires());
+                            insertMessage.addBatch();
+                            for (UUID recipient : post.getRecipients())
+                            {
+                                insertRecipient.setString(1, recipient.toString());
+                                insertRecipient.setLong(2, id);
+                                insertRecipient.addBatch();
+                            }
+                        }
+                    }
+                    else
+                    {
+                        Acknowledgement acknowledgement = (Acknowledgement) change;
+                        String recipient = acknowledgement.getRecipient().toString();
+                        long[] acknowledged = acknowledgement.getIds() == null ? selectWaiting(connection, recipient) : acknowledgement.getIds();
+                        for (long id : acknowledged)
+                        {
+                            deleteRecipient.setString(1, recipient);
+                            deleteRecipient.setLong(2, id);
+                            deleteRecipient.addBatch();
+                            // only deleted once no one else is waiting for it
+                            deleteMessage.setLong(1, id);
+                            deleteMessage.setLong(2, id);
+                            deleteMessage.addBatch();
+                        }
+                    }
+                }
+
+                insertMessage.executeBatch();
+                insertRecipient.executeBatch();
+                deleteRecipient.executeBatch();
+                deleteMessage.executeBatch();
+
+                long now = System.currentTimeMillis();
+                deleteExpiredRecipients.setLong(1, now);
+                deleteExpiredRecipients.executeUpdate();
+                deleteExpiredMessages.setLong(1, now);
+                deleteExpiredMessages.executeUpdate();
+
+                connection.commit();
+            }
+            catch (SQLException ex)
+            {
+                connection.rollback();
+                throw ex;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Selects the ids of every message waiting for the given player.
+     *
+     * @param connection the connection to read with.
+     * @param recipient  the UUID of the player.
+     *
+     * @return the ids.
+     *
+     * @throws SQLException if they could not be read.
+     */
+    private static long[] selectWaiting(Connection connection, String recipient) throws SQLException
+    {
+        List<Long> waiting = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT message_id FROM announcement_recipients WHERE uid = ?"))
+        {
+            statement.setString(1, recipient);
+            try (ResultSet result = statement.executeQuery())
+            {
+                while (result.next())
+                {
+                    waiting.add(result.getLong(1));
+                }
+            }
+        }
+        return waiting.stream().mapToLong(Long::longValue).toArray();
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.ziluck.factions.data.mysql;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.claims.Claim2D;
+
+/**
+ * Claim implementation for saving to MySQL.
+ *
+ * @author Michael Ziluck
+ */
+public class MySQLClaim2D extends Claim2D
+{
+
+    /**
+     * Creates a claim that was loaded from the database.
+     *
+     * @param faction the faction that owns the claim.
+     * @param world   the name of the world the claim is in.
+     * @param x1      the lowest x.
+     * @param z1      the lowest z.
+     * @param x2      the greatest x.
+     * @param z2      the greatest z.
+     * @param cost    how much the claim cost.
+     */
+    MySQLClaim2D(Faction faction, String world, double x1, double z1, double x2, double z2, double cost)
+    {
+        this.faction = faction;
+        this.world = world;
+        this.x1 = x1;
+        this.z1 = z1;
+        this.x2 = x2;
+        this.z2 = z2;
+        this.cost = cost;
+    }
+
+}
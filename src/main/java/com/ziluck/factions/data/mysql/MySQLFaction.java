@@ -0,0 +1,238 @@
+package com.ziluck.factions.data.mysql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.ziluck.factions.base.FactionStore;
+import com.ziluck.factions.base.Transaction;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.Warp;
+import com.ziluck.factions.base.claims.Claim;
+import com.ziluck.factions.base.claims.Claim2D;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.base.struct.Flag;
+import com.ziluck.factions.base.struct.Role;
+import com.ziluck.factions.data.LoadFaction;
+import com.ziluck.factions.spatial.LazyLocation;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Faction implementation for saving to MySQL.
+ * <p>
+ * Unlike the document stores, the transaction history of a MySQLFaction is not loaded with the rest of the Faction. It
+ * is only queried the first time it is accessed.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class MySQLFaction extends LoadFaction
+{
+    protected long id;
+
+    /**
+     * Creates a Faction from the current row of a query on the factions table. The members, warps, and claims are added
+     * afterwards by the {@link MySQLFactionStore}.
+     *
+     * @param result the result of the query.
+     *
+     * @throws SQLException if the row could not be read.
+     */
+    MySQLFaction(ResultSet result) throws SQLException
+    {
+        this.id = result.getLong("id");
+        this.name = result.getString("name");
+        this.description = result.getString("description");
+        this.motd = result.getString("motd");
+        this.type = FactionType.valueOf(result.getString("type"));
+        String role = result.getString("default_role");
+        this.defaultRole = role == null ? null : Role.valueOf(role);
+        this.founded = result.getLong("founded");
+        this.balance = result.getDouble("balance");
+        this.leaderId = result.getLong("leader_id");
+        for (String flag : result.getString("flags").split(","))
+        {
+            if (!flag.isEmpty())
+            {
+                getFlags().add(Flag.valueOf(flag));
+            }
+        }
+        String homeWorld = result.getString("home_world");
+        if (homeWorld != null)
+        {
+            this.home = new LazyLocation(result.getDouble("home_x"), result.getDouble("home_y"), result.getDouble("home_z"), homeWorld);
+        }
+    }
+
+    /**
+     * Creates an empty Faction with the given id to be filled in by {@link #snapshot()}.
+     *
+     * @param id the id of the Faction.
+     */
+    private MySQLFaction(long id)
+    {
+        this.id = id;
+    }
+
+    /**
+     * Create a new Faction with the given information. This should only be used when a new Faction is made, not to load
+     * an already existing Faction.
+     *
+     * @param id     the id of the Faction.
+     * @param name   the name of the Faction.
+     * @param leader the person making the new Faction.
+     * @param type   the type of the Faction.
+     */
+    public MySQLFaction(long id, String name, User leader, FactionType type)
+    {
+        this.id = id;
+        this.name = name;
+        this.leader = leader;
+        this.leaderId = leader.getId();
+        this.type = type;
+    }
+
+    /**
+     * Creates a copy of a Faction from another database, such as when migrating between databases. None of the copied
+     * transactions are considered persisted.
+     *
+     * @param source the Faction to copy.
+     */
+    MySQLFaction(LoadFaction source)
+    {
+        copyFrom(source);
+        this.id = source.getId();
+
+        for (Warp warp : source.getWarps())
+        {
+            addLoadedWarp(new MySQLWarp(warp.getName(), warp.getLocation(), warp.getPassword() != null, warp.getPassword()));
+        }
+        for (Claim claim : source.getClaims())
+        {
+            Claim2D claim2D = (Claim2D) claim;
+            addLoadedClaim(new MySQLClaim2D(this, claim2D.getWorldName(), claim2D.getMinX(), claim2D.getMinZ(), claim2D.getMaxX(), claim2D.getMaxZ(), claim2D.getCost()));
+        }
+        this.transactions = new ArrayList<>();
+        for (Transaction transaction : source.getTransactionHistory())
+        {
+            transactions.add(new MySQLTransaction(transaction.getUserId(), transaction.getDate(), transaction.getAmount(), false));
+        }
+    }
+
+    @Override
+    public void save()
+    {
+        FactionStore.getInstance().save(this);
+    }
+
+    /**
+     * Creates a copy of this Faction as it is now that can be written on another thread. This must be called on the
+     * thread that changes this Faction. If the transactions were not read yet, the copy leaves them out, since there are
+     * no new ones to write.
+     *
+     * @return the copy.
+     */
+    MySQLFaction snapshot()
+    {
+        MySQLFaction copy = new MySQLFaction(id);
+        copy.snapshotFrom(this);
+        return copy;
+    }
+
+    @Override
+    protected Warp createWarp(String name, LazyLocation location, String password)
+    {
+        MySQLWarp warp = new MySQLWarp(name, location, password != null, password == null ? null : DigestUtils.md5Hex(password));
+
+        getWarpsMap().put(warp.getStub(), warp);
+
+        save();
+
+        return warp;
+    }
+
+    @Override
+    public void withdraw(User user, double amount)
+    {
+        balance -= amount;
+        getTransactionHistory().add(new MySQLTransaction(user, new Date(), -amount));
+        save();
+    }
+
+    @Override
+    public void deposit(User user, double amount)
+    {
+        balance += amount;
+        getTransactionHistory().add(new MySQLTransaction(user, new Date(), amount));
+        save();
+    }
+
+    @Override
+    public List<Transaction> getTransactionHistory()
+    {
+        if (transactions == null)
+        {
+            transactions = new ArrayList<>(((MySQLFactionStore) FactionStore.getInstance()).loadTransactions(id));
+        }
+        return transactions;
+    }
+
+    @Override
+    public long getId()
+    {
+        return id;
+    }
+
+    /**
+     * @return {@code true} if the transaction history has been loaded from the database or added to.
+     */
+    boolean hasLoadedTransactions()
+    {
+        return transactions != null;
+    }
+
+    /**
+     * Sets the transaction history that was loaded from the database.
+     *
+     * @param transactions the loaded transactions from oldest to newest.
+     */
+    void setLoadedTransactions(List<Transaction> transactions)
+    {
+        this.transactions = transactions;
+    }
+
+    /**
+     * Sets the ids of the members that were loaded from the database.
+     *
+     * @param memberIds the ids of the members.
+     */
+    void setMemberIds(long[] memberIds)
+    {
+        this.memberIds = memberIds;
+    }
+
+    /**
+     * Adds a warp that was loaded from the database.
+     *
+     * @param warp the loaded warp.
+     */
+    void addLoadedWarp(MySQLWarp warp)
+    {
+        getWarpsMap().put(warp.getStub(), warp);
+    }
+
+    /**
+     * Adds a claim that was loaded from the database.
+     *
+     * @param claim the loaded claim.
+     */
+    void addLoadedClaim(MySQLClaim2D claim)
+    {
+        assertClaims();
+
+        claims.add(claim);
+    }
+
+}
@@ -0,0 +1,550 @@
+package com.ziluck.factions.data.mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.Transaction;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.UserStore;
+import com.ziluck.factions.base.Warp;
+import com.ziluck.factions.base.claims.Claim;
+import com.ziluck.factions.base.claims.Claim2D;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.configuration.Config;
+import com.ziluck.factions.data.LoadFactionStore;
+import com.ziluck.factions.data.SaveQueue;
+import com.ziluck.factions.events.FactionCreateEvent;
+import com.ziluck.factions.spatial.LazyLocation;
+import org.apache.commons.lang.Validate;
+import org.bukkit.entity.Player;
+
+/**
+ * Faction implementation for processing Factions from MySQL.
+ * <p>
+ * Each Faction is stored across several normalized tables. Saving a Faction rewrites its members, warps, and claims and
+ * appends any new transactions. All of those statements are batched and run within a single database transaction, so
+ * saving any number of Factions through {@link #saveAll(Collection)} only takes a handful of round-trips.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class MySQLFactionStore extends LoadFactionStore
+{
+
+    private static final String UPSERT_FACTION = "INSERT INTO factions (id, name, description, motd, type, default_role, founded, balance, leader_id, flags, home_world, home_x, home_y, home_z) "
+                                                 + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+                                                 + "ON DUPLICATE KEY UPDATE name = VALUES(name), description = VALUES(description), motd = VALUES(motd), "
+                                                 + "type = VALUES(type), default_role = VALUES(default_role), founded = VALUES(founded), balance = VALUES(balance), "
+                                                 + "leader_id = VALUES(leader_id), flags = VALUES(flags), home_world = VALUES(home_world), "
+                                                 + "home_x = VALUES(home_x), home_y = VALUES(home_y), home_z = VALUES(home_z)";
+
+    private static final String DELETE_MEMBERS = "DELETE FROM faction_members WHERE faction_id = ?";
+
+    private static final String INSERT_MEMBER = "INSERT INTO faction_members (faction_id, user_id) VALUES (?, ?)";
+
+    private static final String DELETE_WARPS = "DELETE FROM faction_warps WHERE faction_id = ?";
+
+    private static final String INSERT_WARP = "INSERT INTO faction_warps (faction_id, stub, name, world, x, y, z, password) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String DELETE_CLAIMS = "DELETE FROM faction_claims WHERE faction_id = ?";
+
+    private static final String INSERT_CLAIM = "INSERT INTO faction_claims (faction_id, world, x1, z1, x2, z2, cost) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_TRANSACTION = "INSERT INTO faction_transactions (faction_id, uid, created, amount) VALUES (?, ?, ?, ?)";
+
+    private MySQLWrapper database;
+
+    /**
+     * Construct a new MySQLFactionStore. This will grab the information from the config file.
+     */
+    public MySQLFactionStore()
+    {
+        super();
+
+        saveQueue = new SaveQueue<>("factions", Faction::getId, this::write);
+
+        database = MySQLWrapper.getInstance();
+
+        loadFactions();
+    }
+
+    @Override
+    public Faction getFaction(UUID uuid)
+    {
+        Validate.notNull(uuid, "Uuid can't be null.");
+
+        User user = UserStore.getInstance().getUser(uuid);
+        if (user == null)
+        {
+            return null;
+        }
+        return user.getFaction();
+    }
+
+    @Override
+    public Faction getFaction(User user)
+    {
+        Validate.notNull(user, "User can't be null.");
+
+        return user.getFaction();
+    }
+
+    @Override
+    public Faction getFaction(Player player)
+    {
+        Validate.notNull(player, "Player can't be null.");
+
+        return UserStore.getInstance().getUser(player.getUniqueId(), true).getFaction();
+    }
+
+    /**
+     * Adds the Faction to every index.
+     *
+     * @param faction the Faction to add.
+     */
+    private void index(Faction faction)
+    {
+        factions.add(faction);
+        leaderboards.update(faction);
+    }
+
+    @Override
+    public void loadFactions()
+    {
+        Map<Long, MySQLFaction> loaded;
+        try (Connection connection = database.getConnection())
+        {
+            loaded = readFactions(connection, Long.MIN_VALUE, Integer.MAX_VALUE, false);
+        }
+        catch (SQLException ex)
+        {
+            throw new IllegalStateException("Could not load the factions from MySQL.", ex);
+        }
+
+        for (MySQLFaction faction : loaded.values())
+        {
+            if (faction.getId() == -1)
+            {
+                wilderness = faction;
+            }
+            index(faction);
+            for (Claim claim : faction.getClaims())
+            {
+                indexClaim(faction, (Claim2D) claim);
+            }
+        }
+
+        if (wilderness == null)
+        {
+            wilderness = new MySQLFaction(-1, "Wilderness", UserStore.getInstance().getConsole(), FactionType.WILDERNESS);
+            index(wilderness);
+            saveAll(Collections.singleton(wilderness));
+        }
+
+        ids = new MySQLIdAllocator("factions");
+    }
+
+    /**
+     * Reads a page of Factions ordered by their id, along with their members, warps, and claims. This runs on the
+     * calling thread and does not index anything.
+     *
+     * @param connection       the connection to read with.
+     * @param afterId          only Factions with an id greater than this are read.
+     * @param limit            the most Factions to read.
+     * @param withTransactions whether the transaction histories should be read now instead of on first access.
+     *
+     * @return the read Factions by their id, in order.
+     *
+     * @throws SQLException if the Factions could not be read.
+     */
+    static Map<Long, MySQLFaction> readFactions(Connection connection, long afterId, int limit, boolean withTransactions) throws SQLException
+    {
+        Map<Long, MySQLFaction> loaded = new LinkedHashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM factions WHERE id > ? ORDER BY id LIMIT ?"))
+        {
+            statement.setLong(1, afterId);
+            statement.setInt(2, limit);
+            try (ResultSet result = statement.executeQuery())
+            {
+                while (result.next())
+                {
+                    MySQLFaction faction = new MySQLFaction(result);
+                    loaded.put(faction.getId(), faction);
+                }
+            }
+        }
+        if (loaded.isEmpty())
+        {
+            return loaded;
+        }
+
+        // the page is ordered, so everything belonging to it is between its first and last id
+        long first = loaded.keySet().iterator().next();
+        long last = first;
+        for (long id : loaded.keySet())
+        {
+            last = id;
+        }
+
+        Map<Long, List<Long>> members = new HashMap<>();
+        try (ResultSet result = queryRange(connection, "SELECT faction_id, user_id FROM faction_members", first, last))
+        {
+            while (result.next())
+            {
+                members.computeIfAbsent(result.getLong(1), id -> new ArrayList<>()).add(result.getLong(2));
+            }
+        }
+        for (Map.Entry<Long, List<Long>> entry : members.entrySet())
+        {
+            MySQLFaction faction = loaded.get(entry.getKey());
+            if (faction != null)
+            {
+                faction.setMemberIds(entry.getValue().stream().mapToLong(Long::longValue).toArray());
+            }
+        }
+
+        try (ResultSet result = queryRange(connection, "SELECT * FROM faction_warps", first, last))
+        {
+            while (result.next())
+            {
+                MySQLFaction faction = loaded.get(result.getLong("faction_id"));
+                if (faction != null)
+                {
+                    String password = result.getString("password");
+                    LazyLocation location = new LazyLocation(result.getDouble("x"), result.getDouble("y"), result.getDouble("z"), result.getString("world"));
+                    faction.addLoadedWarp(new MySQLWarp(result.getString("name"), location, password != null, password));
+                }
+            }
+        }
+
+        try (ResultSet result = queryRange(connection, "SELECT * FROM faction_claims", first, last))
+        {
+            while (result.next())
+            {
+                MySQLFaction faction = loaded.get(result.getLong("faction_id"));
+                if (faction != null)
+                {
+                    faction.addLoadedClaim(new MySQLClaim2D(faction, result.getString("world"),
+                                                            result.getDouble("x1"), result.getDouble("z1"),
+                                                            result.getDouble("x2"), result.getDouble("z2"),
+                                                            result.getDouble("cost")));
+                }
+            }
+        }
+
+        if (withTransactions)
+        {
+            Map<Long, List<Transaction>> transactions = new HashMap<>();
+            try (ResultSet result = queryRange(connection, "SELECT faction_id, uid, created, amount FROM faction_transactions", first, last))
+            {
+                while (result.next())
+                {
+                    transactions.computeIfAbsent(result.getLong(1), id -> new ArrayList<>())
+                                .add(new MySQLTransaction(UUID.fromString(result.getString(2)), new Date(result.getLong(3)), result.getDouble(4)));
+                }
+            }
+            for (MySQLFaction faction : loaded.values())
+            {
+                faction.setLoadedTransactions(transactions.getOrDefault(faction.getId(), new ArrayList<>()));
+            }
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Runs the given query on every row whose faction_id is within the given range, ordered by the id of the row.
+     *
+     * @param connection the connection to query with.
+     * @param select     the select and from clauses of the query.
+     * @param first      the lowest faction id.
+     * @param last       the highest faction id.
+     *
+     * @return the result of the query. Closing it also closes the statement.
+     *
+     * @throws SQLException if the query failed.
+     */
+    private static ResultSet queryRange(Connection connection, String select, long first, long last) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement(select + " WHERE faction_id BETWEEN ? AND ? ORDER BY faction_id");
+        statement.closeOnCompletion();
+        statement.setLong(1, first);
+        statement.setLong(2, last);
+        return statement.executeQuery();
+    }
+
+    /**
+     * Loads the transaction history of the Faction with the given id. This runs on the calling thread.
+     *
+     * @param factionId the id of the Faction.
+     *
+     * @return the transactions of the Faction from oldest to newest.
+     */
+    List<Transaction> loadTransactions(long factionId)
+    {
+        List<Transaction> transactions = new ArrayList<>();
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT uid, created, amount FROM faction_transactions WHERE faction_id = ? ORDER BY id"))
+        {
+            statement.setLong(1, factionId);
+            try (ResultSet result = statement.executeQuery())
+            {
+                while (result.next())
+                {
+                    transactions.add(new MySQLTransaction(UUID.fromString(result.getString(1)), new Date(result.getLong(2)), result.getDouble(3)));
+                }
+            }
+        }
+        catch (SQLException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.SEVERE, "Could not load the transactions of faction " + factionId + ".", ex);
+        }
+        return transactions;
+    }
+
+    @Override
+    public void save(Faction faction)
+    {
+        Validate.notNull(faction, "Faction can't be null.");
+
+        if (factions.get(faction.getId()) == null)
+        {
+            // a new Faction is indexed the first time it is saved
+            index(faction);
+        }
+        else
+        {
+            leaderboards.update(faction);
+        }
+
+        // the Faction keeps changing on this thread, so only a copy of it is handed to the thread that writes it
+        if (faction instanceof MySQLFaction)
+        {
+            ((MySQLFaction) faction).touch();
+            faction = ((MySQLFaction) faction).snapshot();
+        }
+        saveQueue.submit(faction);
+    }
+
+    /**
+     * Writes the given Factions as a single database transaction. This runs on the calling thread.
+     *
+     * @param factions the Factions to write.
+     *
+     * @throws SQLException if the Factions could not be written.
+     */
+    private void write(Collection<Faction> factions) throws SQLException
+    {
+        List<MySQLFaction> mysqlFactions = factions.stream()
+                                                   .filter(f -> f instanceof MySQLFaction)
+                                                   .map(f -> (MySQLFaction) f)
+                                                   .collect(Collectors.toList());
+        if (mysqlFactions.isEmpty())
+        {
+            return;
+        }
+
+        try (Connection connection = database.getConnection())
+        {
+            writeFactions(connection, mysqlFactions);
+        }
+    }
+
+    /**
+     * Writes all the given Factions to the database. Every statement is batched and everything is committed as a single
+     * database transaction. This runs on the calling thread.
+     *
+     * @param factions the Factions to save.
+     */
+    public void saveAll(Collection<Faction> factions)
+    {
+        try
+        {
+            write(factions);
+        }
+        catch (SQLException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.SEVERE, "Could not save factions to MySQL.", ex);
+        }
+    }
+
+    /**
+     * Writes all the given Factions as a single database transaction. Once it is committed, every transaction that was
+     * written is marked as persisted. When the Factions are copies from {@link MySQLFaction#snapshot()}, only the
+     * transactions in the copies are written, and since the copies share them with the original Factions, the originals
+     * see them as persisted too.
+     *
+     * @param connection the connection to write with.
+     * @param factions   the Factions to write.
+     *
+     * @throws SQLException if the Factions could not be written. Nothing is written in that case.
+     */
+    static void writeFactions(Connection connection, Collection<MySQLFaction> factions) throws SQLException
+    {
+        List<MySQLTransaction> inserted = new ArrayList<>();
+        connection.setAutoCommit(false);
+        try (PreparedStatement upsertFaction = connection.prepareStatement(UPSERT_FACTION);
+             PreparedStatement deleteMembers = connection.prepareStatement(DELETE_MEMBERS);
+             PreparedStatement insertMember = connection.prepareStatement(INSERT_MEMBER);
+             PreparedStatement deleteWarps = connection.prepareStatement(DELETE_WARPS);
+             PreparedStatement insertWarp = connection.prepareStatement(INSERT_WARP);
+             PreparedStatement deleteClaims = connection.prepareStatement(DELETE_CLAIMS);
+             PreparedStatement insertClaim = connection.prepareStatement(INSERT_CLAIM);
+             PreparedStatement insertTransaction = connection.prepareStatement(INSERT_TRANSACTION))
+        {
+            for (MySQLFaction faction : factions)
+            {
+                long id = faction.getId();
+
+                bindFaction(upsertFaction, faction);
+                upsertFaction.addBatch();
+
+                deleteMembers.setLong(1, id);
+                deleteMembers.addBatch();
+                for (long memberId : faction.getMemberIds())
+                {
+                    insertMember.setLong(1, id);
+                    insertMember.setLong(2, memberId);
+                    insertMember.addBatch();
+                }
+
+                deleteWarps.setLong(1, id);
+                deleteWarps.addBatch();
+                for (Warp warp : faction.getWarps())
+                {
+                    insertWarp.setLong(1, id);
+                    insertWarp.setString(2, warp.getStub());
+                    insertWarp.setString(3, warp.getName());
+                    insertWarp.setString(4, warp.getLocation().getWorldName());
+                    insertWarp.setDouble(5, warp.getLocation().getX());
+                    insertWarp.setDouble(6, warp.getLocation().getY());
+                    insertWarp.setDouble(7, warp.getLocation().getZ());
+                    insertWarp.setString(8, warp.getPassword());
+                    insertWarp.addBatch();
+                }
+
+                deleteClaims.setLong(1, id);
+                deleteClaims.addBatch();
+                for (Claim claim : faction.getClaims())
+                {
+                    Claim2D claim2D = (Claim2D) claim;
+                    insertClaim.setLong(1, id);
+                    insertClaim.setString(2, claim2D.getWorldName());
+                    insertClaim.setDouble(3, claim2D.getMinX());
+                    insertClaim.setDouble(4, claim2D.getMinZ());
+                    insertClaim.setDouble(5, claim2D.getMaxX());
+                    insertClaim.setDouble(6, claim2D.getMaxZ());
+                    insertClaim.setDouble(7, claim2D.getCost());
+                    insertClaim.addBatch();
+                }
+
+                // transactions are only ever appended, so only the new ones need to be written
+                if (faction.hasLoadedTransactions())
+                {
+                    for (Transaction transaction : faction.getTransactionHistory())
+                    {
+                        if (transaction instanceof MySQLTransaction && !((MySQLTransaction) transaction).isPersisted())
+                        {
+                            insertTransaction.setLong(1, id);
+                            insertTransaction.setString(2, transaction.getUserId().toString());
+                            insertTransaction.setLong(3, transaction.getDate().getTime());
+                            insertTransaction.setDouble(4, transaction.getAmount());
+                            insertTransaction.addBatch();
+                            inserted.add((MySQLTransaction) transaction);
+                        }
+                    }
+                }
+            }
+
+            upsertFaction.executeBatch();
+            deleteMembers.executeBatch();
+            insertMember.executeBatch();
+            deleteWarps.executeBatch();
+            insertWarp.executeBatch();
+            deleteClaims.executeBatch();
+            insertClaim.executeBatch();
+            insertTransaction.executeBatch();
+            connection.commit();
+        }
+        catch (SQLException ex)
+        {
+            connection.rollback();
+            throw ex;
+        }
+        finally
+        {
+            connection.setAutoCommit(true);
+        }
+
+        for (MySQLTransaction transaction : inserted)
+        {
+            transaction.persisted = true;
+        }
+    }
+
+    /**
+     * Binds the values of the Faction to the upsert statement.
+     *
+     * @param statement the upsert statement.
+     * @param faction   the Faction to bind.
+     *
+     * @throws SQLException if a value could not be bound.
+     */
+    private static void bindFaction(PreparedStatement statement, MySQLFaction faction) throws SQLException
+    {
+        statement.setLong(1, faction.getId());
+        statement.setString(2, faction.getName());
+        statement.setString(3, faction.getDescription());
+        statement.setString(4, faction.getMOTD());
+        statement.setString(5, faction.getType().name());
+        statement.setString(6, faction.getDefaultRole() == null ? null : faction.getDefaultRole().name());
+        statement.setLong(7, faction.getFounded());
+        statement.setDouble(8, faction.getBalance());
+        statement.setLong(9, faction.getLeaderId());
+        statement.setString(10, faction.getFlags().stream().map(Enum::name).collect(Collectors.joining(",")));
+        LazyLocation home = faction.getHome();
+        if (home == null)
+        {
+            statement.setNull(11, Types.VARCHAR);
+            statement.setNull(12, Types.DOUBLE);
+            statement.setNull(13, Types.DOUBLE);
+            statement.setNull(14, Types.DOUBLE);
+        }
+        else
+        {
+            statement.setString(11, home.getWorldName());
+            statement.setDouble(12, home.getX());
+            statement.setDouble(13, home.getY());
+            statement.setDouble(14, home.getZ());
+        }
+    }
+
+    @Override
+    public FactionCreateEvent createFaction(User creator, String name, FactionType type)
+    {
+        Validate.notNull(creator, "Creator can't be null.");
+        Validate.notNull(name, "Name can't be null.");
+        Validate.notNull(type, "Type can't be null.");
+
+        MySQLFaction faction = new MySQLFaction(ids.nextId(), name, creator, type);
+
+        return new FactionCreateEvent(faction, creator, Config.CREATE_COST.doubleValue());
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.ziluck.factions.data.mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+
+import com.ziluck.factions.configuration.Config;
+import com.ziluck.factions.data.IdAllocator;
+
+/**
+ * Reserves blocks of ids from a row in the id_counters table. The row is incremented and read back within a single
+ * database transaction, so the row lock keeps any amount of servers from reserving the same block.
+ *
+ * @author Michael Ziluck
+ */
+public class MySQLIdAllocator extends IdAllocator
+{
+
+    private final MySQLWrapper database;
+
+    private final String name;
+
+    /**
+     * Constructs a new allocator for the ids of the given table using the configured block size.
+     *
+     * @param table the name of the table the ids are used in.
+     */
+    public MySQLIdAllocator(String table)
+    {
+        this(table, Config.ID_BLOCK_SIZE.intValue());
+    }
+
+    /**
+     * Constructs a new allocator for the ids of the given table. If the counter does not exist yet, or is behind the ids
+     * already in the table, it is moved up to one past the highest id in use.
+     *
+     * @param table     the name of the table the ids are used in.
+     * @param blockSize how many ids to reserve at once.
+     */
+    public MySQLIdAllocator(String table, int blockSize)
+    {
+        super(blockSize);
+
+        this.database = MySQLWrapper.getInstance();
+        this.name = table;
+
+        try (Connection connection = database.getConnection())
+        {
+            long first;
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT MAX(id) FROM " + table))
+            {
+                first = result.next() ? Math.max(0, result.getLong(1) + 1) : 0;
+            }
+
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO id_counters (name, next) VALUES (?, ?)"))
+            {
+                insert.setString(1, name);
+                insert.setLong(2, first);
+                insert.executeUpdate();
+            }
+            catch (SQLIntegrityConstraintViolationException ex)
+            {
+                try (PreparedStatement update = connection.prepareStatement("UPDATE id_counters SET next = GREATEST(next, ?) WHERE name = ?"))
+                {
+                    update.setLong(1, first);
+                    update.setString(2, name);
+                    update.executeUpdate();
+                }
+            }
+        }
+        catch (SQLException ex)
+        {
+            throw new IllegalStateException("Could not create the id counter for " + table + ".", ex);
+        }
+    }
+
+    @Override
+    protected long reserveBlock(int size)
+    {
+        try (Connection connection = database.getConnection())
+        {
+            connection.setAutoCommit(false);
+            try (PreparedStatement update = connection.prepareStatement("UPDATE id_counters SET next = next + ? WHERE name = ?");
+                 PreparedStatement select = connection.prepareStatement("SELECT next FROM id_counters WHERE name = ?"))
+            {
+                update.setInt(1, size);
+                update.setString(2, name);
+                update.executeUpdate();
+
+                select.setString(1, name);
+                long next;
+                try (ResultSet result = select.executeQuery())
+                {
+                    result.next();
+                    next = result.getLong(1);
+                }
+                connection.commit();
+                return next - size;
+            }
+            catch (SQLException ex)
+            {
+                connection.rollback();
+                throw ex;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (SQLException ex)
+        {
+            throw new IllegalStateException("Could not reserve ids for " + name + ".", ex);
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.ziluck.factions.data.mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.data.LoadFaction;
+import com.ziluck.factions.data.migration.MigrationBackend;
+
+/**
+ * Migrates Users and Factions from or to MySQL.
+ *
+ * @author Michael Ziluck
+ */
+public class MySQLMigrationBackend implements MigrationBackend
+{
+
+    private final MySQLWrapper database;
+
+    /**
+     * Constructs a new MySQLMigrationBackend for the database of the given wrapper.
+     *
+     * @param database the connection to the database.
+     */
+    public MySQLMigrationBackend(MySQLWrapper database)
+    {
+        this.database = database;
+    }
+
+    @Override
+    public List<User> readUsers(long afterId, int limit)
+    {
+        try (Connection connection = database.getConnection())
+        {
+            return MySQLUserStore.readUsers(connection, afterId, limit);
+        }
+        catch (SQLException ex)
+        {
+            throw new IllegalStateException("Could not read users from MySQL.", ex);
+        }
+    }
+
+    @Override
+    public List<Faction> readFactions(long afterId, int limit)
+    {
+        try (Connection connection = database.getConnection())
+        {
+            return new ArrayList<>(MySQLFactionStore.readFactions(connection, afterId, limit, true).values());
+        }
+        catch (SQLException ex)
+        {
+            throw new IllegalStateException("Could not read factions from MySQL.", ex);
+        }
+    }
+
+    @Override
+    public User convertUser(User user)
+    {
+        return new MySQLUser(user);
+    }
+
+    @Override
+    public Faction convertFaction(Faction faction)
+    {
+        return new MySQLFaction((LoadFaction) faction);
+    }
+
+    @Override
+    public void writeUsers(List<User> users)
+    {
+        try (Connection connection = database.getConnection())
+        {
+            MySQLUserStore.writeUsers(connection, users);
+        }
+        catch (SQLException ex)
+        {
+            throw new IllegalStateException("Could not write users to MySQL.", ex);
+        }
+    }
+
+    @Override
+    public void writeFactions(List<Faction> factions)
+    {
+        List<MySQLFaction> mysqlFactions = new ArrayList<>(factions.size());
+        for (Faction faction : factions)
+        {
+            mysqlFactions.add((MySQLFaction) faction);
+        }
+
+        try (Connection connection = database.getConnection())
+        {
+            // the copied transactions are all written again, so any from a previous attempt have to go first
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM faction_transactions WHERE faction_id = ?"))
+            {
+                for (MySQLFaction faction : mysqlFactions)
+                {
+                    statement.setLong(1, faction.getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            MySQLFactionStore.writeFactions(connection, mysqlFactions);
+        }
+        catch (SQLException ex)
+        {
+            throw new IllegalStateException("Could not write factions to MySQL.", ex);
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.ziluck.factions.data.mysql;
+
+import java.util.Date;
+import java.util.UUID;
+
+import com.google.common.base.Preconditions;
+import com.ziluck.factions.base.Transaction;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.data.LoadTransaction;
+
+/**
+ * Transaction implementation for saving to MySQL.
+ * <p>
+ * Transactions are never modified once they are made, so they are only ever inserted into the database once. Whether
+ * or not that has happened is tracked by {@link #isPersisted()}.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class MySQLTransaction extends LoadTransaction
+{
+    /**
+     * Set by the thread that writes the Faction, and read by whichever thread writes it next.
+     */
+    protected volatile boolean persisted;
+
+    /**
+     * Creates a new {@link Transaction} with the given parameters.
+     *
+     * @param user   the user that made the transaction.
+     * @param amount the amount of the transaction.
+     * @param date   the date this transaction was made.
+     */
+    public MySQLTransaction(User user, Date date, double amount)
+    {
+        Preconditions.checkNotNull(user, "User can't be null.");
+        Preconditions.checkNotNull(date, "Date can't be null.");
+
+        this.user = user;
+        this.userId = user.getUniqueId();
+        this.date = date;
+        this.amount = amount;
+    }
+
+    /**
+     * Creates a {@link Transaction} that was loaded from the database.
+     *
+     * @param userId the uuid of the user that made the transaction.
+     * @param date   the date this transaction was made.
+     * @param amount the amount of the transaction.
+     */
+    MySQLTransaction(UUID userId, Date date, double amount)
+    {
+        this(userId, date, amount, true);
+    }
+
+    /**
+     * Creates a {@link Transaction} with the given parameters.
+     *
+     * @param userId    the uuid of the user that made the transaction.
+     * @param date      the date this transaction was made.
+     * @param amount    the amount of the transaction.
+     * @param persisted whether the transaction is already in the database.
+     */
+    MySQLTransaction(UUID userId, Date date, double amount, boolean persisted)
+    {
+        this.userId = userId;
+        this.date = date;
+        this.amount = amount;
+        this.persisted = persisted;
+    }
+
+    @Override
+    public UUID getUserId()
+    {
+        return userId;
+    }
+
+    /**
+     * @return {@code true} if this transaction has already been written to the database.
+     */
+    public boolean isPersisted()
+    {
+        return persisted;
+    }
+
+}
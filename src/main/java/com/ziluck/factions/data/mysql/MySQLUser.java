@@ -0,0 +1,123 @@
+package com.ziluck.factions.data.mysql;
+
+import java.util.UUID;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.FactionStore;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.UserStore;
+import com.ziluck.factions.base.struct.Role;
+import com.ziluck.factions.data.LoadUser;
+
+/**
+ * An implementation of a LoadUser that is stored in MySQL.
+ *
+ * @author Michael Ziluck
+ */
+public class MySQLUser extends LoadUser
+{
+    protected long id;
+
+    protected long factionId;
+
+    protected UUID uuid;
+
+    /**
+     * Creates a new MySQLUser with the given values.
+     *
+     * @param id   the internal id of the user.
+     * @param uuid the uuid of the user.
+     * @param name the name of the user.
+     */
+    public MySQLUser(long id, UUID uuid, String name)
+    {
+        this.id = id;
+        this.uuid = uuid;
+        this.name = name;
+        this.factionId = -1;
+        this.factionRole = Role.FACTIONLESS;
+    }
+
+    /**
+     * Creates a User that was loaded from the database.
+     *
+     * @param id          the internal id of the user.
+     * @param uuid        the uuid of the user.
+     * @param name        the name of the user.
+     * @param title       the title of the user.
+     * @param factionId   the id of the user's faction.
+     * @param factionRole the role of the user within their faction.
+     */
+    MySQLUser(long id, UUID uuid, String name, String title, long factionId, Role factionRole)
+    {
+        this.id = id;
+        this.uuid = uuid;
+        this.name = name;
+        this.title = title;
+        this.factionId = factionId;
+        this.factionRole = factionRole;
+    }
+
+    /**
+     * Creates a copy of a User from another database, such as when migrating between databases.
+     *
+     * @param source the User to copy.
+     */
+    MySQLUser(User source)
+    {
+        this(source.getId(), source.getUniqueId(), source.getName(), source.getTitle(), source.getFactionId(), source.getFactionRole());
+    }
+
+    @Override
+    public long getId()
+    {
+        return id;
+    }
+
+    @Override
+    public UUID getUniqueId()
+    {
+        return uuid;
+    }
+
+    @Override
+    public Faction getFaction()
+    {
+        if (faction == null && factionId >= 0)
+        {
+            faction = FactionStore.getInstance().getFaction(factionId);
+        }
+        else if (factionId == -1)
+        {
+            faction = FactionStore.getInstance().getWilderness();
+        }
+        return faction;
+    }
+
+    @Override
+    public void setFaction(Faction faction)
+    {
+        this.faction = faction;
+        this.factionId = faction.getId();
+    }
+
+    @Override
+    public long getFactionId()
+    {
+        return factionId;
+    }
+
+    @Override
+    protected void refreshFrom(User source)
+    {
+        super.refreshFrom(source);
+        this.factionId = source.getFactionId();
+    }
+
+    @Override
+    public void save()
+    {
+        UserStore.getInstance().save(this);
+    }
+
+}
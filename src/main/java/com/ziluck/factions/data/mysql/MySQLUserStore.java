@@ -0,0 +1,288 @@
+package com.ziluck.factions.data.mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.struct.Role;
+import com.ziluck.factions.data.IdAllocator;
+import com.ziluck.factions.data.LoadUserStore;
+import com.ziluck.factions.data.SaveQueue;
+import com.ziluck.factions.data.sync.CacheCoherence;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+/**
+ * The UserStore for interacting with MySQL.
+ *
+ * @author Michael Ziluck
+ */
+public class MySQLUserStore extends LoadUserStore
+{
+
+    private static final String SELECT = "SELECT id, uid, name, title, faction_id, faction_role FROM users ";
+
+    private static final String UPSERT = "INSERT INTO users (id, uid, name, title, faction_id, faction_role) VALUES (?, ?, ?, ?, ?, ?) "
+                                         + "ON DUPLICATE KEY UPDATE name = VALUES(name), title = VALUES(title), "
+                                         + "faction_id = VALUES(faction_id), faction_role = VALUES(faction_role)";
+
+    protected MySQLWrapper database;
+
+    protected IdAllocator ids;
+
+    /**
+     * Create a new MySQLUserStore
+     */
+    public MySQLUserStore()
+    {
+        saveQueue = new SaveQueue<>("users", User::getId, this::write);
+
+        database = MySQLWrapper.getInstance();
+
+        ids = new MySQLIdAllocator("users");
+
+        for (Player player : Bukkit.getOnlinePlayers())
+        {
+            loadUser(player);
+        }
+
+        initialize();
+    }
+
+    @Override
+    protected User fetchUser(UUID uuid)
+    {
+        return findUser("WHERE uid = ?", uuid.toString());
+    }
+
+    @Override
+    protected User fetchUser(String name)
+    {
+        return findUser("WHERE name = ?", name);
+    }
+
+    @Override
+    protected User fetchUser(long id)
+    {
+        return findUser("WHERE id = ?", id);
+    }
+
+    @Override
+    protected Collection<User> fetchUsers(long[] ids)
+    {
+        StringBuilder where = new StringBuilder("WHERE id IN (");
+        for (int i = 0; i < ids.length; i++)
+        {
+            where.append(i == 0 ? "?" : ", ?");
+        }
+        where.append(')');
+
+        List<User> users = new ArrayList<>(ids.length);
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT + where))
+        {
+            for (int i = 0; i < ids.length; i++)
+            {
+                statement.setLong(i + 1, ids[i]);
+            }
+            try (ResultSet result = statement.executeQuery())
+            {
+                while (result.next())
+                {
+                    users.add(readUser(result));
+                }
+            }
+        }
+        catch (SQLException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.SEVERE, "Could not load users from MySQL.", ex);
+        }
+        return users;
+    }
+
+    @Override
+    public List<String> fetchNames()
+    {
+        List<String> names = new ArrayList<>();
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT name FROM users WHERE id <> -1");
+             ResultSet result = statement.executeQuery())
+        {
+            while (result.next())
+            {
+                names.add(result.getString(1));
+            }
+        }
+        catch (SQLException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.SEVERE, "Could not load user names from MySQL.", ex);
+        }
+        return names;
+    }
+
+    /**
+     * Finds the first User that matches the given where clause.
+     *
+     * @param where     the where clause of the query.
+     * @param parameter the single parameter of the where clause.
+     *
+     * @return the found User if one exists.
+     */
+    private User findUser(String where, Object parameter)
+    {
+        try (Connection connection = database.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SELECT + where))
+        {
+            statement.setObject(1, parameter);
+            try (ResultSet result = statement.executeQuery())
+            {
+                return result.next() ? readUser(result) : null;
+            }
+        }
+        catch (SQLException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.SEVERE, "Could not load a user from MySQL.", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the User at the current row of the result.
+     *
+     * @param result the result of a query on the users table.
+     *
+     * @return the read User.
+     *
+     * @throws SQLException if the row could not be read.
+     */
+    protected static MySQLUser readUser(ResultSet result) throws SQLException
+    {
+        return new MySQLUser(result.getLong("id"),
+                             UUID.fromString(result.getString("uid")),
+                             result.getString("name"),
+                             result.getString("title"),
+                             result.getLong("faction_id"),
+                             Role.valueOf(result.getString("faction_role")));
+    }
+
+    /**
+     * Reads a page of Users ordered by their id. This runs on the calling thread.
+     *
+     * @param connection the connection to read with.
+     * @param afterId    only Users with an id greater than this are read.
+     * @param limit      the most Users to read.
+     *
+     * @return the read Users in order.
+     *
+     * @throws SQLException if the Users could not be read.
+     */
+    static List<User> readUsers(Connection connection, long afterId, int limit) throws SQLException
+    {
+        List<User> users = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT + "WHERE id > ? ORDER BY id LIMIT ?"))
+        {
+            statement.setLong(1, afterId);
+            statement.setInt(2, limit);
+            try (ResultSet result = statement.executeQuery())
+            {
+                while (result.next())
+                {
+                    users.add(readUser(result));
+                }
+            }
+        }
+        return users;
+    }
+
+    @Override
+    protected void createConsole()
+    {
+        this.console = new MySQLUser(-1, Factions.consoleUuid, "CONSOLE");
+        this.console.save();
+    }
+
+    @Override
+    public void save(User user)
+    {
+        if (!(user instanceof MySQLUser))
+        {
+            return;
+        }
+        saveQueue.submit(user);
+    }
+
+    /**
+     * Writes the given Users in a single batch and tells the other servers about them. This runs on the calling thread.
+     *
+     * @param users the Users to write.
+     *
+     * @throws SQLException if the Users could not be written.
+     */
+    private void write(Collection<User> users) throws SQLException
+    {
+        try (Connection connection = database.getConnection())
+        {
+            writeUsers(connection, users);
+        }
+        users.forEach(CacheCoherence::saved);
+    }
+
+    /**
+     * Writes all the given Users to the database in a single batch. This runs on the calling thread.
+     *
+     * @param users the Users to save.
+     */
+    public void saveAll(Collection<User> users)
+    {
+        try (Connection connection = database.getConnection())
+        {
+            writeUsers(connection, users);
+        }
+        catch (SQLException ex)
+        {
+            Factions.getInstance().getLogger().log(Level.SEVERE, "Could not save users to MySQL.", ex);
+        }
+    }
+
+    /**
+     * Writes all the given Users in a single batch.
+     *
+     * @param connection the connection to write with.
+     * @param users      the Users to write. They must all be MySQLUsers.
+     *
+     * @throws SQLException if the Users could not be written.
+     */
+    static void writeUsers(Connection connection, Collection<User> users) throws SQLException
+    {
+        try (PreparedStatement statement = connection.prepareStatement(UPSERT))
+        {
+            for (User user : users)
+            {
+                MySQLUser mysqlUser = (MySQLUser) user;
+                statement.setLong(1, mysqlUser.getId());
+                statement.setString(2, mysqlUser.getUniqueId().toString());
+                statement.setString(3, mysqlUser.getName());
+                statement.setString(4, mysqlUser.getTitle());
+                statement.setLong(5, mysqlUser.factionId);
+                statement.setString(6, mysqlUser.getFactionRole().name());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    @Override
+    protected User newUser(UUID uuid, String name)
+    {
+        return new MySQLUser(ids.nextId(), uuid, name);
+    }
+
+}
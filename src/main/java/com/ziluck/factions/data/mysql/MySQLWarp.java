@@ -0,0 +1,41 @@
+package com.ziluck.factions.data.mysql;
+
+import com.google.common.base.Preconditions;
+import com.ziluck.factions.base.Warp;
+import com.ziluck.factions.data.LoadWarp;
+import com.ziluck.factions.spatial.LazyLocation;
+
+/**
+ * Warp implementation for saving to MySQL.
+ *
+ * @author Michael Ziluck
+ */
+public final class MySQLWarp extends LoadWarp
+{
+
+    /**
+     * Creates a new {@link Warp} with the given parameters. If locked is set to true, a {@link NullPointerException}
+     * will be thrown if the password is null.
+     *
+     * @param name     the name of the warp.
+     * @param location the location of the warp.
+     * @param locked   whether this warp is password locked or not.
+     * @param password the password for this warp.
+     */
+    public MySQLWarp(String name, LazyLocation location, boolean locked, String password)
+    {
+        Preconditions.checkNotNull(name, "Name can't be null.");
+        Preconditions.checkNotNull(location, "Location can't be null.");
+        if (locked)
+        {
+            Preconditions.checkNotNull(password, "Password can't be null if the warp is locked.");
+        }
+
+        this.name = name;
+        this.stub = name.toLowerCase();
+        this.location = location;
+        this.locked = locked;
+        this.password = password;
+    }
+
+}
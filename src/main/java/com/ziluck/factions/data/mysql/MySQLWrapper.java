@@ -0,0 +1,190 @@
+package com.ziluck.factions.data.mysql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import com.ziluck.factions.configuration.Config;
+
+/**
+ * Stores the pool of connections to MySQL.
+ * <p>
+ * Connections are handed out by a bounded HikariCP pool. When connecting to an actual MySQL server the driver is also
+ * told to cache prepared statements and rewrite batches into multi-row inserts, so the batched saves within the stores
+ * only cost a single round-trip.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class MySQLWrapper
+{
+
+    private static MySQLWrapper instance;
+
+    private HikariDataSource dataSource;
+
+    /**
+     * Constructs a new wrapper for MySQL. This will grab the information from the config file.
+     */
+    public MySQLWrapper()
+    {
+        this("jdbc:mysql://" + Config.DATABASE_HOSTNAME.getValue() + ":" + Config.DATABASE_PORT.intValue() + "/" + Config.DATABASE_DATABASE.getValue(),
+             Config.DATABASE_USERNAME.getValue(),
+             Config.DATABASE_PASSWORD.getValue());
+    }
+
+    /**
+     * Constructs a new wrapper for the database at the given JDBC url. This allows any database that understands the
+     * MySQL dialect to be used, such as an embedded H2 database running in MySQL mode.
+     *
+     * @param url      the JDBC url of the database.
+     * @param username the username of the database user.
+     * @param password the password of the database user.
+     */
+    public MySQLWrapper(String url, String username, String password)
+    {
+        instance = this;
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(Config.DATABASE_CONNECTION_DESCRIPTION.getValue());
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(Config.DATABASE_POOL_SIZE.intValue());
+        config.setConnectionTimeout(Math.max(250, Config.DATABASE_TIMEOUT.intValue()));
+
+        // these are only understood by the MySQL driver
+        if (url.startsWith("jdbc:mysql:"))
+        {
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", Config.DATABASE_STATEMENT_CACHE_SIZE.intValue());
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            config.addDataSourceProperty("useServerPrepStmts", "true");
+            config.addDataSourceProperty("rewriteBatchedStatements", "true");
+        }
+
+        dataSource = new HikariDataSource(config);
+
+        createTables();
+    }
+
+    /**
+     * Creates all the tables used by Factions if they do not already exist.
+     */
+    private void createTables()
+    {
+        try (Connection connection = getConnection(); Statement statement = connection.createStatement())
+        {
+            statement.execute("CREATE TABLE IF NOT EXISTS users ("
+                              + "id BIGINT NOT NULL PRIMARY KEY, "
+                              + "uid CHAR(36) NOT NULL, "
+                              + "name VARCHAR(16) NOT NULL, "
+                              + "title VARCHAR(64) NULL, "
+                              + "faction_id BIGINT NOT NULL, "
+                              + "faction_role VARCHAR(16) NOT NULL, "
+                              + "UNIQUE KEY users_uid (uid), "
+                              + "KEY users_name (name))");
+            statement.execute("CREATE TABLE IF NOT EXISTS factions ("
+                              + "id BIGINT NOT NULL PRIMARY KEY, "
+                              + "name VARCHAR(32) NOT NULL, "
+                              + "description VARCHAR(255) NULL, "
+                              + "motd VARCHAR(255) NULL, "
+                              + "type VARCHAR(16) NOT NULL, "
+                              + "default_role VARCHAR(16) NULL, "
+                              + "founded BIGINT NOT NULL, "
+                              + "balance DOUBLE NOT NULL, "
+                              + "leader_id BIGINT NOT NULL, "
+                              + "flags VARCHAR(255) NOT NULL, "
+                              + "home_world VARCHAR(64) NULL, "
+                              + "home_x DOUBLE NULL, "
+                              + "home_y DOUBLE NULL, "
+                              + "home_z DOUBLE NULL)");
+            statement.execute("CREATE TABLE IF NOT EXISTS faction_members ("
+                              + "faction_id BIGINT NOT NULL, "
+                              + "user_id BIGINT NOT NULL, "
+                              + "PRIMARY KEY (faction_id, user_id))");
+            statement.execute("CREATE TABLE IF NOT EXISTS faction_warps ("
+                              + "faction_id BIGINT NOT NULL, "
+                              + "stub VARCHAR(32) NOT NULL, "
+                              + "name VARCHAR(32) NOT NULL, "
+                              + "world VARCHAR(64) NOT NULL, "
+                              + "x DOUBLE NOT NULL, "
+                              + "y DOUBLE NOT NULL, "
+                              + "z DOUBLE NOT NULL, "
+                              + "password CHAR(32) NULL, "
+                              + "PRIMARY KEY (faction_id, stub))");
+            statement.execute("CREATE TABLE IF NOT EXISTS faction_claims ("
+                              + "faction_id BIGINT NOT NULL, "
+                              + "world VARCHAR(64) NOT NULL, "
+                              + "x1 DOUBLE NOT NULL, "
+                              + "z1 DOUBLE NOT NULL, "
+                              + "x2 DOUBLE NOT NULL, "
+                              + "z2 DOUBLE NOT NULL, "
+                              + "cost DOUBLE NOT NULL, "
+                              + "KEY claims_faction (faction_id))");
+            statement.execute("CREATE TABLE IF NOT EXISTS faction_transactions ("
+                              + "id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, "
+                              + "faction_id BIGINT NOT NULL, "
+                              + "uid CHAR(36) NOT NULL, "
+                              + "created BIGINT NOT NULL, "
+                              + "amount DOUBLE NOT NULL, "
+                              + "KEY transactions_faction (faction_id))");
+            statement.execute("CREATE TABLE IF NOT EXISTS id_counters ("
+                              + "name VARCHAR(32) NOT NULL PRIMARY KEY, "
+                              + "next BIGINT NOT NULL)");
+            statement.execute("CREATE TABLE IF NOT EXISTS announcements ("
+                              + "id BIGINT NOT NULL PRIMARY KEY, "
+                              + "body TEXT NOT NULL, "
+                              + "expires BIGINT NOT NULL, "
+                              + "KEY announcements_expires (expires))");
+            statement.execute("CREATE TABLE IF NOT EXISTS announcement_recipients ("
+                              + "uid CHAR(36) NOT NULL, "
+                              + "message_id BIGINT NOT NULL, "
+                              + "PRIMARY KEY (uid, message_id), "
+                              + "KEY recipients_message (message_id))");
+        }
+        catch (SQLException ex)
+        {
+            throw new IllegalStateException("Could not create the Factions tables.", ex);
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool. The connection must be closed once it is done being used so that it is
+     * returned to the pool.
+     *
+     * @return a pooled connection.
+     *
+     * @throws SQLException if no connection could be obtained within the timeout.
+     */
+    public Connection getConnection() throws SQLException
+    {
+        return dataSource.getConnection();
+    }
+
+    /**
+     * Closes all the connections in the pool.
+     */
+    public void close()
+    {
+        dataSource.close();
+    }
+
+    /**
+     * Returns the singleton instance of this MySQLWrapper.
+     *
+     * @return the singleton instance of this MySQLWrapper.
+     */
+    public static MySQLWrapper getInstance()
+    {
+        if (instance == null)
+        {
+            new MySQLWrapper();
+        }
+        return instance;
+    }
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Saving Factions entities to MySQL
+ */
+package com.ziluck.factions.data.mysql;
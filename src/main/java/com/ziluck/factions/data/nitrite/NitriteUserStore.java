@@ -1,17 +1,17 @@
 package com.ziluck.factions.data.nitrite;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 import com.ziluck.factions.Factions;
 import com.ziluck.factions.base.User;
-import com.ziluck.factions.configuration.Config;
-import com.ziluck.factions.configuration.struct.Optimization;
+import com.ziluck.factions.data.IdAllocator;
 import com.ziluck.factions.data.LoadUserStore;
+import com.ziluck.factions.data.LocalIdAllocator;
 import com.ziluck.factions.data.mongodb.MongoUser;
 import org.bukkit.Bukkit;
-import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.dizitart.no2.FindOptions;
 import org.dizitart.no2.IndexOptions;
@@ -20,12 +20,13 @@ import org.dizitart.no2.SortOrder;
 import org.dizitart.no2.objects.ObjectRepository;
 
 import static org.dizitart.no2.objects.filters.ObjectFilters.eq;
+import static org.dizitart.no2.objects.filters.ObjectFilters.in;
 
 public class NitriteUserStore extends LoadUserStore
 {
     private ObjectRepository<MongoUser> repository;
 
-    private long nextId;
+    private IdAllocator ids;
 
     public NitriteUserStore()
     {
@@ -48,24 +49,8 @@ public class NitriteUserStore extends LoadUserStore
             repository.createIndex("name", IndexOptions.indexOptions(IndexType.NonUnique, true));
         }
 
-        if (Config.OPTIMIZATION.getValue() == Optimization.MEMORY)
-        {
-            onlineUsersList = new ArrayList<>();
-        }
-        else if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
-        {
-            onlineUsersMap = new HashMap<>();
-        }
-
         MongoUser user = repository.find(FindOptions.sort("_id", SortOrder.Descending)).firstOrDefault();
-        if (user != null)
-        {
-            nextId = user.getId() + 1;
-        }
-        else
-        {
-            nextId = 0;
-        }
+        ids = new LocalIdAllocator(user == null ? 0 : user.getId() + 1);
 
         for (Player player : Bukkit.getOnlinePlayers())
         {
@@ -84,49 +69,53 @@ public class NitriteUserStore extends LoadUserStore
     }
 
     @Override
-    public User getUser(UUID uuid, boolean includeOffline)
+    protected User fetchUser(UUID uuid)
     {
-        return getUser("uid", uuid, includeOffline, getUser(uuid));
+        return repository.find(eq("uid", uuid.toString())).firstOrDefault();
     }
 
     @Override
-    public User getUser(String name, boolean includeOffline)
+    protected User fetchUser(String name)
     {
-        return getUser("name", name, includeOffline, getUser(name));
+        return repository.find(eq("name", name)).firstOrDefault();
     }
 
     @Override
-    public User getUser(long id, boolean includeOffline)
+    protected User fetchUser(long id)
     {
-        return getUser("_id", id, includeOffline, getUser(id));
+        return repository.find(eq("_id", id)).firstOrDefault();
     }
 
     @Override
-    public User getUser(CommandSender sender, boolean includeOffline)
+    protected Collection<User> fetchUsers(long[] ids)
     {
-        User user = getUser(sender);
-        if (user == null && sender instanceof Player)
+        Object[] boxed = new Object[ids.length];
+        for (int i = 0; i < ids.length; i++)
         {
-            return getUser(((Player) sender).getUniqueId(), includeOffline);
+            boxed[i] = ids[i];
         }
-        return user;
+        return new ArrayList<>(repository.find(in("_id", boxed)).toList());
     }
 
-    private User getUser(String fieldName, Object obj, boolean includeOffline, User user)
+    @Override
+    public List<String> fetchNames()
     {
-        if (includeOffline && user == null)
+        List<String> names = new ArrayList<>();
+        for (MongoUser user : repository.find())
         {
-            user = repository.find(eq(fieldName, obj)).firstOrDefault();
+            // the console is stored like any other User, but is never typed by name
+            if (user.getId() != -1)
+            {
+                names.add(user.getName());
+            }
         }
-        return user;
+        return names;
     }
 
     @Override
-    public User createUser(Player player)
+    protected User newUser(UUID uuid, String name)
     {
-        MongoUser user = new MongoUser(nextId, player.getUniqueId(), player.getName());
-        user.save();
-        return user;
+        return new MongoUser(ids.nextId(), uuid, name);
     }
 
     @Override
@@ -0,0 +1,177 @@
+package com.ziluck.factions.data.sync;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+
+import org.apache.commons.lang.Validate;
+
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.FactionStore;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.UserStore;
+import com.ziluck.factions.data.LoadFaction;
+
+/**
+ * Keeps the loaded Factions and Users of this server up to date with other servers that share the same database.
+ * <p>
+ * Whenever this server saves a Faction or a User, a {@link ChangeNotice} is published on the bus. When a notice from
+ * another server arrives, only that Faction or User is read from the database again. Notices published by this server
+ * are ignored, as are notices that arrive after a newer notice about the same entity.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class CacheCoherence
+{
+
+    private final InvalidationBus bus;
+
+    private final String origin;
+
+    private final ConcurrentMap<Long, Long> factionVersions = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Long> userVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new CacheCoherence.
+     *
+     * @param bus    the bus shared with the other servers.
+     * @param origin the id of this server. It must be different for every server on the bus.
+     */
+    public CacheCoherence(InvalidationBus bus, String origin)
+    {
+        Validate.notNull(bus, "Bus can't be null.");
+        Validate.notNull(origin, "Origin can't be null.");
+
+        this.bus = bus;
+        this.origin = origin;
+    }
+
+    /**
+     * Starts applying the notices of other servers.
+     */
+    public void start()
+    {
+        bus.subscribe(this::apply);
+    }
+
+    /**
+     * @return the id of this server.
+     */
+    public String getOrigin()
+    {
+        return origin;
+    }
+
+    /**
+     * Tells the other servers that the given Faction was saved. This should be called after the save has finished so
+     * that the other servers read the new version.
+     *
+     * @param faction the saved Faction.
+     */
+    public void publish(Faction faction)
+    {
+        long version = faction instanceof LoadFaction ? ((LoadFaction) faction).getModified() : System.currentTimeMillis();
+        publish(new ChangeNotice(ChangeNotice.Type.FACTION, faction.getId(), version, origin));
+    }
+
+    /**
+     * Tells the other servers that the given User was saved. This should be called after the save has finished so that
+     * the other servers read the new version.
+     *
+     * @param user the saved User.
+     */
+    public void publish(User user)
+    {
+        publish(new ChangeNotice(ChangeNotice.Type.USER, user.getId(), System.currentTimeMillis(), origin));
+    }
+
+    private void publish(ChangeNotice notice)
+    {
+        try
+        {
+            bus.publish(notice);
+        }
+        catch (RuntimeException ex)
+        {
+            // the save itself succeeded, so the other servers only miss this one update
+            Factions.getInstance().getLogger().log(Level.WARNING, "Could not publish " + notice + ".", ex);
+        }
+    }
+
+    /**
+     * Reloads whatever the given notice is about, unless it came from this server.
+     *
+     * @param notice the received notice.
+     */
+    void apply(ChangeNotice notice)
+    {
+        if (origin.equals(notice.getOrigin()))
+        {
+            return;
+        }
+
+        if (notice.getType() == ChangeNotice.Type.FACTION && isNewest(factionVersions, notice))
+        {
+            FactionStore.getInstance().reloadFaction(notice.getId());
+        }
+        else if (notice.getType() == ChangeNotice.Type.USER && isNewest(userVersions, notice))
+        {
+            UserStore.getInstance().reloadUser(notice.getId());
+        }
+    }
+
+    /**
+     * Records the version of the given notice if it is newer than any notice seen for the same entity.
+     *
+     * @param versions the newest version seen of each entity.
+     * @param notice   the received notice.
+     *
+     * @return {@code true} if the notice is the newest one seen.
+     */
+    private static boolean isNewest(ConcurrentMap<Long, Long> versions, ChangeNotice notice)
+    {
+        boolean[] newest = new boolean[1];
+        versions.compute(notice.getId(), (id, seen) ->
+        {
+            if (seen != null && seen >= notice.getVersion())
+            {
+                return seen;
+            }
+            newest[0] = true;
+            return notice.getVersion();
+        });
+        return newest[0];
+    }
+
+    /**
+     * Publishes that the given Faction was saved if this server shares its database with others.
+     *
+     * @param faction the saved Faction.
+     */
+    public static void saved(Faction faction)
+    {
+        CacheCoherence coherence = Factions.getInstance().getCacheCoherence();
+        if (coherence != null)
+        {
+            coherence.publish(faction);
+        }
+    }
+
+    /**
+     * Publishes that the given User was saved if this server shares its database with others.
+     *
+     * @param user the saved User.
+     */
+    public static void saved(User user)
+    {
+        CacheCoherence coherence = Factions.getInstance().getCacheCoherence();
+        if (coherence != null)
+        {
+            coherence.publish(user);
+        }
+    }
+
+}
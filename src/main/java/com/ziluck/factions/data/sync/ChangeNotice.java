@@ -0,0 +1,88 @@
+package com.ziluck.factions.data.sync;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A notice that a server saved a Faction or a User. Only the id and version are sent, as the receiving servers read
+ * the entity from the shared database themselves.
+ *
+ * @author Michael Ziluck
+ */
+public final class ChangeNotice
+{
+
+    /**
+     * The kinds of entities a notice can be about.
+     */
+    public enum Type
+    {
+        FACTION,
+        USER
+    }
+
+    private final Type type;
+
+    private final long id;
+
+    private final long version;
+
+    private final String origin;
+
+    /**
+     * Constructs a new ChangeNotice.
+     *
+     * @param type    the kind of entity that was saved.
+     * @param id      the id of the entity.
+     * @param version when the entity was saved, in milliseconds since the epoch.
+     * @param origin  the id of the server that saved it.
+     */
+    public ChangeNotice(Type type, long id, long version, String origin)
+    {
+        Validate.notNull(type, "Type can't be null.");
+        Validate.notNull(origin, "Origin can't be null.");
+
+        this.type = type;
+        this.id = id;
+        this.version = version;
+        this.origin = origin;
+    }
+
+    /**
+     * @return the kind of entity that was saved.
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return the id of the entity.
+     */
+    public long getId()
+    {
+        return id;
+    }
+
+    /**
+     * @return when the entity was saved, in milliseconds since the epoch.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return the id of the server that saved the entity.
+     */
+    public String getOrigin()
+    {
+        return origin;
+    }
+
+    @Override
+    public String toString()
+    {
+        return type + " " + id + " v" + version + " from " + origin;
+    }
+
+}
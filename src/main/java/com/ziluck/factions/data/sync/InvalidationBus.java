@@ -0,0 +1,36 @@
+package com.ziluck.factions.data.sync;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link ChangeNotice ChangeNotices} between servers that share a database.
+ * <p>
+ * Every notice that is published is delivered to every subscriber, including the subscribers of the server that
+ * published it. Subscribers may be called from any thread.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public interface InvalidationBus
+{
+
+    /**
+     * Sends the given notice to every subscriber.
+     *
+     * @param notice the notice to send.
+     */
+    public void publish(ChangeNotice notice);
+
+    /**
+     * Registers a subscriber that receives every notice published from now on.
+     *
+     * @param subscriber the subscriber.
+     */
+    public void subscribe(Consumer<ChangeNotice> subscriber);
+
+    /**
+     * Stops delivering notices and releases anything the bus holds on to.
+     */
+    public void close();
+
+}
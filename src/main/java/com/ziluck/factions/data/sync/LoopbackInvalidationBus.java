@@ -0,0 +1,45 @@
+package com.ziluck.factions.data.sync;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * An InvalidationBus that only exists within this process. Notices are delivered on the publishing thread before
+ * {@link #publish(ChangeNotice)} returns. This is meant for tests and for running several stores in one process.
+ *
+ * @author Michael Ziluck
+ */
+public class LoopbackInvalidationBus implements InvalidationBus
+{
+
+    private final List<Consumer<ChangeNotice>> subscribers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(ChangeNotice notice)
+    {
+        Validate.notNull(notice, "Notice can't be null.");
+
+        for (Consumer<ChangeNotice> subscriber : subscribers)
+        {
+            subscriber.accept(notice);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ChangeNotice> subscriber)
+    {
+        Validate.notNull(subscriber, "Subscriber can't be null.");
+
+        subscribers.add(subscriber);
+    }
+
+    @Override
+    public void close()
+    {
+        subscribers.clear();
+    }
+
+}
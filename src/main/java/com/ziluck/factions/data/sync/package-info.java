@@ -0,0 +1,4 @@
+/**
+ * Keeping the loaded Factions and Users of servers that share a database up to date with each other
+ */
+package com.ziluck.factions.data.sync;
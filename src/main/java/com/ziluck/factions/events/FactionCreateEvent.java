@@ -10,9 +10,9 @@ import org.bukkit.event.HandlerList;
  * <p>
  * It is important to note that in order to see who is creating the Faction, you must use
  * <p>
- * For a Faction to finish being created, the {@link #complete()} method <i>must</i> be called. If it is not, the id
- * will not be incremented, the User will not be added to the Faction, and the Faction will not be saved to the
- * database.
+ * For a Faction to finish being created, the {@link #complete()} method <i>must</i> be called. If it is not, the User
+ * will not be added to the Faction and the Faction will not be saved to the database. The id given to the Faction is
+ * never reused either way.
  * </p>
  * 
  * @author Michael Ziluck
@@ -1,11 +1,18 @@
 package com.ziluck.factions.listeners;
 
+import java.util.UUID;
+
+import com.ziluck.factions.Factions;
 import com.ziluck.factions.base.User;
 import com.ziluck.factions.base.UserStore;
+import com.ziluck.factions.data.AnnouncementMailbox;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 /**
  * Processes when Players join or leave the server.
@@ -16,7 +23,60 @@ public class ConnectionListener implements Listener
 {
 
     /**
-     * Listens for when a player joins the server.
+     * Fetches the User and the waiting announcements of a connecting player before they join so that no database
+     * operations have to be done on the main thread when they do.
+     *
+     * @param event the Bukkit event that is fired.
+     */
+    @EventHandler(priority = EventPriority.LOW)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event)
+    {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED)
+        {
+            UserStore.getInstance().preloadUser(event.getUniqueId(), event.getName());
+
+            AnnouncementMailbox mailbox = getMailbox();
+            if (mailbox != null)
+            {
+                mailbox.preload(event.getUniqueId());
+            }
+        }
+    }
+
+    /**
+     * Throws away the preloaded User and announcements if another plugin ended up denying the pre-login.
+     *
+     * @param event the Bukkit event that is fired.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLoginResult(AsyncPlayerPreLoginEvent event)
+    {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED)
+        {
+            UserStore.getInstance().discardPreloadedUser(event.getUniqueId());
+            discardAnnouncements(event.getUniqueId());
+        }
+    }
+
+    /**
+     * Throws away the preloaded User and announcements if the login was denied after the pre-login, such as for a ban, the whitelist, a
+     * full server, or another plugin.
+     *
+     * @param event the Bukkit event that is fired.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLoginResult(PlayerLoginEvent event)
+    {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED)
+        {
+            UserStore.getInstance().discardPreloadedUser(event.getPlayer().getUniqueId());
+            discardAnnouncements(event.getPlayer().getUniqueId());
+        }
+    }
+
+    /**
+     * Listens for when a player joins the server. Any announcements that were made while they were offline are sent
+     * to them all at once.
      * 
      * @param event the Bukkit event that is fired.
      */
@@ -25,6 +85,46 @@ public class ConnectionListener implements Listener
     {
         User user = UserStore.getInstance().loadUser(event.getPlayer());
         user.setOnline(true);
+
+        AnnouncementMailbox mailbox = getMailbox();
+        if (mailbox != null)
+        {
+            mailbox.deliver(user);
+        }
+    }
+
+    /**
+     * Listens for when a player leaves the server.
+     * 
+     * @param event the Bukkit event that is fired.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event)
+    {
+        UserStore.getInstance().unloadUser(event.getPlayer());
+    }
+
+    /**
+     * Throws away the announcements read for a player whose login was denied.
+     *
+     * @param uuid the UUID of the player.
+     */
+    private static void discardAnnouncements(UUID uuid)
+    {
+        AnnouncementMailbox mailbox = getMailbox();
+        if (mailbox != null)
+        {
+            mailbox.discard(uuid);
+        }
+    }
+
+    /**
+     * @return the mailbox for offline announcements, or {@code null} if the plugin is not enabled.
+     */
+    private static AnnouncementMailbox getMailbox()
+    {
+        Factions plugin = Factions.getInstance();
+        return plugin == null ? null : plugin.getMailbox();
     }
 
 }
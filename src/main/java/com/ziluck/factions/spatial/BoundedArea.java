@@ -87,6 +87,25 @@ public class BoundedArea implements Rectangle
         setWorld(world);
     }
 
+    /**
+     * Constructs a new BoundedArea with the given coordinates. The World is referenced only by its name and will not be
+     * looked up until it is needed.
+     *
+     * @param x1    the lowest x.
+     * @param x2    the greatest x.
+     * @param z1    the lowest z.
+     * @param z2    the greatest z.
+     * @param world the name of the world.
+     */
+    public BoundedArea(double x1, double x2, double z1, double z2, String world)
+    {
+        this.x1 = Math.min(x1, x2);
+        this.x2 = Math.max(x1, x2);
+        this.z1 = Math.min(z1, z2);
+        this.z2 = Math.max(z1, z2);
+        this.world = world;
+    }
+
     /**
      * @return the minX
      */
@@ -184,6 +203,14 @@ public class BoundedArea implements Rectangle
         return x >= getMinX() && x <= getMaxX() && z >= getMinZ() && z <= getMaxZ();
     }
 
+    /**
+     * @return the name of the world without loading it.
+     */
+    public final String getWorldName()
+    {
+        return world;
+    }
+
     /**
      * @return the world
      */
@@ -45,6 +45,23 @@ public class LazyLocation
         this.world = world.getName();
     }
 
+    /**
+     * Constructs a LazyLocation referencing the World only by its name. The World will not be looked up until it is
+     * needed.
+     *
+     * @param x     the x coordinate.
+     * @param y     the y coordinate.
+     * @param z     the z coordinate.
+     * @param world the name of the world.
+     */
+    public LazyLocation(double x, double y, double z, String world)
+    {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.world = world;
+    }
+
     /**
      * Returns the X coordinate.
      *
@@ -75,6 +92,16 @@ public class LazyLocation
         return z;
     }
 
+    /**
+     * Returns the name of the World without loading it.
+     *
+     * @return the name of the World.
+     */
+    public String getWorldName()
+    {
+        return world;
+    }
+
     /**
      * @return the World.
      */
@@ -0,0 +1,205 @@
+package com.ziluck.factions.utils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A list that can hand out read-only snapshots of itself in constant time.
+ * <p>
+ * A snapshot shares the backing array with the list and only remembers how many elements it had. Adding to the end
+ * never touches those elements, so the list keeps growing while snapshots are read on other threads. Anything else that
+ * changes an existing element, such as removing or replacing one, copies the array first if a snapshot may still be
+ * using it.
+ * </p>
+ * <p>
+ * The list itself is not thread safe. It is meant to be changed on one thread, usually the main thread, and its
+ * snapshots handed to others.
+ * </p>
+ *
+ * @param <E> the type of element.
+ *
+ * @author Michael Ziluck
+ */
+public class AppendOnlyList<E> extends AbstractList<E> implements RandomAccess
+{
+
+    private Object[] elements;
+
+    private int size;
+
+    /**
+     * Whether a snapshot may be reading {@link #elements}.
+     */
+    private boolean shared;
+
+    /**
+     * Constructs a new, empty AppendOnlyList.
+     */
+    public AppendOnlyList()
+    {
+        this.elements = new Object[10];
+    }
+
+    /**
+     * Constructs a new AppendOnlyList with the elements of the given collection.
+     *
+     * @param source the elements to start with.
+     */
+    public AppendOnlyList(Collection<? extends E> source)
+    {
+        this.elements = source.toArray(new Object[Math.max(10, source.size())]);
+        this.size = source.size();
+    }
+
+    @Override
+    public boolean add(E element)
+    {
+        if (size == elements.length)
+        {
+            // snapshots keep the old array, so this one is no longer shared
+            elements = Arrays.copyOf(elements, size + (size >> 1) + 1);
+            shared = false;
+        }
+        elements[size++] = element;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element)
+    {
+        if (index == size)
+        {
+            add(element);
+            return;
+        }
+        rangeCheck(index);
+        unshare(1);
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = element;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index)
+    {
+        rangeCheck(index);
+        return (E) elements[index];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(int index, E element)
+    {
+        rangeCheck(index);
+        unshare(0);
+        E old = (E) elements[index];
+        elements[index] = element;
+        return old;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E remove(int index)
+    {
+        rangeCheck(index);
+        unshare(0);
+        E old = (E) elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        elements[--size] = null;
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear()
+    {
+        // a new array is cheaper than clearing one that a snapshot may still be reading
+        elements = new Object[10];
+        size = 0;
+        shared = false;
+        modCount++;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns a read-only copy of this list as it is now. This takes constant time no matter how large the list is.
+     *
+     * @return the snapshot.
+     */
+    public List<E> snapshot()
+    {
+        shared = true;
+        return new Snapshot<>(elements, size);
+    }
+
+    /**
+     * Copies the backing array if a snapshot may be reading it, so that an element it can see can be changed.
+     *
+     * @param extra how much room to leave for elements that are about to be added.
+     */
+    private void unshare(int extra)
+    {
+        if (shared || size + extra > elements.length)
+        {
+            elements = Arrays.copyOf(elements, Math.max(elements.length, size + extra));
+            shared = false;
+        }
+    }
+
+    private void rangeCheck(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * A read-only view of the first few elements of a backing array.
+     *
+     * @param <E> the type of element.
+     */
+    private static class Snapshot<E> extends AbstractList<E> implements RandomAccess
+    {
+
+        private final Object[] elements;
+
+        private final int size;
+
+        private Snapshot(Object[] elements, int size)
+        {
+            this.elements = elements;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index)
+        {
+            if (index < 0 || index >= size)
+            {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return (E) elements[index];
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.ziluck.factions.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A hash map from primitive {@code long} keys to objects that never boxes a key and can be read from any thread without
+ * locking.
+ * <p>
+ * Like {@link LongObjectMap}, the entries are kept in one array with open addressing and linear probing. Each slot holds
+ * an immutable entry with both the key and the value, so a reader always sees a key together with its own value, and
+ * the slots are read and written through an {@link AtomicReferenceArray} so that an entry is fully visible to every
+ * thread as soon as it is in a slot. A removed entry is replaced with a marker instead of shifting the entries after it
+ * back, since a reader in the middle of a probe could otherwise miss an entry that moved past it. When the markers and
+ * entries fill half the slots, the entries are copied into a new array, which is only published once it is complete.
+ * </p>
+ * <p>
+ * Reads never block and always see every entry that was put before they started and was not removed. Writes are
+ * synchronized with each other.
+ * </p>
+ *
+ * @param <V> the type of value.
+ *
+ * @author Michael Ziluck
+ */
+public class ConcurrentLongObjectMap<V>
+{
+
+    private static final Entry<Object> REMOVED = new Entry<>(0, null);
+
+    private volatile AtomicReferenceArray<Entry<V>> table;
+
+    private volatile int size;
+
+    /**
+     * How many slots are filled with an entry or a marker.
+     */
+    private int used;
+
+    /**
+     * Constructs a new, empty ConcurrentLongObjectMap.
+     */
+    public ConcurrentLongObjectMap()
+    {
+        this(16);
+    }
+
+    /**
+     * Constructs a new, empty ConcurrentLongObjectMap with room for the given number of entries before it has to grow.
+     *
+     * @param expected how many entries are expected.
+     */
+    public ConcurrentLongObjectMap(int expected)
+    {
+        table = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1);
+    }
+
+    /**
+     * @param key the key.
+     *
+     * @return the value of the key, or {@code null} if it has none.
+     */
+    public V get(long key)
+    {
+        AtomicReferenceArray<Entry<V>> current = table;
+        int mask = current.length() - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask)
+        {
+            Entry<V> entry = current.get(slot);
+            if (entry == null)
+            {
+                return null;
+            }
+            if (entry != REMOVED && entry.key == key)
+            {
+                return entry.value;
+            }
+        }
+    }
+
+    /**
+     * @param key the key.
+     *
+     * @return {@code true} if the key has a value.
+     */
+    public boolean containsKey(long key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * Sets the value of the given key.
+     *
+     * @param key   the key.
+     * @param value the value.
+     *
+     * @return the previous value of the key, or {@code null} if it had none.
+     */
+    public synchronized V put(long key, V value)
+    {
+        Validate.notNull(value, "Value can't be null.");
+
+        int mask = table.length() - 1;
+        int reuse = -1;
+        int slot = slot(key, mask);
+        for (Entry<V> entry; (entry = table.get(slot)) != null; slot = (slot + 1) & mask)
+        {
+            if (entry == REMOVED)
+            {
+                if (reuse == -1)
+                {
+                    reuse = slot;
+                }
+            }
+            else if (entry.key == key)
+            {
+                table.set(slot, new Entry<>(key, value));
+                return entry.value;
+            }
+        }
+        if (reuse != -1)
+        {
+            table.set(reuse, new Entry<>(key, value));
+        }
+        else
+        {
+            table.set(slot, new Entry<>(key, value));
+            used++;
+        }
+        size++;
+        if (used * 2 > table.length())
+        {
+            // only grow if the entries themselves need the room, otherwise just clear out the markers
+            rehash(size * 4 > table.length() ? table.length() * 2 : table.length());
+        }
+        return null;
+    }
+
+    /**
+     * Removes the value of the given key.
+     *
+     * @param key the key.
+     *
+     * @return the removed value, or {@code null} if the key had none.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(long key)
+    {
+        int mask = table.length() - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask)
+        {
+            Entry<V> entry = table.get(slot);
+            if (entry == null)
+            {
+                return null;
+            }
+            if (entry != REMOVED && entry.key == key)
+            {
+                table.set(slot, (Entry<V>) REMOVED);
+                size--;
+                return entry.value;
+            }
+        }
+    }
+
+    /**
+     * @return how many keys have a value.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public synchronized void clear()
+    {
+        table = new AtomicReferenceArray<>(table.length());
+        size = 0;
+        used = 0;
+    }
+
+    private void rehash(int capacity)
+    {
+        AtomicReferenceArray<Entry<V>> old = table;
+        AtomicReferenceArray<Entry<V>> fresh = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < old.length(); i++)
+        {
+            Entry<V> entry = old.get(i);
+            if (entry != null && entry != REMOVED)
+            {
+                int slot = slot(entry.key, mask);
+                while (fresh.get(slot) != null)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                fresh.set(slot, entry);
+            }
+        }
+        used = size;
+        table = fresh;
+    }
+
+    /**
+     * Spreads the bits of the key so that sequential ids don't all land in neighbouring slots.
+     */
+    private static int slot(long key, int mask)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * A key and its value.
+     *
+     * @param <V> the type of value.
+     */
+    private static class Entry<V>
+    {
+
+        private final long key;
+
+        private final V value;
+
+        private Entry(long key, V value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.ziluck.factions.utils;
+
+/**
+ * Measures how far apart two names are.
+ *
+ * @author Michael Ziluck
+ */
+public final class EditDistance
+{
+
+    private EditDistance()
+    {
+    }
+
+    /**
+     * Calculates the Levenshtein distance between the given Strings ignoring case, the fewest characters that have to be
+     * inserted, removed, or replaced to turn one into the other, as long as it is no more than the given maximum.
+     * <p>
+     * Only the cells within the maximum of the diagonal can be within the maximum, so each row only fills those, and the
+     * calculation stops as soon as a whole row is over the maximum. This takes O(max * length) rather than
+     * O(length * length).
+     * </p>
+     *
+     * @param first   the first String.
+     * @param second  the second String.
+     * @param maximum the largest distance that matters.
+     *
+     * @return the distance, or {@code maximum + 1} if it is more than the maximum.
+     */
+    public static int bounded(CharSequence first, CharSequence second, int maximum)
+    {
+        int firstLength = first.length();
+        int secondLength = second.length();
+        if (Math.abs(firstLength - secondLength) > maximum)
+        {
+            return maximum + 1;
+        }
+
+        int over = maximum + 1;
+        int[] previous = new int[secondLength + 1];
+        int[] current = new int[secondLength + 1];
+        for (int j = 0; j <= secondLength; j++)
+        {
+            previous[j] = j <= maximum ? j : over;
+        }
+
+        for (int i = 1; i <= firstLength; i++)
+        {
+            int from = Math.max(1, i - maximum);
+            int to = Math.min(secondLength, i + maximum);
+            current[0] = i <= maximum ? i : over;
+            if (from > 1)
+            {
+                current[from - 1] = over;
+            }
+
+            int best = current[0];
+            char character = Character.toLowerCase(first.charAt(i - 1));
+            for (int j = from; j <= to; j++)
+            {
+                int cost = character == Character.toLowerCase(second.charAt(j - 1)) ? 0 : 1;
+                int distance = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = Math.min(distance, over);
+                best = Math.min(best, current[j]);
+            }
+            if (to < secondLength)
+            {
+                current[to + 1] = over;
+            }
+            if (best > maximum)
+            {
+                return over;
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[secondLength];
+    }
+
+}
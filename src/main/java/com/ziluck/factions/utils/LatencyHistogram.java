@@ -0,0 +1,118 @@
+package com.ziluck.factions.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations that can be recorded from any thread without locking.
+ * <p>
+ * Durations are counted in buckets that double in size, so recording is a few atomic increments and the whole
+ * histogram is a fixed few hundred bytes no matter how many durations are recorded. The trade-off is that percentiles
+ * are only accurate to within a factor of two, which is plenty to tell a one millisecond query from a fifty
+ * millisecond one.
+ * </p>
+ *
+ * @author Michael Ziluck
+ */
+public class LatencyHistogram
+{
+
+    private static final int BUCKETS = 40;
+
+    /**
+     * Bucket {@code i} counts durations of at least {@code 2^(i-1)} and less than {@code 2^i} microseconds. Bucket 0
+     * counts durations under a microsecond.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a single duration.
+     *
+     * @param micros the duration in microseconds.
+     */
+    public void record(long micros)
+    {
+        micros = Math.max(0, micros);
+
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+        count.incrementAndGet();
+        total.addAndGet(micros);
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * @return how many durations have been recorded.
+     */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * @return the average duration in microseconds, or 0 if nothing was recorded.
+     */
+    public long getMean()
+    {
+        long recorded = count.get();
+        return recorded == 0 ? 0 : total.get() / recorded;
+    }
+
+    /**
+     * @return the longest duration in microseconds.
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Returns an upper bound of the given percentile. For example, {@code getPercentile(99)} returns a duration that at
+     * least 99% of the recorded durations were shorter than.
+     *
+     * @param percentile the percentile between 0 and 100.
+     *
+     * @return the upper bound in microseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile)
+    {
+        long recorded = count.get();
+        if (recorded == 0)
+        {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(recorded * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += buckets.get(i);
+            if (seen >= target)
+            {
+                // the upper edge of the bucket, but never more than what was actually recorded
+                return Math.min((1L << i) - 1, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Clears every recorded duration.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+}
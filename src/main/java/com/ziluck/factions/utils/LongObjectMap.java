@@ -0,0 +1,212 @@
+package com.ziluck.factions.utils;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A hash map from primitive {@code long} keys to objects that never boxes a key.
+ * <p>
+ * The keys and values are kept in two parallel arrays with open addressing and linear probing, so looking up a key
+ * reads at most a few neighbouring slots of one array and allocates nothing. A slot is empty when its value is
+ * {@code null}, which is why {@code null} values can't be stored. Removing a key shifts the entries after it back into
+ * place instead of leaving a marker behind, so lookups never slow down as keys come and go.
+ * </p>
+ * <p>
+ * The map is not thread safe.
+ * </p>
+ *
+ * @param <V> the type of value.
+ *
+ * @author Michael Ziluck
+ */
+public class LongObjectMap<V>
+{
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    /**
+     * Constructs a new, empty LongObjectMap.
+     */
+    public LongObjectMap()
+    {
+        this(16);
+    }
+
+    /**
+     * Constructs a new, empty LongObjectMap with room for the given number of entries before it has to grow.
+     *
+     * @param expected how many entries are expected.
+     */
+    public LongObjectMap(int expected)
+    {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * @param key the key.
+     *
+     * @return the value of the key, or {@code null} if it has none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); values[slot] != null; slot = (slot + 1) & mask)
+        {
+            if (keys[slot] == key)
+            {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param key the key.
+     *
+     * @return {@code true} if the key has a value.
+     */
+    public boolean containsKey(long key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * Sets the value of the given key.
+     *
+     * @param key   the key.
+     * @param value the value.
+     *
+     * @return the previous value of the key, or {@code null} if it had none.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value)
+    {
+        Validate.notNull(value, "Value can't be null.");
+
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (; values[slot] != null; slot = (slot + 1) & mask)
+        {
+            if (keys[slot] == key)
+            {
+                V old = (V) values[slot];
+                values[slot] = value;
+                return old;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length)
+        {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the value of the given key.
+     *
+     * @param key the key.
+     *
+     * @return the removed value, or {@code null} if the key had none.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key)
+    {
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (; values[slot] != null; slot = (slot + 1) & mask)
+        {
+            if (keys[slot] == key)
+            {
+                V old = (V) values[slot];
+                shiftBack(slot, mask);
+                size--;
+                return old;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return how many keys have a value.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear()
+    {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Empties the given slot by moving back every following entry of the same run that would no longer be found.
+     */
+    private void shiftBack(int gap, int mask)
+    {
+        int slot = gap;
+        while (true)
+        {
+            slot = (slot + 1) & mask;
+            if (values[slot] == null)
+            {
+                break;
+            }
+            int home = slot(keys[slot], mask);
+            // the entry can fill the gap only if its home slot is not between the gap and where it is now
+            if (((slot - home) & mask) >= ((slot - gap) & mask))
+            {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        values[gap] = null;
+    }
+
+    private void resize(int capacity)
+    {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldValues[i] != null)
+            {
+                int slot = slot(oldKeys[i], mask);
+                while (values[slot] != null)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of the key so that sequential ids don't all land in neighbouring slots.
+     */
+    private static int slot(long key, int mask)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+}
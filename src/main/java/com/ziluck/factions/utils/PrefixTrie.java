@@ -0,0 +1,341 @@
+package com.ziluck.factions.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A map from names to values that ignores case and can list every name that starts with a prefix.
+ * <p>
+ * The names are kept in a compressed trie: each node holds a run of characters rather than just one, and a node only
+ * exists where names branch or end. Finding the node of a prefix walks at most the length of the prefix, and since every
+ * node below it is either a name or a branch between names, listing the first k names under it visits O(k) nodes. The
+ * names are listed in alphabetical order of their lowercase form.
+ * </p>
+ * <p>
+ * The trie is not thread safe.
+ * </p>
+ *
+ * @param <V> the type of value.
+ *
+ * @author Michael Ziluck
+ */
+public class PrefixTrie<V>
+{
+
+    private final Node<V> root = new Node<>("");
+
+    private int size;
+
+    /**
+     * Sets the value of the given name, replacing any value a name with the same lowercase form had.
+     *
+     * @param name  the name.
+     * @param value the value.
+     *
+     * @return the value that was replaced, or {@code null} if there was none.
+     */
+    public V put(String name, V value)
+    {
+        Validate.notNull(name, "Name can't be null.");
+        Validate.notNull(value, "Value can't be null.");
+
+        String key = normalize(name);
+        Node<V> node = root;
+        int index = 0;
+        while (index < key.length())
+        {
+            int slot = node.find(key.charAt(index));
+            if (slot < 0)
+            {
+                node.insert(-slot - 1, new Node<>(key.substring(index), value));
+                size++;
+                return null;
+            }
+            Node<V> child = node.children[slot];
+            int common = common(child.label, key, index);
+            if (common < child.label.length())
+            {
+                // the name ends or branches partway through the child, so the shared part becomes its own node
+                Node<V> split = new Node<>(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.insert(0, child);
+                node.children[slot] = split;
+                child = split;
+            }
+            node = child;
+            index += common;
+        }
+        V old = node.value;
+        node.value = value;
+        if (old == null)
+        {
+            size++;
+        }
+        return old;
+    }
+
+    /**
+     * Removes the given name if it has the given value.
+     *
+     * @param name  the name.
+     * @param value the value.
+     *
+     * @return {@code true} if it was removed.
+     */
+    public boolean remove(String name, V value)
+    {
+        Validate.notNull(name, "Name can't be null.");
+
+        String key = normalize(name);
+        Node<V> parent = null;
+        Node<V> node = root;
+        int index = 0;
+        while (index < key.length())
+        {
+            int slot = node.find(key.charAt(index));
+            if (slot < 0)
+            {
+                return false;
+            }
+            Node<V> child = node.children[slot];
+            if (!key.startsWith(child.label, index))
+            {
+                return false;
+            }
+            parent = node;
+            node = child;
+            index += child.label.length();
+        }
+        if (node.value == null || node.value != value)
+        {
+            return false;
+        }
+        node.value = null;
+        size--;
+
+        if (node != root)
+        {
+            if (node.count == 0)
+            {
+                parent.delete(parent.find(node.label.charAt(0)));
+                if (parent != root && parent.value == null && parent.count == 1)
+                {
+                    parent.absorbChild();
+                }
+            }
+            else if (node.count == 1)
+            {
+                node.absorbChild();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param name the name, in any case.
+     *
+     * @return the value of the name, or {@code null} if it has none.
+     */
+    public V get(String name)
+    {
+        Validate.notNull(name, "Name can't be null.");
+
+        String key = normalize(name);
+        Node<V> node = root;
+        int index = 0;
+        while (index < key.length())
+        {
+            int slot = node.find(key.charAt(index));
+            if (slot < 0)
+            {
+                return null;
+            }
+            node = node.children[slot];
+            if (!key.startsWith(node.label, index))
+            {
+                return null;
+            }
+            index += node.label.length();
+        }
+        return node.value;
+    }
+
+    /**
+     * Lists the values of the names that start with the given prefix, ignoring case, in alphabetical order.
+     *
+     * @param prefix the start of the names.
+     * @param limit  the most values to list.
+     *
+     * @return the values.
+     */
+    public List<V> startingWith(String prefix, int limit)
+    {
+        Validate.notNull(prefix, "Prefix can't be null.");
+        Validate.isTrue(limit >= 0, "Limit can't be negative.");
+
+        List<V> values = new ArrayList<>(Math.min(limit, size));
+        String key = normalize(prefix);
+        Node<V> node = root;
+        int index = 0;
+        while (index < key.length())
+        {
+            int slot = node.find(key.charAt(index));
+            if (slot < 0)
+            {
+                return values;
+            }
+            node = node.children[slot];
+            int common = common(node.label, key, index);
+            if (index + common == key.length())
+            {
+                // the prefix ends inside of or at the end of this node, so every name below it matches
+                break;
+            }
+            if (common < node.label.length())
+            {
+                return values;
+            }
+            index += common;
+        }
+        collect(node, limit, values);
+        return values;
+    }
+
+    /**
+     * @return how many names have a value.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Adds the values of the given node and the nodes below it in order until the limit is reached.
+     */
+    private void collect(Node<V> node, int limit, List<V> values)
+    {
+        if (values.size() >= limit)
+        {
+            return;
+        }
+        if (node.value != null)
+        {
+            values.add(node.value);
+        }
+        for (int i = 0; i < node.count && values.size() < limit; i++)
+        {
+            collect(node.children[i], limit, values);
+        }
+    }
+
+    /**
+     * @return how many characters the label shares with the key, starting from the given index of the key.
+     */
+    private static int common(String label, String key, int index)
+    {
+        int length = Math.min(label.length(), key.length() - index);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(index + i))
+        {
+            i++;
+        }
+        return i;
+    }
+
+    private static String normalize(String name)
+    {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A run of characters in the trie. The children are sorted by their first character, which is different for each.
+     *
+     * @param <V> the type of value.
+     */
+    private static class Node<V>
+    {
+
+        private String label;
+
+        private V value;
+
+        @SuppressWarnings("unchecked")
+        private Node<V>[] children = new Node[0];
+
+        private int count;
+
+        private Node(String label)
+        {
+            this.label = label;
+        }
+
+        private Node(String label, V value)
+        {
+            this.label = label;
+            this.value = value;
+        }
+
+        /**
+         * @return the slot of the child that starts with the given character, or {@code -(insertion point) - 1}.
+         */
+        private int find(char first)
+        {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high)
+            {
+                int mid = (low + high) >>> 1;
+                char other = children[mid].label.charAt(0);
+                if (other < first)
+                {
+                    low = mid + 1;
+                }
+                else if (other > first)
+                {
+                    high = mid - 1;
+                }
+                else
+                {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private void insert(int slot, Node<V> child)
+        {
+            if (count == children.length)
+            {
+                children = Arrays.copyOf(children, Math.max(2, count * 2));
+            }
+            System.arraycopy(children, slot, children, slot + 1, count - slot);
+            children[slot] = child;
+            count++;
+        }
+
+        private void delete(int slot)
+        {
+            count--;
+            System.arraycopy(children, slot + 1, children, slot, count - slot);
+            children[count] = null;
+        }
+
+        /**
+         * Merges the only child of this node into it, once this node no longer has a value of its own.
+         */
+        private void absorbChild()
+        {
+            Node<V> child = children[0];
+            label = label + child.label;
+            value = child.value;
+            children = child.children;
+            count = child.count;
+        }
+
+    }
+
+}
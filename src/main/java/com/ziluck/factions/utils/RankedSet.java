@@ -0,0 +1,307 @@
+package com.ziluck.factions.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A sorted set that can also find the position of an element and the element at a position in logarithmic time.
+ * <p>
+ * The elements are kept in a treap, a binary search tree that stays balanced by giving every node a random priority.
+ * Every node also records the size of its subtree, which is all that is needed to count how many elements come before
+ * another one or to skip straight to the element at a given position. Adding, removing, ranking, and indexing are all
+ * expected to take O(log n), and reading a range of k elements takes O(log n + k).
+ * </p>
+ * <p>
+ * Elements that compare as equal are the same element, so the comparator should break ties, such as by an id. The set
+ * is not thread safe.
+ * </p>
+ *
+ * @param <E> the type of element.
+ *
+ * @author Michael Ziluck
+ */
+public class RankedSet<E>
+{
+
+    private final Comparator<? super E> comparator;
+
+    private final Random random = new Random();
+
+    private Node<E> root;
+
+    /**
+     * The right half of the last {@link #split(Node, Object, boolean)}, which saves allocating a pair for every split.
+     */
+    private Node<E> splitRemainder;
+
+    /**
+     * Constructs a new, empty RankedSet.
+     *
+     * @param comparator the order of the elements.
+     */
+    public RankedSet(Comparator<? super E> comparator)
+    {
+        Validate.notNull(comparator, "Comparator can't be null.");
+
+        this.comparator = comparator;
+    }
+
+    /**
+     * Adds the given element if an equal one is not already in the set.
+     *
+     * @param element the element to add.
+     *
+     * @return {@code true} if it was added.
+     */
+    public boolean add(E element)
+    {
+        if (rank(element) != -1)
+        {
+            return false;
+        }
+        Node<E> lower = split(root, element, false);
+        Node<E> higher = splitRemainder;
+        root = merge(merge(lower, new Node<>(element, random.nextInt())), higher);
+        return true;
+    }
+
+    /**
+     * Removes the element equal to the given one.
+     *
+     * @param element the element to remove.
+     *
+     * @return {@code true} if it was in the set.
+     */
+    public boolean remove(E element)
+    {
+        if (rank(element) == -1)
+        {
+            return false;
+        }
+        Node<E> lower = split(root, element, false);
+        Node<E> rest = splitRemainder;
+        split(rest, element, true);
+        Node<E> higher = splitRemainder;
+        root = merge(lower, higher);
+        return true;
+    }
+
+    /**
+     * Finds how many elements come before the given one.
+     *
+     * @param element the element to find.
+     *
+     * @return the zero-based position of the element, or {@code -1} if it is not in the set.
+     */
+    public int rank(E element)
+    {
+        int before = 0;
+        Node<E> node = root;
+        while (node != null)
+        {
+            int compare = comparator.compare(element, node.value);
+            if (compare < 0)
+            {
+                node = node.left;
+            }
+            else if (compare > 0)
+            {
+                before += size(node.left) + 1;
+                node = node.right;
+            }
+            else
+            {
+                return before + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index the zero-based position.
+     *
+     * @return the element at the given position.
+     *
+     * @throws IndexOutOfBoundsException if there is no element at the position.
+     */
+    public E get(int index)
+    {
+        if (index < 0 || index >= size())
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node<E> node = root;
+        while (true)
+        {
+            int left = size(node.left);
+            if (index < left)
+            {
+                node = node.left;
+            }
+            else if (index > left)
+            {
+                index -= left + 1;
+                node = node.right;
+            }
+            else
+            {
+                return node.value;
+            }
+        }
+    }
+
+    /**
+     * Reads the elements in a range of positions, in order. If the range goes past the end of the set, only the elements
+     * that exist are returned.
+     *
+     * @param from  the zero-based position of the first element.
+     * @param count the most elements to read.
+     *
+     * @return the elements.
+     */
+    public List<E> range(int from, int count)
+    {
+        Validate.isTrue(from >= 0, "From can't be negative.");
+        Validate.isTrue(count >= 0, "Count can't be negative.");
+
+        int to = (int) Math.min(size(), (long) from + count);
+        List<E> elements = new ArrayList<>(Math.max(0, to - from));
+        collect(root, from, to, elements);
+        return elements;
+    }
+
+    /**
+     * @return how many elements are in the set.
+     */
+    public int size()
+    {
+        return size(root);
+    }
+
+    /**
+     * Removes every element.
+     */
+    public void clear()
+    {
+        root = null;
+    }
+
+    /**
+     * Splits the tree in two. The left half is returned and the right half is left in {@link #splitRemainder}.
+     *
+     * @param node      the root of the tree.
+     * @param element   where to split.
+     * @param inclusive {@code true} to put an element equal to the given one in the left half.
+     *
+     * @return the left half.
+     */
+    private Node<E> split(Node<E> node, E element, boolean inclusive)
+    {
+        if (node == null)
+        {
+            splitRemainder = null;
+            return null;
+        }
+        int compare = comparator.compare(node.value, element);
+        if (compare < 0 || (inclusive && compare == 0))
+        {
+            node.right = split(node.right, element, inclusive);
+            node.update();
+            return node;
+        }
+        Node<E> left = split(node.left, element, inclusive);
+        node.left = splitRemainder;
+        node.update();
+        splitRemainder = node;
+        return left;
+    }
+
+    /**
+     * Joins two trees where every element of the first comes before every element of the second.
+     */
+    private Node<E> merge(Node<E> left, Node<E> right)
+    {
+        if (left == null)
+        {
+            return right;
+        }
+        if (right == null)
+        {
+            return left;
+        }
+        if (left.priority > right.priority)
+        {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    /**
+     * Adds the elements of the given subtree whose positions within it are in {@code [from, to)}.
+     */
+    private void collect(Node<E> node, int from, int to, List<E> elements)
+    {
+        if (node == null || from >= to)
+        {
+            return;
+        }
+        int left = size(node.left);
+        if (from < left)
+        {
+            collect(node.left, from, Math.min(to, left), elements);
+        }
+        if (from <= left && left < to)
+        {
+            elements.add(node.value);
+        }
+        if (to > left + 1)
+        {
+            collect(node.right, Math.max(0, from - left - 1), to - left - 1, elements);
+        }
+    }
+
+    private static int size(Node<?> node)
+    {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * A node of the tree.
+     *
+     * @param <E> the type of element.
+     */
+    private static class Node<E>
+    {
+
+        private final E value;
+
+        private final int priority;
+
+        private int size = 1;
+
+        private Node<E> left;
+
+        private Node<E> right;
+
+        private Node(E value, int priority)
+        {
+            this.value = value;
+            this.priority = priority;
+        }
+
+        private void update()
+        {
+            size = 1 + RankedSet.size(left) + RankedSet.size(right);
+        }
+
+    }
+
+}
@@ -0,0 +1,325 @@
+package com.ziluck.factions.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A map from names to values that can find the names that are spelled almost like another one.
+ * <p>
+ * Every name is split into trigrams, each run of three characters, with the start and end of the name padded so that
+ * they count too. Each trigram keeps the ids of the names that contain it. A name within a few edits of a query shares
+ * most of its trigrams, since one edit can only change the three trigrams around it, so only the names that share enough
+ * of the trigrams of the query have their {@link EditDistance} measured. Everything else is never looked at.
+ * </p>
+ * <p>
+ * The index is not thread safe. Queries reuse the same scratch space.
+ * </p>
+ *
+ * @param <V> the type of value.
+ *
+ * @author Michael Ziluck
+ */
+public class TrigramIndex<V>
+{
+
+    /**
+     * Pads the start and end of every name. It can't be typed, so it never matches a real character.
+     */
+    private static final char PAD = '\0';
+
+    private final Map<String, Entry<V>> entries = new HashMap<>();
+
+    /**
+     * The ids of the names that contain each trigram.
+     */
+    private final LongObjectMap<Posting> postings = new LongObjectMap<>();
+
+    @SuppressWarnings("unchecked")
+    private Entry<V>[] byId = new Entry[16];
+
+    private int[] freeIds = new int[16];
+
+    private int freeCount;
+
+    private int nextId;
+
+    /**
+     * How many trigrams of the current query each name shares, by id. Every count is reset to zero after each query.
+     */
+    private int[] counts = new int[16];
+
+    private int[] touched = new int[16];
+
+    /**
+     * Sets the value of the given name, replacing any value a name with the same lowercase form had.
+     *
+     * @param name  the name.
+     * @param value the value.
+     */
+    public void put(String name, V value)
+    {
+        Validate.notNull(name, "Name can't be null.");
+        Validate.notNull(value, "Value can't be null.");
+
+        String key = normalize(name);
+        Entry<V> entry = entries.get(key);
+        if (entry != null)
+        {
+            entry.value = value;
+            return;
+        }
+
+        int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+        if (id == byId.length)
+        {
+            byId = Arrays.copyOf(byId, id * 2);
+            counts = Arrays.copyOf(counts, id * 2);
+        }
+        entry = new Entry<>(id, key, value);
+        entries.put(key, entry);
+        byId[id] = entry;
+        for (long trigram : trigrams(key))
+        {
+            Posting posting = postings.get(trigram);
+            if (posting == null)
+            {
+                posting = new Posting();
+                postings.put(trigram, posting);
+            }
+            posting.add(id);
+        }
+    }
+
+    /**
+     * Removes the given name if it has the given value.
+     *
+     * @param name  the name.
+     * @param value the value.
+     *
+     * @return {@code true} if it was removed.
+     */
+    public boolean remove(String name, V value)
+    {
+        Validate.notNull(name, "Name can't be null.");
+
+        String key = normalize(name);
+        Entry<V> entry = entries.get(key);
+        if (entry == null || entry.value != value)
+        {
+            return false;
+        }
+        entries.remove(key);
+        byId[entry.id] = null;
+        for (long trigram : trigrams(key))
+        {
+            Posting posting = postings.get(trigram);
+            posting.remove(entry.id);
+            if (posting.size == 0)
+            {
+                postings.remove(trigram);
+            }
+        }
+        if (freeCount == freeIds.length)
+        {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = entry.id;
+        return true;
+    }
+
+    /**
+     * Lists the values of the names that are within the given number of edits of the query, ignoring case. The closest
+     * names come first, and names that are just as close are in alphabetical order.
+     * <p>
+     * Only names that share at least one trigram with the query are ever found, so a very short query with a large
+     * maximum distance will not find names it has nothing in common with.
+     * </p>
+     *
+     * @param query       the name that was typed.
+     * @param maxDistance the most edits a name can be away from the query.
+     * @param limit       the most values to list.
+     *
+     * @return the values.
+     */
+    public List<V> similarTo(String query, int maxDistance, int limit)
+    {
+        Validate.notNull(query, "Query can't be null.");
+        Validate.isTrue(maxDistance >= 0, "Max distance can't be negative.");
+        Validate.isTrue(limit >= 0, "Limit can't be negative.");
+
+        String key = normalize(query);
+        long[] grams = trigrams(key);
+        int touchedCount = 0;
+        for (long trigram : grams)
+        {
+            Posting posting = postings.get(trigram);
+            if (posting == null)
+            {
+                continue;
+            }
+            for (int i = 0; i < posting.size; i++)
+            {
+                int id = posting.ids[i];
+                if (counts[id]++ == 0)
+                {
+                    if (touchedCount == touched.length)
+                    {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = id;
+                }
+            }
+        }
+
+        // every edit changes at most three trigrams, so a close enough name can't be missing more than that many
+        int required = Math.max(1, grams.length - 3 * maxDistance);
+        List<Match<V>> matches = new ArrayList<>();
+        for (int i = 0; i < touchedCount; i++)
+        {
+            int id = touched[i];
+            if (counts[id] >= required)
+            {
+                Entry<V> entry = byId[id];
+                int distance = EditDistance.bounded(key, entry.name, maxDistance);
+                if (distance <= maxDistance)
+                {
+                    matches.add(new Match<>(entry, distance));
+                }
+            }
+            counts[id] = 0;
+        }
+
+        matches.sort((first, second) -> first.distance != second.distance ? Integer.compare(first.distance, second.distance)
+                                                                            : first.entry.name.compareTo(second.entry.name));
+        List<V> values = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && values.size() < limit; i++)
+        {
+            values.add(matches.get(i).entry.value);
+        }
+        return values;
+    }
+
+    /**
+     * @return how many names have a value.
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Splits the given name into its distinct trigrams, each packed into a long as three 16 bit characters.
+     */
+    private static long[] trigrams(String key)
+    {
+        int length = key.length() + 2;
+        long[] grams = new long[length];
+        for (int i = 0; i < length; i++)
+        {
+            grams[i] = ((long) charAt(key, i - 2) << 32) | ((long) charAt(key, i - 1) << 16) | charAt(key, i);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < length; i++)
+        {
+            if (i == 0 || grams[i] != grams[i - 1])
+            {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return distinct == length ? grams : Arrays.copyOf(grams, distinct);
+    }
+
+    private static char charAt(String key, int index)
+    {
+        return index < 0 || index >= key.length() ? PAD : key.charAt(index);
+    }
+
+    private static String normalize(String name)
+    {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A name and its value.
+     *
+     * @param <V> the type of value.
+     */
+    private static class Entry<V>
+    {
+
+        private final int id;
+
+        private final String name;
+
+        private V value;
+
+        private Entry(int id, String name, V value)
+        {
+            this.id = id;
+            this.name = name;
+            this.value = value;
+        }
+
+    }
+
+    /**
+     * The ids of the names that contain one trigram, in no particular order.
+     */
+    private static class Posting
+    {
+
+        private int[] ids = new int[2];
+
+        private int size;
+
+        private void add(int id)
+        {
+            if (size == ids.length)
+            {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        private void remove(int id)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (ids[i] == id)
+                {
+                    ids[i] = ids[--size];
+                    return;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * A name that was close enough to a query.
+     *
+     * @param <V> the type of value.
+     */
+    private static class Match<V>
+    {
+
+        private final Entry<V> entry;
+
+        private final int distance;
+
+        private Match(Entry<V> entry, int distance)
+        {
+            this.entry = entry;
+            this.distance = distance;
+        }
+
+    }
+
+}
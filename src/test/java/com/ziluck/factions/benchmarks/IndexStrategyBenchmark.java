@@ -0,0 +1,147 @@
+package com.ziluck.factions.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.configuration.Config;
+import com.ziluck.factions.configuration.struct.Optimization;
+import com.ziluck.factions.data.index.FactionIndex;
+import com.ziluck.factions.data.index.IndexStrategy;
+import com.ziluck.factions.data.mongodb.MongoFaction;
+import com.ziluck.factions.data.mongodb.MongoUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the FactionStore lookups as they were, reading the optimization from the config and branching on every call,
+ * against the {@link FactionIndex} and stub chosen once by {@link IndexStrategy}. The "branching" benchmarks reproduce
+ * the old code paths exactly so that the two can be compared on the same JVM.
+ *
+ * @author Michael Ziluck
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexStrategyBenchmark
+{
+
+    @Param("200")
+    private int count;
+
+    private Map<String, Faction> factionsByName;
+
+    private List<Faction> factionsList;
+
+    private FactionIndex index;
+
+    private Faction[] factions;
+
+    private String[] cachedStubs;
+
+    private int next;
+
+    @Setup
+    public void setup()
+    {
+        MongoUser leader = new MongoUser(0, UUID.randomUUID(), "Leader");
+        factionsByName = new HashMap<>();
+        factionsList = new ArrayList<>();
+        index = IndexStrategy.newFactionIndex();
+        factions = new Faction[count];
+        cachedStubs = new String[count];
+        for (int i = 0; i < count; i++)
+        {
+            Faction faction = new MongoFaction(i, "Faction" + i, leader, FactionType.NORMAL);
+            factionsByName.put(faction.getStub(), faction);
+            factionsList.add(faction);
+            index.add(faction);
+            factions[i] = faction;
+        }
+    }
+
+    private int nextIndex()
+    {
+        next = next + 1 == factions.length ? 0 : next + 1;
+        return next;
+    }
+
+    @Benchmark
+    public Faction branchingLookup()
+    {
+        String name = factions[nextIndex()].getName();
+        if (Config.OPTIMIZATION.getValue() == Optimization.MEMORY)
+        {
+            for (Faction faction : factionsList)
+            {
+                if (faction.getStub().equals(name.toLowerCase()))
+                {
+                    return faction;
+                }
+            }
+            return null;
+        }
+        else if (Config.OPTIMIZATION.getValue() == Optimization.PROCESS)
+        {
+            return factionsByName.get(name.toLowerCase());
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Faction strategyLookup()
+    {
+        return index.get(factions[nextIndex()].getName());
+    }
+
+    @Benchmark
+    public String branchingStub()
+    {
+        int i = nextIndex();
+        if (Config.OPTIMIZATION.getValue() == Optimization.MEMORY)
+        {
+            return factions[i].getName().toLowerCase();
+        }
+        if (cachedStubs[i] == null)
+        {
+            cachedStubs[i] = factions[i].getName().toLowerCase();
+        }
+        return cachedStubs[i];
+    }
+
+    @Benchmark
+    public String strategyStub()
+    {
+        return factions[nextIndex()].getStub();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(IndexStrategyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.ziluck.factions.benchmarks;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.base.struct.Flag;
+import com.ziluck.factions.data.mongodb.MongoCodecs;
+import com.ziluck.factions.data.mongodb.MongoFaction;
+import com.ziluck.factions.data.mongodb.MongoTransaction;
+import com.ziluck.factions.data.mongodb.MongoUser;
+import com.ziluck.factions.spatial.LazyLocation;
+import org.jongo.bson.BsonDocument;
+import org.jongo.marshall.Marshaller;
+import org.jongo.marshall.Unmarshaller;
+import org.jongo.marshall.jackson.JacksonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the hand-written codecs against the reflective Jackson mapping that Jongo used to save and load Factions.
+ * Run {@link #main(String[])} to include the allocation rate of each, which is where most of the difference is.
+ *
+ * @author Michael Ziluck
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MongoCodecBenchmark
+{
+
+    private MongoFaction faction;
+
+    private byte[] encoded;
+
+    private Marshaller marshaller;
+
+    private Unmarshaller unmarshaller;
+
+    private BsonDocument marshalled;
+
+    @Setup
+    public void setup()
+    {
+        MongoUser leader = new MongoUser(0, UUID.randomUUID(), "Leader");
+        faction = new MongoFaction(1, "Benchmark", leader, FactionType.NORMAL);
+        faction.setHome(new LazyLocation(100, 64, -100, "world"));
+        faction.getFlags().add(Flag.OPEN);
+        for (int i = 1; i <= 30; i++)
+        {
+            MongoUser member = new MongoUser(i, UUID.randomUUID(), "Member" + i);
+            faction.addMember(member);
+            faction.addInvite(member);
+            faction.getTransactionHistory().add(new MongoTransaction(member.getUniqueId(), new Date(), i * 10));
+        }
+        // warps are left out since the old mapping could not read them back
+
+        encoded = MongoCodecs.toBytes(MongoCodecs.FACTION, faction);
+
+        JacksonMapper mapper = new JacksonMapper.Builder().build();
+        marshaller = mapper.getMarshaller();
+        unmarshaller = mapper.getUnmarshaller();
+        marshalled = marshaller.marshall(faction);
+    }
+
+    @Benchmark
+    public byte[] codecEncode()
+    {
+        return MongoCodecs.toBytes(MongoCodecs.FACTION, faction);
+    }
+
+    @Benchmark
+    public MongoFaction codecDecode()
+    {
+        return MongoCodecs.fromBytes(MongoCodecs.FACTION, encoded);
+    }
+
+    @Benchmark
+    public byte[] jongoEncode()
+    {
+        return marshaller.marshall(faction).toByteArray();
+    }
+
+    @Benchmark
+    public MongoFaction jongoDecode()
+    {
+        return unmarshaller.unmarshall(marshalled, MongoFaction.class);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(MongoCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.ziluck.factions.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.data.index.MemoryUserIndex;
+import com.ziluck.factions.data.index.ProcessUserIndex;
+import com.ziluck.factions.data.index.UserIndex;
+import com.ziluck.factions.data.mongodb.MongoUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares looking up an online User through the {@link ProcessUserIndex} and the {@link MemoryUserIndex} against
+ * streaming over every online User the way the UserStore used to. Each lookup is for a different User so that the scans
+ * don't always stop early.
+ *
+ * @author Michael Ziluck
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserIndexBenchmark
+{
+
+    @Param("500")
+    private int online;
+
+    private UserIndex index;
+
+    private UserIndex memory;
+
+    private Map<UUID, User> map;
+
+    private User[] users;
+
+    private int next;
+
+    @Setup
+    public void setup()
+    {
+        index = new ProcessUserIndex();
+        memory = new MemoryUserIndex();
+        map = new HashMap<>();
+        users = new User[online];
+        for (int i = 0; i < online; i++)
+        {
+            User user = new MongoUser(i, UUID.randomUUID(), "Player" + i);
+            index.add(user);
+            memory.add(user);
+            map.put(user.getUniqueId(), user);
+            users[i] = user;
+        }
+    }
+
+    private User nextUser()
+    {
+        next = next + 1 == users.length ? 0 : next + 1;
+        return users[next];
+    }
+
+    @Benchmark
+    public User scanByName()
+    {
+        String name = nextUser().getName().toUpperCase();
+        return map.values().stream().filter(user -> user.getName().equalsIgnoreCase(name)).findFirst().orElse(null);
+    }
+
+    @Benchmark
+    public User indexByName()
+    {
+        return index.get(nextUser().getName().toUpperCase());
+    }
+
+    @Benchmark
+    public User memoryByName()
+    {
+        return memory.get(nextUser().getName().toUpperCase());
+    }
+
+    @Benchmark
+    public User scanById()
+    {
+        long id = nextUser().getId();
+        return map.values().stream().filter(user -> user.getId() == id).findFirst().orElse(null);
+    }
+
+    @Benchmark
+    public User indexById()
+    {
+        return index.get(nextUser().getId());
+    }
+
+    @Benchmark
+    public User memoryById()
+    {
+        return memory.get(nextUser().getId());
+    }
+
+    @Benchmark
+    public User scanByUuid()
+    {
+        UUID uuid = nextUser().getUniqueId();
+        return map.values().stream().filter(user -> user.getUniqueId().equals(uuid)).findFirst().orElse(null);
+    }
+
+    @Benchmark
+    public User indexByUuid()
+    {
+        return index.get(nextUser().getUniqueId());
+    }
+
+    @Benchmark
+    public User memoryByUuid()
+    {
+        return memory.get(nextUser().getUniqueId());
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(UserIndexBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.ziluck.factions.tests;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import com.google.common.collect.Multimap;
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.data.mysql.MySQLAnnouncementMailbox;
+import com.ziluck.factions.data.mysql.MySQLWrapper;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({ "javax.management.*", "org.h2.*", "com.zaxxer.hikari.*" })
+@PrepareForTest(value = { Factions.class, Bukkit.class })
+public class AnnouncementMailboxTest
+{
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private final UUID first = UUID.fromString("a84a885c-7551-49c4-90c0-31d25f41e7f0");
+
+    private final UUID second = UUID.fromString("0c4a1c1f-8d3a-4c2b-9a59-2a4c1a3f6d11");
+
+    private MySQLWrapper database;
+
+    @Before
+    public void setup()
+    {
+        Factions factions = PowerMockito.mock(Factions.class);
+
+        // set up Bukkit
+        BukkitScheduler scheduler = Mockito.mock(BukkitScheduler.class);
+
+        // hijack the scheduler to instead run every task synchronously.
+        when(scheduler.runTaskAsynchronously(ArgumentMatchers.same(factions), any(Runnable.class)))
+                .thenAnswer(invocation ->
+                            {
+                                invocation.<Runnable>getArgument(1).run();
+                                return null;
+                            });
+        when(scheduler.runTask(ArgumentMatchers.same(factions), any(Runnable.class)))
+                .thenAnswer(invocation ->
+                            {
+                                invocation.<Runnable>getArgument(1).run();
+                                return null;
+                            });
+        PowerMockito.mockStatic(Bukkit.class);
+        when(Bukkit.getScheduler()).thenReturn(scheduler);
+
+        // set up factions getInstance
+        PowerMockito.mockStatic(Factions.class);
+        when(Factions.getInstance()).thenReturn(factions);
+
+        // an embedded database that speaks the MySQL dialect
+        database = new MySQLWrapper("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    @After
+    public void tearDown()
+    {
+        database.close();
+    }
+
+    @Test
+    public void testMessagesStoredOnce() throws SQLException
+    {
+        MySQLAnnouncementMailbox mailbox = new MySQLAnnouncementMailbox(DAY);
+        mailbox.post(Arrays.asList("one", "two"), Arrays.asList(first, second));
+
+        // each message is stored once, with one pointer per player waiting for it
+        assertEquals(2, count("SELECT COUNT(*) FROM announcements"));
+        assertEquals(4, count("SELECT COUNT(*) FROM announcement_recipients"));
+
+        Multimap<UUID, String> waiting = mailbox.peek(Arrays.asList(first, second));
+        assertEquals(Arrays.asList("one", "two"), waiting.get(first));
+        assertEquals(Arrays.asList("one", "two"), waiting.get(second));
+
+        // peeking does not acknowledge anything
+        assertEquals(4, count("SELECT COUNT(*) FROM announcement_recipients"));
+    }
+
+    @Test
+    public void testPreloadedDeliveredInOneBatch() throws SQLException
+    {
+        MySQLAnnouncementMailbox mailbox = new MySQLAnnouncementMailbox(DAY);
+        mailbox.post(Arrays.asList("one", "two"), Collections.singletonList(first));
+        mailbox.post(Collections.singletonList("three"), Collections.singletonList(first));
+
+        mailbox.preload(first);
+        User user = mockUser(first);
+        mailbox.deliver(user);
+
+        verify(user).sendMessage(Arrays.asList("one", "two", "three"));
+        assertEquals(0, count("SELECT COUNT(*) FROM announcement_recipients"));
+        assertEquals(0, count("SELECT COUNT(*) FROM announcements"));
+    }
+
+    @Test
+    public void testDeliveredWithoutPreload() throws SQLException
+    {
+        MySQLAnnouncementMailbox mailbox = new MySQLAnnouncementMailbox(DAY);
+        mailbox.post(Collections.singletonList("one"), Collections.singletonList(first));
+
+        User user = mockUser(first);
+        mailbox.deliver(user);
+
+        verify(user).sendMessage(Collections.singletonList("one"));
+        assertEquals(0, count("SELECT COUNT(*) FROM announcements"));
+    }
+
+    @Test
+    public void testMessageKeptUntilEveryoneReceivedIt() throws SQLException
+    {
+        MySQLAnnouncementMailbox mailbox = new MySQLAnnouncementMailbox(DAY);
+        mailbox.post(Arrays.asList("one", "two"), Arrays.asList(first, second));
+
+        mailbox.deliver(mockUser(first));
+        assertEquals(2, count("SELECT COUNT(*) FROM announcements"));
+        assertEquals(2, count("SELECT COUNT(*) FROM announcement_recipients"));
+
+        mailbox.deliver(mockUser(second));
+        assertEquals(0, count("SELECT COUNT(*) FROM announcements"));
+        assertEquals(0, count("SELECT COUNT(*) FROM announcement_recipients"));
+    }
+
+    @Test
+    public void testExpiredMessagesNotDelivered() throws SQLException
+    {
+        MySQLAnnouncementMailbox expiring = new MySQLAnnouncementMailbox(0);
+        expiring.post(Collections.singletonList("old"), Collections.singletonList(first));
+
+        // expired messages are purged whenever the mailbox is written to
+        assertEquals(0, count("SELECT COUNT(*) FROM announcements"));
+        assertEquals(0, count("SELECT COUNT(*) FROM announcement_recipients"));
+
+        User user = mockUser(first);
+        expiring.preload(first);
+        expiring.deliver(user);
+        verify(user, never()).sendMessage(anyCollection());
+    }
+
+    @Test
+    public void testClear() throws SQLException
+    {
+        MySQLAnnouncementMailbox mailbox = new MySQLAnnouncementMailbox(DAY);
+        mailbox.post(Collections.singletonList("one"), Arrays.asList(first, second));
+
+        mailbox.clear(first);
+
+        Multimap<UUID, String> waiting = mailbox.peek(Arrays.asList(first, second));
+        assertTrue(waiting.get(first).isEmpty());
+        assertEquals(Collections.singletonList("one"), waiting.get(second));
+        assertEquals(1, count("SELECT COUNT(*) FROM announcements"));
+    }
+
+    @Test
+    public void testDiscardedPreloadNotAcknowledged() throws SQLException
+    {
+        MySQLAnnouncementMailbox mailbox = new MySQLAnnouncementMailbox(DAY);
+        mailbox.post(Collections.singletonList("one"), Collections.singletonList(first));
+
+        mailbox.preload(first);
+        mailbox.discard(first);
+
+        assertEquals(1, count("SELECT COUNT(*) FROM announcement_recipients"));
+        assertEquals(Collections.singletonList("one"), mailbox.peek(Collections.singletonList(first)).get(first));
+    }
+
+    private static User mockUser(UUID uuid)
+    {
+        User user = Mockito.mock(User.class);
+        when(user.getUniqueId()).thenReturn(uuid);
+        when(user.isOnline()).thenReturn(true);
+        return user;
+    }
+
+    private long count(String query) throws SQLException
+    {
+        try (Connection connection = database.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(query))
+        {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.ziluck.factions.tests;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.ziluck.factions.utils.AppendOnlyList;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AppendOnlyListTest
+{
+
+    @Test
+    public void testSnapshotUnaffectedByAdd()
+    {
+        AppendOnlyList<Integer> list = new AppendOnlyList<>();
+        list.add(1);
+        list.add(2);
+        List<Integer> snapshot = list.snapshot();
+
+        // enough to grow the backing array more than once
+        for (int i = 3; i <= 50; i++)
+        {
+            list.add(i);
+        }
+
+        assertEquals(Arrays.asList(1, 2), snapshot);
+        assertEquals(50, list.size());
+        assertEquals(Integer.valueOf(50), list.get(49));
+    }
+
+    @Test
+    public void testSnapshotUnaffectedByChanges()
+    {
+        AppendOnlyList<Integer> list = new AppendOnlyList<>(Arrays.asList(1, 2, 3));
+        List<Integer> snapshot = list.snapshot();
+
+        list.set(0, 10);
+        list.remove(1);
+        list.add(1, 20);
+
+        assertEquals(Arrays.asList(1, 2, 3), snapshot);
+        assertEquals(Arrays.asList(10, 20, 3), list);
+
+        list.clear();
+        assertEquals(Arrays.asList(1, 2, 3), snapshot);
+        assertTrue(list.isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotReadOnly()
+    {
+        AppendOnlyList<Integer> list = new AppendOnlyList<>();
+        list.add(1);
+        list.snapshot().add(2);
+    }
+
+}
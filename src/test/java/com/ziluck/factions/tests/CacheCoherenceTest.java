@@ -0,0 +1,157 @@
+package com.ziluck.factions.tests;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.struct.Role;
+import com.ziluck.factions.data.mysql.MySQLUserStore;
+import com.ziluck.factions.data.mysql.MySQLWrapper;
+import com.ziluck.factions.data.sync.CacheCoherence;
+import com.ziluck.factions.data.sync.ChangeNotice;
+import com.ziluck.factions.data.sync.LoopbackInvalidationBus;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({ "javax.management.*", "org.h2.*", "com.zaxxer.hikari.*" })
+@PrepareForTest(value = { Factions.class, Bukkit.class })
+public class CacheCoherenceTest
+{
+    private Factions factions;
+
+    private MySQLWrapper database;
+
+    /**
+     * The UserStore of another server sharing the database.
+     */
+    private MySQLUserStore remoteStore;
+
+    /**
+     * The UserStore of this server.
+     */
+    private MySQLUserStore localStore;
+
+    private LoopbackInvalidationBus bus;
+
+    private CacheCoherence remote;
+
+    private Player player;
+
+    @Before
+    public void setup()
+    {
+        // create factions object
+        factions = PowerMockito.mock(Factions.class);
+
+        // set up Bukkit
+        BukkitScheduler scheduler = Mockito.mock(BukkitScheduler.class);
+
+        // hijack the runTaskAsynchronously and runTask methods to instead run them immediately.
+        when(scheduler.runTaskAsynchronously(ArgumentMatchers.same(factions), any(Runnable.class)))
+                .thenAnswer(invocation ->
+                            {
+                                invocation.<Runnable>getArgument(1).run();
+                                return null;
+                            });
+        when(scheduler.runTask(ArgumentMatchers.same(factions), any(Runnable.class)))
+                .thenAnswer(invocation ->
+                            {
+                                invocation.<Runnable>getArgument(1).run();
+                                return null;
+                            });
+        PowerMockito.mockStatic(Bukkit.class);
+        when(Bukkit.getOnlinePlayers()).thenReturn(Collections.emptyList());
+        when(Bukkit.getScheduler()).thenReturn(scheduler);
+
+        // set up factions getInstance
+        PowerMockito.mockStatic(Factions.class);
+        when(Factions.getInstance()).thenReturn(factions);
+
+        database = new MySQLWrapper("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+
+        remoteStore = new MySQLUserStore();
+        localStore = new MySQLUserStore();
+        when(factions.getUserStore()).thenReturn(localStore);
+
+        bus = new LoopbackInvalidationBus();
+        remote = new CacheCoherence(bus, "remote");
+        new CacheCoherence(bus, "local").start();
+
+        player = Mockito.mock(Player.class);
+        when(player.getName()).thenReturn("Doctor_Zee");
+        when(player.getUniqueId()).thenReturn(UUID.fromString("a84a885c-7551-49c4-90c0-31d25f41e7f0"));
+    }
+
+    @After
+    public void tearDown()
+    {
+        database.close();
+    }
+
+    @Test
+    public void testOnlineUserRefreshed()
+    {
+        User online = localStore.loadUser(player);
+
+        User copy = remoteStore.getUser(player.getUniqueId(), true);
+        copy.setFactionRole(Role.MODERATOR);
+        remoteStore.save(copy);
+        remote.publish(copy);
+
+        assertSame(online, localStore.getUser(player.getUniqueId()));
+        assertEquals(Role.MODERATOR, online.getFactionRole());
+    }
+
+    @Test
+    public void testOfflineUserInvalidated()
+    {
+        User created = remoteStore.createUser(UUID.randomUUID(), "Offline");
+        User cached = localStore.getUser(created.getId(), true);
+        assertNotNull(localStore.getOfflineUsers().get(created.getId()));
+
+        remote.publish(created);
+
+        assertNull(localStore.getOfflineUsers().get(created.getId()));
+        assertNotSame(cached, localStore.getUser(created.getId(), true));
+    }
+
+    @Test
+    public void testIgnoredNotices()
+    {
+        User online = localStore.loadUser(player);
+
+        User copy = remoteStore.getUser(player.getUniqueId(), true);
+        copy.setFactionRole(Role.ADMIN);
+        remoteStore.save(copy);
+
+        // notices from this server are never applied
+        bus.publish(new ChangeNotice(ChangeNotice.Type.USER, copy.getId(), System.currentTimeMillis(), "local"));
+        assertEquals(Role.FACTIONLESS, online.getFactionRole());
+
+        // neither are notices older than one already seen
+        bus.publish(new ChangeNotice(ChangeNotice.Type.USER, copy.getId(), 2000, "remote"));
+        assertEquals(Role.ADMIN, online.getFactionRole());
+
+        online.setFactionRole(Role.FACTIONLESS);
+        bus.publish(new ChangeNotice(ChangeNotice.Type.USER, copy.getId(), 1000, "remote"));
+        assertEquals(Role.FACTIONLESS, online.getFactionRole());
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.ziluck.factions.tests;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.data.index.FactionIndex;
+import com.ziluck.factions.data.index.MemoryFactionIndex;
+import com.ziluck.factions.data.index.ProcessFactionIndex;
+import com.ziluck.factions.data.mongodb.MongoFaction;
+import com.ziluck.factions.data.mongodb.MongoUser;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FactionIndexTest
+{
+
+    private MongoUser leader = new MongoUser(0, UUID.randomUUID(), "Leader");
+
+    @Test
+    public void testProcess()
+    {
+        testIndex(new ProcessFactionIndex());
+    }
+
+    @Test
+    public void testMemory()
+    {
+        testIndex(new MemoryFactionIndex());
+    }
+
+    @Test
+    public void testMemoryNonAscii()
+    {
+        FactionIndex index = new MemoryFactionIndex();
+        Faction faction = new MongoFaction(1, "\u00c9cole", leader, FactionType.NORMAL);
+        index.add(faction);
+        index.add(new MongoFaction(2, "Ecole", leader, FactionType.NORMAL));
+
+        assertSame(faction, index.get("\u00e9COLE"));
+        assertEquals(2, index.get("ecole").getId());
+    }
+
+    private void testIndex(FactionIndex index)
+    {
+        Faction first = new MongoFaction(1, "Alpha", leader, FactionType.NORMAL);
+        Faction second = new MongoFaction(2, "Beta", leader, FactionType.NORMAL);
+        index.add(first);
+        index.add(second);
+
+        assertSame(first, index.get("alpha"));
+        assertSame(second, index.get("BETA"));
+        assertNull(index.get("Gamma"));
+        assertSame(first, index.get(1));
+        assertSame(second, index.get(2));
+        assertNull(index.get(3));
+        assertEquals(2, index.size());
+
+        Faction third = new MongoFaction(3, "Alps", leader, FactionType.NORMAL);
+        index.add(third);
+        assertEquals(Arrays.asList(first, third), index.startingWith("AL", 10));
+        assertEquals(Collections.singletonList(first), index.startingWith("al", 1));
+        assertTrue(index.startingWith("gamma", 10).isEmpty());
+        assertEquals(Arrays.asList(third, first), index.similarTo("alp", 2, 10));
+        assertEquals(Arrays.asList(first, third), index.similarTo("ALHPA", 2, 10));
+        assertTrue(index.similarTo("gamma", 2, 10).isEmpty());
+
+        third.setName("Gamma");
+        index.rename(third, "Alps");
+        assertNull(index.get("alps"));
+        assertSame(third, index.get("gamma"));
+        assertEquals(Collections.singletonList(third), index.startingWith("g", 10));
+        assertEquals(Collections.singletonList(third), index.similarTo("gama", 1, 10));
+        assertEquals(Collections.singletonList(first), index.similarTo("alp", 2, 10));
+        index.remove(third);
+
+        index.remove(first);
+        assertNull(index.get("Alpha"));
+        assertNull(index.get(1));
+        assertEquals(1, index.values().size());
+        assertTrue(index.values().contains(second));
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.ziluck.factions.tests;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.base.struct.Leaderboard;
+import com.ziluck.factions.data.FactionLeaderboards;
+import com.ziluck.factions.data.mysql.MySQLFaction;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FactionLeaderboardsTest
+{
+
+    private FactionLeaderboards leaderboards;
+
+    private User leader;
+
+    @Before
+    public void setup()
+    {
+        leaderboards = new FactionLeaderboards();
+        leader = mock(User.class);
+        when(leader.getId()).thenReturn(1L);
+        when(leader.getUniqueId()).thenReturn(UUID.randomUUID());
+    }
+
+    private Faction faction(long id, double balance, long founded)
+    {
+        Faction faction = mock(Faction.class);
+        when(faction.getId()).thenReturn(id);
+        when(faction.isNormal()).thenReturn(true);
+        when(faction.getBalance()).thenReturn(balance);
+        when(faction.getFounded()).thenReturn(founded);
+        when(faction.getClaims()).thenReturn(Collections.emptyList());
+        when(faction.getMembers()).thenReturn(Collections.emptySet());
+        return faction;
+    }
+
+    @Test
+    public void testRanking()
+    {
+        Faction first = faction(1, 100, 30);
+        Faction second = faction(2, 300, 20);
+        Faction third = faction(3, 200, 10);
+        for (Faction faction : Arrays.asList(first, second, third))
+        {
+            leaderboards.update(faction);
+        }
+
+        assertEquals(Arrays.asList(second, third, first), leaderboards.getTop(Leaderboard.BALANCE, 0, 10));
+        assertEquals(Arrays.asList(third, first), leaderboards.getTop(Leaderboard.BALANCE, 1, 2));
+        assertEquals(Arrays.asList(third, second, first), leaderboards.getTop(Leaderboard.AGE, 0, 10));
+        assertEquals(3, leaderboards.getRank(first, Leaderboard.BALANCE));
+        assertEquals(1, leaderboards.getRank(third, Leaderboard.AGE));
+
+        // ties are broken by the id
+        assertEquals(Arrays.asList(first, second, third), leaderboards.getTop(Leaderboard.MEMBERS, 0, 10));
+    }
+
+    @Test
+    public void testUpdateMoves()
+    {
+        Faction first = faction(1, 100, 0);
+        Faction second = faction(2, 200, 0);
+        leaderboards.update(first);
+        leaderboards.update(second);
+        assertEquals(2, leaderboards.getRank(first, Leaderboard.BALANCE));
+
+        when(first.getBalance()).thenReturn(500.0);
+        leaderboards.update(first);
+        assertEquals(1, leaderboards.getRank(first, Leaderboard.BALANCE));
+        assertEquals(2, leaderboards.getRank(second, Leaderboard.BALANCE));
+        assertEquals(2, leaderboards.size());
+
+        leaderboards.remove(first);
+        assertEquals(-1, leaderboards.getRank(first, Leaderboard.BALANCE));
+        assertEquals(Collections.singletonList(second), leaderboards.getTop(Leaderboard.BALANCE, 0, 10));
+    }
+
+    @Test
+    public void testOnlyNormalRanked()
+    {
+        MySQLFaction safezone = new MySQLFaction(5, "Safezone", leader, FactionType.SAFEZONE);
+        leaderboards.update(safezone);
+        assertEquals(-1, leaderboards.getRank(safezone, Leaderboard.BALANCE));
+        assertEquals(0, leaderboards.size());
+    }
+
+    @Test
+    public void testMembersCountedByIds()
+    {
+        MySQLFaction small = new MySQLFaction(1, "Small", leader, FactionType.NORMAL);
+        MySQLFaction large = new MySQLFaction(2, "Large", leader, FactionType.NORMAL);
+        for (int i = 0; i < 3; i++)
+        {
+            User member = mock(User.class);
+            when(member.getId()).thenReturn(10L + i);
+            large.addMember(member);
+        }
+        leaderboards.update(small);
+        leaderboards.update(large);
+
+        assertEquals(3, FactionLeaderboards.score(large, Leaderboard.MEMBERS), 0);
+        assertEquals(1, leaderboards.getRank(large, Leaderboard.MEMBERS));
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.ziluck.factions.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.UUID;
+
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.base.struct.Flag;
+import com.ziluck.factions.base.struct.Role;
+import com.ziluck.factions.data.FactionSnapshot;
+import com.ziluck.factions.data.LoadFaction;
+import com.ziluck.factions.data.mysql.MySQLFaction;
+import com.ziluck.factions.spatial.LazyLocation;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FactionSnapshotTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private User[] users = new User[2];
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException
+    {
+        for (int i = 0; i < users.length; i++)
+        {
+            users[i] = mock(User.class);
+            when(users[i].getId()).thenReturn(i + 10L);
+            when(users[i].getUniqueId()).thenReturn(UUID.randomUUID());
+        }
+        file = new File(folder.getRoot(), "factions.snapshot");
+    }
+
+    private FactionSnapshot read() throws IOException
+    {
+        return FactionSnapshot.read(file, id -> new MySQLFaction(id, null, users[0], FactionType.NORMAL));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        MySQLFaction first = new MySQLFaction(1, "Test1", users[0], FactionType.NORMAL);
+        first.addMember(users[1]);
+        first.addInvite(users[0]);
+        first.setHome(new LazyLocation(1, 2, 3, "world"));
+        first.setDefaultRole(Role.TRIAL);
+        first.getFlags().add(Flag.OPEN);
+        first.touch();
+
+        MySQLFaction second = new MySQLFaction(2, "Test2", users[1], FactionType.SAFEZONE);
+
+        FactionSnapshot.write(file, 1234, Arrays.asList(first, second));
+        FactionSnapshot snapshot = read();
+
+        assertNotNull(snapshot);
+        assertEquals(1234, snapshot.getCreated());
+        assertEquals(2, snapshot.getFactions().size());
+
+        LoadFaction loaded = snapshot.getFactions().get(0);
+        assertEquals(1, loaded.getId());
+        assertEquals("Test1", loaded.getName());
+        assertEquals(FactionType.NORMAL, loaded.getType());
+        assertEquals(Role.TRIAL, loaded.getDefaultRole());
+        assertEquals(first.getModified(), loaded.getModified());
+        assertEquals(10, loaded.getLeaderId());
+        assertArrayEquals(new long[]{ 11 }, loaded.getMemberIds());
+        assertEquals(first.getInvites(), loaded.getInvites());
+        assertEquals(2, loaded.getHome().getY(), 0);
+        assertEquals("world", loaded.getHome().getWorldName());
+        assertTrue(loaded.isOpen());
+
+        loaded = snapshot.getFactions().get(1);
+        assertEquals("Test2", loaded.getName());
+        assertEquals(FactionType.SAFEZONE, loaded.getType());
+        assertEquals(11, loaded.getLeaderId());
+        assertNull(loaded.getHome());
+        assertEquals(0, loaded.getMemberIds().length);
+    }
+
+    @Test
+    public void testUnusableSnapshot() throws IOException
+    {
+        assertNull(read());
+
+        FactionSnapshot.write(file, 1234, Arrays.asList(new MySQLFaction(1, "Test1", users[0], FactionType.NORMAL)));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.setLength(raf.length() - 4);
+        }
+        assertNull(read());
+    }
+
+}
@@ -0,0 +1,308 @@
+package com.ziluck.factions.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.data.index.FactionIndex;
+import com.ziluck.factions.data.index.MemoryFactionIndex;
+import com.ziluck.factions.data.index.MemoryUserIndex;
+import com.ziluck.factions.data.index.ProcessFactionIndex;
+import com.ziluck.factions.data.index.ProcessUserIndex;
+import com.ziluck.factions.data.index.UserIndex;
+import com.ziluck.factions.data.mongodb.MongoFaction;
+import com.ziluck.factions.data.mongodb.MongoUser;
+import com.ziluck.factions.utils.ConcurrentLongObjectMap;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reads the indexes from several threads while one thread keeps changing them, the way async chat and scheduler tasks
+ * read them while players join and Factions are created on the main thread. Entries that are never removed must always
+ * be found, and anything else that is found must be found under its own key.
+ */
+public class IndexConcurrencyTest
+{
+
+    private static final int READERS = 4;
+
+    private static final int WRITES = 20000;
+
+    private static final int STABLE = 200;
+
+    private final MongoUser leader = new MongoUser(0, UUID.randomUUID(), "Leader");
+
+    @Test
+    public void testLongObjectMap() throws Throwable
+    {
+        ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<>();
+        for (long key = 0; key < STABLE; key++)
+        {
+            map.put(key * 2, key * 2);
+        }
+
+        run(() ->
+        {
+            for (int i = 0; i < WRITES; i++)
+            {
+                // the odd keys come and go, which fills the map with removed markers and makes it rehash
+                long key = (i % (STABLE * 4)) * 2 + 1;
+                if (map.put(key, key) != null)
+                {
+                    map.remove(key);
+                }
+            }
+        }, () ->
+        {
+            for (long key = 0; key < STABLE * 8; key++)
+            {
+                Long value = map.get(key);
+                if (key % 2 == 0 && key < STABLE * 2)
+                {
+                    assertEquals(Long.valueOf(key), value);
+                }
+                else if (value != null)
+                {
+                    assertEquals(key, value.longValue());
+                }
+            }
+        });
+        assertEquals(STABLE, countStable(map));
+    }
+
+    @Test
+    public void testProcessUserIndex() throws Throwable
+    {
+        testUserIndex(new ProcessUserIndex());
+    }
+
+    @Test
+    public void testMemoryUserIndex() throws Throwable
+    {
+        testUserIndex(new MemoryUserIndex());
+    }
+
+    @Test
+    public void testProcessFactionIndex() throws Throwable
+    {
+        testFactionIndex(new ProcessFactionIndex());
+    }
+
+    @Test
+    public void testMemoryFactionIndex() throws Throwable
+    {
+        testFactionIndex(new MemoryFactionIndex());
+    }
+
+    private void testUserIndex(UserIndex index) throws Throwable
+    {
+        List<User> stable = new ArrayList<>();
+        for (int i = 0; i < STABLE; i++)
+        {
+            User user = new MongoUser(i, UUID.randomUUID(), "Stable" + i);
+            index.add(user);
+            stable.add(user);
+        }
+        List<User> churn = new ArrayList<>();
+        for (int i = 0; i < STABLE; i++)
+        {
+            churn.add(new MongoUser(STABLE + i, UUID.randomUUID(), "Churn" + i));
+        }
+
+        run(() ->
+        {
+            for (int i = 0; i < WRITES; i++)
+            {
+                User user = churn.get(i % churn.size());
+                if (!index.remove(user))
+                {
+                    index.add(user);
+                }
+            }
+        }, () ->
+        {
+            for (User user : stable)
+            {
+                assertSame(user, index.get(user.getUniqueId()));
+                assertSame(user, index.get(user.getName().toUpperCase()));
+                assertSame(user, index.get(user.getId()));
+            }
+            for (User user : churn)
+            {
+                User found = index.get(user.getId());
+                assertTrue(found == null || found == user);
+                found = index.get(user.getName());
+                assertTrue(found == null || found == user);
+            }
+            for (User user : index.startingWith("churn1", 20))
+            {
+                assertTrue(user.getName().startsWith("Churn1"));
+            }
+            int count = 0;
+            for (User user : index.values())
+            {
+                assertNotNull(user);
+                count++;
+            }
+            assertTrue(count >= STABLE);
+        });
+        assertEquals(STABLE * 2, index.size() + countOffline(index, churn));
+    }
+
+    private void testFactionIndex(FactionIndex index) throws Throwable
+    {
+        List<Faction> stable = new ArrayList<>();
+        for (int i = 0; i < STABLE; i++)
+        {
+            Faction faction = new MongoFaction(i, "Stable" + i, leader, FactionType.NORMAL);
+            index.add(faction);
+            stable.add(faction);
+        }
+        List<Faction> churn = new ArrayList<>();
+        for (int i = 0; i < STABLE; i++)
+        {
+            churn.add(new MongoFaction(STABLE + i, "Churn" + i, leader, FactionType.NORMAL));
+        }
+        Faction renamed = new MongoFaction(STABLE * 2, "Before", leader, FactionType.NORMAL);
+        index.add(renamed);
+
+        run(() ->
+        {
+            for (int i = 0; i < WRITES; i++)
+            {
+                Faction faction = churn.get(i % churn.size());
+                if (index.get(faction.getId()) == faction)
+                {
+                    index.remove(faction);
+                }
+                else
+                {
+                    index.add(faction);
+                }
+                if (i % 10 == 0)
+                {
+                    String oldName = renamed.getName();
+                    renamed.setName(oldName.equals("Before") ? "After" : "Before");
+                    index.rename(renamed, oldName);
+                }
+            }
+        }, () ->
+        {
+            for (Faction faction : stable)
+            {
+                assertSame(faction, index.get(faction.getName().toLowerCase()));
+                assertSame(faction, index.get(faction.getId()));
+            }
+            for (Faction faction : churn)
+            {
+                Faction found = index.get(faction.getName());
+                assertTrue(found == null || found == faction);
+            }
+            assertSame(renamed, index.get(renamed.getId()));
+            Faction found = index.get("before");
+            assertTrue(found == null || found == renamed);
+            for (Faction faction : index.startingWith("stable1", 20))
+            {
+                assertTrue(faction.getName().startsWith("Stable1"));
+            }
+            int count = 0;
+            for (Faction faction : index.values())
+            {
+                assertNotNull(faction);
+                count++;
+            }
+            assertTrue(count > STABLE);
+        });
+
+        // the writer is done, so the renamed Faction is only under its last name
+        assertSame(renamed, index.get(renamed.getName()));
+        assertNull(index.get(renamed.getName().equals("Before") ? "After" : "Before"));
+    }
+
+    /**
+     * Runs the writer once while every reader repeats its checks until the writer is done, then fails with the first
+     * error any of them had.
+     */
+    private static void run(Runnable writer, Runnable reader) throws Throwable
+    {
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < READERS; i++)
+        {
+            threads.add(new Thread(() ->
+            {
+                try
+                {
+                    start.await();
+                    do
+                    {
+                        reader.run();
+                    }
+                    while (!done.get() && failure.get() == null);
+                }
+                catch (Throwable ex)
+                {
+                    failure.compareAndSet(null, ex);
+                }
+            }));
+        }
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+
+        start.countDown();
+        try
+        {
+            writer.run();
+        }
+        finally
+        {
+            done.set(true);
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+        }
+        if (failure.get() != null)
+        {
+            throw failure.get();
+        }
+    }
+
+    private static int countStable(ConcurrentLongObjectMap<Long> map)
+    {
+        int count = 0;
+        for (long key = 0; key < STABLE * 2; key += 2)
+        {
+            if (map.containsKey(key))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countOffline(UserIndex index, List<User> churn)
+    {
+        int count = 0;
+        for (User user : churn)
+        {
+            if (index.get(user.getUniqueId()) == null)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
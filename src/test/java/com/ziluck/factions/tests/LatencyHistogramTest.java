@@ -0,0 +1,38 @@
+package com.ziluck.factions.tests;
+
+import com.ziluck.factions.utils.LatencyHistogram;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest
+{
+
+    @Test
+    public void testPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+
+        for (int i = 0; i < 98; i++)
+        {
+            histogram.record(100);
+        }
+        histogram.record(5000);
+        histogram.record(40000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(548, histogram.getMean());
+        assertEquals(40000, histogram.getMax());
+
+        // within a factor of two of the real values
+        assertTrue(histogram.getPercentile(50) >= 100 && histogram.getPercentile(50) < 200);
+        assertTrue(histogram.getPercentile(99) >= 5000 && histogram.getPercentile(99) < 10000);
+        assertEquals(40000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.ziluck.factions.tests;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.ziluck.factions.utils.LongObjectMap;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LongObjectMapTest
+{
+
+    @Test
+    public void testPutGetRemove()
+    {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(-1, "minus one"));
+        assertEquals("one", map.put(1, "uno"));
+
+        assertEquals("uno", map.get(1));
+        assertEquals("minus one", map.get(-1));
+        assertNull(map.get(2));
+        assertEquals(2, map.size());
+
+        assertEquals("uno", map.remove(1));
+        assertNull(map.remove(1));
+        assertFalse(map.containsKey(1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testMatchesHashMap()
+    {
+        Random random = new Random(42);
+        LongObjectMap<Long> map = new LongObjectMap<>(4);
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++)
+        {
+            // a small range of keys so that the same keys keep being added and removed
+            long key = random.nextInt(2000) - 1000;
+            if (random.nextBoolean())
+            {
+                assertEquals(expected.put(key, key * 3), map.put(key, key * 3));
+            }
+            else
+            {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = -1000; key < 1000; key++)
+        {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullValue()
+    {
+        new LongObjectMap<String>().put(1, null);
+    }
+
+}
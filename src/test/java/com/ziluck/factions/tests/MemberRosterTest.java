@@ -0,0 +1,108 @@
+package com.ziluck.factions.tests;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.base.struct.Role;
+import com.ziluck.factions.data.mongodb.MongoFaction;
+import com.ziluck.factions.data.mongodb.MongoUser;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MemberRosterTest
+{
+
+    private MongoFaction faction;
+
+    private MongoUser first;
+
+    private MongoUser second;
+
+    @Before
+    public void setup()
+    {
+        MongoUser leader = new MongoUser(0, UUID.randomUUID(), "Leader");
+        faction = new MongoFaction(1, "Roster", leader, FactionType.NORMAL);
+        faction.setDefaultRole(Role.TRIAL);
+
+        first = new MongoUser(1, UUID.randomUUID(), "First");
+        second = new MongoUser(2, UUID.randomUUID(), "Second");
+        faction.addMember(first);
+        faction.addMember(second);
+    }
+
+    @Test
+    public void testAddedWithDefaultRole()
+    {
+        assertEquals(2, faction.getMembers().size());
+        assertEquals(2, faction.getTrialMembers().size());
+        assertTrue(faction.getTrialMembers().contains(first));
+        assertTrue(faction.getAdmins().isEmpty());
+        assertTrue(faction.getMembers(Role.MEMBER).isEmpty());
+    }
+
+    @Test
+    public void testRoleChangesMoveMember()
+    {
+        Set<User> admins = faction.getAdmins();
+        first.setFactionRole(Role.ADMIN);
+
+        // the view is live, so the set from before the change sees it too
+        assertEquals(Collections.singleton(first), admins);
+        assertEquals(Collections.singleton(second), faction.getTrialMembers());
+
+        first.setFactionRole(Role.MODERATOR);
+        assertTrue(admins.isEmpty());
+        assertEquals(Collections.singleton(first), faction.getModerators());
+        assertEquals(2, faction.getMembers().size());
+    }
+
+    @Test
+    public void testRemovedMemberLeavesBucket()
+    {
+        assertTrue(faction.getMembers().remove(first));
+        assertEquals(Collections.singleton(second), faction.getTrialMembers());
+
+        // no longer a member, so changing their Role must not bring them back
+        first.setFactionRole(Role.ADMIN);
+        assertTrue(faction.getAdmins().isEmpty());
+        assertFalse(faction.getMembers().contains(first));
+    }
+
+    @Test
+    public void testIteratorRemoval()
+    {
+        for (Iterator<User> iterator = faction.getMembers().iterator(); iterator.hasNext(); )
+        {
+            if (iterator.next() == second)
+            {
+                iterator.remove();
+            }
+        }
+        assertEquals(Collections.singleton(first), faction.getTrialMembers());
+
+        faction.getMembers().clear();
+        assertTrue(faction.getTrialMembers().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRoleViewUnmodifiable()
+    {
+        faction.getAdmins().add(first);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRoleViewIteratorUnmodifiable()
+    {
+        Iterator<User> iterator = faction.getTrialMembers().iterator();
+        iterator.next();
+        iterator.remove();
+    }
+
+}
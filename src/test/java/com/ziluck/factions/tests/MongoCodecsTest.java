@@ -0,0 +1,106 @@
+package com.ziluck.factions.tests;
+
+import java.util.Date;
+import java.util.UUID;
+
+import com.ziluck.factions.base.Transaction;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.base.struct.Flag;
+import com.ziluck.factions.base.struct.Role;
+import com.ziluck.factions.data.mongodb.MongoCodecs;
+import com.ziluck.factions.data.mongodb.MongoFaction;
+import com.ziluck.factions.data.mongodb.MongoTransaction;
+import com.ziluck.factions.data.mongodb.MongoUser;
+import com.ziluck.factions.spatial.LazyLocation;
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MongoCodecsTest
+{
+
+    @Test
+    public void testFactionRoundTrip()
+    {
+        User leader = mock(User.class);
+        when(leader.getId()).thenReturn(10L);
+        User member = mock(User.class);
+        when(member.getId()).thenReturn(11L);
+        when(member.getUniqueId()).thenReturn(UUID.randomUUID());
+
+        MongoFaction faction = new MongoFaction(1, "Test", leader, FactionType.NORMAL);
+        faction.addMember(member);
+        faction.addInvite(member);
+        faction.getFlags().add(Flag.OPEN);
+        faction.setHome(new LazyLocation(1, 2, 3, "world"));
+        faction.getTransactionHistory().add(new MongoTransaction(member.getUniqueId(), new Date(1234), 5.5));
+
+        MongoFaction loaded = MongoCodecs.fromBytes(MongoCodecs.FACTION, MongoCodecs.toBytes(MongoCodecs.FACTION, faction));
+
+        assertEquals(1, loaded.getId());
+        assertEquals("Test", loaded.getName());
+        assertEquals(FactionType.NORMAL, loaded.getType());
+        assertEquals(10, loaded.getLeaderId());
+        assertArrayEquals(new long[]{ 11 }, loaded.getMemberIds());
+        assertEquals(faction.getInvites(), loaded.getInvites());
+        assertEquals(faction.getFlags(), loaded.getFlags());
+        assertEquals("world", loaded.getHome().getWorldName());
+        assertEquals(2, loaded.getHome().getY(), 0);
+
+        assertEquals(1, loaded.getTransactionHistory().size());
+        Transaction transaction = loaded.getTransactionHistory().get(0);
+        assertEquals(member.getUniqueId(), transaction.getUserId());
+        assertEquals(1234, transaction.getDate().getTime());
+        assertEquals(5.5, transaction.getAmount(), 0);
+    }
+
+    @Test
+    public void testUserRoundTrip()
+    {
+        MongoUser user = new MongoUser(5, UUID.randomUUID(), "Tester");
+        user.setFactionRole(Role.ADMIN);
+
+        MongoUser loaded = MongoCodecs.fromBytes(MongoCodecs.USER, MongoCodecs.toBytes(MongoCodecs.USER, user));
+
+        assertEquals(5, loaded.getId());
+        assertEquals(user.getUniqueId(), loaded.getUniqueId());
+        assertEquals("Tester", loaded.getName());
+        assertEquals(Role.ADMIN, loaded.getFactionRole());
+    }
+
+    @Test
+    public void testReadsLegacyDocument()
+    {
+        // the old mapping stored small longs as int32 and also stored the results of some getters
+        BsonDocument document = new BsonDocument("_id", new BsonInt32(7))
+                .append("name", new BsonString("Legacy"))
+                .append("type", new BsonString("NORMAL"))
+                .append("leaderId", new BsonInt32(3))
+                .append("balance", new BsonInt32(20))
+                .append("memberIds", new BsonArray())
+                .append("peaceful", BsonBoolean.FALSE)
+                .append("admins", new BsonArray())
+                .append("home", new BsonDocument("x", new BsonDouble(1)).append("world", new BsonString("world")));
+
+        MongoFaction loaded = MongoCodecs.fromRaw(MongoCodecs.FACTION, new RawBsonDocument(document, new BsonDocumentCodec()));
+
+        assertEquals(7, loaded.getId());
+        assertEquals("Legacy", loaded.getName());
+        assertEquals(3, loaded.getLeaderId());
+        assertEquals(20, loaded.getBalance(), 0);
+        assertEquals(0, loaded.getMemberIds().length);
+        assertEquals("world", loaded.getHome().getWorldName());
+    }
+
+}
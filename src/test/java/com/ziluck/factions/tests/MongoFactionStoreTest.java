@@ -0,0 +1,132 @@
+package com.ziluck.factions.tests;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.UserStore;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.data.mongodb.MongoFaction;
+import com.ziluck.factions.data.mongodb.MongoFactionStore;
+import com.ziluck.factions.data.mongodb.MongoUser;
+import com.ziluck.factions.data.mongodb.MongoWrapper;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({ "javax.management.*" })
+@PrepareForTest(value = { Factions.class, Bukkit.class, MongoWrapper.class })
+public class MongoFactionStoreTest
+{
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MongoCollection<MongoFaction> collection;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup()
+    {
+        Factions factions = PowerMockito.mock(Factions.class);
+
+        // set up Bukkit
+        BukkitScheduler scheduler = Mockito.mock(BukkitScheduler.class);
+
+        // hijack the runTaskAsynchronously method to instead run it synchronously.
+        when(scheduler.runTaskAsynchronously(ArgumentMatchers.same(factions), any(Runnable.class)))
+                .thenAnswer(invocation ->
+                            {
+                                invocation.<Runnable>getArgument(1).run();
+                                return null;
+                            });
+        PowerMockito.mockStatic(Bukkit.class);
+        when(Bukkit.getOnlinePlayers()).thenReturn(Collections.emptyList());
+        when(Bukkit.getScheduler()).thenReturn(scheduler);
+
+        // set up factions getInstance, with no FactionStore yet just like while the plugin is being enabled
+        PowerMockito.mockStatic(Factions.class);
+        when(Factions.getInstance()).thenReturn(factions);
+        when(factions.getDataFolder()).thenReturn(folder.getRoot());
+        UserStore userStore = Mockito.mock(UserStore.class);
+        when(userStore.getConsole()).thenReturn(new MongoUser(-1, UUID.randomUUID(), "CONSOLE"));
+        when(factions.getUserStore()).thenReturn(userStore);
+
+        // an empty factions collection
+        collection = Mockito.mock(MongoCollection.class);
+        MongoCollection<RawBsonDocument> raw = Mockito.mock(MongoCollection.class);
+        FindIterable<RawBsonDocument> rawFind = Mockito.mock(FindIterable.class);
+        when(collection.withDocumentClass(RawBsonDocument.class)).thenReturn(raw);
+        when(raw.find()).thenReturn(rawFind);
+        when(rawFind.projection(any())).thenReturn(rawFind);
+        when(rawFind.iterator()).thenReturn(Mockito.mock(MongoCursor.class));
+
+        // with no documents there is no highest id to start the counter after
+        MongoCollection<Document> documents = Mockito.mock(MongoCollection.class);
+        FindIterable<Document> documentFind = Mockito.mock(FindIterable.class);
+        when(documents.find()).thenReturn(documentFind);
+        when(documentFind.sort(any())).thenReturn(documentFind);
+        when(documentFind.limit(anyInt())).thenReturn(documentFind);
+
+        MongoDatabase database = Mockito.mock(MongoDatabase.class);
+        when(database.getCollection("factions", MongoFaction.class)).thenReturn(collection);
+        when(database.getCollection("factions")).thenReturn(documents);
+        when(database.getCollection("counters")).thenReturn(Mockito.mock(MongoCollection.class));
+
+        MongoWrapper wrapper = Mockito.mock(MongoWrapper.class);
+        when(wrapper.getDatabase()).thenReturn(database);
+        PowerMockito.mockStatic(MongoWrapper.class);
+        when(MongoWrapper.getInstance()).thenReturn(wrapper);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWildernessCreatedOnEmptyDatabase()
+    {
+        MongoFactionStore store = new MongoFactionStore();
+
+        Faction wilderness = store.getWilderness();
+        assertNotNull(wilderness);
+        assertEquals(-1, wilderness.getId());
+        assertEquals(FactionType.WILDERNESS, wilderness.getType());
+        assertSame(wilderness, store.getFaction(-1));
+        assertSame(wilderness, store.getFaction("Wilderness"));
+
+        // the Wilderness is written even though FactionStore.getInstance() was not set yet
+        ArgumentCaptor<List<WriteModel<MongoFaction>>> writes = ArgumentCaptor.forClass(List.class);
+        verify(collection).bulkWrite(writes.capture(), any(BulkWriteOptions.class));
+        assertEquals(1, writes.getValue().size());
+        assertEquals(-1, ((ReplaceOneModel<MongoFaction>) writes.getValue().get(0)).getReplacement().getId());
+        assertEquals(0, store.getSaveQueue().getBacklog());
+    }
+
+}
@@ -0,0 +1,252 @@
+package com.ziluck.factions.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.base.struct.Role;
+import com.ziluck.factions.data.mysql.MySQLFaction;
+import com.ziluck.factions.data.mysql.MySQLFactionStore;
+import com.ziluck.factions.data.mysql.MySQLIdAllocator;
+import com.ziluck.factions.data.mysql.MySQLTransaction;
+import com.ziluck.factions.data.mysql.MySQLUserStore;
+import com.ziluck.factions.data.mysql.MySQLWrapper;
+import com.ziluck.factions.events.FactionCreateEvent;
+import com.ziluck.factions.spatial.LazyLocation;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({ "javax.management.*", "org.h2.*", "com.zaxxer.hikari.*" })
+@PrepareForTest(value = { Factions.class, Bukkit.class })
+public class MySQLStoreTest
+{
+    private Factions factions;
+
+    private MySQLWrapper database;
+
+    private MySQLUserStore userStore;
+
+    private MySQLFactionStore factionStore;
+
+    private BukkitScheduler scheduler;
+
+    private Player player;
+
+    @Before
+    public void setup()
+    {
+        // create factions object
+        factions = PowerMockito.mock(Factions.class);
+
+        // set up Bukkit
+        scheduler = Mockito.mock(BukkitScheduler.class);
+
+        // hijack the runTaskAsynchronously method to instead run it synchronously.
+        when(scheduler.runTaskAsynchronously(ArgumentMatchers.same(factions), any(Runnable.class)))
+                .thenAnswer(invocation ->
+                            {
+                                invocation.<Runnable>getArgument(1).run();
+                                return null;
+                            });
+        PowerMockito.mockStatic(Bukkit.class);
+        when(Bukkit.getOnlinePlayers()).thenReturn(Collections.emptyList());
+        when(Bukkit.getScheduler()).thenReturn(scheduler);
+
+        // set up factions getInstance
+        PowerMockito.mockStatic(Factions.class);
+        when(Factions.getInstance()).thenReturn(factions);
+
+        // an embedded database that speaks the MySQL dialect
+        database = new MySQLWrapper("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+
+        userStore = new MySQLUserStore();
+        when(factions.getUserStore()).thenReturn(userStore);
+
+        factionStore = new MySQLFactionStore();
+        when(factions.getFactionStore()).thenReturn(factionStore);
+
+        // set up player
+        player = Mockito.mock(Player.class);
+
+        when(player.getName()).thenReturn("Doctor_Zee");
+        when(player.getUniqueId()).thenReturn(UUID.fromString("a84a885c-7551-49c4-90c0-31d25f41e7f0"));
+    }
+
+    @After
+    public void tearDown()
+    {
+        database.close();
+    }
+
+    @Test
+    public void testUserRoundTrip()
+    {
+        User created = userStore.createUser(player);
+
+        User loaded = userStore.getUser(player.getUniqueId(), true);
+
+        assertNotNull(loaded);
+        assertNotSame(created, loaded);
+        assertEquals(created.getId(), loaded.getId());
+        assertEquals("Doctor_Zee", loaded.getName());
+        assertEquals(Role.FACTIONLESS, loaded.getFactionRole());
+        assertEquals(loaded.getId(), userStore.getUser("Doctor_Zee", true).getId());
+    }
+
+    @Test
+    public void testBulkUserLookup()
+    {
+        User first = userStore.createUser(UUID.randomUUID(), "First");
+        User second = userStore.createUser(UUID.randomUUID(), "Second");
+        User online = userStore.loadUser(player);
+
+        // a fresh store has nothing cached, so both offline users come from one query
+        MySQLUserStore reloaded = new MySQLUserStore();
+        User reloadedOnline = reloaded.loadUser(player);
+        List<User> users = reloaded.getUsers(new long[]{ second.getId(), 1000, online.getId(), first.getId() }, true);
+
+        assertEquals(3, users.size());
+        assertEquals("Second", users.get(0).getName());
+        assertSame(reloadedOnline, users.get(1));
+        assertEquals("First", users.get(2).getName());
+        assertEquals(2, reloaded.getOfflineUsers().size());
+
+        assertEquals(1, reloaded.getUsers(new long[]{ first.getId(), second.getId(), online.getId() }, false).size());
+    }
+
+    @Test
+    public void testIdAllocatorsNeverCollide() throws Exception
+    {
+        User existing = userStore.createUser(player);
+
+        // two allocators on the same counter act like two servers sharing the database
+        MySQLIdAllocator[] allocators = { new MySQLIdAllocator("users", 3), new MySQLIdAllocator("users", 3) };
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++)
+        {
+            MySQLIdAllocator allocator = allocators[thread % 2];
+            futures.add(executor.submit(() ->
+                                        {
+                                            for (int i = 0; i < 50; i++)
+                                            {
+                                                assertTrue(ids.add(allocator.nextId()));
+                                            }
+                                        }));
+        }
+        for (Future<?> future : futures)
+        {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(200, ids.size());
+        assertFalse(ids.contains(existing.getId()));
+        assertTrue(Collections.min(ids) > existing.getId());
+    }
+
+    @Test
+    public void testWildernessCreated()
+    {
+        assertNotNull(factionStore.getWilderness());
+        assertEquals(-1, factionStore.getWilderness().getId());
+
+        MySQLFactionStore reloaded = new MySQLFactionStore();
+        assertEquals(-1, reloaded.getWilderness().getId());
+        assertEquals(1, reloaded.getFactions().size());
+    }
+
+    @Test
+    public void testFactionRoundTrip()
+    {
+        User creator = userStore.createUser(player);
+
+        FactionCreateEvent event = factionStore.createFaction(creator, "Test1", FactionType.NORMAL);
+        event.complete();
+
+        Faction faction = event.getFaction();
+        faction.setHome(new LazyLocation(1, 2, 3, "world"));
+        faction.setWarp("Base", new LazyLocation(4, 5, 6, "world"));
+        faction.deposit(creator, 100);
+        faction.withdraw(creator, 25);
+
+        MySQLFactionStore reloaded = new MySQLFactionStore();
+        Faction loaded = reloaded.getFaction("test1");
+
+        assertNotNull(loaded);
+        assertEquals(faction.getId(), loaded.getId());
+        assertEquals("Test1", loaded.getName());
+        assertEquals(75, loaded.getBalance(), 0);
+        assertEquals(2, loaded.getTransactionHistory().size());
+        assertEquals(-25, loaded.getTransactionHistory().get(1).getAmount(), 0);
+        assertEquals(creator.getUniqueId(), loaded.getTransactionHistory().get(0).getUserId());
+        assertEquals(3, loaded.getHome().getZ(), 0);
+        assertTrue(loaded.isWarp("base"));
+        assertEquals("world", loaded.getWarp("base").getLocation().getWorldName());
+
+        // saving again must only append the new transaction
+        loaded.deposit(creator, 5);
+        assertEquals(3, new MySQLFactionStore().getFaction("test1").getTransactionHistory().size());
+    }
+
+    @Test
+    public void testSaveWritesCopy()
+    {
+        User creator = userStore.createUser(player);
+
+        FactionCreateEvent event = factionStore.createFaction(creator, "Test1", FactionType.NORMAL);
+        event.complete();
+        MySQLFaction faction = (MySQLFaction) event.getFaction();
+
+        // hold the write back until the Faction has changed again
+        List<Runnable> tasks = new ArrayList<>();
+        when(scheduler.runTaskAsynchronously(ArgumentMatchers.same(factions), any(Runnable.class)))
+                .thenAnswer(invocation ->
+                            {
+                                tasks.add(invocation.getArgument(1));
+                                return null;
+                            });
+
+        faction.deposit(creator, 100);
+        faction.getTransactionHistory().add(new MySQLTransaction(creator, new Date(), 5));
+        tasks.forEach(Runnable::run);
+
+        // only what was there when it was saved is written
+        assertTrue(((MySQLTransaction) faction.getTransactionHistory().get(0)).isPersisted());
+        assertFalse(((MySQLTransaction) faction.getTransactionHistory().get(1)).isPersisted());
+
+        Faction loaded = new MySQLFactionStore().getFaction("test1");
+        assertEquals(100, loaded.getBalance(), 0);
+        assertEquals(1, loaded.getTransactionHistory().size());
+    }
+
+}
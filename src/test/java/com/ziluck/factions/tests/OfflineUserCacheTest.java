@@ -0,0 +1,87 @@
+package com.ziluck.factions.tests;
+
+import java.util.UUID;
+
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.data.OfflineUserCache;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OfflineUserCacheTest
+{
+
+    private static User mockUser(long id, String name)
+    {
+        User user = mock(User.class);
+        when(user.getId()).thenReturn(id);
+        when(user.getName()).thenReturn(name);
+        when(user.getUniqueId()).thenReturn(UUID.nameUUIDFromBytes(name.getBytes()));
+        return user;
+    }
+
+    @Test
+    public void testLookupByEveryKey()
+    {
+        OfflineUserCache cache = new OfflineUserCache(10, 60000);
+        User user = mockUser(5, "Doctor_Zee");
+        cache.put(user);
+
+        assertSame(user, cache.get(5));
+        assertSame(user, cache.get(user.getUniqueId()));
+        assertSame(user, cache.get("doctor_zee"));
+        assertNull(cache.get("someone_else"));
+
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.invalidate(user);
+        assertNull(cache.get(user.getUniqueId()));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction()
+    {
+        OfflineUserCache cache = new OfflineUserCache(2, 60000);
+        User first = mockUser(1, "First");
+        User second = mockUser(2, "Second");
+        User third = mockUser(3, "Third");
+
+        cache.put(first);
+        cache.put(second);
+        // touch the first user so the second one is the eldest
+        cache.get(1);
+        cache.put(third);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(first, cache.get("first"));
+        assertNull(cache.get("second"));
+        assertSame(third, cache.get(3));
+    }
+
+    @Test
+    public void testExpiry()
+    {
+        OfflineUserCache cache = new OfflineUserCache(10, 0);
+        User user = mockUser(1, "First");
+        cache.put(user);
+
+        assertNull(cache.get(1));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        OfflineUserCache cache = new OfflineUserCache(0, 60000);
+        cache.put(mockUser(1, "First"));
+
+        assertEquals(0, cache.size());
+    }
+
+}
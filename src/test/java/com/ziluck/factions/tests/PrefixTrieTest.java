@@ -0,0 +1,97 @@
+package com.ziluck.factions.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.ziluck.factions.utils.PrefixTrie;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PrefixTrieTest
+{
+
+    @Test
+    public void testStartingWith()
+    {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        for (String name : Arrays.asList("Alpha", "alphabet", "Alpine", "Beta", "al"))
+        {
+            trie.put(name, name);
+        }
+
+        assertEquals(Arrays.asList("al", "Alpha", "alphabet", "Alpine"), trie.startingWith("AL", 10));
+        assertEquals(Arrays.asList("Alpha", "alphabet"), trie.startingWith("alph", 10));
+        assertEquals(Collections.singletonList("al"), trie.startingWith("al", 1));
+        assertEquals(Collections.singletonList("Beta"), trie.startingWith("b", 10));
+        assertTrue(trie.startingWith("gamma", 10).isEmpty());
+        assertEquals(5, trie.startingWith("", 10).size());
+    }
+
+    @Test
+    public void testRemoveMergesNodes()
+    {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("Alpha", "Alpha");
+        trie.put("Alpine", "Alpine");
+
+        assertFalse(trie.remove("Alpha", "someone else"));
+        assertTrue(trie.remove("ALPHA", "Alpha"));
+        assertNull(trie.get("alpha"));
+        assertEquals("Alpine", trie.get("ALPINE"));
+        assertEquals(Collections.singletonList("Alpine"), trie.startingWith("alp", 10));
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    public void testMatchesTreeMap()
+    {
+        Random random = new Random(7);
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        TreeMap<String, String> expected = new TreeMap<>();
+        for (int i = 0; i < 20000; i++)
+        {
+            String name = randomName(random, 5);
+            String key = name.toLowerCase();
+            if (random.nextInt(3) > 0)
+            {
+                String value = key + i;
+                assertEquals(expected.put(key, value), trie.put(name, value));
+            }
+            else if (expected.containsKey(key))
+            {
+                assertTrue(trie.remove(name, expected.remove(key)));
+            }
+            assertEquals(expected.size(), trie.size());
+
+            String prefix = randomName(random, 3).toLowerCase();
+            List<String> matches = new ArrayList<>();
+            for (Map.Entry<String, String> entry : expected.tailMap(prefix).entrySet())
+            {
+                if (!entry.getKey().startsWith(prefix) || matches.size() == 5)
+                {
+                    break;
+                }
+                matches.add(entry.getValue());
+            }
+            assertEquals(matches, trie.startingWith(prefix, 5));
+        }
+    }
+
+    private static String randomName(Random random, int maxLength)
+    {
+        StringBuilder builder = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++)
+        {
+            builder.append("aAbBc".charAt(random.nextInt(5)));
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.ziluck.factions.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import com.ziluck.factions.utils.RankedSet;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RankedSetTest
+{
+
+    @Test
+    public void testRankAndRange()
+    {
+        RankedSet<Integer> set = new RankedSet<>(Comparator.reverseOrder());
+        for (int i = 1; i <= 10; i++)
+        {
+            assertTrue(set.add(i));
+        }
+        assertFalse(set.add(5));
+
+        assertEquals(10, set.size());
+        assertEquals(0, set.rank(10));
+        assertEquals(9, set.rank(1));
+        assertEquals(-1, set.rank(11));
+        assertEquals(Integer.valueOf(7), set.get(3));
+        assertEquals(Arrays.asList(8, 7, 6), set.range(2, 3));
+        assertEquals(Arrays.asList(2, 1), set.range(8, 5));
+        assertTrue(set.range(20, 5).isEmpty());
+
+        assertTrue(set.remove(7));
+        assertFalse(set.remove(7));
+        assertEquals(Arrays.asList(8, 6, 5), set.range(2, 3));
+        assertEquals(2, set.rank(6));
+    }
+
+    @Test
+    public void testMatchesSortedSet()
+    {
+        Random random = new Random(1);
+        RankedSet<Integer> set = new RankedSet<>(Comparator.naturalOrder());
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 20000; i++)
+        {
+            int value = random.nextInt(1000);
+            if (random.nextBoolean())
+            {
+                assertEquals(expected.add(value), set.add(value));
+            }
+            else
+            {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+        }
+
+        List<Integer> sorted = new ArrayList<>(expected);
+        assertEquals(sorted.size(), set.size());
+        assertEquals(sorted, set.range(0, sorted.size()));
+        for (int i = 0; i < sorted.size(); i++)
+        {
+            assertEquals(i, set.rank(sorted.get(i)));
+            assertEquals(sorted.get(i), set.get(i));
+        }
+    }
+
+}
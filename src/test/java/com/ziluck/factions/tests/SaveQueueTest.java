@@ -0,0 +1,121 @@
+package com.ziluck.factions.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.data.SaveQueue;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({ "javax.management.*" })
+@PrepareForTest(value = { Factions.class, Bukkit.class })
+public class SaveQueueTest
+{
+    /**
+     * The tasks handed to the asynchronous scheduler that have not run yet.
+     */
+    private List<Runnable> tasks;
+
+    private List<String> written;
+
+    @Before
+    public void setup()
+    {
+        Factions factions = PowerMockito.mock(Factions.class);
+        when(factions.getLogger()).thenReturn(Logger.getLogger("SaveQueueTest"));
+
+        tasks = new ArrayList<>();
+        written = Collections.synchronizedList(new ArrayList<>());
+
+        // hold on to the asynchronous tasks so that the test decides when they run
+        BukkitScheduler scheduler = Mockito.mock(BukkitScheduler.class);
+        when(scheduler.runTaskAsynchronously(ArgumentMatchers.same(factions), any(Runnable.class)))
+                .thenAnswer(invocation ->
+                            {
+                                tasks.add(invocation.getArgument(1));
+                                return null;
+                            });
+        PowerMockito.mockStatic(Bukkit.class);
+        when(Bukkit.getScheduler()).thenReturn(scheduler);
+
+        PowerMockito.mockStatic(Factions.class);
+        when(Factions.getInstance()).thenReturn(factions);
+    }
+
+    private SaveQueue<String> createQueue()
+    {
+        return new SaveQueue<>("names", name -> name.charAt(0), written::addAll);
+    }
+
+    @Test
+    public void testCoalesced()
+    {
+        SaveQueue<String> queue = createQueue();
+
+        queue.submit("a1");
+        queue.submit("b1");
+        queue.submit("a2");
+
+        // only one flush is scheduled for the whole burst
+        assertEquals(1, tasks.size());
+        assertEquals(2, queue.getBacklog());
+
+        tasks.get(0).run();
+
+        assertEquals(2, written.size());
+        assertTrue(written.contains("a2"));
+        assertFalse(written.contains("a1"));
+        assertEquals(0, queue.getBacklog());
+    }
+
+    @Test
+    public void testDrain()
+    {
+        SaveQueue<String> queue = createQueue();
+        for (char c = 'a'; c <= 'z'; c++)
+        {
+            queue.submit(c + "1");
+        }
+
+        // the scheduler never runs its task, just like while the plugin is being disabled
+        SaveQueue.DrainReport report = SaveQueue.drain(Collections.singletonList(queue), 4, 5000);
+
+        assertEquals(26, report.getFlushed());
+        assertEquals(0, report.getAbandoned());
+        assertEquals(26, written.size());
+    }
+
+    @Test
+    public void testDrainAbandons()
+    {
+        SaveQueue<String> queue = new SaveQueue<>("names", name -> name.charAt(0), names ->
+        {
+            throw new IllegalStateException("The database is down.");
+        });
+        queue.submit("a1");
+        queue.submit("b1");
+
+        SaveQueue.DrainReport report = SaveQueue.drain(Collections.singletonList(queue), 2, 5000);
+
+        assertEquals(0, report.getFlushed());
+        assertEquals(2, report.getAbandoned());
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.ziluck.factions.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import com.ziluck.factions.Factions;
+import com.ziluck.factions.base.Faction;
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.base.struct.FactionType;
+import com.ziluck.factions.data.LoadFaction;
+import com.ziluck.factions.data.migration.MigrationCheckpoint;
+import com.ziluck.factions.data.migration.StorageMigration;
+import com.ziluck.factions.data.mysql.MySQLFactionStore;
+import com.ziluck.factions.data.mysql.MySQLMigrationBackend;
+import com.ziluck.factions.data.mysql.MySQLUserStore;
+import com.ziluck.factions.data.mysql.MySQLWrapper;
+import com.ziluck.factions.events.FactionCreateEvent;
+import com.ziluck.factions.spatial.LazyLocation;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({ "javax.management.*", "org.h2.*", "com.zaxxer.hikari.*" })
+@PrepareForTest(value = { Factions.class, Bukkit.class })
+public class StorageMigrationTest
+{
+    private Factions factions;
+
+    private MySQLWrapper source;
+
+    private MySQLWrapper target;
+
+    private File checkpointFile;
+
+    private List<User> users;
+
+    private Faction faction;
+
+    @Before
+    public void setup() throws IOException
+    {
+        // create factions object
+        factions = PowerMockito.mock(Factions.class);
+
+        // set up Bukkit
+        BukkitScheduler scheduler = Mockito.mock(BukkitScheduler.class);
+
+        // hijack the runTaskAsynchronously method to instead run it synchronously.
+        when(scheduler.runTaskAsynchronously(ArgumentMatchers.same(factions), any(Runnable.class)))
+                .thenAnswer(invocation ->
+                            {
+                                invocation.<Runnable>getArgument(1).run();
+                                return null;
+                            });
+        PowerMockito.mockStatic(Bukkit.class);
+        when(Bukkit.getOnlinePlayers()).thenReturn(Collections.emptyList());
+        when(Bukkit.getScheduler()).thenReturn(scheduler);
+
+        // set up factions getInstance
+        PowerMockito.mockStatic(Factions.class);
+        when(Factions.getInstance()).thenReturn(factions);
+
+        // fill the source database
+        source = new MySQLWrapper("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+
+        MySQLUserStore userStore = new MySQLUserStore();
+        when(factions.getUserStore()).thenReturn(userStore);
+        MySQLFactionStore factionStore = new MySQLFactionStore();
+        when(factions.getFactionStore()).thenReturn(factionStore);
+
+        users = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            users.add(userStore.createUser(UUID.randomUUID(), "User" + i));
+        }
+
+        FactionCreateEvent event = factionStore.createFaction(users.get(0), "Test1", FactionType.NORMAL);
+        event.complete();
+        faction = event.getFaction();
+        faction.addMember(users.get(1));
+        faction.setHome(new LazyLocation(1, 2, 3, "world"));
+        faction.setWarp("Base", new LazyLocation(4, 5, 6, "world"));
+        faction.deposit(users.get(0), 100);
+        faction.withdraw(users.get(1), 40);
+
+        target = new MySQLWrapper("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+
+        checkpointFile = File.createTempFile("migration", ".checkpoint");
+        checkpointFile.delete();
+    }
+
+    @After
+    public void tearDown()
+    {
+        source.close();
+        target.close();
+        checkpointFile.delete();
+    }
+
+    private StorageMigration createMigration()
+    {
+        MigrationCheckpoint checkpoint = new MigrationCheckpoint(checkpointFile, "MYSQL", "MYSQL");
+        return new StorageMigration(new MySQLMigrationBackend(source), new MySQLMigrationBackend(target), checkpoint, 2, 2, Logger.getLogger("Migration"));
+    }
+
+    @Test
+    public void testMigration()
+    {
+        assertTrue(createMigration().run());
+
+        // the target is the active database now
+        MySQLUserStore userStore = new MySQLUserStore();
+        when(factions.getUserStore()).thenReturn(userStore);
+        MySQLFactionStore factionStore = new MySQLFactionStore();
+        when(factions.getFactionStore()).thenReturn(factionStore);
+
+        for (User user : users)
+        {
+            User migrated = userStore.getUser(user.getUniqueId(), true);
+            assertNotNull(migrated);
+            assertEquals(user.getId(), migrated.getId());
+            assertEquals(user.getName(), migrated.getName());
+        }
+        assertEquals(faction.getId(), userStore.getUser(users.get(0).getUniqueId(), true).getFactionId());
+
+        Faction migrated = factionStore.getFaction("test1");
+        assertNotNull(migrated);
+        assertEquals(faction.getId(), migrated.getId());
+        assertEquals(60, migrated.getBalance(), 0);
+        assertEquals(2, migrated.getTransactionHistory().size());
+        assertEquals(3, migrated.getHome().getZ(), 0);
+        assertTrue(migrated.isWarp("base"));
+        assertArrayEquals(((LoadFaction) faction).getMemberIds(), ((LoadFaction) migrated).getMemberIds());
+        assertEquals(users.get(0).getId(), ((LoadFaction) migrated).getLeaderId());
+
+        // a finished migration never runs again
+        assertFalse(createMigration().run());
+    }
+
+    @Test
+    public void testResume()
+    {
+        // pretend an earlier run was interrupted after writing the first three users
+        MigrationCheckpoint checkpoint = new MigrationCheckpoint(checkpointFile, "MYSQL", "MYSQL");
+        checkpoint.update("users", users.get(2).getId(), 3);
+
+        assertTrue(createMigration().run());
+
+        MySQLUserStore userStore = new MySQLUserStore();
+        assertNull(userStore.getUser(users.get(2).getUniqueId(), true));
+        assertNotNull(userStore.getUser(users.get(3).getUniqueId(), true));
+        assertNotNull(userStore.getUser(users.get(4).getUniqueId(), true));
+        assertEquals(5, new MigrationCheckpoint(checkpointFile, "MYSQL", "MYSQL").getCount("users"));
+    }
+
+}
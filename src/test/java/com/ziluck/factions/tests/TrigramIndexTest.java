@@ -0,0 +1,107 @@
+package com.ziluck.factions.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.ziluck.factions.utils.EditDistance;
+import com.ziluck.factions.utils.TrigramIndex;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TrigramIndexTest
+{
+
+    @Test
+    public void testEditDistance()
+    {
+        assertEquals(0, EditDistance.bounded("Steve", "steve", 2));
+        assertEquals(1, EditDistance.bounded("Steve", "Stevie", 2));
+        assertEquals(3, EditDistance.bounded("kitten", "sitting", 3));
+        assertEquals(3, EditDistance.bounded("kitten", "sitting", 2));
+        assertEquals(2, EditDistance.bounded("", "ab", 2));
+        assertEquals(3, EditDistance.bounded("a", "abcd", 2));
+    }
+
+    @Test
+    public void testSimilarTo()
+    {
+        TrigramIndex<String> index = new TrigramIndex<>();
+        for (String name : Arrays.asList("Warriors", "Warrior", "Wanderers", "Knights", "Night"))
+        {
+            index.put(name, name);
+        }
+
+        assertEquals(Arrays.asList("Warrior", "Warriors"), index.similarTo("warior", 2, 10));
+        assertEquals(Arrays.asList("Warrior"), index.similarTo("WARIOR", 1, 10));
+        assertEquals(Arrays.asList("Knights", "Night"), index.similarTo("knight", 1, 10));
+        assertEquals(Arrays.asList("Knights"), index.similarTo("knight", 1, 1));
+        assertTrue(index.similarTo("Pirates", 2, 10).isEmpty());
+
+        assertFalse(index.remove("Knights", "someone else"));
+        assertTrue(index.remove("KNIGHTS", "Knights"));
+        assertEquals(Arrays.asList("Night"), index.similarTo("knight", 1, 10));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testMatchesScan()
+    {
+        Random random = new Random(11);
+        TrigramIndex<String> index = new TrigramIndex<>();
+        Map<String, String> expected = new TreeMap<>();
+        for (int i = 0; i < 5000; i++)
+        {
+            String name = randomName(random, 2, 8);
+            String key = name.toLowerCase();
+            if (random.nextInt(4) > 0)
+            {
+                expected.put(key, name);
+                index.put(name, name);
+            }
+            else if (expected.containsKey(key))
+            {
+                assertTrue(index.remove(name, expected.remove(key)));
+            }
+            assertEquals(expected.size(), index.size());
+
+            if (i % 10 == 0)
+            {
+                String query = randomName(random, 2, 8);
+                // every name is at least two characters, so it always shares enough trigrams to be found within one edit
+                List<String> close = new ArrayList<>();
+                List<String> closest = new ArrayList<>();
+                for (Map.Entry<String, String> entry : expected.entrySet())
+                {
+                    int distance = EditDistance.bounded(query, entry.getKey(), 1);
+                    if (distance == 0)
+                    {
+                        closest.add(entry.getValue());
+                    }
+                    else if (distance == 1)
+                    {
+                        close.add(entry.getValue());
+                    }
+                }
+                closest.addAll(close);
+                assertEquals(closest, index.similarTo(query, 1, Integer.MAX_VALUE));
+            }
+        }
+    }
+
+    private static String randomName(Random random, int minLength, int maxLength)
+    {
+        StringBuilder builder = new StringBuilder();
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        for (int i = 0; i < length; i++)
+        {
+            builder.append("aAbBcd".charAt(random.nextInt(6)));
+        }
+        return builder.toString();
+    }
+
+}
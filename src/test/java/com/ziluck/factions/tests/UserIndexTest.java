@@ -0,0 +1,105 @@
+package com.ziluck.factions.tests;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import com.ziluck.factions.base.User;
+import com.ziluck.factions.data.index.MemoryUserIndex;
+import com.ziluck.factions.data.index.ProcessUserIndex;
+import com.ziluck.factions.data.index.UserIndex;
+import com.ziluck.factions.data.mongodb.MongoUser;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UserIndexTest
+{
+
+    @Test
+    public void testLookups()
+    {
+        testLookups(new ProcessUserIndex());
+        testLookups(new MemoryUserIndex());
+    }
+
+    @Test
+    public void testRemove()
+    {
+        testRemove(new ProcessUserIndex());
+        testRemove(new MemoryUserIndex());
+    }
+
+    @Test
+    public void testReplacedUser()
+    {
+        testReplacedUser(new ProcessUserIndex());
+        testReplacedUser(new MemoryUserIndex());
+    }
+
+    @Test
+    public void testStartingWith()
+    {
+        testStartingWith(new ProcessUserIndex());
+        testStartingWith(new MemoryUserIndex());
+    }
+
+    private void testLookups(UserIndex index)
+    {
+        User user = new MongoUser(7, UUID.randomUUID(), "Steve");
+        index.add(user);
+
+        assertSame(user, index.get(user.getUniqueId()));
+        assertSame(user, index.get("steve"));
+        assertSame(user, index.get("STEVE"));
+        assertSame(user, index.get(7));
+        assertNull(index.get("Alex"));
+        assertNull(index.get(8));
+        assertEquals(1, index.size());
+    }
+
+    private void testRemove(UserIndex index)
+    {
+        User user = new MongoUser(7, UUID.randomUUID(), "Steve");
+        index.add(user);
+
+        assertTrue(index.remove(user));
+        assertFalse(index.remove(user));
+        assertNull(index.get(user.getUniqueId()));
+        assertNull(index.get("Steve"));
+        assertNull(index.get(7));
+        assertTrue(index.values().isEmpty());
+    }
+
+    private void testReplacedUser(UserIndex index)
+    {
+        UUID uuid = UUID.randomUUID();
+        User old = new MongoUser(7, uuid, "Steve");
+        User fresh = new MongoUser(7, uuid, "Steve");
+        index.add(old);
+        index.add(fresh);
+
+        // removing the stale copy must not take the current one offline
+        assertFalse(index.remove(old));
+        assertSame(fresh, index.get("steve"));
+        assertSame(fresh, index.get(7));
+        assertEquals(1, index.size());
+    }
+
+    private void testStartingWith(UserIndex index)
+    {
+        User steve = new MongoUser(1, UUID.randomUUID(), "Steve");
+        User stephanie = new MongoUser(2, UUID.randomUUID(), "Stephanie");
+        User alex = new MongoUser(3, UUID.randomUUID(), "Alex");
+        index.add(steve);
+        index.add(stephanie);
+        index.add(alex);
+
+        assertEquals(Arrays.asList(stephanie, steve), index.startingWith("ST", 10));
+        assertEquals(Arrays.asList(stephanie), index.startingWith("ste", 1));
+
+        index.remove(stephanie);
+        assertEquals(Arrays.asList(steve), index.startingWith("ste", 10));
+        assertTrue(index.startingWith("x", 10).isEmpty());
+    }
+
+}
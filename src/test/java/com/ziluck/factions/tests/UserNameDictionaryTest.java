@@ -0,0 +1,103 @@
+package com.ziluck.factions.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.ziluck.factions.data.UserNameDictionary;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class UserNameDictionaryTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setup()
+    {
+        file = new File(folder.getRoot(), "usernames.dictionary");
+    }
+
+    @Test
+    public void testStartingWith()
+    {
+        UserNameDictionary names = new UserNameDictionary();
+        names.addAll(Arrays.asList("Steve", "alex", "Stephanie", "Notch", "steven_2"));
+
+        assertEquals(Arrays.asList("Stephanie", "Steve", "steven_2"), names.startingWith("STE", 10));
+        assertEquals(Arrays.asList("Stephanie", "Steve"), names.startingWith("ste", 2));
+        assertEquals(Collections.singletonList("alex"), names.startingWith("A", 10));
+        assertTrue(names.startingWith("Herobrine", 10).isEmpty());
+        assertEquals(5, names.startingWith("", 10).size());
+    }
+
+    @Test
+    public void testCaseReplaced()
+    {
+        UserNameDictionary names = new UserNameDictionary();
+        names.add("steve");
+        names.add("Steve");
+        names.addAll(Arrays.asList("alex", "ALEX"));
+
+        assertEquals(2, names.size());
+        assertTrue(names.contains("STEVE"));
+        assertEquals(Collections.singletonList("Steve"), names.startingWith("s", 10));
+        assertEquals(Collections.singletonList("ALEX"), names.startingWith("a", 10));
+    }
+
+    @Test
+    public void testReopen() throws IOException
+    {
+        UserNameDictionary names = new UserNameDictionary(file);
+        names.addAll(Arrays.asList("Steve", "Alex"));
+        names.add("Notch");
+        names.add("steve");
+        // left open, as if the server crashed
+
+        UserNameDictionary reopened = new UserNameDictionary(file);
+        assertEquals(3, reopened.size());
+        assertEquals(Arrays.asList("Alex", "Notch", "steve"), reopened.startingWith("", 10));
+        reopened.close();
+
+        // the replaced case was compacted away when it was reopened
+        UserNameDictionary compacted = new UserNameDictionary(file);
+        assertEquals(Arrays.asList("Alex", "Notch", "steve"), compacted.startingWith("", 10));
+        compacted.close();
+    }
+
+    @Test
+    public void testTornTailDropped() throws IOException
+    {
+        UserNameDictionary names = new UserNameDictionary(file);
+        names.add("Steve");
+        long intact = file.length();
+        names.add("Alex");
+        names.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.setLength(file.length() - 2);
+        }
+
+        UserNameDictionary reopened = new UserNameDictionary(file);
+        assertEquals(Collections.singletonList("Steve"), reopened.startingWith("", 10));
+        assertEquals(intact, file.length());
+
+        // appending after the dropped record must not leave it in the way
+        reopened.add("Notch");
+        reopened.close();
+        UserNameDictionary again = new UserNameDictionary(file);
+        assertEquals(Arrays.asList("Notch", "Steve"), again.startingWith("", 10));
+        again.close();
+    }
+
+}
@@ -5,12 +5,15 @@ import java.util.Collections;
 import java.util.UUID;
 
 import com.ziluck.factions.Factions;
+import com.ziluck.factions.base.User;
 import com.ziluck.factions.base.UserStore;
 import com.ziluck.factions.data.nitrite.NitriteUserStore;
 import com.ziluck.factions.listeners.ConnectionListener;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.scheduler.BukkitScheduler;
 import org.junit.Assert;
 import org.junit.Before;
@@ -27,7 +30,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest(value = { PlayerJoinEvent.class, Factions.class, UserStore.class, Bukkit.class })
+@PrepareForTest(value = { PlayerJoinEvent.class, PlayerLoginEvent.class, AsyncPlayerPreLoginEvent.class, Factions.class, UserStore.class, Bukkit.class })
 public class UserTest
 {
     private static NitriteUserStore userStore;
@@ -111,4 +114,125 @@ public class UserTest
         assertTrue(UserStore.getInstance().getUser(player.getUniqueId()).isOnline());
     }
 
+    @Test
+    public void testPreloadedJoin()
+    {
+        Player known = mockPlayer("Known");
+        User created = userStore.createUser(known.getUniqueId(), known.getName());
+
+        ConnectionListener listener = new ConnectionListener();
+        AsyncPlayerPreLoginEvent preLoginEvent = mockPreLogin(known);
+        listener.onPreLogin(preLoginEvent);
+        listener.onPreLoginResult(preLoginEvent);
+
+        // nothing is online until the player actually joins
+        assertNull(UserStore.getInstance().getUser(known.getUniqueId()));
+
+        User preloaded = userStore.getPreloadedUser(known.getUniqueId());
+        assertNotNull(preloaded);
+        assertEquals(created.getId(), preloaded.getId());
+
+        listener.onJoin(mockJoin(known));
+
+        assertSame(preloaded, UserStore.getInstance().getUser(known.getUniqueId()));
+        assertTrue(preloaded.isOnline());
+        assertNull(userStore.getPreloadedUser(known.getUniqueId()));
+    }
+
+    @Test
+    public void testNewPlayerCreatedOnJoin()
+    {
+        Player newcomer = mockPlayer("Newcomer");
+
+        ConnectionListener listener = new ConnectionListener();
+        listener.onPreLogin(mockPreLogin(newcomer));
+
+        // a new player is built during the pre-login, but not saved until they join
+        User preloaded = userStore.getPreloadedUser(newcomer.getUniqueId());
+        assertNotNull(preloaded);
+        assertEquals("Newcomer", preloaded.getName());
+        assertNull(UserStore.getInstance().getUser(newcomer.getUniqueId(), true));
+
+        listener.onJoin(mockJoin(newcomer));
+
+        User user = UserStore.getInstance().getUser(newcomer.getUniqueId());
+        assertSame(preloaded, user);
+        assertTrue(user.isOnline());
+
+        // once they leave and are no longer cached, they are read back from the database
+        userStore.unloadUser(newcomer);
+        userStore.getOfflineUsers().invalidate(user);
+        User saved = UserStore.getInstance().getUser(newcomer.getUniqueId(), true);
+        assertNotNull(saved);
+        assertEquals(user.getId(), saved.getId());
+    }
+
+    @Test
+    public void testDeniedLoginCreatesNothing()
+    {
+        Player banned = mockPlayer("Banned");
+
+        ConnectionListener listener = new ConnectionListener();
+        listener.onPreLogin(mockPreLogin(banned));
+        assertNotNull(userStore.getPreloadedUser(banned.getUniqueId()));
+        listener.onLoginResult(mockLogin(banned, PlayerLoginEvent.Result.KICK_BANNED));
+
+        assertNull(userStore.getPreloadedUser(banned.getUniqueId()));
+        assertNull(UserStore.getInstance().getUser(banned.getUniqueId(), true));
+    }
+
+    @Test
+    public void testDeniedLoginDiscarded()
+    {
+        Player whitelisted = mockPlayer("Whitelisted");
+        userStore.createUser(whitelisted.getUniqueId(), whitelisted.getName());
+
+        ConnectionListener listener = new ConnectionListener();
+        listener.onPreLogin(mockPreLogin(whitelisted));
+        User preloaded = userStore.getPreloadedUser(whitelisted.getUniqueId());
+        assertNotNull(preloaded);
+        listener.onLoginResult(mockLogin(whitelisted, PlayerLoginEvent.Result.KICK_WHITELIST));
+        assertNull(userStore.getPreloadedUser(whitelisted.getUniqueId()));
+
+        // the staged User is gone, so joining later fetches them again
+        listener.onJoin(mockJoin(whitelisted));
+        User joined = UserStore.getInstance().getUser(whitelisted.getUniqueId());
+        assertNotNull(joined);
+        assertNotSame(preloaded, joined);
+        assertEquals(preloaded.getId(), joined.getId());
+    }
+
+    private static Player mockPlayer(String name)
+    {
+        Player player = Mockito.mock(Player.class);
+        UUID uuid = UUID.randomUUID();
+        when(player.getName()).thenReturn(name);
+        when(player.getUniqueId()).thenReturn(uuid);
+        return player;
+    }
+
+    private static AsyncPlayerPreLoginEvent mockPreLogin(Player player)
+    {
+        AsyncPlayerPreLoginEvent event = PowerMockito.mock(AsyncPlayerPreLoginEvent.class);
+        when(event.getUniqueId()).thenReturn(player.getUniqueId());
+        when(event.getName()).thenReturn(player.getName());
+        when(event.getLoginResult()).thenReturn(AsyncPlayerPreLoginEvent.Result.ALLOWED);
+        return event;
+    }
+
+    private static PlayerLoginEvent mockLogin(Player player, PlayerLoginEvent.Result result)
+    {
+        PlayerLoginEvent event = PowerMockito.mock(PlayerLoginEvent.class);
+        when(event.getPlayer()).thenReturn(player);
+        when(event.getResult()).thenReturn(result);
+        return event;
+    }
+
+    private static PlayerJoinEvent mockJoin(Player player)
+    {
+        PlayerJoinEvent event = PowerMockito.mock(PlayerJoinEvent.class);
+        when(event.getPlayer()).thenReturn(player);
+        return event;
+    }
+
 }
@@ -0,0 +1,160 @@
+package com.ziluck.factions.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ziluck.factions.data.WriteJournal;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class WriteJournalTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final WriteJournal.Codec<String> CODEC = new WriteJournal.Codec<String>()
+    {
+        @Override
+        public byte[] encode(String entity)
+        {
+            return entity.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes)
+        {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private File file;
+
+    @Before
+    public void setup()
+    {
+        file = new File(folder.getRoot(), "names.journal");
+    }
+
+    private WriteJournal<String> open(long compactSize) throws IOException
+    {
+        return new WriteJournal<>(file, CODEC, compactSize);
+    }
+
+    private List<String> replay(WriteJournal<String> journal) throws Exception
+    {
+        List<String> written = new ArrayList<>();
+        journal.replay(written::addAll);
+        return written;
+    }
+
+    @Test
+    public void testReplaysUnacknowledged() throws Exception
+    {
+        WriteJournal<String> journal = open(Long.MAX_VALUE);
+        journal.append(1, "a1");
+        long sequence = journal.append(2, "b1");
+        journal.append(1, "a2");
+        journal.sync();
+        journal.acknowledge(2, sequence);
+
+        // reopened without closing, just like after a crash
+        List<String> written = replay(open(Long.MAX_VALUE));
+
+        assertEquals(1, written.size());
+        assertEquals("a2", written.get(0));
+    }
+
+    @Test
+    public void testOlderAcknowledgementKeepsNewerEntry() throws Exception
+    {
+        WriteJournal<String> journal = open(Long.MAX_VALUE);
+        long sequence = journal.append(1, "a1");
+        journal.append(1, "a2");
+        journal.acknowledge(1, sequence);
+
+        assertEquals(1, journal.getOutstanding());
+        assertEquals("a2", replay(open(Long.MAX_VALUE)).get(0));
+    }
+
+    @Test
+    public void testTornTailIgnored() throws Exception
+    {
+        WriteJournal<String> journal = open(Long.MAX_VALUE);
+        journal.append(1, "a1");
+        journal.append(2, "b1");
+        journal.sync();
+
+        try (FileOutputStream out = new FileOutputStream(file, true))
+        {
+            out.write(new byte[] { 1, 0, 0, 0, 0, 0, 0, 0, 3, 0, 0, 0 });
+        }
+
+        List<String> written = replay(open(Long.MAX_VALUE));
+        assertEquals(2, written.size());
+        assertTrue(written.contains("a1"));
+        assertTrue(written.contains("b1"));
+    }
+
+    @Test
+    public void testFailedReplayKept() throws Exception
+    {
+        WriteJournal<String> journal = open(Long.MAX_VALUE);
+        journal.append(1, "a1");
+
+        WriteJournal<String> reopened = open(Long.MAX_VALUE);
+        try
+        {
+            reopened.replay(names ->
+                            {
+                                throw new IllegalStateException("The database is down.");
+                            });
+            fail();
+        }
+        catch (IllegalStateException ex)
+        {
+            // expected
+        }
+        reopened.close();
+
+        assertEquals("a1", replay(open(Long.MAX_VALUE)).get(0));
+    }
+
+    @Test
+    public void testCompacted() throws Exception
+    {
+        WriteJournal<String> journal = open(256);
+        for (int i = 0; i < 100; i++)
+        {
+            long sequence = journal.append(i, "entry" + i);
+            journal.acknowledge(i, sequence);
+        }
+        journal.append(1000, "kept");
+
+        assertTrue(file.length() < 256);
+        journal.close();
+
+        List<String> written = replay(open(256));
+        assertEquals(1, written.size());
+        assertEquals("kept", written.get(0));
+    }
+
+    @Test
+    public void testClosedEmpty() throws Exception
+    {
+        WriteJournal<String> journal = open(Long.MAX_VALUE);
+        long sequence = journal.append(1, "a1");
+        journal.acknowledge(1, sequence);
+        journal.close();
+
+        assertEquals(0, file.length());
+    }
+
+}